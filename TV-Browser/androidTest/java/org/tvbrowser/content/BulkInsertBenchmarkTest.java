@@ -0,0 +1,65 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.content;
+
+import android.content.ContentValues;
+import android.net.Uri;
+import android.test.ProviderTestCase2;
+import android.util.Log;
+
+/**
+ * Measures the insert of a full data update, once with the inserts of
+ * the data table and once with the compiled statements the data update
+ * uses. The rows per second are written to the log.
+ *
+ * @author René Mach
+ */
+public class BulkInsertBenchmarkTest extends ProviderTestCase2<TvBrowserContentProvider> {
+  private static final String TAG = "BulkInsertBenchmark";
+  
+  // about the programs of 200 channels for 14 days
+  private static final int CHANNEL_COUNT = 200;
+  private static final int DAY_COUNT = 14;
+  private static final int PROGRAMS_PER_DAY = 30;
+  
+  public BulkInsertBenchmarkTest() {
+    super(TvBrowserContentProvider.class, TvBrowserContentProvider.AUTHORITY);
+  }
+  
+  public void testBulkInsert() {
+    final ContentValues[] programs = TestPrograms.create(CHANNEL_COUNT, DAY_COUNT, PROGRAMS_PER_DAY);
+    
+    final long plain = measure("plain", TvBrowserContentProvider.CONTENT_URI_DATA, programs);
+    final long compiled = measure("compiled", TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, programs);
+    
+    Log.i(TAG, "Compiled statements need " + (compiled * 100 / Math.max(1, plain)) + "% of the time of the plain inserts");
+  }
+  
+  private long measure(String name, Uri uri, ContentValues[] programs) {
+    getProvider().delete(TvBrowserContentProvider.CONTENT_URI_DATA, null, null);
+    
+    final long start = System.nanoTime();
+    final int count = getProvider().bulkInsert(uri, programs);
+    final long duration = System.nanoTime() - start;
+    
+    assertEquals(programs.length, count);
+    
+    Log.i(TAG, name + ": " + count + " rows in " + (duration / 1000000) + "ms (" + (count * 1000000000L / Math.max(1, duration)) + " rows/s)");
+    
+    return duration;
+  }
+}
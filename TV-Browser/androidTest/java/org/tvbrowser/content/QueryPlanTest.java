@@ -0,0 +1,109 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.content;
+
+import org.tvbrowser.utils.IOUtils;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.ProviderTestCase2;
+
+/**
+ * Checks with EXPLAIN QUERY PLAN that the frequently used queries
+ * of the app use an index instead of a full scan of their table.
+ *
+ * @author René Mach
+ */
+public class QueryPlanTest extends ProviderTestCase2<TvBrowserContentProvider> {
+  private static final String DATA_TABLE = "data";
+  private static final String VERSION_TABLE = "dataVersion";
+  
+  private static final long NOW = (TestPrograms.FIRST_DAY + 1) * TestPrograms.DAY_MILLIS;
+  
+  private SQLiteDatabase mDatabase;
+  
+  public QueryPlanTest() {
+    super(TvBrowserContentProvider.class, TvBrowserContentProvider.AUTHORITY);
+  }
+  
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    
+    // the provider creates the database and the indices
+    getProvider().bulkInsert(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, TestPrograms.create(2, 2, 10));
+    
+    mDatabase = SQLiteDatabase.openDatabase(getMockContext().getDatabasePath(TvBrowserContentProvider.DATABASE_TVB_NAME).getPath(), null, SQLiteDatabase.OPEN_READONLY);
+  }
+  
+  @Override
+  protected void tearDown() throws Exception {
+    if(mDatabase != null) {
+      mDatabase.close();
+    }
+    
+    super.tearDown();
+  }
+  
+  public void testRunningPrograms() {
+    assertUsesIndex("SELECT " + TvBrowserContentProvider.KEY_ID + " FROM " + DATA_TABLE + " WHERE " + TvBrowserContentProvider.DATA_KEY_STARTTIME + "<=" + NOW + " AND " + TvBrowserContentProvider.DATA_KEY_ENDTIME + ">" + NOW);
+  }
+  
+  public void testProgramsOfChannel() {
+    assertUsesIndex("SELECT " + TvBrowserContentProvider.KEY_ID + " FROM " + DATA_TABLE + " WHERE " + TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID + "=1 AND " + TvBrowserContentProvider.DATA_KEY_STARTTIME + ">=" + NOW + " ORDER BY " + TvBrowserContentProvider.DATA_KEY_STARTTIME);
+  }
+  
+  public void testMissingEnds() {
+    assertUsesIndex("SELECT " + TvBrowserContentProvider.KEY_ID + " FROM " + DATA_TABLE + " WHERE " + TvBrowserContentProvider.DATA_KEY_ENDTIME + "=0");
+  }
+  
+  public void testCurrentDataOfUpdate() {
+    assertUsesIndex("SELECT " + TvBrowserContentProvider.KEY_ID + " FROM " + DATA_TABLE + " WHERE " + TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID + "=1 AND " + TvBrowserContentProvider.DATA_KEY_UNIX_DATE + "=" + NOW);
+  }
+  
+  public void testMissingFramesOfUpdate() {
+    assertUsesIndex("SELECT " + TvBrowserContentProvider.KEY_ID + " FROM " + DATA_TABLE + " WHERE " + TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID + "=1 AND " + TvBrowserContentProvider.DATA_KEY_UNIX_DATE + "=" + NOW + " AND " + TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID + " IN (1,2)");
+  }
+  
+  public void testReminders() {
+    assertUsesIndex("SELECT " + TvBrowserContentProvider.KEY_ID + " FROM " + DATA_TABLE + " WHERE " + TvBrowserContentProvider.DATA_KEY_MARKING_REMINDER + " AND " + TvBrowserContentProvider.DATA_KEY_STARTTIME + ">=" + NOW);
+  }
+  
+  public void testVersionsOfUpdate() {
+    assertUsesIndex("SELECT " + TvBrowserContentProvider.KEY_ID + " FROM " + VERSION_TABLE + " WHERE " + TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID + "=1 AND " + TvBrowserContentProvider.VERSION_KEY_DAYS_SINCE_1970 + "=" + TestPrograms.FIRST_DAY);
+  }
+  
+  private void assertUsesIndex(String query) {
+    Cursor plan = null;
+    
+    try {
+      plan = mDatabase.rawQuery("EXPLAIN QUERY PLAN " + query, null);
+      
+      final int detailColumn = plan.getColumnIndex("detail");
+      
+      assertTrue("No query plan for: " + query, detailColumn >= 0 && plan.getCount() > 0);
+      
+      while(plan.moveToNext()) {
+        final String detail = plan.getString(detailColumn);
+        
+        assertFalse("Full table scan '" + detail + "' for query: " + query, detail.startsWith("SCAN") && !detail.contains(" INDEX "));
+      }
+    }finally {
+      IOUtils.close(plan);
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.content;
+
+import org.tvbrowser.tvbrowser.R;
+import org.tvbrowser.utils.IOUtils;
+import org.tvbrowser.utils.PrefUtils;
+
+import android.content.ContentValues;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.ProviderTestCase2;
+import android.util.Log;
+
+/**
+ * Measures the cost of the full text search index for a full data
+ * update and checks that the index and its triggers only exist if
+ * the user selected to search for whole words.
+ *
+ * @author René Mach
+ */
+public class SearchIndexBenchmarkTest extends ProviderTestCase2<TvBrowserContentProvider> {
+  private static final String TAG = "SearchIndexBenchmark";
+  
+  // about the programs of 200 channels for 14 days
+  private static final int CHANNEL_COUNT = 200;
+  private static final int DAY_COUNT = 14;
+  private static final int PROGRAMS_PER_DAY = 30;
+  
+  private SharedPreferences mPreferences;
+  private String mKey;
+  private boolean mSelected;
+  
+  public SearchIndexBenchmarkTest() {
+    super(TvBrowserContentProvider.class, TvBrowserContentProvider.AUTHORITY);
+  }
+  
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    
+    // the provider reads the preference from the application context
+    mPreferences = PrefUtils.getSharedPreferences(PrefUtils.TYPE_PREFERENCES_SHARED_GLOBAL, getContext().getApplicationContext());
+    mKey = getContext().getString(R.string.PREF_DATABASE_SEARCH_WORDS);
+    mSelected = mPreferences.getBoolean(mKey, getContext().getResources().getBoolean(R.bool.pref_database_search_words_default));
+  }
+  
+  @Override
+  protected void tearDown() throws Exception {
+    mPreferences.edit().putBoolean(mKey, mSelected).commit();
+    
+    super.tearDown();
+  }
+  
+  public void testIndexOnlyIfSelected() {
+    setSearchWordsSelected(false);
+    
+    assertFalse(TvBrowserContentProvider.SEARCH_INDEX_AVAILABLE);
+    assertEquals(0, countSearchIndexObjects());
+    
+    setSearchWordsSelected(true);
+    
+    // FTS4 with external content needs SQLite 3.7.9
+    if(TvBrowserContentProvider.SEARCH_INDEX_AVAILABLE) {
+      assertEquals(5, countSearchIndexObjects());
+      
+      setSearchWordsSelected(false);
+      
+      assertFalse(TvBrowserContentProvider.SEARCH_INDEX_AVAILABLE);
+      assertEquals(0, countSearchIndexObjects());
+    }
+  }
+  
+  public void testFullUpdate() {
+    final ContentValues[] programs = TestPrograms.create(CHANNEL_COUNT, DAY_COUNT, PROGRAMS_PER_DAY);
+    
+    setSearchWordsSelected(false);
+    final long without = measure("without index", programs);
+    
+    setSearchWordsSelected(true);
+    
+    if(TvBrowserContentProvider.SEARCH_INDEX_AVAILABLE) {
+      final long with = measure("with index", programs);
+      
+      Log.i(TAG, "The search index adds " + ((with - without) * 100 / Math.max(1, without)) + "% to the time of a full update");
+    }
+  }
+  
+  private void setSearchWordsSelected(boolean selected) {
+    mPreferences.edit().putBoolean(mKey, selected).commit();
+    getProvider().updateSearchIndex();
+  }
+  
+  /**
+   * @return The number of the search tables and triggers in the database.
+   */
+  private int countSearchIndexObjects() {
+    final SQLiteDatabase database = SQLiteDatabase.openDatabase(getMockContext().getDatabasePath(TvBrowserContentProvider.DATABASE_TVB_NAME).getPath(), null, SQLiteDatabase.OPEN_READONLY);
+    Cursor objects = null;
+    
+    try {
+      objects = database.rawQuery("SELECT name FROM sqlite_master WHERE (type='table' AND name='dataSearch') OR (type='trigger' AND name LIKE 'dataSearch\\_%' ESCAPE '\\')", null);
+      
+      return objects.getCount();
+    }finally {
+      IOUtils.close(objects);
+      database.close();
+    }
+  }
+  
+  /**
+   * Deletes the programs of the last update and inserts all programs
+   * again, like a data update that replaces all programs.
+   * 
+   * @return The time of the update in nanoseconds.
+   */
+  private long measure(String name, ContentValues[] programs) {
+    getProvider().bulkInsert(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, programs);
+    
+    final long start = System.nanoTime();
+    
+    getProvider().delete(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, null, null);
+    final int count = getProvider().bulkInsert(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, programs);
+    
+    final long duration = System.nanoTime() - start;
+    
+    assertEquals(programs.length, count);
+    
+    Log.i(TAG, name + ": " + count + " rows deleted and inserted in " + (duration / 1000000) + "ms");
+    
+    getProvider().delete(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, null, null);
+    
+    return duration;
+  }
+}
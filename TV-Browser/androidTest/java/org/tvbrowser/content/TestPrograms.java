@@ -0,0 +1,92 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.content;
+
+import java.util.ArrayList;
+
+import android.content.ContentValues;
+
+/**
+ * Programs for the tests of the database, laid out like the programs
+ * of a data update: every channel has programs for every day, every
+ * day is filled with programs of the same length.
+ * <p>
+ * The programs have different columns like the programs of the data
+ * files, so the inserts use several column layouts.
+ *
+ * @author René Mach
+ */
+final class TestPrograms {
+  // 2018-09-01 UTC
+  static final long FIRST_DAY = 17775;
+  static final long DAY_MILLIS = 24 * 60 * 60000L;
+  
+  private TestPrograms() {}
+  
+  /**
+   * @param channelCount The number of channels, the channel IDs start with 1.
+   * @param dayCount The number of days for every channel.
+   * @param programsPerDay The number of programs of every day.
+   * @return The values of the programs.
+   */
+  static ContentValues[] create(int channelCount, int dayCount, int programsPerDay) {
+    final ArrayList<ContentValues> programs = new ArrayList<>(channelCount * dayCount * programsPerDay);
+    final long length = DAY_MILLIS / programsPerDay;
+    
+    for(int channel = 1; channel <= channelCount; channel++) {
+      for(int day = 0; day < dayCount; day++) {
+        final long unixDate = (FIRST_DAY + day) * DAY_MILLIS;
+        
+        for(int i = 0; i < programsPerDay; i++) {
+          final ContentValues values = new ContentValues();
+          final long startTime = unixDate + i * length;
+          
+          values.put(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID, channel);
+          values.put(TvBrowserContentProvider.DATA_KEY_UNIX_DATE, unixDate);
+          values.put(TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID, i);
+          values.put(TvBrowserContentProvider.DATA_KEY_STARTTIME, startTime);
+          values.put(TvBrowserContentProvider.DATA_KEY_ENDTIME, startTime + length);
+          values.put(TvBrowserContentProvider.DATA_KEY_TITLE, getTitle(i));
+          
+          if(i % 2 == 0) {
+            values.put(TvBrowserContentProvider.DATA_KEY_SHORT_DESCRIPTION, "Short description of " + getTitle(i));
+          }
+          
+          if(i % 3 == 0) {
+            values.put(TvBrowserContentProvider.DATA_KEY_DESCRIPTION, "The long description of " + getTitle(i) + " on channel " + channel + ", a program in the test data of the database.");
+          }
+          
+          if(i % 5 == 0) {
+            values.put(TvBrowserContentProvider.DATA_KEY_GENRE, i % 10 == 0 ? "News" : "Movie");
+          }
+          
+          programs.add(values);
+        }
+      }
+    }
+    
+    return programs.toArray(new ContentValues[programs.size()]);
+  }
+  
+  /**
+   * @return The title of the program with the given index of its day,
+   * the titles are repeated on every day and every channel.
+   */
+  static String getTitle(int index) {
+    return "Program " + (index % 40);
+  }
+}
@@ -0,0 +1,265 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.TimeZone;
+
+import org.tvbrowser.content.TvBrowserContentProvider;
+import org.tvbrowser.utils.IOUtils;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.test.ProviderTestCase2;
+
+/**
+ * Compares the programs matched by the compiled {@link FavoriteMatcher}
+ * with the programs matching the SQL where clause of the Favorites.
+ * <p>
+ * The test programs are more than one chunk of the matcher, so the
+ * chunked queries are compared too.
+ *
+ * @author René Mach
+ */
+public class FavoriteMatcherTest extends ProviderTestCase2<TvBrowserContentProvider> {
+  private static final int CHANNEL_COUNT = 4;
+  private static final int DAY_COUNT = 3;
+  private static final int PROGRAMS_PER_DAY = 48;
+  private static final long DAY_MILLIS = 24 * 60 * 60000L;
+  
+  private static final String[] TITLES = {
+    "Tatort", "Tagesschau", "Der Tatortreiniger", "Ärger im Revier", "Sport am Abend",
+    "news 100% aktuell", "Kochen mit Tim", "Wetter", "TATORT Classics", "Kinderprogramm"
+  };
+  
+  private long[] mProgramIds;
+  
+  public FavoriteMatcherTest() {
+    super(TvBrowserContentProvider.class, TvBrowserContentProvider.AUTHORITY);
+  }
+  
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    
+    // the raw queries of the Favorites join the channels
+    for(int channel = 1; channel <= CHANNEL_COUNT; channel++) {
+      getProvider().insert(TvBrowserContentProvider.CONTENT_URI_CHANNELS, createChannel(channel));
+    }
+    
+    getProvider().bulkInsert(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, createPrograms());
+    
+    final Cursor ids = getProvider().query(TvBrowserContentProvider.CONTENT_URI_DATA, new String[] {TvBrowserContentProvider.KEY_ID}, null, null, TvBrowserContentProvider.KEY_ID);
+    
+    try {
+      assertTrue(IOUtils.prepareAccess(ids));
+      
+      mProgramIds = new long[ids.getCount()];
+      
+      for(int i = 0; ids.moveToNext(); i++) {
+        mProgramIds[i] = ids.getLong(0);
+      }
+    }finally {
+      IOUtils.close(ids);
+    }
+    
+    assertTrue(mProgramIds.length > FavoriteMatcher.MAX_IDS_PER_QUERY);
+  }
+  
+  private static ContentValues createChannel(int channel) {
+    final ContentValues values = new ContentValues();
+    
+    values.put(TvBrowserContentProvider.GROUP_KEY_GROUP_ID, 1);
+    values.put(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID, "test" + channel);
+    values.put(TvBrowserContentProvider.CHANNEL_KEY_BASE_COUNTRY, "de");
+    values.put(TvBrowserContentProvider.CHANNEL_KEY_TIMEZONE, "UTC");
+    values.put(TvBrowserContentProvider.CHANNEL_KEY_NAME, "Channel " + channel);
+    values.put(TvBrowserContentProvider.CHANNEL_KEY_COPYRIGHT, "");
+    values.put(TvBrowserContentProvider.CHANNEL_KEY_WEBSITE, "");
+    values.put(TvBrowserContentProvider.CHANNEL_KEY_CATEGORY, 0);
+    values.put(TvBrowserContentProvider.CHANNEL_KEY_SELECTION, 1);
+    
+    return values;
+  }
+  
+  /**
+   * @return Programs that start after now, so they are all
+   * considered by the matcher and the SQL query.
+   */
+  private static ContentValues[] createPrograms() {
+    final ArrayList<ContentValues> programs = new ArrayList<>();
+    final Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    final long length = DAY_MILLIS / PROGRAMS_PER_DAY;
+    final long firstDay = (System.currentTimeMillis() / DAY_MILLIS + 1) * DAY_MILLIS;
+    
+    for(int channel = 1; channel <= CHANNEL_COUNT; channel++) {
+      for(int day = 0; day < DAY_COUNT; day++) {
+        final long unixDate = firstDay + day * DAY_MILLIS;
+        
+        for(int i = 0; i < PROGRAMS_PER_DAY; i++) {
+          final ContentValues values = new ContentValues();
+          final long startTime = unixDate + i * length;
+          // every third program is longer, so the durations differ
+          final long endTime = startTime + (i % 3 == 0 ? 2 * length : length);
+          final String title = TITLES[(i + channel + day) % TITLES.length];
+          
+          utc.setTimeInMillis(startTime);
+          
+          values.put(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID, channel);
+          values.put(TvBrowserContentProvider.DATA_KEY_UNIX_DATE, unixDate);
+          values.put(TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID, i);
+          values.put(TvBrowserContentProvider.DATA_KEY_STARTTIME, startTime);
+          values.put(TvBrowserContentProvider.DATA_KEY_ENDTIME, endTime);
+          values.put(TvBrowserContentProvider.DATA_KEY_UTC_START_MINUTE_AFTER_MIDNIGHT, utc.get(Calendar.HOUR_OF_DAY) * 60 + utc.get(Calendar.MINUTE));
+          values.put(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES, (int)((endTime - startTime) / 60000));
+          values.put(TvBrowserContentProvider.DATA_KEY_TITLE, title);
+          
+          if(i % 2 == 0) {
+            values.put(TvBrowserContentProvider.DATA_KEY_SHORT_DESCRIPTION, "Heute: " + TITLES[(i + 3) % TITLES.length]);
+          }
+          
+          if(i % 5 == 0) {
+            values.put(TvBrowserContentProvider.DATA_KEY_GENRE, i % 10 == 0 ? "Krimi" : "Nachrichten");
+          }
+          
+          if(i % 7 == 0) {
+            values.put(TvBrowserContentProvider.DATA_KEY_ACTORS, "Axel Milberg, Maria Furtwängler");
+          }
+          
+          for(int info = 0; info < TvBrowserContentProvider.INFO_CATEGORIES_COLUMNS_ARRAY.length; info++) {
+            values.put(TvBrowserContentProvider.INFO_CATEGORIES_COLUMNS_ARRAY[info], (i + info) % 4 == 0);
+          }
+          
+          programs.add(values);
+        }
+      }
+    }
+    
+    return programs.toArray(new ContentValues[programs.size()]);
+  }
+  
+  private static Favorite create(String search, int type, int timeStart, int timeEnd, int[] days, int[] channelIDs, String[] exclusions, int durationMinimum, int durationMaximum, int[] attributes) {
+    final Favorite favorite = new Favorite();
+    favorite.setValues(search, search, type, false, timeStart, timeEnd, days, channelIDs, exclusions, durationMinimum, durationMaximum, attributes, null);
+    
+    return favorite;
+  }
+  
+  private static Favorite create(String search, int type) {
+    return create(search, type, Favorite.VALUE_RESTRICTION_TIME_DEFAULT, Favorite.VALUE_RESTRICTION_TIME_DEFAULT, null, null, null, -1, 0, null);
+  }
+  
+  public void testTitle() {
+    assertSameMatches(
+        create("Tatort", Favorite.KEYWORD_ONLY_TITLE_TYPE),
+        create("tatort", Favorite.KEYWORD_ONLY_TITLE_TYPE),
+        create("ärger", Favorite.KEYWORD_ONLY_TITLE_TYPE),
+        create("Ärger", Favorite.KEYWORD_ONLY_TITLE_TYPE),
+        create("Tatort AND Classics", Favorite.KEYWORD_ONLY_TITLE_TYPE),
+        create("Nicht vorhanden", Favorite.KEYWORD_ONLY_TITLE_TYPE));
+  }
+  
+  public void testAllFields() {
+    assertSameMatches(
+        create("Krimi", Favorite.KEYWORD_TYPE),
+        create("heute: tatort", Favorite.KEYWORD_TYPE),
+        create("Milberg AND Tatort", Favorite.KEYWORD_TYPE),
+        create("Furtwängler", Favorite.KEYWORD_TYPE),
+        create("100", Favorite.KEYWORD_TYPE));
+  }
+  
+  public void testExclusions() {
+    assertSameMatches(
+        create("Tatort", Favorite.KEYWORD_ONLY_TITLE_TYPE, Favorite.VALUE_RESTRICTION_TIME_DEFAULT, Favorite.VALUE_RESTRICTION_TIME_DEFAULT, null, null, new String[] {"reiniger"}, -1, 0, null),
+        create("Tatort", Favorite.KEYWORD_TYPE, Favorite.VALUE_RESTRICTION_TIME_DEFAULT, Favorite.VALUE_RESTRICTION_TIME_DEFAULT, null, null, new String[] {"Krimi", "Nachrichten"}, -1, 0, null));
+  }
+  
+  public void testRestrictions() {
+    assertSameMatches(
+        create("Tatort", Favorite.KEYWORD_ONLY_TITLE_TYPE, 18 * 60, 23 * 60, null, null, null, -1, 0, null),
+        create("Tatort", Favorite.KEYWORD_ONLY_TITLE_TYPE, 22 * 60, 2 * 60, null, null, null, -1, 0, null),
+        create("Tatort", Favorite.KEYWORD_ONLY_TITLE_TYPE, Favorite.VALUE_RESTRICTION_TIME_DEFAULT, Favorite.VALUE_RESTRICTION_TIME_DEFAULT, new int[] {Calendar.MONDAY, Calendar.SATURDAY, Calendar.SUNDAY}, null, null, -1, 0, null),
+        create("Tatort", Favorite.KEYWORD_ONLY_TITLE_TYPE, Favorite.VALUE_RESTRICTION_TIME_DEFAULT, Favorite.VALUE_RESTRICTION_TIME_DEFAULT, null, new int[] {2, 3}, null, -1, 0, null),
+        create("Tatort", Favorite.KEYWORD_TYPE, Favorite.VALUE_RESTRICTION_TIME_DEFAULT, Favorite.VALUE_RESTRICTION_TIME_DEFAULT, null, null, null, 45, 0, null),
+        create("Tatort", Favorite.KEYWORD_TYPE, Favorite.VALUE_RESTRICTION_TIME_DEFAULT, Favorite.VALUE_RESTRICTION_TIME_DEFAULT, null, null, null, -1, 30, null),
+        create("Tatort", Favorite.KEYWORD_TYPE, Favorite.VALUE_RESTRICTION_TIME_DEFAULT, Favorite.VALUE_RESTRICTION_TIME_DEFAULT, null, null, null, -1, 0, new int[] {0, 2}));
+  }
+  
+  public void testRestrictionRules() {
+    assertSameMatches(
+        create("", Favorite.RESTRICTION_RULES_TYPE, 20 * 60, 21 * 60, null, new int[] {1}, null, -1, 0, null),
+        create("", Favorite.RESTRICTION_RULES_TYPE, Favorite.VALUE_RESTRICTION_TIME_DEFAULT, Favorite.VALUE_RESTRICTION_TIME_DEFAULT, new int[] {Calendar.WEDNESDAY}, null, new String[] {"Wetter"}, 50, 70, new int[] {1}));
+  }
+  
+  private void assertSameMatches(Favorite... favorites) {
+    final FavoriteMatcher matcher = FavoriteMatcher.compile(favorites);
+    final Favorite[] compiled = matcher.getFavorites();
+    final long[][] matches = matcher.classify(getMockContext(), mProgramIds);
+    
+    assertNotNull(matches);
+    assertEquals(compiled.length, matches.length);
+    
+    for(int i = 0; i < compiled.length; i++) {
+      final HashSet<Long> compiledIds = new HashSet<>();
+      
+      for(long id : matches[i]) {
+        compiledIds.add(id);
+      }
+      
+      assertEquals(compiled[i].getName(), getSqlMatches(compiled[i]), compiledIds);
+    }
+  }
+  
+  /**
+   * @return The ids of the programs matching the SQL where clause of the Favorite,
+   * restricted like the programs of the compiled matcher to running and future programs.
+   */
+  private HashSet<Long> getSqlMatches(Favorite favorite) {
+    final long now = System.currentTimeMillis();
+    
+    String where = favorite.getExternalWhereClause().getWhere();
+    
+    if(where.trim().length() > 0) {
+      where += " AND ";
+    }
+    else {
+      where += " " + TvBrowserContentProvider.CONCAT_TABLE_PLACE_HOLDER;
+    }
+    
+    where += " ( " + TvBrowserContentProvider.DATA_KEY_STARTTIME + "<=" + now + " AND " + TvBrowserContentProvider.DATA_KEY_ENDTIME + ">=" + now;
+    where += " OR " + TvBrowserContentProvider.DATA_KEY_STARTTIME + ">" + now + " ) ";
+    
+    final HashSet<Long> ids = new HashSet<>();
+    final Cursor cursor = getProvider().query(TvBrowserContentProvider.RAW_QUERY_CONTENT_URI_DATA, new String[] {TvBrowserContentProvider.KEY_ID}, where, null, null);
+    
+    try {
+      if(IOUtils.prepareAccess(cursor)) {
+        final int idColumn = cursor.getColumnIndex(TvBrowserContentProvider.KEY_ID);
+        
+        while(cursor.moveToNext()) {
+          ids.add(cursor.getLong(idColumn));
+        }
+      }
+    }finally {
+      IOUtils.close(cursor);
+    }
+    
+    return ids;
+  }
+}
@@ -18,20 +18,24 @@ package org.tvbrowser.content;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.TimeZone;
 
 import org.tvbrowser.tvbrowser.R;
 import org.tvbrowser.utils.IOUtils;
+import org.tvbrowser.utils.LongHashMap;
 import org.tvbrowser.utils.PrefUtils;
 
 import android.app.SearchManager;
 import android.content.ContentProvider;
 import android.content.ContentProviderOperation;
 import android.content.ContentProviderResult;
+import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
@@ -40,6 +44,7 @@ import android.content.SharedPreferences;
 import android.content.UriMatcher;
 import android.content.res.Resources.NotFoundException;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteDatabase.CursorFactory;
@@ -47,7 +52,9 @@ import android.database.sqlite.SQLiteDatabaseLockedException;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.text.TextUtils;
 import android.util.Log;
@@ -56,6 +63,7 @@ public class TvBrowserContentProvider extends ContentProvider {
   public static final String DATABASE_TVB_NAME = "tvbrowser.db";
   
   public static final String AUTHORITY = "org.tvbrowser.tvbrowsercontentprovider";
+  private static final Uri BASE_URI = Uri.parse("content://" + AUTHORITY);
   public static final Uri CONTENT_URI_GROUPS = Uri.parse("content://" + AUTHORITY + "/groups");
   public static final Uri CONTENT_URI_CHANNELS = Uri.parse("content://" + AUTHORITY + "/channels");
   public static final Uri CONTENT_URI_CHANNELS_WITH_GROUP = Uri.parse("content://" + AUTHORITY + "/channelgroups");
@@ -69,6 +77,119 @@ public class TvBrowserContentProvider extends ContentProvider {
   
   public static boolean INFORM_FOR_CHANGES = true;
   
+  /**
+   * If the full text search index is available in the database.
+   * Is set when the database is opened.
+   */
+  public static volatile boolean SEARCH_INDEX_AVAILABLE = false;
+  
+  /**
+   * The maximum number of changed programs that are tracked during a data update,
+   * if more programs are changed the tracking is given up.
+   * <p>
+   * A full update of 200 channels for 14 days changes about 100000 programs,
+   * the ids are kept as primitive longs, so this needs about 3 MB at most.
+   */
+  private static final int MAX_TRACKED_DATA_CHANGES = 250000;
+  
+  private static final Object DATA_CHANGES_LOCK = new Object();
+  private static LongHashMap<Boolean> DATA_CHANGES = null;
+  private static boolean DATA_CHANGES_OVERFLOW = false;
+  
+  /**
+   * Starts the tracking of the ids of the programs that are
+   * inserted or updated with the data update URI.
+   */
+  public static void startTrackingDataChanges() {
+    synchronized (DATA_CHANGES_LOCK) {
+      DATA_CHANGES = new LongHashMap<>();
+      DATA_CHANGES_OVERFLOW = false;
+    }
+  }
+  
+  /**
+   * Stops the tracking of the ids of the changed programs.
+   * <p>
+   * @return The sorted ids of the programs that were inserted or updated since
+   * the start of the tracking or <code>null</code> if the changes are unknown,
+   * because the tracking wasn't started, too many programs were changed or
+   * the ids of programs updated with a selection couldn't be read.
+   * Updates of only the values of the user, like the markings, aren't tracked.
+   */
+  public static long[] stopTrackingDataChanges() {
+    long[] result = null;
+    
+    synchronized (DATA_CHANGES_LOCK) {
+      if(DATA_CHANGES != null && !DATA_CHANGES_OVERFLOW) {
+        result = DATA_CHANGES.keys();
+        Arrays.sort(result);
+      }
+      
+      DATA_CHANGES = null;
+      DATA_CHANGES_OVERFLOW = false;
+    }
+    
+    return result;
+  }
+  
+  private static void trackDataChange(long programId) {
+    synchronized (DATA_CHANGES_LOCK) {
+      if(DATA_CHANGES != null && !DATA_CHANGES_OVERFLOW) {
+        if(programId < 0 || DATA_CHANGES.size() >= MAX_TRACKED_DATA_CHANGES) {
+          Log.w("info11", programId < 0 ? "Programs updated without id, Favorites are searched in all programs" : "More than " + MAX_TRACKED_DATA_CHANGES + " programs changed, Favorites are searched in all programs");
+          
+          DATA_CHANGES_OVERFLOW = true;
+          DATA_CHANGES = new LongHashMap<>();
+        }
+        else {
+          DATA_CHANGES.put(programId, Boolean.TRUE);
+        }
+      }
+    }
+  }
+  
+  private static boolean isTrackingDataChanges() {
+    synchronized (DATA_CHANGES_LOCK) {
+      return DATA_CHANGES != null && !DATA_CHANGES_OVERFLOW;
+    }
+  }
+  
+  /**
+   * @return <code>true</code> if the given values contain other
+   * columns than the values of the user.
+   */
+  private static boolean isChangingMatchedData(ContentValues values) {
+    for(String column : values.keySet()) {
+      if(!USER_DATA_COLUMNS.contains(column)) {
+        return true;
+      }
+    }
+    
+    return false;
+  }
+  
+  /**
+   * Tracks the ids of the programs that are updated with the given selection,
+   * has to be called in the transaction of the update.
+   */
+  private static void trackDataChanges(SQLiteDatabase database, String where, String[] whereArgs) {
+    final Cursor ids = database.query(TvBrowserDataBaseHelper.DATA_TABLE, new String[] {KEY_ID}, where, whereArgs, null, null, null);
+    
+    try {
+      if(ids != null) {
+        while(ids.moveToNext()) {
+          trackDataChange(ids.getLong(0));
+        }
+      }
+      else {
+        // the ids of the changed programs are unknown
+        trackDataChange(-1);
+      }
+    }finally {
+      IOUtils.close(ids);
+    }
+  }
+  
   private TvBrowserDataBaseHelper mDataBaseHelper;
   
   private static final int GROUPS = 1;
@@ -99,6 +220,9 @@ public class TvBrowserContentProvider extends ContentProvider {
   
   private static final HashMap<String,String> SEARCH_PROJECTION_MAP;
   
+  // name of the full text search table
+  private static final String SEARCH_INDEX_TABLE = "dataSearch";
+  
   // column name for CONCAT raw queries
   public static final String CONCAT_TABLE_PLACE_HOLDER = "concatTablePlaceHolder";
   public static final String CONCAT_RAW_KEY = "concatRawQueryColumn";
@@ -372,6 +496,15 @@ public class TvBrowserContentProvider extends ContentProvider {
     DATA_KEY_INFO_SIGN_LANGUAGE
   };
   
+  /**
+   * The columns with the values of the user, that don't change
+   * the programs a Favorite is matching.
+   */
+  private static final HashSet<String> USER_DATA_COLUMNS = new HashSet<>(Arrays.asList(
+      DATA_KEY_DONT_WANT_TO_SEE, DATA_KEY_REMOVED_REMINDER, DATA_KEY_MARKING_MARKING,
+      DATA_KEY_MARKING_FAVORITE, DATA_KEY_MARKING_FAVORITE_REMINDER, DATA_KEY_MARKING_REMINDER,
+      DATA_KEY_MARKING_SYNC, DATA_KEY_REMOVED_SYNC));
+  
   public static final String[] TEXT_SEARCHABLE_COLUMN_ARRAY = {
     DATA_KEY_ACTORS,
     DATA_KEY_ADDITIONAL_INFO,
@@ -397,6 +530,30 @@ public class TvBrowserContentProvider extends ContentProvider {
     DATA_KEY_TITLE_ORIGINAL
   };
   
+  /**
+   * The columns that are contained in the full text search index,
+   * the same columns as searched by the keyword favorites.
+   */
+  public static final String[] SEARCH_INDEX_COLUMN_ARRAY = {
+    DATA_KEY_TITLE,
+    DATA_KEY_TITLE_ORIGINAL,
+    DATA_KEY_EPISODE_TITLE,
+    DATA_KEY_EPISODE_TITLE_ORIGINAL,
+    DATA_KEY_SHORT_DESCRIPTION,
+    DATA_KEY_DESCRIPTION,
+    DATA_KEY_ACTORS,
+    DATA_KEY_SERIES,
+    DATA_KEY_REGIE,
+    DATA_KEY_SCRIPT,
+    DATA_KEY_ADDITIONAL_INFO,
+    DATA_KEY_CAMERA,
+    DATA_KEY_MODERATION,
+    DATA_KEY_MUSIC,
+    DATA_KEY_PRODUCER,
+    DATA_KEY_GENRE,
+    DATA_KEY_OTHER_PERSONS
+  };
+  
   // Column names for data version table
   public static final String VERSION_KEY_DAYS_SINCE_1970 = "daysSince1970";
   public static final String VERSION_KEY_BASE_VERSION = "baseVersion";
@@ -562,7 +719,7 @@ public class TvBrowserContentProvider extends ContentProvider {
     if(IOUtils.isDatabaseAccessible(getContext())) {
       switch(uriMatcher.match(uri)) {
         case DATA: return bulkInsertData(uri, values);
-        case DATA_UPDATE: return bulkInsertData(uri, values);
+        case DATA_UPDATE: return bulkInsertDataCompiled(uri, values);
         case DATA_VERSION: return bulkInsertVersion(uri, values);
         case CHANNELS: return bulkInsertChannels(uri, values);
       }
@@ -571,6 +728,128 @@ public class TvBrowserContentProvider extends ContentProvider {
     throw new SQLException("Failed to insert row into " + uri);
   }
   
+  /**
+   * Method for {@link #call(String, String, Bundle)} to update many rows with the same values.
+   */
+  private static final String METHOD_UPDATE_IDS = "updateIds";
+  private static final String EXTRA_IDS = "ids";
+  private static final String EXTRA_VALUES = "values";
+  private static final String EXTRA_COUNT = "count";
+  
+  private static final int MAX_IDS_PER_UPDATE = 500;
+  
+  /**
+   * Updates all rows with the given ids to the same values with only
+   * a few statements and a single notification for the changes.
+   * <p>
+   * @param resolver The ContentResolver to use.
+   * @param uri The content URI of the table to update, without id.
+   * @param values The values to set for all rows.
+   * @param ids The ids of the rows to update.
+   * @return The number of updated rows.
+   */
+  public static int updateIds(ContentResolver resolver, Uri uri, ContentValues values, long[] ids) {
+    int count = 0;
+    
+    if(ids.length > 0 && values.size() > 0) {
+      final Bundle extras = new Bundle();
+      extras.putLongArray(EXTRA_IDS, ids);
+      extras.putParcelable(EXTRA_VALUES, values);
+      
+      final Bundle result = resolver.call(uri, METHOD_UPDATE_IDS, uri.toString(), extras);
+      
+      if(result != null) {
+        count = result.getInt(EXTRA_COUNT);
+      }
+    }
+    
+    return count;
+  }
+  
+  @Override
+  public Bundle call(@NonNull String method, String arg, Bundle extras) {
+    if(METHOD_UPDATE_IDS.equals(method) && arg != null && extras != null) {
+      final Uri uri = Uri.parse(arg);
+      final long[] ids = extras.getLongArray(EXTRA_IDS);
+      final ContentValues values = extras.getParcelable(EXTRA_VALUES);
+      
+      int count = 0;
+      SQLiteDatabase database = mDataBaseHelper.getWritableDatabase();
+      
+      if(database != null && ids != null && values != null) {
+        final int match = uriMatcher.match(uri);
+        final String table = getUpdateTable(match);
+        final boolean track = match == DATA_UPDATE && isChangingMatchedData(values);
+        
+        database.beginTransaction();
+        
+        try {
+          final StringBuilder where = new StringBuilder();
+          
+          for(int i = 0; i < ids.length; i += MAX_IDS_PER_UPDATE) {
+            final int end = Math.min(ids.length, i + MAX_IDS_PER_UPDATE);
+            
+            where.setLength(0);
+            where.append(KEY_ID).append(" IN ( ");
+            
+            for(int j = i; j < end; j++) {
+              if(j > i) {
+                where.append(",");
+              }
+              
+              where.append(ids[j]);
+              
+              if(track) {
+                trackDataChange(ids[j]);
+              }
+            }
+            
+            where.append(" )");
+            
+            count += database.update(table, values, where.toString(), null);
+          }
+          
+          database.setTransactionSuccessful();
+        }finally {
+          database.endTransaction();
+        }
+        
+        if(INFORM_FOR_CHANGES && count > 0) {
+          getContext().getContentResolver().notifyChange(uri, null);
+          
+          if(table.equals(TvBrowserDataBaseHelper.DATA_TABLE)) {
+            getContext().getContentResolver().notifyChange(CONTENT_URI_DATA_WITH_CHANNEL, null);
+          }
+        }
+      }
+      
+      final Bundle result = new Bundle();
+      result.putInt(EXTRA_COUNT, count);
+      
+      return result;
+    }
+    
+    return super.call(method, arg, extras);
+  }
+  
+  private static String getUpdateTable(int match) {
+    String table = TvBrowserDataBaseHelper.DATA_TABLE;
+    
+    switch(match) {
+      case DATA_VERSION: table = TvBrowserDataBaseHelper.VERSION_TABLE;break;
+      case DATA_VERSION_ID: table = TvBrowserDataBaseHelper.VERSION_TABLE;break;
+      case CHANNELS: table = CHANNEL_TABLE;break;
+      case CHANNEL_ID: table = CHANNEL_TABLE;break;
+    }
+    
+    return table;
+  }
+  
+  /**
+   * Applies the update operations of the batch with one compiled statement per
+   * table and column layout and notifies every changed content URI only once.
+   * Operations for URIs without id are applied normally.
+   */
   @NonNull
   @Override
   public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations) throws OperationApplicationException {
@@ -583,48 +862,92 @@ public class TvBrowserContentProvider extends ContentProvider {
         try {
           database.beginTransaction();
           
-          HashMap<Uri, Uri> updateUris = new HashMap<>();
+          final HashMap<String, SQLiteStatement> statementMap = new HashMap<>();
+          final HashSet<Uri> notifyUris = new HashSet<>();
           
-          for(ContentProviderOperation op : operations) {
-            Uri uri = op.getUri();
-            
-            String table = TvBrowserDataBaseHelper.DATA_TABLE;
-            
-            switch(uriMatcher.match(uri)) {
-              case DATA_VERSION: table = TvBrowserDataBaseHelper.VERSION_TABLE;break;
-              case DATA_VERSION_ID: table = TvBrowserDataBaseHelper.VERSION_TABLE;break;
-              case CHANNELS: table = CHANNEL_TABLE;break;
-              case CHANNEL_ID: table = CHANNEL_TABLE;break;
+          try {
+            for(int i = 0; i < operations.size(); i++) {
+              final ContentProviderOperation op = operations.get(i);
+              final Uri uri = op.getUri();
+              final List<String> segments = uri.getPathSegments();
+              
+              if(segments.size() < 2) {
+                result.add(op.apply(this, result.toArray(new ContentProviderResult[result.size()]), i));
+                continue;
+              }
+              
+              final int match = uriMatcher.match(uri);
+              final String table = getUpdateTable(match);
+              final long id = Long.parseLong(segments.get(1));
+              
+              ContentValues values = op.resolveValueBackReferences(null, 0);
+              
+              int count = 0;
+              
+              if(values != null && values.size() > 0) {
+                final Set<String> keys = values.keySet();
+                final String[] columns = keys.toArray(new String[keys.size()]);
+                Arrays.sort(columns);
+                
+                final String layout = table + ":" + TextUtils.join(",", columns);
+                
+                SQLiteStatement statement = statementMap.get(layout);
+                
+                if(statement == null) {
+                  final StringBuilder sql = new StringBuilder("UPDATE ");
+                  sql.append(table).append(" SET ");
+                  
+                  for(int j = 0; j < columns.length; j++) {
+                    if(j > 0) {
+                      sql.append(",");
+                    }
+                    
+                    sql.append(columns[j]).append("=?");
+                  }
+                  
+                  sql.append(" WHERE ").append(KEY_ID).append("=?");
+                  
+                  statement = database.compileStatement(sql.toString());
+                  statementMap.put(layout, statement);
+                }
+                
+                statement.clearBindings();
+                
+                for(int j = 0; j < columns.length; j++) {
+                  DatabaseUtils.bindObjectToProgram(statement, j+1, values.get(columns[j]));
+                }
+                
+                statement.bindLong(columns.length+1, id);
+                
+                count = statement.executeUpdateDelete();
+              }
+              
+              if(count > 0) {
+                notifyUris.add(Uri.withAppendedPath(BASE_URI, segments.get(0)));
+                
+                if(match == DATA_ID) {
+                  notifyUris.add(CONTENT_URI_DATA_WITH_CHANNEL);
+                }
+                else if(match == DATA_UPDATE_ID) {
+                  trackDataChange(id);
+                }
+              }
+              
+              result.add(new ContentProviderResult(count));
             }
             
-            ContentValues values = op.resolveValueBackReferences(null, 0);
-            
-            String segment = uri.getPathSegments().get(1);
-            
-            int count = database.update(table, values, KEY_ID + "=" + segment, null);
+            database.setTransactionSuccessful();
+          }finally {
+            database.endTransaction();
             
-            if(count > 0) {
-              updateUris.put(uri, uri);
+            for(SQLiteStatement statement : statementMap.values()) {
+              statement.close();
             }
-            
-            result.add(new ContentProviderResult(count));
           }
           
-          database.setTransactionSuccessful();
-          database.endTransaction();
-          
-          Set<Uri> uris = updateUris.keySet();
-          
           if(INFORM_FOR_CHANGES) {
-            for(Uri uri : uris) {
+            for(Uri uri : notifyUris) {
               getContext().getContentResolver().notifyChange(uri, null);
-              
-              switch (uriMatcher.match(uri)) {
-                case DATA: getContext().getContentResolver().notifyChange(uri, null);break;
-                case DATA_ID: String segment = uri.getPathSegments().get(1);
-                getContext().getContentResolver().notifyChange(ContentUris.withAppendedId(CONTENT_URI_DATA_WITH_CHANNEL,Integer.parseInt(segment)),null);
-                  break;
-              }
             }
           }
         }catch(SQLiteDatabaseLockedException ignored) {}
@@ -671,6 +994,170 @@ public class TvBrowserContentProvider extends ContentProvider {
     return count;
   }
   
+  /**
+   * @return <code>true</code> if the full text search index is available
+   * and the user selected to search for whole words instead of any text.
+   */
+  public static boolean isSearchIndexUsable() {
+    return SEARCH_INDEX_AVAILABLE && PrefUtils.getBooleanValue(R.string.PREF_DATABASE_SEARCH_WORDS, R.bool.pref_database_search_words_default);
+  }
+  
+  /**
+   * Creates a where clause that uses the full text search index to find
+   * the programs that contain all the given terms at the beginning of words.
+   * <p>
+   * @param column The column to search in or <code>null</code> to search in all
+   * columns of {@link #SEARCH_INDEX_COLUMN_ARRAY}.
+   * @param terms The terms that all have to be found.
+   * @return The where clause or <code>null</code> if the search index cannot be used
+   * for the given values, in that case the search has to be done with LIKE.
+   */
+  public static String getSearchIndexWhereClause(String column, String... terms) {
+    if(!SEARCH_INDEX_AVAILABLE || terms == null || terms.length == 0) {
+      return null;
+    }
+    
+    if(column != null) {
+      boolean indexed = false;
+      
+      for(String indexColumn : SEARCH_INDEX_COLUMN_ARRAY) {
+        if(indexColumn.equals(column)) {
+          indexed = true;
+          break;
+        }
+      }
+      
+      if(!indexed) {
+        return null;
+      }
+    }
+    
+    final StringBuilder match = new StringBuilder();
+    
+    for(String term : terms) {
+      final String[] tokens = term.trim().split("[^\\p{L}\\p{N}]+");
+      final StringBuilder phrase = new StringBuilder();
+      
+      for(String token : tokens) {
+        if(token.length() > 0) {
+          if(phrase.length() > 0) {
+            phrase.append(" ");
+          }
+          
+          phrase.append(token);
+        }
+      }
+      
+      if(phrase.length() == 0) {
+        return null;
+      }
+      
+      if(match.length() > 0) {
+        match.append(" ");
+      }
+      
+      match.append("\"").append(phrase).append("*\"");
+    }
+    
+    // rowid is used instead of _id, so the where clause doesn't affect the _id replacements of the queries
+    return " ( " + TvBrowserDataBaseHelper.DATA_TABLE + ".rowid IN ( SELECT docid FROM " + SEARCH_INDEX_TABLE + " WHERE " + SEARCH_INDEX_TABLE + "." + (column != null ? column : SEARCH_INDEX_TABLE) + " MATCH '" + match + "' ) ) ";
+  }
+  
+  /**
+   * Inserts the given values into the data table with one compiled
+   * statement for every column layout of the values.
+   * <p>
+   * This is used for the data update, so instead of informing about
+   * every inserted row only one change is send after all rows are inserted.
+   * <p>
+   * @param uri The uri of the insert.
+   * @param values The values to insert.
+   * @return The number of inserted rows.
+   */
+  private int bulkInsertDataCompiled(Uri uri, ContentValues[] values) {
+    SQLiteDatabase database = mDataBaseHelper.getWritableDatabase();
+    
+    int count = 0;
+    
+    if(database != null) {
+      final HashMap<String, SQLiteStatement> statementMap = new HashMap<>();
+      
+      database.beginTransaction();
+      
+      try {
+        for(ContentValues value : values) {
+          if(value == null || value.size() == 0) {
+            continue;
+          }
+          
+          final Set<String> keys = value.keySet();
+          final String[] columns = keys.toArray(new String[keys.size()]);
+          Arrays.sort(columns);
+          
+          final String layout = TextUtils.join(",", columns);
+          
+          SQLiteStatement statement = statementMap.get(layout);
+          
+          if(statement == null) {
+            final StringBuilder sql = new StringBuilder("INSERT INTO ");
+            
+            sql.append(TvBrowserDataBaseHelper.DATA_TABLE).append(" (").append(layout).append(") VALUES (");
+            
+            for(int i = 0; i < columns.length; i++) {
+              if(i > 0) {
+                sql.append(",");
+              }
+              
+              sql.append("?");
+            }
+            
+            sql.append(")");
+            
+            statement = database.compileStatement(sql.toString());
+            statementMap.put(layout, statement);
+          }
+          
+          statement.clearBindings();
+          
+          for(int i = 0; i < columns.length; i++) {
+            DatabaseUtils.bindObjectToProgram(statement, i+1, value.get(columns[i]));
+          }
+          
+          try {
+            final long rowId = statement.executeInsert();
+            
+            if(rowId != -1) {
+              trackDataChange(rowId);
+              count++;
+            }
+          }catch(SQLException e) {
+            // same as SQLiteDatabase.insert() a failing row doesn't stop the insert of the others
+            Log.d("info11", "Failed to insert row into " + uri, e);
+          }
+        }
+        
+        database.setTransactionSuccessful();
+      }finally {
+        database.endTransaction();
+        
+        for(SQLiteStatement statement : statementMap.values()) {
+          statement.close();
+        }
+      }
+      
+      if(count == 0) {
+        throw new SQLException("Failed to insert row into " + uri + " " + count);
+      }
+      
+      if(INFORM_FOR_CHANGES) {
+        getContext().getContentResolver().notifyChange(CONTENT_URI_DATA, null);
+      }
+    }
+    
+    // Return a count of inserted rows    
+    return count;
+  }
+  
   private int bulkInsertChannels(Uri uri, ContentValues[] values) {
     SQLiteDatabase database = mDataBaseHelper.getWritableDatabase();
     
@@ -775,6 +1262,8 @@ public class TvBrowserContentProvider extends ContentProvider {
       // Return a URI to the newly inserted row on success.
       
       if(rowID >= 0) {
+        trackDataChange(rowID);
+        
         Uri newUri = ContentUris.withAppendedId(CONTENT_URI_DATA, rowID);
         
         if(INFORM_FOR_CHANGES) {
@@ -840,6 +1329,20 @@ public class TvBrowserContentProvider extends ContentProvider {
     throw new SQLException("Database not accessible.");
   }
 
+  /**
+   * Creates or drops the full text search index, as selected by the user.
+   * <p>
+   * The index of all programs is built when it's created, so this must
+   * not be called on the UI thread.
+   */
+  public void updateSearchIndex() {
+    final SQLiteDatabase database = mDataBaseHelper.getWritableDatabase();
+    
+    if(database != null) {
+      mDataBaseHelper.updateSearchIndex(database);
+    }
+  }
+  
   public void updateDatabasePath() {
     mDataBaseHelper.close();
     createDataBaseHelper(PrefUtils.getSharedPreferences(PrefUtils.TYPE_PREFERENCES_SHARED_GLOBAL, getContext()).getString(getContext().getString(R.string.PREF_DATABASE_PATH), getContext().getString(R.string.pref_database_path_default)));
@@ -974,7 +1477,15 @@ public class TvBrowserContentProvider extends ContentProvider {
             }
 
             StringBuilder b = new StringBuilder(CHANNEL_TABLE + "." + KEY_ID + "=" + TvBrowserDataBaseHelper.DATA_TABLE + "." + CHANNEL_KEY_CHANNEL_ID + " AND ");
-            b.append("((" + DATA_KEY_TITLE + " LIKE '%" + search + "%' OR " + DATA_KEY_EPISODE_TITLE + " LIKE '%" + search + "%') AND " + DATA_KEY_ENDTIME + ">=" + System.currentTimeMillis() + " AND NOT " + DATA_KEY_DONT_WANT_TO_SEE + ")");
+            
+            final String titleMatch = isSearchIndexUsable() ? getSearchIndexWhereClause(DATA_KEY_TITLE, search) : null;
+            
+            if(titleMatch != null) {
+              b.append("((" + titleMatch + " OR " + getSearchIndexWhereClause(DATA_KEY_EPISODE_TITLE, search) + ") AND " + DATA_KEY_ENDTIME + ">=" + System.currentTimeMillis() + " AND NOT " + DATA_KEY_DONT_WANT_TO_SEE + ")");
+            }
+            else {
+              b.append("((" + DATA_KEY_TITLE + " LIKE '%" + search + "%' OR " + DATA_KEY_EPISODE_TITLE + " LIKE '%" + search + "%') AND " + DATA_KEY_ENDTIME + ">=" + System.currentTimeMillis() + " AND NOT " + DATA_KEY_DONT_WANT_TO_SEE + ")");
+            }
 
             qb.setTables(TvBrowserDataBaseHelper.DATA_TABLE + " , " + CHANNEL_TABLE);
             qb.appendWhere(b.toString());
@@ -1154,10 +1665,36 @@ public class TvBrowserContentProvider extends ContentProvider {
         data_with_channel = true;
         count = database.update(TvBrowserDataBaseHelper.VERSION_TABLE, values, KEY_ID + "=" + segment + (!TextUtils.isEmpty(where) ? " AND (" + where + ")" : ""), whereArgs);
         }break;
-        case DATA_UPDATE: count = database.update(TvBrowserDataBaseHelper.DATA_TABLE, values, where, whereArgs);break;
+        case DATA_UPDATE: {
+          final boolean track = isTrackingDataChanges() && isChangingMatchedData(values);
+          
+          if(track) {
+            database.beginTransaction();
+          }
+          
+          try {
+            if(track) {
+              trackDataChanges(database, where, whereArgs);
+            }
+            
+            count = database.update(TvBrowserDataBaseHelper.DATA_TABLE, values, where, whereArgs);
+            
+            if(track) {
+              database.setTransactionSuccessful();
+            }
+          }finally {
+            if(track) {
+              database.endTransaction();
+            }
+          }
+        }break;
         case DATA_UPDATE_ID: {String segment = uri.getPathSegments().get(1);
         data_with_channel = true;
         count = database.update(TvBrowserDataBaseHelper.DATA_TABLE, values, KEY_ID + "=" + segment + (!TextUtils.isEmpty(where) ? " AND (" + where + ")" : ""), whereArgs);
+        
+        if(count > 0 && isChangingMatchedData(values)) {
+          trackDataChange(Long.parseLong(segment));
+        }
         }break;
         case DATA: count = database.update(TvBrowserDataBaseHelper.DATA_TABLE, values, where, whereArgs);break;
         case DATA_ID: {String segment = uri.getPathSegments().get(1);
@@ -1186,6 +1723,12 @@ public class TvBrowserContentProvider extends ContentProvider {
     private static final String DATA_TABLE = "data";
     private static final String VERSION_TABLE = "dataVersion";
     
+    private static final String INDEX_DATA_CHANNEL_START = DATA_TABLE + "_channel_start";
+    private static final String INDEX_DATA_START = DATA_TABLE + "_start";
+    private static final String INDEX_DATA_END = DATA_TABLE + "_end";
+    private static final String INDEX_DATA_CHANNEL_DATE_PROG_ID = DATA_TABLE + "_channel_date_prog";
+    private static final String INDEX_VERSION_CHANNEL_DAYS = VERSION_TABLE + "_channel_days";
+    
     private static final String CREATE_GROUPS_TABLE = "create table " + GROUPS_TABLE + " (" + KEY_ID + " integer primary key autoincrement, "
         + GROUP_KEY_DATA_SERVICE_ID + " TEXT NOT NULL, "
         + GROUP_KEY_GROUP_ID + " TEXT NOT NULL, "
@@ -1260,9 +1803,165 @@ public class TvBrowserContentProvider extends ContentProvider {
       db.execSQL(CREATE_CHANNEL_TABLE);
       db.execSQL(CREATE_DATA_TABLE);
       db.execSQL(CREATE_VERSION_TABLE);
+      
+      createIndices(db);
+    }
+    
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+      super.onOpen(db);
+      
+      updateSearchIndex(db);
+    }
+    
+    private boolean isSearchWordsSelected() {
+      return PrefUtils.getSharedPreferences(PrefUtils.TYPE_PREFERENCES_SHARED_GLOBAL, mContext).getBoolean(mContext.getString(R.string.PREF_DATABASE_SEARCH_WORDS), mContext.getResources().getBoolean(R.bool.pref_database_search_words_default));
+    }
+    
+    /**
+     * Creates the search index if the user selected to search for whole
+     * words and drops it otherwise, so the triggers of the index don't
+     * slow down the inserts and updates of the data update if the index
+     * isn't used.
+     * 
+     * @param db The database to create or drop the search index for.
+     */
+    private void updateSearchIndex(SQLiteDatabase db) {
+      final boolean selected = isSearchWordsSelected();
+      
+      if(selected != tableExists(db, SEARCH_INDEX_TABLE)) {
+        db.beginTransaction();
+        
+        try {
+          if(selected) {
+            createSearchIndex(db);
+          }
+          else {
+            dropSearchIndex(db);
+          }
+          
+          db.setTransactionSuccessful();
+        }finally {
+          db.endTransaction();
+        }
+      }
+      
+      SEARCH_INDEX_AVAILABLE = tableExists(db, SEARCH_INDEX_TABLE);
     }
 
-    private static final int DATABASE_VERSION = 12;
+    private static final int DATABASE_VERSION = 14;
+    
+    /**
+     * Creates the full text search table for the text columns of the
+     * data table and the triggers that keep it in sync with the data table.
+     * <p>
+     * The search table uses the data table as external content, so the texts
+     * are not stored twice. If the SQLite version doesn't support this (before 3.7.9)
+     * no search table is created and all searches are done with LIKE.
+     * <p>
+     * This is called within the transaction of updateSearchIndex, so it
+     * must not open a transaction of its own.
+     * 
+     * @param db The database to create the search table for.
+     */
+    private static void createSearchIndex(SQLiteDatabase db) {
+      if(!isFullTextSearchSupported(db)) {
+        Log.d("info11", "Full text search not supported");
+        return;
+      }
+      
+      final String columns = TextUtils.join(", ", SEARCH_INDEX_COLUMN_ARRAY);
+      final String newColumns = "new." + TextUtils.join(", new.", SEARCH_INDEX_COLUMN_ARRAY);
+      
+      try {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + SEARCH_INDEX_TABLE + " USING fts4(content=\"" + DATA_TABLE + "\", " + columns + ", tokenize=unicode61)");
+      }catch(SQLiteException e) {
+        // unicode61 tokenizer not available, use the simple tokenizer
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + SEARCH_INDEX_TABLE + " USING fts4(content=\"" + DATA_TABLE + "\", " + columns + ")");
+      }
+      
+      db.execSQL("CREATE TRIGGER IF NOT EXISTS " + SEARCH_INDEX_TABLE + "_bu BEFORE UPDATE OF " + columns + " ON " + DATA_TABLE + " BEGIN DELETE FROM " + SEARCH_INDEX_TABLE + " WHERE docid=old." + KEY_ID + "; END;");
+      db.execSQL("CREATE TRIGGER IF NOT EXISTS " + SEARCH_INDEX_TABLE + "_bd BEFORE DELETE ON " + DATA_TABLE + " BEGIN DELETE FROM " + SEARCH_INDEX_TABLE + " WHERE docid=old." + KEY_ID + "; END;");
+      db.execSQL("CREATE TRIGGER IF NOT EXISTS " + SEARCH_INDEX_TABLE + "_au AFTER UPDATE OF " + columns + " ON " + DATA_TABLE + " BEGIN INSERT INTO " + SEARCH_INDEX_TABLE + "(docid, " + columns + ") VALUES(new." + KEY_ID + ", " + newColumns + "); END;");
+      db.execSQL("CREATE TRIGGER IF NOT EXISTS " + SEARCH_INDEX_TABLE + "_ai AFTER INSERT ON " + DATA_TABLE + " BEGIN INSERT INTO " + SEARCH_INDEX_TABLE + "(docid, " + columns + ") VALUES(new." + KEY_ID + ", " + newColumns + "); END;");
+      
+      // index the already existing data
+      db.execSQL("INSERT INTO " + SEARCH_INDEX_TABLE + "(" + SEARCH_INDEX_TABLE + ") VALUES('rebuild')");
+    }
+    
+    /**
+     * Drops the full text search table and its triggers.
+     * 
+     * @param db The database to drop the search table of.
+     */
+    private static void dropSearchIndex(SQLiteDatabase db) {
+      for(String trigger : new String[] {"_bu", "_bd", "_au", "_ai"}) {
+        db.execSQL("DROP TRIGGER IF EXISTS " + SEARCH_INDEX_TABLE + trigger);
+      }
+      
+      db.execSQL("DROP TABLE IF EXISTS " + SEARCH_INDEX_TABLE);
+    }
+    
+    /**
+     * Tests if FTS4 tables with external content can be created,
+     * with a temporary table that is dropped again.
+     * <p>
+     * A statement that fails to compile doesn't change the
+     * database, so the running transaction stays intact.
+     */
+    private static boolean isFullTextSearchSupported(SQLiteDatabase db) {
+      boolean result = false;
+      
+      try {
+        db.execSQL("CREATE VIRTUAL TABLE temp." + SEARCH_INDEX_TABLE + "Probe USING fts4(content=\"\", probe)");
+        db.execSQL("DROP TABLE temp." + SEARCH_INDEX_TABLE + "Probe");
+        result = true;
+      }catch(SQLiteException e) {
+        Log.d("info11", "FTS4 not available", e);
+      }
+      
+      return result;
+    }
+    
+    /**
+     * Creates the indices for the columns used in the where
+     * clauses and sort orders of the frequently used queries.
+     * <p>
+     * The marking columns get partial indices that only contain the
+     * marked programs, if the SQLite version supports them (since 3.8.0).
+     * 
+     * @param db The database to create the indices for.
+     */
+    private static void createIndices(SQLiteDatabase db) {
+      db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_DATA_CHANNEL_START + " ON " + DATA_TABLE + " (" + CHANNEL_KEY_CHANNEL_ID + ", " + DATA_KEY_STARTTIME + ")");
+      db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_DATA_START + " ON " + DATA_TABLE + " (" + DATA_KEY_STARTTIME + ")");
+      db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_DATA_END + " ON " + DATA_TABLE + " (" + DATA_KEY_ENDTIME + ")");
+      db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_DATA_CHANNEL_DATE_PROG_ID + " ON " + DATA_TABLE + " (" + CHANNEL_KEY_CHANNEL_ID + ", " + DATA_KEY_UNIX_DATE + ", " + DATA_KEY_DATE_PROG_ID + ")");
+      db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_VERSION_CHANNEL_DAYS + " ON " + VERSION_TABLE + " (" + CHANNEL_KEY_CHANNEL_ID + ", " + VERSION_KEY_DAYS_SINCE_1970 + ")");
+      
+      if(isPartialIndexSupported(db)) {
+        for(String column : MARKING_COLUMNS) {
+          db.execSQL("CREATE INDEX IF NOT EXISTS " + DATA_TABLE + "_" + column + " ON " + DATA_TABLE + " (" + DATA_KEY_STARTTIME + ") WHERE " + column);
+        }
+      }
+    }
+    
+    private static boolean isPartialIndexSupported(SQLiteDatabase db) {
+      boolean result = false;
+      
+      try {
+        final String[] version = DatabaseUtils.stringForQuery(db, "SELECT sqlite_version()", null).split("\\.");
+        
+        final int major = Integer.parseInt(version[0]);
+        final int minor = version.length > 1 ? Integer.parseInt(version[1]) : 0;
+        
+        result = major > 3 || (major == 3 && minor >= 8);
+      }catch(Exception e) {
+        Log.d("info11", "SQLite version unknown", e);
+      }
+      
+      return result;
+    }
     
     @Override
     public void onUpgrade(final SQLiteDatabase db, int oldVersion, int newVersion) {
@@ -1610,6 +2309,12 @@ public class TvBrowserContentProvider extends ContentProvider {
           db.execSQL("ALTER TABLE " + DATA_TABLE + " ADD COLUMN " + key + MAP_DATA_KEY_TYPE.get(key));
         }
       }
+      
+      if(oldVersion < 13) {
+        createIndices(db);
+      }
+      
+      // the search index of version 14 is created in onOpen, if it's selected
     }
   
     @Override
@@ -1626,6 +2331,22 @@ public class TvBrowserContentProvider extends ContentProvider {
     }
   }
   
+  private static boolean tableExists(SQLiteDatabase db, String table) {
+    boolean result = false;
+    
+    Cursor c = null;
+    
+    try {
+      c = db.rawQuery("SELECT name FROM sqlite_master WHERE type='table' AND name=?", new String[] {table});
+      result = c.getCount() > 0;
+    }catch(SQLiteException ignored) {
+    }finally {
+      IOUtils.close(c);
+    }
+    
+    return result;
+  }
+  
   private static boolean columnExists(SQLiteDatabase db, String columnName) {
     return columnExists(db, CHANNEL_TABLE, columnName);
   }
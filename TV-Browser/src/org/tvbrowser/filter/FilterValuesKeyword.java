@@ -1,5 +1,6 @@
 package org.tvbrowser.filter;
 
+import org.tvbrowser.content.TvBrowserContentProvider;
 import org.tvbrowser.tvbrowser.WhereClause;
 import org.tvbrowser.utils.UiUtils;
 
@@ -62,7 +63,30 @@ public class FilterValuesKeyword extends FilterValues implements KeywordFilter {
 
   @Override
   public WhereClause getWhereClause(Context context) {
-
+    if(TvBrowserContentProvider.isSearchIndexUsable()) {
+      final String[] orParts = mKeyword.split("\\s+OR\\s+");
+      final StringBuilder where = new StringBuilder();
+      
+      for(String orPart : orParts) {
+        final String part = TvBrowserContentProvider.getSearchIndexWhereClause(mColumn, orPart.split("\\s+AND\\s+"));
+        
+        if(part == null) {
+          where.setLength(0);
+          break;
+        }
+        
+        if(where.length() > 0) {
+          where.append(" OR ");
+        }
+        
+        where.append(part);
+      }
+      
+      if(where.length() > 0) {
+        return new WhereClause(" AND ( " + where + " ) ", null);
+      }
+    }
+    
     return new WhereClause(" " + " AND ( " + mColumn + " LIKE \"%" + mKeyword.replaceAll("\\s+OR\\s+", "%\" OR " + mColumn + " LIKE \"%").replaceAll("\\s+AND\\s+", "%\" AND " + mColumn + " LIKE \"%") + "%\" ) ", null);
   }
 
@@ -21,6 +21,7 @@ import java.util.HashMap;
 import org.tvbrowser.App;
 import org.tvbrowser.content.TvBrowserContentProvider;
 import org.tvbrowser.tvbrowser.R;
+import org.tvbrowser.utils.ChannelLogoCache;
 import org.tvbrowser.utils.IOUtils;
 import org.tvbrowser.utils.PrefUtils;
 import org.tvbrowser.utils.UiUtils;
@@ -225,25 +226,73 @@ public final class SettingConstants {
         SMALL_LOGO_MAP.clear();
         MEDIUM_LOGO_MAP.clear();
         
-        final Cursor channels = context.getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_CHANNELS, new String[] {TvBrowserContentProvider.KEY_ID,TvBrowserContentProvider.CHANNEL_KEY_LOGO}, TvBrowserContentProvider.CHANNEL_KEY_SELECTION, null, null);
+        final Resources res = context.getResources();
+        final ChannelLogoCache logoCache = ChannelLogoCache.getInstance(context);
+        logoCache.updateStyle(context);
+        
+        // the size of the logos depends on the density of the screen
+        final String smallSize = "s" + UiUtils.convertDpToPixel(17, res);
+        final String mediumSize = "m" + UiUtils.convertDpToPixel(25, res);
+        
+        final StringBuilder missing = new StringBuilder();
+        
+        final Cursor channels = context.getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_CHANNELS, new String[] {TvBrowserContentProvider.KEY_ID}, TvBrowserContentProvider.CHANNEL_KEY_SELECTION, null, null);
         
         try {
           if(channels!=null && IOUtils.prepareAccess(channels)) {
             int keyIndex = channels.getColumnIndex(TvBrowserContentProvider.KEY_ID);
-            int logoIndex = channels.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_LOGO);
             
             while(channels.moveToNext()) {
-              Bitmap logoBitmap = UiUtils.createBitmapFromByteArray(channels.getBlob(logoIndex));
+              final int key = channels.getInt(keyIndex);
+              final Bitmap small = logoCache.get(key, smallSize);
+              final Bitmap medium = logoCache.get(key, mediumSize);
               
-              if(logoBitmap != null) {
-                SMALL_LOGO_MAP.put(channels.getInt(keyIndex), createDrawable(17,context,logoBitmap));
-                MEDIUM_LOGO_MAP.put(channels.getInt(keyIndex), createDrawable(25,context,logoBitmap));
+              if(small != null && medium != null) {
+                SMALL_LOGO_MAP.put(key, new BitmapDrawable(res, small));
+                MEDIUM_LOGO_MAP.put(key, new BitmapDrawable(res, medium));
+              }
+              else {
+                if(missing.length() > 0) {
+                  missing.append(",");
+                }
+                
+                missing.append(key);
               }
             }
           }
         }finally {
           IOUtils.close(channels);
         }
+        
+        // only the logos that aren't in the cache are read from the database
+        if(missing.length() > 0) {
+          final Cursor logos = context.getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_CHANNELS, new String[] {TvBrowserContentProvider.KEY_ID,TvBrowserContentProvider.CHANNEL_KEY_LOGO}, TvBrowserContentProvider.KEY_ID + " IN ( " + missing + " )", null, null);
+          
+          try {
+            if(logos!=null && IOUtils.prepareAccess(logos)) {
+              int keyIndex = logos.getColumnIndex(TvBrowserContentProvider.KEY_ID);
+              int logoIndex = logos.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_LOGO);
+              
+              while(logos.moveToNext()) {
+                Bitmap logoBitmap = UiUtils.createBitmapFromByteArray(logos.getBlob(logoIndex));
+                
+                if(logoBitmap != null) {
+                  final int key = logos.getInt(keyIndex);
+                  final BitmapDrawable small = createDrawable(17,context,logoBitmap);
+                  final BitmapDrawable medium = createDrawable(25,context,logoBitmap);
+                  
+                  logoCache.put(key, smallSize, small.getBitmap());
+                  logoCache.put(key, mediumSize, medium.getBitmap());
+                  
+                  SMALL_LOGO_MAP.put(key, small);
+                  MEDIUM_LOGO_MAP.put(key, medium);
+                }
+              }
+            }
+          }finally {
+            IOUtils.close(logos);
+          }
+        }
       }
     }
   }
@@ -20,6 +20,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 
+import org.tvbrowser.content.TvBrowserContentProvider;
 import org.tvbrowser.tvbrowser.R;
 import org.tvbrowser.tvbrowser.ServiceUpdateRemindersAndAutoUpdate;
 import org.tvbrowser.tvbrowser.TvDataUpdateService;
@@ -27,6 +28,7 @@ import org.tvbrowser.utils.CompatUtils;
 import org.tvbrowser.utils.IOUtils;
 import org.tvbrowser.utils.UiUtils;
 
+import android.content.ContentProviderClient;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
@@ -286,6 +288,22 @@ public class TvbPreferenceFragment extends PreferenceFragment implements OnShare
         
         IOUtils.handleDataUpdatePreferences(getActivity());
       }
+      else if(key.equals(getString(R.string.PREF_DATABASE_SEARCH_WORDS))) {
+        final ContentProviderClient client = getActivity().getContentResolver().acquireContentProviderClient(TvBrowserContentProvider.AUTHORITY);
+        
+        if(client != null) {
+          new Thread("UPDATE SEARCH INDEX THREAD") {
+            @Override
+            public void run() {
+              try {
+                ((TvBrowserContentProvider)client.getLocalContentProvider()).updateSearchIndex();
+              }finally {
+                IOUtils.close(client);
+              }
+            }
+          }.start();
+        }
+      }
       else if(key.equals(getString(R.string.PREF_NEWS_SHOW))) {
         CheckBoxPreference showNews = (CheckBoxPreference)findPreference(key);
         ListPreference newsType = (ListPreference)findPreference(getString(R.string.PREF_NEWS_TYPE));
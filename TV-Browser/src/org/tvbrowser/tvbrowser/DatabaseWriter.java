@@ -0,0 +1,142 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import android.util.Log;
+
+/**
+ * A single thread for the database operations of the data update.
+ * <p>
+ * Only a bounded number of batches may wait for the writer. Threads that
+ * add a batch wait while the writer is that many batches behind, so the
+ * parsing of the data can't get too far ahead of the database.
+ *
+ * @author René Mach
+ */
+final class DatabaseWriter {
+  private static final Runnable END = () -> {};
+  
+  private final ArrayBlockingQueue<Runnable> mQueue;
+  private final Thread mThread;
+  private volatile boolean mClosed;
+  private volatile boolean mCancelled;
+  
+  /**
+   * @param name The name of the writer thread.
+   * @param maxWaitingBatches The maximum number of batches waiting for the writer.
+   */
+  DatabaseWriter(String name, int maxWaitingBatches) {
+    mQueue = new ArrayBlockingQueue<>(maxWaitingBatches);
+    mClosed = false;
+    mCancelled = false;
+    
+    mThread = new Thread(name) {
+      @Override
+      public void run() {
+        try {
+          Runnable batch;
+          
+          // a batch may clear the interrupted state, so cancelling is checked separately
+          while(!mCancelled && (batch = mQueue.take()) != END) {
+            try {
+              batch.run();
+            }catch(RuntimeException e) {
+              Log.d("info9", "Database writer batch failed", e);
+            }
+          }
+        }catch(InterruptedException ignored) {
+        }finally {
+          mClosed = true;
+          
+          // run batches that were added while the writer ended
+          Runnable batch;
+          
+          while((batch = mQueue.poll()) != null) {
+            batch.run();
+          }
+        }
+      }
+    };
+    mThread.start();
+  }
+  
+  /**
+   * Adds the batch to the writer, waits if too many batches are waiting.
+   * If the writer was already closed the batch is run on the calling thread.
+   * <p>
+   * @param batch The database operations to run on the writer thread.
+   */
+  void submit(Runnable batch) {
+    boolean added = false;
+    
+    try {
+      while(!mClosed && !added) {
+        added = mQueue.offer(batch, 100, TimeUnit.MILLISECONDS);
+      }
+    }catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    
+    // the writer may have ended after the batch was added
+    if(!added || (mClosed && mQueue.remove(batch))) {
+      batch.run();
+    }
+  }
+  
+  /**
+   * Waits until all batches added before were written.
+   */
+  void flush() {
+    final CountDownLatch done = new CountDownLatch(1);
+    
+    submit(done::countDown);
+    
+    try {
+      done.await();
+    }catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+  
+  /**
+   * Ends the writer thread after the running and the waiting batches
+   * without waiting for it.
+   */
+  void cancel() {
+    mCancelled = true;
+    mThread.interrupt();
+  }
+  
+  /**
+   * Writes all waiting batches and ends the writer thread.
+   */
+  void close() {
+    if(!mClosed) {
+      submit(END);
+      
+      try {
+        mThread.join();
+      }catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
@@ -49,6 +49,21 @@ public class DontWantToSeeExclusion {
     }
   }
   
+  /**
+   * @return The exclusion value, in lower case if the exclusion isn't case sensitive.
+   */
+  String getExclusion() {
+    return mExclusion;
+  }
+  
+  boolean isCaseSensitive() {
+    return mIsCaseSensitive;
+  }
+  
+  boolean isContainingWildcard() {
+    return mPrecompiledPattern != null;
+  }
+  
   public boolean matches(String title) {
     boolean matches;
     
@@ -0,0 +1,208 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+
+/**
+ * All exclusions for title filtering of programs compiled into one matcher.
+ * <p>
+ * Exclusions without wildcard are looked up in a hash set. The parts between
+ * the wildcards of the other exclusions are searched with one automaton pass
+ * over the title and only the exclusions with all parts found are checked in
+ * detail. The title is converted to lower case only once for all exclusions.
+ * <p>
+ * The set is immutable, so it can be used by several threads at the same time.
+ *
+ * @author René Mach
+ */
+public final class DontWantToSeeExclusionSet {
+  private final HashSet<String> mExact;
+  private final HashSet<String> mExactCaseInsensitive;
+  private final Wildcards mWildcards;
+  private final Wildcards mWildcardsCaseInsensitive;
+  private final int mSize;
+  
+  /**
+   * @param exclusions The values of the exclusions as stored in the preferences.
+   */
+  public DontWantToSeeExclusionSet(Collection<String> exclusions) {
+    this(toExclusions(exclusions));
+  }
+  
+  public DontWantToSeeExclusionSet(DontWantToSeeExclusion[] exclusions) {
+    mExact = new HashSet<>();
+    mExactCaseInsensitive = new HashSet<>();
+    
+    final ArrayList<String> wildcards = new ArrayList<>();
+    final ArrayList<String> wildcardsCaseInsensitive = new ArrayList<>();
+    
+    for(DontWantToSeeExclusion exclusion : exclusions) {
+      if(exclusion.isContainingWildcard()) {
+        (exclusion.isCaseSensitive() ? wildcards : wildcardsCaseInsensitive).add(exclusion.getExclusion());
+      }
+      else {
+        (exclusion.isCaseSensitive() ? mExact : mExactCaseInsensitive).add(exclusion.getExclusion());
+      }
+    }
+    
+    mWildcards = wildcards.isEmpty() ? null : new Wildcards(wildcards);
+    mWildcardsCaseInsensitive = wildcardsCaseInsensitive.isEmpty() ? null : new Wildcards(wildcardsCaseInsensitive);
+    mSize = exclusions.length;
+  }
+  
+  private static DontWantToSeeExclusion[] toExclusions(Collection<String> exclusions) {
+    final DontWantToSeeExclusion[] result = new DontWantToSeeExclusion[exclusions.size()];
+    
+    int i = 0;
+    
+    for(String exclusion : exclusions) {
+      result[i++] = new DontWantToSeeExclusion(exclusion);
+    }
+    
+    return result;
+  }
+  
+  public boolean isEmpty() {
+    return mSize == 0;
+  }
+  
+  /**
+   * Checks if the given title matches any of the exclusions.
+   * <p>
+   * @param title The title to check.
+   * @return <code>true</code> if the program with the title is not wanted to see.
+   */
+  public boolean matches(String title) {
+    boolean result = false;
+    
+    if(title != null && mSize > 0) {
+      result = mExact.contains(title) || (mWildcards != null && mWildcards.matches(title));
+      
+      if(!result && (!mExactCaseInsensitive.isEmpty() || mWildcardsCaseInsensitive != null)) {
+        final String lowerCaseTitle = title.toLowerCase(Locale.getDefault());
+        
+        result = mExactCaseInsensitive.contains(lowerCaseTitle) || (mWildcardsCaseInsensitive != null && mWildcardsCaseInsensitive.matches(lowerCaseTitle));
+      }
+    }
+    
+    return result;
+  }
+  
+  /**
+   * Exclusions with wildcards, that have to match the whole title
+   * like the regular expression of {@link DontWantToSeeExclusion}.
+   */
+  private static final class Wildcards {
+    private final String[][] mParts;
+    private final int[][] mPartIds;
+    private final TextAutomaton mAutomaton;
+    
+    Wildcards(ArrayList<String> exclusions) {
+      mParts = new String[exclusions.size()][];
+      mPartIds = new int[exclusions.size()][];
+      
+      final HashMap<String, Integer> partIds = new HashMap<>();
+      final TextAutomaton.Builder builder = new TextAutomaton.Builder(false);
+      
+      for(int i = 0; i < mParts.length; i++) {
+        mParts[i] = exclusions.get(i).split("\\*", -1);
+        
+        final ArrayList<Integer> ids = new ArrayList<>();
+        
+        for(String part : mParts[i]) {
+          if(part.length() > 0) {
+            Integer id = partIds.get(part);
+            
+            if(id == null) {
+              id = builder.add(part);
+              partIds.put(part, id);
+            }
+            
+            ids.add(id);
+          }
+        }
+        
+        mPartIds[i] = new int[ids.size()];
+        
+        for(int j = 0; j < mPartIds[i].length; j++) {
+          mPartIds[i][j] = ids.get(j);
+        }
+      }
+      
+      mAutomaton = builder.build();
+    }
+    
+    boolean matches(String title) {
+      final BitSet found = new BitSet();
+      
+      if(!mAutomaton.isEmpty()) {
+        mAutomaton.search(title, found);
+      }
+      
+      for(int i = 0; i < mParts.length; i++) {
+        if(isContainingAll(mPartIds[i], found) && matches(mParts[i], title)) {
+          return true;
+        }
+      }
+      
+      return false;
+    }
+    
+    private static boolean isContainingAll(int[] ids, BitSet found) {
+      for(int id : ids) {
+        if(!found.get(id)) {
+          return false;
+        }
+      }
+      
+      return true;
+    }
+    
+    /**
+     * Checks if the title matches the parts with any text between them.
+     */
+    private static boolean matches(String[] parts, String title) {
+      final String first = parts[0];
+      final String last = parts[parts.length-1];
+      
+      if(title.length() < first.length() + last.length() || !title.startsWith(first) || !title.endsWith(last)) {
+        return false;
+      }
+      
+      final int end = title.length() - last.length();
+      int position = first.length();
+      
+      for(int i = 1; i < parts.length - 1; i++) {
+        final int index = title.indexOf(parts[i], position);
+        
+        if(index == -1 || index + parts[i].length() > end) {
+          return false;
+        }
+        
+        position = index + parts[i].length();
+      }
+      
+      return true;
+    }
+  }
+}
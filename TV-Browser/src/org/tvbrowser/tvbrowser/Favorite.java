@@ -19,33 +19,29 @@ package org.tvbrowser.tvbrowser;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Hashtable;
-import java.util.Map;
-import java.util.Set;
 
 import org.tvbrowser.content.TvBrowserContentProvider;
 import org.tvbrowser.settings.SettingConstants;
 import org.tvbrowser.utils.IOUtils;
+import org.tvbrowser.utils.MarkingIndex;
 import org.tvbrowser.utils.PrefUtils;
 import org.tvbrowser.utils.ProgramUtils;
 import org.tvbrowser.utils.UiUtils;
 
-import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
-import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
-import android.content.OperationApplicationException;
-import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
 import android.database.Cursor;
 import android.graphics.Color;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffColorFilter;
-import android.os.RemoteException;
 import android.support.annotation.NonNull;
 import android.support.v4.content.LocalBroadcastManager;
+import android.text.TextUtils;
 import android.text.style.ImageSpan;
 import android.util.Log;
 
@@ -65,6 +61,9 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
   
   public static final String KEY_MARKING_ICON = "org.tvbrowser.tvbrowser.Favorite";
   
+  // saved instead of the ids if the Favorite is known to mark no programs
+  private static final String NO_PROGRAMS = "none";
+  
   private String mName;
   private String mSearch;
   private boolean mRemind;
@@ -79,6 +78,7 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
   private int[] mAttributeRestrictionIndices;
   private int[] mChannelRestrictionIDs;
   private String[] mExclusions;
+  // empty if the Favorite marks no programs, null if the marked programs are unknown
   private long[] mUniqueProgramIds;
   
   private int mType;
@@ -210,6 +210,9 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
       if(values[10].equals("null")) {
         mUniqueProgramIds = null;
       }
+      else if(values[10].equals(NO_PROGRAMS)) {
+        mUniqueProgramIds = new long[0];
+      }
       else {
         String[] parts = values[10].split(",");
         
@@ -218,6 +221,8 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
         for(int i = 0; i < parts.length; i++) {
           mUniqueProgramIds[i] = Long.parseLong(parts[i]);
         }
+        
+        mUniqueProgramIds = sorted(mUniqueProgramIds);
       }
     }
   }
@@ -444,7 +449,7 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
     mDurationRestrictionMinimum = durationRestrictionMinimum;
     mDurationRestrictionMaximum = durationRestrictionMaximum;
     mAttributeRestrictionIndices = attributeRestriction;
-    mUniqueProgramIds = uniqueProgramIds;
+    mUniqueProgramIds = sorted(uniqueProgramIds);
   }
   
   public void setDayRestriction(int[] days) {
@@ -463,19 +468,31 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
     return mUniqueProgramIds;
   }
   
-  private boolean containsUniqueProgramId(long uniqueId) {
-    boolean result = false;
-    
-    if(mUniqueProgramIds != null) {
-      for(long test : mUniqueProgramIds) {
-        if(test == uniqueId) {
-          result = true;
-          break;
+  /**
+   * The unique program IDs are kept sorted, so they can be searched binary.
+   * <p>
+   * @param uniqueProgramIds The unique program IDs or <code>null</code>.
+   * @return The given IDs if they are already sorted, otherwise a sorted copy of them.
+   */
+  private static long[] sorted(long[] uniqueProgramIds) {
+    if(uniqueProgramIds != null) {
+      for(int i = 1; i < uniqueProgramIds.length; i++) {
+        if(uniqueProgramIds[i-1] > uniqueProgramIds[i]) {
+          final long[] sorted = uniqueProgramIds.clone();
+          Arrays.sort(sorted);
+          
+          return sorted;
         }
       }
     }
     
-    return result;
+    return uniqueProgramIds;
+  }
+  
+  private boolean containsUniqueProgramId(long uniqueId) {
+    final long[] uniqueProgramIds = mUniqueProgramIds;
+    
+    return uniqueProgramIds != null && Arrays.binarySearch(uniqueProgramIds, uniqueId) >= 0;
   }
   
   public void setExclusions(String[] exclusions) {
@@ -537,12 +554,18 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
   private String getWhereClause() {
     StringBuilder builder = new StringBuilder();
     
+    String searchIndexClause = null;
+    
+    if((mType == KEYWORD_ONLY_TITLE_TYPE || mType == KEYWORD_TYPE) && TvBrowserContentProvider.isSearchIndexUsable()) {
+      searchIndexClause = TvBrowserContentProvider.getSearchIndexWhereClause(mType == KEYWORD_ONLY_TITLE_TYPE ? TvBrowserContentProvider.DATA_KEY_TITLE : null, mSearch.split("AND"));
+    }
+    
     if(mType == KEYWORD_ONLY_TITLE_TYPE) {
       builder.append(", ");
       builder.append(TvBrowserContentProvider.DATA_KEY_TITLE);
     }
     
-    if(mType == KEYWORD_TYPE || isHavingExclusions()) {
+    if((mType == KEYWORD_TYPE && searchIndexClause == null) || isHavingExclusions()) {
       builder.append(", ");
       builder.append(TvBrowserContentProvider.DATA_KEY_TITLE);
       builder.append(" || ' ' || ifnull(");
@@ -580,7 +603,7 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
       builder.append(",\"\")");
     }
     
-    if(mType == KEYWORD_ONLY_TITLE_TYPE || mType == KEYWORD_TYPE || isHavingExclusions()) {
+    if(mType == KEYWORD_ONLY_TITLE_TYPE || (mType == KEYWORD_TYPE && searchIndexClause == null) || isHavingExclusions()) {
       builder.append(" AS ");
       builder.append(TvBrowserContentProvider.CONCAT_RAW_KEY);
       builder.append(" ");
@@ -615,7 +638,12 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
     
     boolean addAnd = false;
     
-    if(mType == KEYWORD_ONLY_TITLE_TYPE || mType == KEYWORD_TYPE) {
+    if(searchIndexClause != null) {
+      builder.append(searchIndexClause);
+      
+      addAnd = true;
+    }
+    else if(mType == KEYWORD_ONLY_TITLE_TYPE || mType == KEYWORD_TYPE) {
       builder.append(" ( ");
 
       String column = TvBrowserContentProvider.DATA_KEY_TITLE;
@@ -929,7 +957,10 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
   }
   
   private StringBuilder appendSaveStringWithArray(long[] array, StringBuilder saveString) {
-    if(array != null) {
+    if(array != null && array.length == 0) {
+      saveString.append(NO_PROGRAMS);
+    }
+    else if(array != null) {
       for(int i = 0; i < array.length-1; i++) {
         saveString.append(array[i]).append(",");
       }
@@ -962,6 +993,9 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
   public static final int TYPE_MARK_REMOVE = 1;
   public static final int TYPE_MARK_UPDATE_REMINDERS = 2;
   
+  // the maximum number of ids in one IN list of a statement
+  private static final int MAX_IDS_PER_RESTRICTION = 500;
+  
   /**
    * Handles the marking of a Favorite.
    * <p>
@@ -977,6 +1011,141 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
     }
   }
   
+  /**
+   * Handles the marking of a Favorite only for the programs
+   * that were inserted or updated by a data update.
+   * <p>
+   * The marking of all other programs is kept, so the Favorite doesn't
+   * need to be searched in all programs. This is only possible if the
+   * programs the Favorite is currently marking are known.
+   * <p>
+   * @param context The context to use.
+   * @param favorite The favorite to handle marking for.
+   * @param changedProgramIds The sorted ids of the inserted or updated programs.
+   * @param matchingProgramIds The ids of the changed programs matching the Favorite
+   * if already known from a {@link FavoriteMatcher} or <code>null</code> if the
+   * Favorite should be matched with SQL.
+   * @return <code>true</code> if the marking was handled, <code>false</code>
+   * if it couldn't be done incrementally and needs a full remove and add.
+   */
+  public static synchronized boolean handleFavoriteMarkingIncremental(Context context, Favorite favorite, long[] changedProgramIds, long[] matchingProgramIds) {
+    final long[] markedProgramIds = favorite.mUniqueProgramIds;
+    
+    if(changedProgramIds == null || markedProgramIds == null || !IOUtils.isDatabaseAccessible(context)) {
+      return false;
+    }
+    
+    final ContentResolver resolver = context.getContentResolver();
+    
+    final long[] changedMarked = new long[markedProgramIds.length];
+    final long[] unchangedMarked = new long[markedProgramIds.length];
+    int changedCount = 0;
+    int unchangedCount = 0;
+    
+    for(long id : markedProgramIds) {
+      if(Arrays.binarySearch(changedProgramIds, id) >= 0) {
+        changedMarked[changedCount++] = id;
+      }
+      else {
+        unchangedMarked[unchangedCount++] = id;
+      }
+    }
+    
+    // remove marking only from the changed programs, they might not match anymore
+    for(String restriction : getIdRestrictions(changedMarked, changedCount)) {
+      removeFavoriteMarkingInternal(context, resolver, favorite, restriction, false);
+    }
+    
+    // the unchanged programs keep their marking, the ones not in the future anymore
+    // or deleted by the data update are not marked by the Favorite anymore
+    long[] keptProgramIds = new long[unchangedCount];
+    int keptCount = 0;
+    
+    for(String restriction : getIdRestrictions(unchangedMarked, unchangedCount)) {
+      String where = " " + TvBrowserContentProvider.CONCAT_TABLE_PLACE_HOLDER + restriction + " AND ";
+      where += " ( " + TvBrowserContentProvider.DATA_KEY_STARTTIME + "<=" + System.currentTimeMillis() + " AND " + TvBrowserContentProvider.DATA_KEY_ENDTIME + ">=" + System.currentTimeMillis();
+      where += " OR " + TvBrowserContentProvider.DATA_KEY_STARTTIME + ">" + System.currentTimeMillis() + " ) ";
+      
+      final Cursor kept = resolver.query(TvBrowserContentProvider.RAW_QUERY_CONTENT_URI_DATA, new String[] {TvBrowserContentProvider.KEY_ID}, where, null, TvBrowserContentProvider.DATA_KEY_STARTTIME);
+      
+      try {
+        if(IOUtils.prepareAccess(kept)) {
+          int idColumn = kept.getColumnIndex(TvBrowserContentProvider.KEY_ID);
+          
+          while(kept.moveToNext() && keptCount < keptProgramIds.length) {
+            keptProgramIds[keptCount++] = kept.getLong(idColumn);
+          }
+        }
+      }finally {
+        IOUtils.close(kept);
+      }
+    }
+    
+    // an empty array means the Favorite is known to mark no programs
+    favorite.setUniqueProgramIds(Arrays.copyOf(keptProgramIds, keptCount));
+    
+    if(matchingProgramIds != null) {
+      for(String restriction : getIdRestrictions(matchingProgramIds, matchingProgramIds.length)) {
+        addFavoriteMarkingInternal(context, resolver, favorite, restriction, false, false);
+      }
+    }
+    else {
+      for(String restriction : getIdRestrictions(changedProgramIds, changedProgramIds.length)) {
+        addFavoriteMarkingInternal(context, resolver, favorite, restriction, true, false);
+      }
+    }
+    
+    favorite.save(context);
+    
+    return true;
+  }
+  
+  /**
+   * Splits the given programs into restrictions of at most
+   * {@link #MAX_IDS_PER_RESTRICTION} ids, so the statements
+   * stay below the length limit of SQLite.
+   * <p>
+   * @param programIds The ids of the programs.
+   * @param count The number of ids to use from the start of the array.
+   * @return The restrictions, empty if there are no programs.
+   */
+  private static ArrayList<String> getIdRestrictions(long[] programIds, int count) {
+    final ArrayList<String> restrictions = new ArrayList<>(count / MAX_IDS_PER_RESTRICTION + 1);
+    
+    for(int start = 0; start < count; start += MAX_IDS_PER_RESTRICTION) {
+      final int end = Math.min(count, start + MAX_IDS_PER_RESTRICTION);
+      final StringBuilder restriction = new StringBuilder(" ");
+      
+      restriction.append(TvBrowserContentProvider.KEY_ID).append(" IN ( ");
+      
+      for(int i = start; i < end; i++) {
+        if(i > start) {
+          restriction.append(",");
+        }
+        
+        restriction.append(programIds[i]);
+      }
+      
+      restriction.append(" ) ");
+      restrictions.add(restriction.toString());
+    }
+    
+    return restrictions;
+  }
+  
+  private void setUniqueProgramIds(long[] uniqueProgramIds) {
+    uniqueProgramIds = sorted(uniqueProgramIds);
+    
+    if(mUniqueProgramIds != null)  {
+      synchronized (mUniqueProgramIds) {
+        mUniqueProgramIds = uniqueProgramIds;
+      }
+    }
+    else {
+      mUniqueProgramIds = uniqueProgramIds;
+    }
+  }
+  
   private static void handleRemindersInternal(Context context, ContentResolver resolver, Favorite favorite) {
     String[] projection = {
         TvBrowserContentProvider.KEY_ID,
@@ -1010,7 +1179,7 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
         //  int startTimeIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_STARTTIME);
           int removedReminderIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_REMOVED_REMINDER);
           
-          ArrayList<ContentProviderOperation> updateValuesList = new ArrayList<>();
+          HashMap<ContentValues, ArrayList<Long>> updateValues = new HashMap<>();
           ArrayList<Intent> markingIntentList = new ArrayList<>();
           ArrayList<String> reminderIdList = new ArrayList<>();
           
@@ -1043,10 +1212,7 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
             }
             
             if(values.size() > 0) {
-              ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA, id));
-              opBuilder.withValues(values);
-              
-              updateValuesList.add(opBuilder.build());
+              addUpdate(updateValues, values, id);
               
               if(updateMarking) {
                 Intent intent = new Intent(SettingConstants.MARKINGS_CHANGED);
@@ -1059,26 +1225,22 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
             }
           }
           
-          if(!updateValuesList.isEmpty()) {
-            try {
-              if(!reminderIdList.isEmpty()) {
-                if(favorite.remind()) {
-                  ProgramUtils.addReminderIds(context, reminderIdList);
-                }
-                else {
-                  ProgramUtils.removeReminderIds(context, reminderIdList);
-                }
+          if(!updateValues.isEmpty()) {
+            if(!reminderIdList.isEmpty()) {
+              if(favorite.remind()) {
+                ProgramUtils.addReminderIds(context, reminderIdList);
               }
-              
-              resolver.applyBatch(TvBrowserContentProvider.AUTHORITY, updateValuesList);
-              
-              LocalBroadcastManager localBroadcast = LocalBroadcastManager.getInstance(context);
-              
-              for(Intent markUpdate : markingIntentList) {
-                localBroadcast.sendBroadcast(markUpdate);
+              else {
+                ProgramUtils.removeReminderIds(context, reminderIdList);
               }
-            } catch (RemoteException | OperationApplicationException e) {
-              e.printStackTrace();
+            }
+            
+            updatePrograms(resolver, updateValues);
+            
+            LocalBroadcastManager localBroadcast = LocalBroadcastManager.getInstance(context);
+            
+            for(Intent markUpdate : markingIntentList) {
+              localBroadcast.sendBroadcast(markUpdate);
             }
             
             UiUtils.updateImportantProgramsWidget(context.getApplicationContext());
@@ -1091,6 +1253,13 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
   }
   
   private static void removeFavoriteMarkingInternal(Context context, ContentResolver resolver, Favorite favorite, boolean save) {
+    removeFavoriteMarkingInternal(context, resolver, favorite, null, save);
+  }
+  
+  /**
+   * @param restriction The where clause to use instead of the where clause of the Favorite or <code>null</code>.
+   */
+  private static void removeFavoriteMarkingInternal(Context context, ContentResolver resolver, Favorite favorite, String restriction, boolean save) {
     Log.d("info2", "hier6a " + IOUtils.isDatabaseAccessible(context));
     String[] projection = {
         TvBrowserContentProvider.KEY_ID,
@@ -1109,7 +1278,7 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
         TvBrowserContentProvider.DATA_KEY_MARKING_REMINDER
     };
     
-    WhereClause whereClause = favorite.getExternalWhereClause();
+    WhereClause whereClause = restriction != null ? new WhereClause(" " + TvBrowserContentProvider.CONCAT_TABLE_PLACE_HOLDER + restriction, null) : favorite.getExternalWhereClause();
     
     String where = whereClause.getWhere();
     
@@ -1133,7 +1302,7 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
           int favoriteReminderColumnIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_MARKING_FAVORITE_REMINDER);
           int reminderColumnIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_MARKING_REMINDER);
           
-          ArrayList<ContentProviderOperation> updateValuesList = new ArrayList<>();
+          HashMap<ContentValues, ArrayList<Long>> updateValues = new HashMap<>();
           ArrayList<Intent> markingIntentList = new ArrayList<>();
           ArrayList<String> removedReminderIdList = new ArrayList<>();
           
@@ -1157,10 +1326,7 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
               }
             }
               
-            ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA, id));
-            opBuilder.withValues(values);
-            
-            updateValuesList.add(opBuilder.build());
+            addUpdate(updateValues, values, id);
             
             if(updateMarking) {
               Intent intent = new Intent(SettingConstants.MARKINGS_CHANGED);
@@ -1170,21 +1336,17 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
             }
           }while(!cursor.isClosed() && cursor.moveToNext());
                   
-          if(!updateValuesList.isEmpty()) {
+          if(!updateValues.isEmpty()) {
             if(!removedReminderIdList.isEmpty()) {
               ProgramUtils.removeReminderIds(context, removedReminderIdList);
             }
             
-            try {
-              resolver.applyBatch(TvBrowserContentProvider.AUTHORITY, updateValuesList);
-              
-              LocalBroadcastManager localBroadcast = LocalBroadcastManager.getInstance(context);
-              
-              for(Intent markUpdate : markingIntentList) {
-                localBroadcast.sendBroadcast(markUpdate);
-              }
-            } catch (RemoteException | OperationApplicationException e) {
-              e.printStackTrace();
+            updatePrograms(resolver, updateValues);
+            
+            LocalBroadcastManager localBroadcast = LocalBroadcastManager.getInstance(context);
+            
+            for(Intent markUpdate : markingIntentList) {
+              localBroadcast.sendBroadcast(markUpdate);
             }
             
             UiUtils.updateImportantProgramsWidget(context.getApplicationContext());
@@ -1204,9 +1366,14 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
   }
   
   public void save(Context context) {
+    final String saveLine = getSaveString();
+    
     Editor edit = PrefUtils.getSharedPreferences(PrefUtils.TYPE_PREFERENCES_FAVORITES, context).edit();
-    edit.putString(String.valueOf(getFavoriteId()), getSaveString());
+    edit.putString(String.valueOf(getFavoriteId()), saveLine);
     edit.commit();
+    
+    FavoriteRepository.update(getFavoriteId(), saveLine);
+    MarkingIndex.getInstance(context).invalidateFavorites();
   }
     
   public static void handleDataUpdateStarted() {
@@ -1221,7 +1388,17 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
   }
   
   private static void addFavoriteMarkingInternal(Context context, ContentResolver resolver, Favorite favorite, boolean save) {
-    String where = favorite.getWhereClause();
+    addFavoriteMarkingInternal(context, resolver, favorite, null, true, save);
+  }
+  
+  /**
+   * @param restriction An additional where clause for the programs to mark or <code>null</code>.
+   * If given the marked programs are added to the known unique program ids of the Favorite.
+   * @param useWhereClause If the where clause of the Favorite should be used, if <code>false</code>
+   * all programs of the restriction are marked, because they are already known to match.
+   */
+  private static void addFavoriteMarkingInternal(Context context, ContentResolver resolver, Favorite favorite, String restriction, boolean useWhereClause, boolean save) {
+    String where = useWhereClause ? favorite.getWhereClause() : "";
     
     if(where.trim().length() > 0) {
       where += " AND ";
@@ -1230,6 +1407,10 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
       where += " " + TvBrowserContentProvider.CONCAT_TABLE_PLACE_HOLDER;
     }
     
+    if(restriction != null) {
+      where += restriction + " AND ";
+    }
+    
     where += " ( " + TvBrowserContentProvider.DATA_KEY_STARTTIME + "<=" + System.currentTimeMillis() + " AND " + TvBrowserContentProvider.DATA_KEY_ENDTIME + ">=" + System.currentTimeMillis();
     where += " OR " + TvBrowserContentProvider.DATA_KEY_STARTTIME + ">" + System.currentTimeMillis() + " ) ";
     
@@ -1246,7 +1427,7 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
           
           int count = 0;
           
-          ArrayList<ContentProviderOperation> updateValuesList = new ArrayList<>();
+          HashMap<ContentValues, ArrayList<Long>> updateValues = new HashMap<>();
           ArrayList<Intent> markingIntentList = new ArrayList<>();
           ArrayList<String> reminderIdList = new ArrayList<>();
           
@@ -1276,10 +1457,7 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
               }
             }
             
-            ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA, id));
-            opBuilder.withValues(values);
-            
-            updateValuesList.add(opBuilder.build());
+            addUpdate(updateValues, values, id);
             
             if(markingsChanged) {
               Intent intent = new Intent(SettingConstants.MARKINGS_CHANGED);
@@ -1291,35 +1469,37 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
             }
           }while(cursor.moveToNext());
           
-          if(!updateValuesList.isEmpty()) {
-            if(favorite.mUniqueProgramIds != null)  {
-              synchronized (favorite.mUniqueProgramIds) {
-                favorite.mUniqueProgramIds = uniqueProgramIds;
-              }
-            }
-            else {
-              favorite.mUniqueProgramIds = uniqueProgramIds;
+          if(!updateValues.isEmpty()) {
+            final long[] knownProgramIds = favorite.mUniqueProgramIds;
+            
+            if(restriction != null && knownProgramIds != null) {
+              long[] mergedProgramIds = Arrays.copyOf(knownProgramIds, knownProgramIds.length + count);
+              System.arraycopy(uniqueProgramIds, 0, mergedProgramIds, knownProgramIds.length, count);
+              
+              uniqueProgramIds = mergedProgramIds;
             }
             
+            favorite.setUniqueProgramIds(uniqueProgramIds);
+            
             if(!reminderIdList.isEmpty()) {
               ProgramUtils.addReminderIds(context, reminderIdList);
             }
             
-            try {
-              resolver.applyBatch(TvBrowserContentProvider.AUTHORITY, updateValuesList);
-              
-              LocalBroadcastManager localBroadcast = LocalBroadcastManager.getInstance(context);
-              
-              for(Intent markUpdate : markingIntentList) {
-                localBroadcast.sendBroadcast(markUpdate);
-              }
-            } catch (RemoteException | OperationApplicationException e) {
-              e.printStackTrace();
+            updatePrograms(resolver, updateValues);
+            
+            LocalBroadcastManager localBroadcast = LocalBroadcastManager.getInstance(context);
+            
+            for(Intent markUpdate : markingIntentList) {
+              localBroadcast.sendBroadcast(markUpdate);
             }
             
             UiUtils.updateImportantProgramsWidget(context.getApplicationContext());
           }
         }
+        else if(cursor != null && restriction == null) {
+          // the Favorite was searched in all programs, so it's known that it marks none
+          favorite.setUniqueProgramIds(new long[0]);
+        }
       }finally {
         IOUtils.close(cursor);
         
@@ -1330,6 +1510,35 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
     }
   }
   
+  private static void addUpdate(HashMap<ContentValues, ArrayList<Long>> updateValues, ContentValues values, long id) {
+    ArrayList<Long> ids = updateValues.get(values);
+    
+    if(ids == null) {
+      ids = new ArrayList<>();
+      updateValues.put(values, ids);
+    }
+    
+    ids.add(id);
+  }
+  
+  /**
+   * Updates all programs with the same values at once. The marking counts
+   * of the programs have only a few different values, so only a few
+   * batched updates are needed instead of one update for every program.
+   */
+  private static void updatePrograms(ContentResolver resolver, HashMap<ContentValues, ArrayList<Long>> updateValues) {
+    for(ContentValues values : updateValues.keySet()) {
+      final ArrayList<Long> idList = updateValues.get(values);
+      final long[] ids = new long[idList.size()];
+      
+      for(int i = 0; i < ids.length; i++) {
+        ids[i] = idList.get(i);
+      }
+      
+      TvBrowserContentProvider.updateIds(resolver, TvBrowserContentProvider.CONTENT_URI_DATA, values, ids);
+    }
+  }
+  
   @Override
   public boolean equals(Object o) {
     if(o instanceof Favorite) {
@@ -1348,29 +1557,18 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
     return UiUtils.getCollator().compare(mName, another.mName);
   }
   
+  /**
+   * Gets the Favorites of the current snapshot without copying them.
+   * <p>
+   * The Favorites are shared with all callers and must not be changed,
+   * changing the marking of a Favorite changes it too, so a caller that
+   * changes, marks or saves a Favorite has to use a {@link #copy()} of it.
+   * <p>
+   * @param context The context to use.
+   * @return The shared Favorites of the current snapshot.
+   */
   public static Favorite[] getAllFavorites(Context context) {
-    SharedPreferences prefFavorites = PrefUtils.getSharedPreferences(PrefUtils.TYPE_PREFERENCES_FAVORITES, context);
-    
-    ArrayList<Favorite> favoriteList = new ArrayList<>();
-    
-    if(prefFavorites != null) {
-      Map<String,?> favorites = prefFavorites.getAll();
-      
-      Set<String> keys = favorites.keySet();
-      
-      for(String key : keys) {
-        if(favorites.get(key) instanceof String) {
-          String saveLine = (String) favorites.get(key);
-          Favorite fav = new Favorite(Long.parseLong(key), saveLine);
-
-          if (fav.isValid()) {
-            favoriteList.add(fav);
-          }
-        }
-      }
-    }
-    
-    return favoriteList.toArray(new Favorite[0]);
+    return FavoriteRepository.getSnapshot(context);
   }
   
   public static void deleteFavorite(Context context, Favorite favorite) {
@@ -1379,6 +1577,9 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
     Editor edit = PrefUtils.getSharedPreferences(PrefUtils.TYPE_PREFERENCES_FAVORITES, context).edit();
     edit.remove(String.valueOf(favorite.getFavoriteId()));
     edit.commit();
+    
+    FavoriteRepository.update(favorite.getFavoriteId(), null);
+    MarkingIndex.getInstance(context).invalidateFavorites();
   }
   
   public static void deleteAllFavorites(Context context) {
@@ -1386,36 +1587,20 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
     Favorite[] favorites = getAllFavorites(context);
     
     for(Favorite favorite : favorites) {
-      Favorite.removeFavoriteMarkingInternal(context, context.getContentResolver(), favorite, false);
+      Favorite.removeFavoriteMarkingInternal(context, context.getContentResolver(), favorite.copy(), false);
       edit.remove(String.valueOf(favorite.getFavoriteId()));
     }
     
     edit.commit();
+    
+    FavoriteRepository.clear();
+    MarkingIndex.getInstance(context).invalidateFavorites();
   }
   
   public static int getFavoriteMarkIconType(Context context, long programId) {
-    int result = 0;
-    
-    Favorite[] favorites = getAllFavorites(context);
+    final int markings = MarkingIndex.getInstance(context).getMarkings(programId);
     
-    for(Favorite fav : favorites) {
-      long[] programIds = fav.getUniqueProgramIds();
-      
-      if(programIds != null) {
-        for(long test : programIds) {
-          if(test == programId) {
-            result++;
-            break;
-          }
-        }
-        
-        if(result > 1) {
-          break;
-        }
-      }
-    }
-    
-    return result;
+    return (markings & MarkingIndex.MARKING_FAVORITE_MULTIPLE) != 0 ? 2 : ((markings & MarkingIndex.MARKING_FAVORITE) != 0 ? 1 : 0);
   }
   
   private static ImageSpan MARK_ICON_SINGLE;
@@ -1461,8 +1646,13 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
     return result;
   }
   
+  /**
+   * @param context The context to use.
+   * @param uniqueId The ID of the program.
+   * @return The Favorites that marked the program, they are shared and must not be changed.
+   */
   public static Favorite[] getFavoritesForUniqueId(Context context, long uniqueId) {
-    final Favorite[] allFavorites = getAllFavorites(context);
+    final Favorite[] allFavorites = FavoriteRepository.getSnapshot(context);
     final ArrayList<Favorite> uniqueIdFavoriteList = new ArrayList<>();
     
     for(Favorite test : allFavorites) {
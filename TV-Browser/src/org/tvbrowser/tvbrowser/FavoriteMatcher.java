@@ -0,0 +1,538 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.HashMap;
+
+import org.tvbrowser.content.TvBrowserContentProvider;
+import org.tvbrowser.utils.IOUtils;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+/**
+ * The restrictions of Favorites compiled into an in memory matcher.
+ * <p>
+ * All search terms and exclusions of the Favorites are put into one Aho-Corasick
+ * automaton, so the text of a program only needs to be scanned once to know which
+ * Favorites are matching it. The other restrictions are simple range checks.
+ * <p>
+ * The matcher has the same semantics as the SQL LIKE where clause of the Favorites,
+ * so the text is only case insensitive for ASCII characters. Favorites that are
+ * using the full text search index or search terms with LIKE wildcards
+ * can't be compiled and have to be matched with SQL.
+ *
+ * @author René Mach
+ */
+final class FavoriteMatcher {
+  /**
+   * The columns concatenated for the search in all fields of a program,
+   * in the same order as in the where clause of the Favorite.
+   */
+  private static final String[] CONCAT_COLUMNS = {
+    TvBrowserContentProvider.DATA_KEY_TITLE,
+    TvBrowserContentProvider.DATA_KEY_TITLE_ORIGINAL,
+    TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE,
+    TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE_ORIGINAL,
+    TvBrowserContentProvider.DATA_KEY_SHORT_DESCRIPTION,
+    TvBrowserContentProvider.DATA_KEY_DESCRIPTION,
+    TvBrowserContentProvider.DATA_KEY_ACTORS,
+    TvBrowserContentProvider.DATA_KEY_SERIES,
+    TvBrowserContentProvider.DATA_KEY_REGIE,
+    TvBrowserContentProvider.DATA_KEY_SCRIPT,
+    TvBrowserContentProvider.DATA_KEY_ADDITIONAL_INFO,
+    TvBrowserContentProvider.DATA_KEY_CAMERA,
+    TvBrowserContentProvider.DATA_KEY_MODERATION,
+    TvBrowserContentProvider.DATA_KEY_MUSIC,
+    TvBrowserContentProvider.DATA_KEY_PRODUCER,
+    TvBrowserContentProvider.DATA_KEY_GENRE,
+    TvBrowserContentProvider.DATA_KEY_OTHER_PERSONS
+  };
+  
+  private static final String[] VALUE_COLUMNS = {
+    TvBrowserContentProvider.KEY_ID,
+    TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID,
+    TvBrowserContentProvider.DATA_KEY_STARTTIME,
+    TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES,
+    TvBrowserContentProvider.DATA_KEY_UTC_START_MINUTE_AFTER_MIDNIGHT
+  };
+  
+  /**
+   * Marks a search term without text, it matches every program with a title.
+   */
+  private static final int PATTERN_EMPTY = -1;
+  
+  // the maximum number of ids in the IN list of one query
+  static final int MAX_IDS_PER_QUERY = 500;
+  
+  private final Favorite[] mFavorites;
+  private final int[][] mSearchPatterns;
+  private final int[][] mExclusionPatterns;
+  private final TextAutomaton mAutomaton;
+  private final boolean mNeedsText;
+  
+  private FavoriteMatcher(Favorite[] favorites, int[][] searchPatterns, int[][] exclusionPatterns, TextAutomaton automaton, boolean needsText) {
+    mFavorites = favorites;
+    mSearchPatterns = searchPatterns;
+    mExclusionPatterns = exclusionPatterns;
+    mAutomaton = automaton;
+    mNeedsText = needsText;
+  }
+  
+  /**
+   * Checks if the given Favorite can be matched by a compiled matcher.
+   * <p>
+   * @param favorite The Favorite to check.
+   * @return <code>true</code> if the Favorite has the same result with the matcher as with SQL.
+   */
+  static boolean isCompilable(Favorite favorite) {
+    final int type = favorite.getType();
+    
+    boolean result = favorite.isValid() || type == Favorite.RESTRICTION_RULES_TYPE;
+    
+    if(result && (type == Favorite.KEYWORD_ONLY_TITLE_TYPE || type == Favorite.KEYWORD_TYPE)) {
+      // the full text search index has a different matching than LIKE
+      result = !TvBrowserContentProvider.isSearchIndexUsable();
+      
+      final String[] terms = getSearchTerms(favorite);
+      
+      result = result && terms.length > 0;
+      
+      for(int i = 0; result && i < terms.length; i++) {
+        result = !isContainingWildcard(terms[i]);
+      }
+    }
+    
+    if(result && favorite.isHavingExclusions()) {
+      for(String exclusion : favorite.getExclusions()) {
+        if(exclusion == null || isContainingWildcard(exclusion)) {
+          result = false;
+          break;
+        }
+      }
+    }
+    
+    return result;
+  }
+  
+  /**
+   * Compiles the given Favorites into a matcher, Favorites that
+   * can't be compiled are left out.
+   * <p>
+   * @param favorites The Favorites to compile.
+   * @return The matcher for the compilable Favorites.
+   */
+  static FavoriteMatcher compile(Favorite[] favorites) {
+    final ArrayList<Favorite> compiled = new ArrayList<>();
+    final ArrayList<int[]> searchPatterns = new ArrayList<>();
+    final ArrayList<int[]> exclusionPatterns = new ArrayList<>();
+    
+    final HashMap<String, Integer> patternIds = new HashMap<>();
+    final TextAutomaton.Builder builder = new TextAutomaton.Builder(true);
+    
+    boolean needsText = false;
+    
+    for(Favorite favorite : favorites) {
+      if(isCompilable(favorite)) {
+        int[] search = null;
+        int[] exclusions = null;
+        
+        if(favorite.getType() == Favorite.KEYWORD_ONLY_TITLE_TYPE || favorite.getType() == Favorite.KEYWORD_TYPE) {
+          search = addPatterns(getSearchTerms(favorite), patternIds, builder);
+        }
+        
+        if(favorite.isHavingExclusions()) {
+          exclusions = addPatterns(favorite.getExclusions(), patternIds, builder);
+        }
+        
+        needsText = needsText || search != null || exclusions != null;
+        
+        compiled.add(favorite);
+        searchPatterns.add(search);
+        exclusionPatterns.add(exclusions);
+      }
+    }
+    
+    return new FavoriteMatcher(compiled.toArray(new Favorite[compiled.size()]), searchPatterns.toArray(new int[searchPatterns.size()][]), exclusionPatterns.toArray(new int[exclusionPatterns.size()][]), builder.build(), needsText);
+  }
+  
+  /**
+   * Gets the search terms in the same way as the SQL where clause of the Favorite.
+   */
+  private static String[] getSearchTerms(Favorite favorite) {
+    final String search = favorite.getSearchValue();
+    
+    String[] terms;
+    
+    if(search.contains("AND")) {
+      terms = search.split("AND");
+      
+      for(int i = 0; i < terms.length; i++) {
+        terms[i] = terms[i].trim();
+      }
+    }
+    else {
+      terms = new String[] {search.trim()};
+    }
+    
+    return terms;
+  }
+  
+  private static boolean isContainingWildcard(String term) {
+    return term.indexOf('%') != -1 || term.indexOf('_') != -1;
+  }
+  
+  private static int[] addPatterns(String[] terms, HashMap<String, Integer> patternIds, TextAutomaton.Builder builder) {
+    final int[] result = new int[terms.length];
+    
+    for(int i = 0; i < terms.length; i++) {
+      final String pattern = TextAutomaton.fold(terms[i]);
+      
+      if(pattern.length() == 0) {
+        result[i] = PATTERN_EMPTY;
+      }
+      else {
+        Integer id = patternIds.get(pattern);
+        
+        if(id == null) {
+          id = builder.add(pattern);
+          patternIds.put(pattern, id);
+        }
+        
+        result[i] = id;
+      }
+    }
+    
+    return result;
+  }
+  
+  Favorite[] getFavorites() {
+    return mFavorites;
+  }
+  
+  boolean isEmpty() {
+    return mFavorites.length == 0;
+  }
+  
+  /**
+   * Classifies the given programs in one pass.
+   * <p>
+   * The programs are read in chunks of at most {@link #MAX_IDS_PER_QUERY}
+   * ids, so the IN lists stay below the statement limits of SQLite.
+   * <p>
+   * @param context The context to use.
+   * @param programIds The ids of the programs to classify.
+   * @return An array with the ids of the matching programs
+   * for every Favorite of this matcher, in the order of {@link #getFavorites()}
+   * or <code>null</code> if the programs couldn't be read.
+   */
+  long[][] classify(Context context, long[] programIds) {
+    long[][] result = null;
+    
+    if(!isEmpty() && IOUtils.isDatabaseAccessible(context)) {
+      final long start = System.currentTimeMillis();
+      
+      final String[] projection = new String[VALUE_COLUMNS.length + CONCAT_COLUMNS.length + TvBrowserContentProvider.INFO_CATEGORIES_COLUMNS_ARRAY.length];
+      
+      System.arraycopy(VALUE_COLUMNS, 0, projection, 0, VALUE_COLUMNS.length);
+      System.arraycopy(CONCAT_COLUMNS, 0, projection, VALUE_COLUMNS.length, CONCAT_COLUMNS.length);
+      System.arraycopy(TvBrowserContentProvider.INFO_CATEGORIES_COLUMNS_ARRAY, 0, projection, VALUE_COLUMNS.length + CONCAT_COLUMNS.length, TvBrowserContentProvider.INFO_CATEGORIES_COLUMNS_ARRAY.length);
+      
+      final long now = System.currentTimeMillis();
+      
+      final BitSet matching = new BitSet(mFavorites.length);
+      
+      @SuppressWarnings("unchecked")
+      final ArrayList<Long>[] matches = new ArrayList[mFavorites.length];
+      
+      for(int i = 0; i < matches.length; i++) {
+        matches[i] = new ArrayList<>();
+      }
+      
+      Program program = null;
+      boolean read = true;
+      int count = 0;
+      
+      for(int offset = 0; read && offset < programIds.length; offset += MAX_IDS_PER_QUERY) {
+        final StringBuilder where = new StringBuilder(TvBrowserContentProvider.KEY_ID).append(" IN ( ");
+        
+        for(int i = offset; i < Math.min(programIds.length, offset + MAX_IDS_PER_QUERY); i++) {
+          if(i > offset) {
+            where.append(",");
+          }
+          
+          where.append(programIds[i]);
+        }
+        
+        where.append(" ) AND ");
+        where.append(" ( ").append(TvBrowserContentProvider.DATA_KEY_STARTTIME).append("<=").append(now).append(" AND ").append(TvBrowserContentProvider.DATA_KEY_ENDTIME).append(">=").append(now);
+        where.append(" OR ").append(TvBrowserContentProvider.DATA_KEY_STARTTIME).append(">").append(now).append(" ) ");
+        
+        final Cursor programs = context.getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_DATA, projection, where.toString(), null, TvBrowserContentProvider.KEY_ID);
+        
+        try {
+          // a chunk without programs in the future is fine, a failed query is not
+          read = programs != null && !programs.isClosed();
+          
+          if(IOUtils.prepareAccess(programs)) {
+            if(program == null) {
+              program = new Program(programs);
+            }
+            
+            while(programs.moveToNext()) {
+              program.read(programs);
+              match(program, matching);
+              
+              for(int i = matching.nextSetBit(0); i >= 0; i = matching.nextSetBit(i+1)) {
+                matches[i].add(program.mId);
+              }
+              
+              count++;
+            }
+          }
+        }finally {
+          IOUtils.close(programs);
+        }
+      }
+      
+      if(read) {
+        result = new long[mFavorites.length][];
+        
+        for(int i = 0; i < matches.length; i++) {
+          result[i] = new long[matches[i].size()];
+          
+          for(int j = 0; j < result[i].length; j++) {
+            result[i][j] = matches[i].get(j);
+          }
+        }
+        
+        Log.d("info2", "Classified " + count + " programs for " + mFavorites.length + " Favorites in " + (System.currentTimeMillis() - start) + "ms");
+      }
+    }
+    
+    return result;
+  }
+  
+  /**
+   * Sets the bits of all Favorites that are matching the given program.
+   */
+  private void match(Program program, BitSet matching) {
+    matching.clear();
+    
+    final BitSet found = new BitSet();
+    final BitSet foundInTitle = new BitSet();
+    
+    if(mNeedsText && program.mText != null) {
+      mAutomaton.search(program.mText, program.mTitleLength, found, foundInTitle);
+    }
+    
+    for(int i = 0; i < mFavorites.length; i++) {
+      final Favorite favorite = mFavorites[i];
+      
+      boolean result = true;
+      
+      if(mSearchPatterns[i] != null || mExclusionPatterns[i] != null) {
+        // the concatenated text in SQL is null if the title is null
+        result = program.mText != null;
+      }
+      
+      if(result && mSearchPatterns[i] != null) {
+        result = isContainingAll(mSearchPatterns[i], favorite.getType() == Favorite.KEYWORD_ONLY_TITLE_TYPE ? foundInTitle : found);
+      }
+      
+      if(result && favorite.isDurationRestricted()) {
+        result = !program.mDurationNull;
+        
+        if(result && favorite.getDurationRestrictionMinimum() >= 0) {
+          result = program.mDuration >= favorite.getDurationRestrictionMinimum();
+        }
+        if(result && favorite.getDurationRestrictionMaximum() > 0) {
+          result = program.mDuration <= favorite.getDurationRestrictionMaximum();
+        }
+      }
+      
+      if(result && favorite.isTimeRestricted()) {
+        final int startRestriction = favorite.getTimeRestrictionStart();
+        final int endRestriction = favorite.getTimeRestrictionEnd();
+        
+        if(program.mStartMinuteNull) {
+          result = false;
+        }
+        else if(startRestriction > endRestriction) {
+          result = program.mStartMinute >= startRestriction || program.mStartMinute <= endRestriction;
+        }
+        else {
+          result = program.mStartMinute >= startRestriction && program.mStartMinute <= endRestriction;
+        }
+      }
+      
+      if(result && favorite.isDayRestricted()) {
+        result = isContained(favorite.getDayRestriction(), program.mDayOfWeek);
+      }
+      
+      if(result && favorite.isChannelRestricted()) {
+        result = isContained(favorite.getChannelRestrictionIDs(), program.mChannelId);
+      }
+      
+      if(result && mExclusionPatterns[i] != null) {
+        result = !isContainingAny(mExclusionPatterns[i], found);
+      }
+      
+      if(result && favorite.isAttributeRestricted()) {
+        for(int index : favorite.getAttributeRestrictionIndices()) {
+          if(!program.mInfo[index]) {
+            result = false;
+            break;
+          }
+        }
+      }
+      
+      if(result) {
+        matching.set(i);
+      }
+    }
+  }
+  
+  private static boolean isContainingAll(int[] patterns, BitSet found) {
+    for(int pattern : patterns) {
+      if(pattern != PATTERN_EMPTY && !found.get(pattern)) {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  private static boolean isContainingAny(int[] patterns, BitSet found) {
+    for(int pattern : patterns) {
+      if(pattern == PATTERN_EMPTY || found.get(pattern)) {
+        return true;
+      }
+    }
+    
+    return false;
+  }
+  
+  private static boolean isContained(int[] values, int value) {
+    for(int test : values) {
+      if(test == value) {
+        return true;
+      }
+    }
+    
+    return false;
+  }
+  
+  /**
+   * The values of a program that are needed for matching,
+   * reused for all programs of a cursor.
+   */
+  private static final class Program {
+    private final int mIdColumn;
+    private final int mChannelColumn;
+    private final int mStartTimeColumn;
+    private final int mDurationColumn;
+    private final int mStartMinuteColumn;
+    private final int[] mConcatColumns;
+    private final int[] mInfoColumns;
+    
+    private final Calendar mCalendar;
+    private final StringBuilder mTextBuilder;
+    
+    private long mId;
+    private int mChannelId;
+    private int mDayOfWeek;
+    private int mDuration;
+    private boolean mDurationNull;
+    private int mStartMinute;
+    private boolean mStartMinuteNull;
+    private String mText;
+    private int mTitleLength;
+    private final boolean[] mInfo;
+    
+    Program(Cursor cursor) {
+      mIdColumn = cursor.getColumnIndex(TvBrowserContentProvider.KEY_ID);
+      mChannelColumn = cursor.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID);
+      mStartTimeColumn = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_STARTTIME);
+      mDurationColumn = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES);
+      mStartMinuteColumn = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_UTC_START_MINUTE_AFTER_MIDNIGHT);
+      
+      mConcatColumns = new int[CONCAT_COLUMNS.length];
+      
+      for(int i = 0; i < mConcatColumns.length; i++) {
+        mConcatColumns[i] = cursor.getColumnIndex(CONCAT_COLUMNS[i]);
+      }
+      
+      mInfoColumns = new int[TvBrowserContentProvider.INFO_CATEGORIES_COLUMNS_ARRAY.length];
+      mInfo = new boolean[mInfoColumns.length];
+      
+      for(int i = 0; i < mInfoColumns.length; i++) {
+        mInfoColumns[i] = cursor.getColumnIndex(TvBrowserContentProvider.INFO_CATEGORIES_COLUMNS_ARRAY[i]);
+      }
+      
+      mCalendar = Calendar.getInstance();
+      mTextBuilder = new StringBuilder();
+    }
+    
+    void read(Cursor cursor) {
+      mId = cursor.getLong(mIdColumn);
+      mChannelId = cursor.getInt(mChannelColumn);
+      
+      // same as strftime('%w', startTime/1000, 'unixepoch', 'localtime')+1
+      mCalendar.setTimeInMillis(cursor.getLong(mStartTimeColumn));
+      mDayOfWeek = mCalendar.get(Calendar.DAY_OF_WEEK);
+      
+      mDurationNull = cursor.isNull(mDurationColumn);
+      mDuration = mDurationNull ? 0 : cursor.getInt(mDurationColumn);
+      
+      mStartMinuteNull = cursor.isNull(mStartMinuteColumn);
+      mStartMinute = mStartMinuteNull ? 0 : cursor.getInt(mStartMinuteColumn);
+      
+      for(int i = 0; i < mInfoColumns.length; i++) {
+        mInfo[i] = !cursor.isNull(mInfoColumns[i]) && cursor.getInt(mInfoColumns[i]) != 0;
+      }
+      
+      final String title = cursor.getString(mConcatColumns[0]);
+      
+      if(title == null) {
+        mText = null;
+        mTitleLength = 0;
+      }
+      else {
+        mTextBuilder.setLength(0);
+        mTextBuilder.append(title);
+        
+        for(int i = 1; i < mConcatColumns.length; i++) {
+          mTextBuilder.append(' ');
+          
+          final String value = cursor.getString(mConcatColumns[i]);
+          
+          if(value != null) {
+            mTextBuilder.append(value);
+          }
+        }
+        
+        mText = mTextBuilder.toString();
+        mTitleLength = title.length();
+      }
+    }
+  }
+}
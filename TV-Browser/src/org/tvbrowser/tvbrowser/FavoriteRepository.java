@@ -0,0 +1,107 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import org.tvbrowser.utils.PrefUtils;
+
+import android.content.Context;
+
+/**
+ * The parsed Favorites in memory.
+ * <p>
+ * The Favorites are read once from the favorite preferences, which are still
+ * used to store them. Every change creates a new snapshot of the Favorites,
+ * so a snapshot that was read is never changed and can be used without locking.
+ * Only a saved or deleted Favorite changes the snapshot, the Favorites in the
+ * snapshot are never changed, callers that change a Favorite use a copy.
+ *
+ * @author René Mach
+ */
+final class FavoriteRepository {
+  private static volatile Favorite[] SNAPSHOT;
+  
+  private FavoriteRepository() {}
+  
+  private static synchronized Favorite[] load(Context context) {
+    if(SNAPSHOT == null) {
+      final Map<String, ?> favorites = PrefUtils.getSharedPreferences(PrefUtils.TYPE_PREFERENCES_FAVORITES, context).getAll();
+      final ArrayList<Favorite> favoriteList = new ArrayList<>(favorites.size());
+      
+      for(Map.Entry<String, ?> entry : favorites.entrySet()) {
+        if(entry.getValue() instanceof String) {
+          final Favorite favorite = new Favorite(Long.parseLong(entry.getKey()), (String)entry.getValue());
+          
+          if(favorite.isValid()) {
+            favoriteList.add(favorite);
+          }
+        }
+      }
+      
+      SNAPSHOT = favoriteList.toArray(new Favorite[0]);
+    }
+    
+    return SNAPSHOT;
+  }
+  
+  /**
+   * @param context The context to use.
+   * @return The current snapshot of the Favorites, it must not be changed.
+   */
+  static Favorite[] getSnapshot(Context context) {
+    final Favorite[] snapshot = SNAPSHOT;
+    
+    return snapshot != null ? snapshot : load(context);
+  }
+  
+  /**
+   * Replaces the Favorite with the same ID in the snapshot.
+   * <p>
+   * @param favoriteId The ID of the Favorite.
+   * @param saveLine The save string of the Favorite, <code>null</code> removes the Favorite.
+   */
+  static synchronized void update(long favoriteId, String saveLine) {
+    if(SNAPSHOT != null) {
+      final ArrayList<Favorite> favoriteList = new ArrayList<>(SNAPSHOT.length + 1);
+      
+      for(Favorite favorite : SNAPSHOT) {
+        if(favorite.getFavoriteId() != favoriteId) {
+          favoriteList.add(favorite);
+        }
+      }
+      
+      if(saveLine != null) {
+        // a copy is kept, the saved Favorite may still be changed by its owner
+        final Favorite favorite = new Favorite(favoriteId, saveLine);
+        
+        if(favorite.isValid()) {
+          favoriteList.add(favorite);
+        }
+      }
+      
+      SNAPSHOT = favoriteList.toArray(new Favorite[0]);
+    }
+  }
+  
+  static synchronized void clear() {
+    if(SNAPSHOT != null) {
+      SNAPSHOT = new Favorite[0];
+    }
+  }
+}
@@ -871,7 +871,10 @@ public class FragmentFavorites extends Fragment implements LoaderManager.LoaderC
   private void updateFavoriteList(final Handler handler, boolean mark) {
     Favorite[] favorites = Favorite.getAllFavorites(getActivity());
     
-    for(Favorite favorite : favorites) {
+    for(Favorite shared : favorites) {
+      // the entries are edited and marked
+      final Favorite favorite = shared.copy();
+      
       if(mark) {
         Favorite.handleFavoriteMarking(getActivity(), favorite, Favorite.TYPE_MARK_ADD);
       }
@@ -26,8 +26,10 @@ import java.util.TimeZone;
 
 import org.tvbrowser.content.TvBrowserContentProvider;
 import org.tvbrowser.settings.SettingConstants;
+import org.tvbrowser.utils.ChannelLogoCache;
 import org.tvbrowser.utils.CompatUtils;
 import org.tvbrowser.utils.IOUtils;
+import org.tvbrowser.utils.PictureCache;
 import org.tvbrowser.utils.PrefUtils;
 import org.tvbrowser.utils.ProgramUtils;
 import org.tvbrowser.utils.UiUtils;
@@ -626,7 +628,7 @@ public class FragmentProgramTable extends Fragment {
     where3.append(((TvBrowser)getActivity()).getFilterSelection(true).replace(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID, TvBrowserContentProvider.KEY_ID));
 
     if(IOUtils.isDatabaseAccessible(getActivity())) {
-      Cursor channels = getActivity().getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_CHANNELS, new String[] {TvBrowserContentProvider.KEY_ID,TvBrowserContentProvider.CHANNEL_KEY_NAME,TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER,TvBrowserContentProvider.CHANNEL_KEY_LOGO}, where3.toString(), null, TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER);
+      Cursor channels = getActivity().getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_CHANNELS, new String[] {TvBrowserContentProvider.KEY_ID,TvBrowserContentProvider.CHANNEL_KEY_NAME,TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER}, where3.toString(), null, TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER);
 
       try {
         if(IOUtils.prepareAccess(channels)) {
@@ -765,7 +767,8 @@ public class FragmentProgramTable extends Fragment {
   }
 
   private void addChannelLabelToChannelBar(Cursor channels, int orderNumberColumn, LinearLayout channelBar, ArrayList<Integer> channelIDsOrdered) {
-    channelIDsOrdered.add(channels.getInt(channels.getColumnIndex(TvBrowserContentProvider.KEY_ID)));
+    final int channelKey = channels.getInt(channels.getColumnIndex(TvBrowserContentProvider.KEY_ID));
+    channelIDsOrdered.add(channelKey);
 
     String name = channels.getString(channels.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_NAME));
 
@@ -777,15 +780,33 @@ public class FragmentProgramTable extends Fragment {
 
     int orderNumber = channels.getInt(orderNumberColumn);
 
-    Bitmap logo = UiUtils.createBitmapFromByteArray(channels.getBlob(channels.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_LOGO)));
+    int height = ProgramTableLayoutConstants.getChannelMaxFontHeight();
 
-    if(logo != null) {
-      int height = ProgramTableLayoutConstants.getChannelMaxFontHeight();
+    final ChannelLogoCache logoCache = ChannelLogoCache.getInstance(getActivity());
+    final String logoSize = "bar" + height;
 
-      float percent = height / (float)logo.getHeight();
+    Bitmap logo = logoCache.get(channelKey, logoSize);
 
-      if(percent < 1) {
-        logo = Bitmap.createScaledBitmap(logo, (int)(logo.getWidth() * percent), height, true);
+    if(logo == null) {
+      // the logo is only read from the database if it isn't in the cache
+      final Cursor logoCursor = getActivity().getContentResolver().query(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_CHANNELS, channelKey), new String[] {TvBrowserContentProvider.CHANNEL_KEY_LOGO}, null, null, null);
+
+      try {
+        if(logoCursor != null && logoCursor.moveToFirst()) {
+          logo = UiUtils.createBitmapFromByteArray(logoCursor.getBlob(logoCursor.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_LOGO)));
+        }
+      }finally {
+        IOUtils.close(logoCursor);
+      }
+
+      if(logo != null) {
+        float percent = height / (float)logo.getHeight();
+
+        if(percent < 1) {
+          logo = Bitmap.createScaledBitmap(logo, (int)(logo.getWidth() * percent), height, true);
+        }
+
+        logoCache.put(channelKey, logoSize, logo);
       }
     }
 
@@ -1046,13 +1067,22 @@ public class FragmentProgramTable extends Fragment {
       registerForContextMenu(panel);
 
       if (mPictureIndex != -1) {
-        Bitmap logo = UiUtils.createBitmapFromByteArray(cursor.getBlob(mPictureIndex));
+        final byte[] pictureData = cursor.getBlob(mPictureIndex);
+        final int[] size = PictureCache.getSize(pictureData, ProgramTableLayoutConstants.getZoom(), panel.getPictureWidth());
 
-        if (logo != null) {
-          BitmapDrawable l = new BitmapDrawable(getResources(), logo);
-          l.setBounds(0, 0, (int) (ProgramTableLayoutConstants.getZoom() * logo.getWidth()), (int) (ProgramTableLayoutConstants.getZoom() * logo.getHeight()));
+        if (size != null) {
+          final PictureCache pictures = PictureCache.getInstance();
+          final Bitmap picture = pictures.get(programId, pictureData, size);
+
+          // without decoded picture an empty placeholder with the size of the picture is shown
+          BitmapDrawable l = new BitmapDrawable(getResources(), picture);
+          l.setBounds(0, 0, size[0], size[1]);
 
           panel.setPicture(cursor.getString(mPictureCopyrightIndex), l);
+
+          if (picture == null) {
+            pictures.load(programId, pictureData, size, panel::setPictureBitmap);
+          }
         }
       }
 
@@ -67,6 +67,7 @@ import org.tvbrowser.content.TvBrowserContentProvider;
 import org.tvbrowser.settings.SettingConstants;
 import org.tvbrowser.tvbrowser.LoaderUpdater.UnsupportedFragmentException;
 import org.tvbrowser.utils.CompatUtils;
+import org.tvbrowser.utils.DisplaySettings;
 import org.tvbrowser.utils.IOUtils;
 import org.tvbrowser.utils.PrefUtils;
 import org.tvbrowser.utils.ProgramUtils;
@@ -621,18 +622,18 @@ public class FragmentProgramsListRunning extends Fragment implements LoaderManag
       }
       
       if(endTime <= System.currentTimeMillis()) {
-        viewHolder.setColor(type, UiUtils.getColor(UiUtils.EXPIRED_COLOR_KEY, getActivity()));
+        viewHolder.setColor(type, DisplaySettings.get(getActivity()).getColor(UiUtils.EXPIRED_COLOR_KEY));
       }
       else {
         viewHolder.setColor(type, DEFAULT_TEXT_COLOR);
       }
       
       if(!channelSet) {
-        String logoNamePref = PrefUtils.getStringValue(R.string.CHANNEL_LOGO_NAME_RUNNING, R.string.channel_logo_name_running_default);
+        final DisplaySettings settings = DisplaySettings.get(getActivity());
         
-        boolean showChannelName = "0".equals(logoNamePref) || "2".equals(logoNamePref);
-        boolean showChannelLogo = "0".equals(logoNamePref) || "1".equals(logoNamePref);
-        boolean showBigChannelLogo = "3".equals(logoNamePref);
+        boolean showChannelName = settings.showChannelName(true);
+        boolean showChannelLogo = settings.showChannelLogo(true);
+        boolean showBigChannelLogo = settings.showBigChannelLogo(true);
         
         Drawable logo = null;
         
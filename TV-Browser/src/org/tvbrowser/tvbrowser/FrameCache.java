@@ -0,0 +1,228 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.tvbrowser.utils.IOUtils;
+
+import android.content.Context;
+
+/**
+ * The checksums of the frames of the data files written to the database.
+ * <p>
+ * If a new version of a data file is loaded only the frames with another
+ * checksum than before have to be written to the database again, the
+ * unchanged programs are kept as they are.
+ * <p>
+ * The checksums of an update are stored next to the cache first and
+ * are only used after the data of the update was written to the database.
+ *
+ * @author René Mach
+ */
+final class FrameCache {
+  private static final String CACHE_DIRECTORY = "framecache";
+  private static final String NEW_SUFFIX = ".new";
+  
+  // checksums of files not loaded for that time are of past days
+  private static final long MAX_AGE = 30 * 24 * 60 * 60000L;
+  
+  private final File mDirectory;
+  private final ArrayList<File> mStored;
+  
+  /**
+   * The checksums of the frames of one data file.
+   */
+  static final class Frames {
+    private final String mDataFileName;
+    private final HashMap<String, Integer> mKnown;
+    private final HashMap<String, Integer> mRead;
+    
+    private Frames(String dataFileName, HashMap<String, Integer> known) {
+      mDataFileName = dataFileName;
+      mKnown = known;
+      mRead = new HashMap<>();
+    }
+    
+    /**
+     * Adds the checksum of the frame read from the new data file.
+     * <p>
+     * @param frameID The ID of the frame.
+     * @param checksum The checksum of the frame.
+     * @return <code>true</code> if the frame was already written to the database with the same checksum.
+     */
+    boolean add(String frameID, int checksum) {
+      mRead.put(frameID, checksum);
+      
+      final Integer known = mKnown.get(frameID);
+      
+      return known != null && known == checksum;
+    }
+  }
+  
+  /**
+   * Removes the checksums of past days and of not completed updates.
+   * <p>
+   * @param context The context to use.
+   */
+  FrameCache(Context context) {
+    mDirectory = new File(IOUtils.getDownloadDirectory(context.getApplicationContext()).getParentFile(), CACHE_DIRECTORY);
+    mStored = new ArrayList<>();
+    
+    final File[] files = mDirectory.listFiles();
+    
+    if(files != null) {
+      final long maxAge = System.currentTimeMillis() - MAX_AGE;
+      
+      for(File file : files) {
+        if(file.getName().endsWith(NEW_SUFFIX)) {
+          // the database may contain a part of the data of the killed update
+          remove(file);
+        }
+        else if(file.lastModified() < maxAge && !file.delete()) {
+          file.deleteOnExit();
+        }
+      }
+    }
+    else if(!mDirectory.isDirectory()) {
+      //noinspection ResultOfMethodCallIgnored
+      mDirectory.mkdirs();
+    }
+  }
+  
+  private static File getTarget(File stored) {
+    final String path = stored.getAbsolutePath();
+    
+    return new File(path.substring(0, path.length() - NEW_SUFFIX.length()));
+  }
+  
+  /**
+   * Removes the stored and the former checksums of a data file.
+   */
+  private static void remove(File stored) {
+    final File target = getTarget(stored);
+    
+    if(stored.isFile() && !stored.delete()) {
+      stored.deleteOnExit();
+    }
+    if(target.isFile() && !target.delete()) {
+      target.deleteOnExit();
+    }
+  }
+  
+  /**
+   * Reads the checksums of the frames of the given data file.
+   * <p>
+   * @param dataFileName The name of the data file.
+   * @return The frames of the data file, empty if the file wasn't loaded before.
+   */
+  Frames read(String dataFileName) {
+    final HashMap<String, Integer> known = new HashMap<>();
+    final File file = new File(mDirectory, dataFileName);
+    
+    if(file.isFile()) {
+      DataInputStream in = null;
+      
+      try {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        
+        final int count = in.readInt();
+        
+        for(int i = 0; i < count; i++) {
+          known.put(in.readUTF(), in.readInt());
+        }
+      }catch(IOException e) {
+        // incomplete checksums can't be used
+        known.clear();
+      }finally {
+        IOUtils.close(in);
+      }
+    }
+    
+    return new Frames(dataFileName, known);
+  }
+  
+  /**
+   * Stores the checksums of the frames read from the new data file,
+   * they are used after the update was committed.
+   * <p>
+   * @param frames The frames of the data file.
+   */
+  void store(Frames frames) {
+    final File file = new File(mDirectory, frames.mDataFileName + NEW_SUFFIX);
+    DataOutputStream out = null;
+    boolean stored = false;
+    
+    try {
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      out.writeInt(frames.mRead.size());
+      
+      for(Map.Entry<String, Integer> frame : frames.mRead.entrySet()) {
+        out.writeUTF(frame.getKey());
+        out.writeInt(frame.getValue());
+      }
+      
+      out.close();
+      out = null;
+      
+      synchronized(mStored) {
+        mStored.add(file);
+      }
+      
+      stored = true;
+    }catch(IOException ignored) {
+    }finally {
+      IOUtils.close(out);
+      
+      // the former checksums don't match the database after the update
+      if(!stored) {
+        remove(file);
+      }
+    }
+  }
+  
+  /**
+   * Ends the use of the cache.
+   * <p>
+   * @param commit <code>true</code> if the data of the stored frames was written
+   * to the database, otherwise the stored and the former checksums of the data
+   * files of the update are removed, as a part of the data may have been written.
+   */
+  void close(boolean commit) {
+    synchronized(mStored) {
+      for(File stored : mStored) {
+        final File target = getTarget(stored);
+        
+        if(!commit || !(stored.renameTo(target) || (target.delete() && stored.renameTo(target)))) {
+          remove(stored);
+        }
+      }
+      
+      mStored.clear();
+    }
+  }
+}
@@ -25,6 +25,7 @@ import android.content.ContentProviderOperation;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.OperationApplicationException;
+import android.database.SQLException;
 import android.net.Uri;
 import android.os.RemoteException;
 import android.util.Log;
@@ -32,6 +33,11 @@ import android.util.Log;
 /**
  * A class with bulk data base operations that takes the
  * memory size on the system into consideration.
+ * <p>
+ * With a {@link DatabaseWriter} the operations are run on the thread of
+ * the writer and the adding threads only wait if the writer is behind.
+ * The batches are handed to the writer without holding the lock of the
+ * operation, so a waiting thread doesn't block the other adding threads.
  * 
  * @author René Mach
  */
@@ -49,18 +55,25 @@ class MemorySizeConstrictedDatabaseOperation {
   private boolean mOperationsAvailable;
   private boolean mOperationsAdded;
   private final AtomicBoolean mSuccess;
+  private final DatabaseWriter mWriter;
   
   public MemorySizeConstrictedDatabaseOperation(Context context, Uri insertUri) {
     this(context,insertUri,1);
   }
   
+  public MemorySizeConstrictedDatabaseOperation(Context context, Uri insertUri, int minOperationDivider) {
+    this(context,insertUri,minOperationDivider,null);
+  }
+  
   /**
    * @param context The Context to use.
    * @param insertUri The content URI for the insert operations
    * @param minOperationDivider The divider for the number of entries before starting database operation.
+   * @param writer The writer to run the database operations on or <code>null</code> to run them on the adding thread.
    */
-  public MemorySizeConstrictedDatabaseOperation(Context context, Uri insertUri, int minOperationDivider) {
+  public MemorySizeConstrictedDatabaseOperation(Context context, Uri insertUri, int minOperationDivider, DatabaseWriter writer) {
     mContext = context;
+    mWriter = writer;
     mInsertUri = insertUri;
     mSuccess = new AtomicBoolean(true);
     mOperationsAdded = false;
@@ -89,7 +102,7 @@ class MemorySizeConstrictedDatabaseOperation {
     }
     
     if(mUpdateList != null && !mUpdateList.isEmpty()) {
-      mInsertList.clear();
+      mUpdateList.clear();
     }
     
     mInsertList = null;
@@ -97,69 +110,134 @@ class MemorySizeConstrictedDatabaseOperation {
     mContext = null;
   }
   
-  public synchronized void finish() {
-    if(mInsertList != null && !mInsertList.isEmpty()) {
-      insert();
-    }
+  public void finish() {
+    final Runnable inserts;
+    final Runnable updates;
     
-    if(mUpdateList != null && !mUpdateList.isEmpty()) {
-      update();
+    synchronized (this) {
+      inserts = takeInsertBatch();
+      updates = takeUpdateBatch();
+      
+      mInsertList = null;
+      mUpdateList = null;
+      mContext = null;
     }
     
-    mInsertList = null;
-    mUpdateList = null;
-    mContext = null;
+    run(inserts);
+    run(updates);
+    
+    if(mWriter != null) {
+      mWriter.flush();
+    }
   }
   
-  public synchronized void addInsert(ContentValues insert) {
-    if(mInsertList != null) {
-      mOperationsAvailable = true;
-      mInsertList.add(insert);
-      mOperationsAdded = true;
-      
-      if(mInsertList.size() > mOperationDivider) {
-        insert();
+  public void addInsert(ContentValues insert) {
+    Runnable batch = null;
+    
+    synchronized (this) {
+      if(mInsertList != null) {
+        mOperationsAvailable = true;
+        mInsertList.add(insert);
+        mOperationsAdded = true;
+        
+        if(mInsertList.size() > mOperationDivider) {
+          batch = takeInsertBatch();
+        }
       }
     }
+    
+    run(batch);
   }
   
-  public synchronized void addUpdate(ContentProviderOperation update) {
-    if(mUpdateList != null) {
-      mOperationsAvailable = true;
-      mUpdateList.add(update);
-      mOperationsAdded = true;
-      
-      if(mUpdateList.size() > mOperationDivider) {
-        update();
+  public void addUpdate(ContentProviderOperation update) {
+    Runnable batch = null;
+    
+    synchronized (this) {
+      if(mUpdateList != null) {
+        mOperationsAvailable = true;
+        mUpdateList.add(update);
+        mOperationsAdded = true;
+        
+        if(mUpdateList.size() > mOperationDivider) {
+          batch = takeUpdateBatch();
+        }
       }
     }
+    
+    run(batch);
   }
   
-  private synchronized void insert() {
+  /**
+   * Takes the waiting inserts, has to be called with the lock of this operation,
+   * the returned batch has to be run without it, so other threads can go on
+   * adding while the writer is behind.
+   * <p>
+   * @return The batch with the waiting inserts or <code>null</code> if there are none.
+   */
+  private Runnable takeInsertBatch() {
+    Runnable result = null;
+    
     if(mInsertUri != null && mInsertList != null && !mInsertList.isEmpty() && mContext != null) {
-      boolean success = mContext.getContentResolver().bulkInsert(mInsertUri, mInsertList.toArray(new ContentValues[0])) >= mInsertList.size();
-      
-      mSuccess.compareAndSet(true, success);
+      final Context context = mContext;
+      final ContentValues[] batch = mInsertList.toArray(new ContentValues[0]);
       
       mInsertList.clear();
+      
+      result = () -> {
+        boolean success = false;
+        
+        try {
+          success = context.getContentResolver().bulkInsert(mInsertUri, batch) >= batch.length;
+        } catch (SQLException e) {
+          Log.w("info9", "Insert of " + batch.length + " rows failed", e);
+        }
+        
+        mSuccess.compareAndSet(true, success);
+      };
     }
+    
+    return result;
   }
   
-  private synchronized void update() {
-    Log.d("info9", "update()");
+  /**
+   * Takes the waiting updates, has to be called with the lock of this operation,
+   * the returned batch has to be run without it.
+   * <p>
+   * @return The batch with the waiting updates or <code>null</code> if there are none.
+   */
+  private Runnable takeUpdateBatch() {
+    Runnable result = null;
+    
     if(mUpdateList != null && !mUpdateList.isEmpty() && mContext != null) {
-      boolean success = false;
-      Log.d("info9", " " + mUpdateList.size());
-      try {
-         success = mContext.getContentResolver().applyBatch(TvBrowserContentProvider.AUTHORITY, mUpdateList).length >= mUpdateList.size();
-      } catch (RemoteException | OperationApplicationException e) {
-        // TODO Auto-generated catch block
-        e.printStackTrace();
-      }
-      
-      mSuccess.compareAndSet(true, success);
+      final Context context = mContext;
+      final ArrayList<ContentProviderOperation> batch = new ArrayList<>(mUpdateList);
       
       mUpdateList.clear();
+      
+      result = () -> {
+        boolean success = false;
+        
+        try {
+          success = context.getContentResolver().applyBatch(TvBrowserContentProvider.AUTHORITY, batch).length >= batch.size();
+        } catch (RemoteException | OperationApplicationException | SQLException e) {
+          Log.w("info9", "Update of " + batch.size() + " rows failed", e);
+        }
+        
+        mSuccess.compareAndSet(true, success);
+      };
+    }
+    
+    return result;
+  }
+  
+  private void run(Runnable batch) {
+    if(batch != null) {
+      if(mWriter != null) {
+        mWriter.submit(batch);
+      }
+      else {
+        batch.run();
+      }
     }
   }
   
@@ -19,17 +19,30 @@ package org.tvbrowser.tvbrowser;
 import android.support.annotation.NonNull;
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Locale;
-import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.tvbrowser.settings.SettingConstants;
+import org.tvbrowser.utils.DownloadEngine;
+import org.tvbrowser.utils.HttpCache;
 import org.tvbrowser.utils.IOUtils;
 
 /**
@@ -43,6 +56,29 @@ public class Mirror implements Comparable<Mirror> {
   
   private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
   
+  private static final int CHECK_TIMEOUT = 5000;
+  private static final int PARALLEL_CHECK_COUNT = 2;
+  
+  // time to wait for the second check after a usable mirror was found
+  private static final int SECOND_CHECK_WAIT = 1000;
+  
+  // percentage of the choices that check another mirror together with the best one
+  private static final int EXPLORE_PERCENT = 10;
+  
+  // the threads are shared by the checks of all groups, checks that are still running
+  // after a mirror was chosen must not delay the checks of the next group, so no check waits for a thread
+  private static final ExecutorService CHECKS = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS, new SynchronousQueue<>(), new ThreadFactory() {
+    private final AtomicInteger mCount = new AtomicInteger(0);
+    
+    @Override
+    public Thread newThread(@NonNull Runnable r) {
+      final Thread thread = new Thread(r, "MIRROR CHECK THREAD " + mCount.incrementAndGet());
+      thread.setDaemon(true);
+      
+      return thread;
+    }
+  });
+  
   private Mirror(String url, int weight) {
     mUrl = url;
     mWeight = weight;
@@ -106,67 +142,144 @@ public class Mirror implements Comparable<Mirror> {
     return 0;
   }
   
-  public static Mirror getMirrorToUseForGroup(Mirror[] mirrors, String group, TvDataUpdateService update, boolean checkOnlyConnection) {
-    ArrayList<Mirror> toChooseFrom = new ArrayList<>(Arrays.asList(mirrors));
-    
-    Mirror chosen = null;
+  /**
+   * Gets the usable mirrors for the given group, the best mirror first.
+   * <p>
+   * The mirrors are checked in the order of their score in the {@link MirrorStats},
+   * mirrors with a weight of 0 last. Mirrors with the same score, like all mirrors
+   * without results, are ordered randomly by their weight, so the mirrors with a
+   * higher weight are chosen more often. Two mirrors are checked at the same time and the
+   * first usable one is chosen. The second one is also returned if it is usable shortly
+   * after the first. Sometimes another mirror is checked together with the best one,
+   * so the results of all mirrors stay current.
+   * <p>
+   * @param mirrors The mirrors of the group.
+   * @param group The id of the group.
+   * @param update The data update to use.
+   * @param checkOnlyConnection If only the connection to the mirror should be checked.
+   * @return The usable mirrors, the array is empty if no mirror is usable.
+   */
+  static Mirror[] getMirrorsToUseForGroup(Mirror[] mirrors, String group, TvDataUpdateService update, boolean checkOnlyConnection) {
+    final MirrorStats stats = MirrorStats.getInstance(update);
+    final HashMap<Mirror, Float> scores = new HashMap<>();
+    final HashMap<Mirror, Double> weightedRandom = new HashMap<>();
     
-    while(chosen == null && !toChooseFrom.isEmpty()) {
-      int weightSum = 0;
+    for(Mirror mirror : mirrors) {
+      scores.put(mirror, stats.getScore(mirror.getUrl()));
       
-      for(Mirror mirror : toChooseFrom) {
-        weightSum += mirror.getWeight();
+      // a random value that is more likely high for a high weight
+      weightedRandom.put(mirror, Math.pow(Math.random(), 1d / Math.max(mirror.getWeight(), 1)));
+    }
+    
+    final ArrayList<Mirror> toChooseFrom = new ArrayList<>(Arrays.asList(mirrors));
+    
+    Collections.sort(toChooseFrom, (lhs, rhs) -> {
+      if((lhs.getWeight() > 0) != (rhs.getWeight() > 0)) {
+        return lhs.getWeight() > 0 ? -1 : 1;
       }
       
-      int limit = new Random().nextInt(weightSum + 1);
-      update.doLog("Mirror weight limit for group '" + group + "': " + limit);
+      int result = Float.compare(scores.get(lhs), scores.get(rhs));
       
-      final ArrayList<Mirror> mirrorsWithAcceptedWeight = new ArrayList<>();
-      
-      for(int i = toChooseFrom.size()-1; i >= 0; i--) {
-        if(toChooseFrom.get(i).getWeight() >= limit) {
-          mirrorsWithAcceptedWeight.add(toChooseFrom.get(i));
-        }
-        else {
-          update.doLog("NOT accepted mirror for group (weight to low) '" + group + "': " + toChooseFrom.get(i).getUrl());
-        }
+      if(result == 0) {
+        result = Double.compare(weightedRandom.get(rhs), weightedRandom.get(lhs));
       }
       
-      while(chosen == null && !mirrorsWithAcceptedWeight.isEmpty()) {
-        final Mirror test = mirrorsWithAcceptedWeight.remove((int)(Math.random() * mirrorsWithAcceptedWeight.size()));
+      return result;
+    });
+    
+    if(toChooseFrom.size() > 2 && Math.random() * 100 < EXPLORE_PERCENT) {
+      final Mirror explore = toChooseFrom.remove(2 + (int)(Math.random() * (toChooseFrom.size() - 2)));
+      toChooseFrom.add(1, explore);
+      update.doLog("Explore mirror for group '" + group + "': " + explore.getUrl());
+    }
+    
+    final ArrayList<Mirror> usable = new ArrayList<>();
+    final ExecutorCompletionService<Mirror> completion = new ExecutorCompletionService<>(CHECKS);
+    
+    try {
+      while(usable.isEmpty() && !toChooseFrom.isEmpty()) {
+        int running = 0;
         
-        update.doLog("Accepted weight for group '" + group + "': " + test.getWeight() + " URL: " + test.getUrl());
-        if((!checkOnlyConnection && useMirror(test,group,5000,update)) || IOUtils.isConnectedToServer(test.getUrl(), 5000)) {
-          update.doLog("Accepted mirror for group '" + group + "': " + test.getUrl());
-          chosen = test;
+        for(int i = 0; i < PARALLEL_CHECK_COUNT && !toChooseFrom.isEmpty(); i++) {
+          final Mirror test = toChooseFrom.remove(0);
+          update.doLog("Check mirror for group '" + group + "' with score " + scores.get(test) + ": " + test.getUrl());
+          
+          completion.submit(() -> check(test, group, update, checkOnlyConnection, stats) ? test : null);
+          running++;
         }
-        else {
-          toChooseFrom.remove(test);
-          update.doLog("NOT accepted mirror for group '" + group + "': " + test.getUrl());
+        
+        while(running > 0) {
+          // after a usable mirror was found the other check isn't waited for long
+          final Future<Mirror> result = usable.isEmpty() ? completion.take() : completion.poll(SECOND_CHECK_WAIT, TimeUnit.MILLISECONDS);
+          
+          if(result == null) {
+            break;
+          }
+          
+          running--;
+          
+          if(result.get() != null) {
+            usable.add(result.get());
+          }
         }
       }
+    } catch (InterruptedException | ExecutionException e) {
+      update.doLog("Mirror check for group '" + group + "' interrupted: " + e.getMessage());
+    }
+    
+    // checks still running are only recorded in the stats
+    
+    return usable.toArray(new Mirror[usable.size()]);
+  }
+  
+  private static boolean check(Mirror mirror, String group, TvDataUpdateService update, boolean checkOnlyConnection, MirrorStats stats) {
+    // the download engine measures the time without the wait for a free connection
+    final AtomicLong time = new AtomicLong();
+    boolean usable = !checkOnlyConnection && useMirror(mirror,group,CHECK_TIMEOUT,update,time);
+    
+    if(!usable) {
+      final long start = System.currentTimeMillis();
+      usable = IOUtils.isConnectedToServer(mirror.getUrl(), CHECK_TIMEOUT);
+      time.set(System.currentTimeMillis() - start);
+    }
+    
+    // a check that failed because the connection was lost isn't the fault of the mirror
+    if(usable || update.isConnected()) {
+      stats.recordCheck(mirror.getUrl(), time.get(), usable);
+    }
+    
+    if(usable) {
+      update.doLog("Accepted mirror for group '" + group + "' in " + time.get() + "ms: " + mirror.getUrl());
+    }
+    else {
+      update.doLog("NOT accepted mirror for group '" + group + "': " + mirror.getUrl());
     }
     
-    return chosen;
+    return usable;
   }
   
-  private static boolean useMirror(Mirror mirror, String group, int timeout, TvDataUpdateService update) {
+  private static boolean useMirror(Mirror mirror, String group, int timeout, TvDataUpdateService update, final AtomicLong time) {
     boolean success = false;
-    HttpURLConnection connection  = null;
     BufferedReader read = null;
     try{
-      URL myUrl = new URL(mirror.getUrl() + group + "_lastupdate");
-
-      connection = (HttpURLConnection) myUrl.openConnection();
-      IOUtils.setConnectionTimeout(connection,timeout);
+      String myUrl = mirror.getUrl() + group + "_lastupdate";
+      
+      // the last update file is kept, it's only downloaded again if it was changed
+      File lastUpdate = HttpCache.getInstance(update).getFile(myUrl);
       
-      int responseCode = connection.getResponseCode();
-      update.doLog("HTTP-Response for group: '" + group + "' from URL: " + myUrl);
-      if(responseCode == HttpURLConnection.HTTP_OK) {
-        read = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+      int result = IOUtils.saveUrlIfModified(update, lastUpdate, myUrl, timeout, true, (url, target, loaded, duration) -> time.set(duration));
+      update.doLog("HTTP-Response for group: '" + group + "' from URL: " + myUrl + (result == DownloadEngine.RESULT_NOT_MODIFIED ? " not modified" : ""));
+      if(result != DownloadEngine.RESULT_FAILED) {
+        read = new BufferedReader(new InputStreamReader(new FileInputStream(lastUpdate)));
         String date = read.readLine();
         
-        Date serverDate = DATE_FORMAT.parse(date);
+        Date serverDate;
+        
+        // mirrors are checked in parallel
+        synchronized(DATE_FORMAT) {
+          serverDate = DATE_FORMAT.parse(date);
+        }
+        
         update.doLog("Date of data for: '" + group + "' from URL '" + myUrl + "' " + serverDate + " diff to now: " + (((System.currentTimeMillis() - serverDate.getTime()) / 1000 / 60 / 60 / 24)));
         // only if update date on server is acceptable
         success = (((System.currentTimeMillis() - serverDate.getTime()) / 1000 / 60 / 60 / 24)) <= SettingConstants.ACCEPTED_DAY_COUNT;
@@ -185,7 +298,6 @@ public class Mirror implements Comparable<Mirror> {
       success = false;
     } finally {
     	IOUtils.close(read);
-    	IOUtils.disconnect(connection);
     }
       
     return success;
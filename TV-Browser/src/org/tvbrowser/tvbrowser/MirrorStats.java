@@ -0,0 +1,213 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * The health of the mirrors over all data updates.
+ * <p>
+ * For every mirror the latency, the throughput and the failure rate are kept
+ * as exponential moving averages, so older results count less. The score of
+ * a mirror is the expected time for the download of a data file.
+ *
+ * @author René Mach
+ */
+final class MirrorStats {
+  private static final String PREFERENCES_NAME = "mirror_stats";
+  
+  // weight of a new result in the moving averages
+  private static final float ALPHA = 0.3f;
+  
+  // assumptions for mirrors without results
+  private static final float DEFAULT_LATENCY = 1500f;
+  private static final float DEFAULT_THROUGHPUT = 50 * 1024f;
+  
+  private static final float TYPICAL_FILE_SIZE = 30 * 1024f;
+  private static final float MAX_FAILURE_RATE = 0.9f;
+  
+  // mirrors that failed recently are used only if there is no other
+  private static final long RECENT_FAILURE_TIME = 30 * 60000L;
+  private static final float RECENT_FAILURE_FACTOR = 4f;
+  
+  private static MirrorStats INSTANCE;
+  
+  private final SharedPreferences mPreferences;
+  private final HashMap<String, Entry> mEntries;
+  private boolean mChanged;
+  
+  private static final class Entry {
+    float mLatency = DEFAULT_LATENCY;
+    float mThroughput = DEFAULT_THROUGHPUT;
+    float mFailureRate;
+    long mLastFailure;
+    int mCount;
+    
+    static Entry parse(String value) {
+      final Entry entry = new Entry();
+      final String[] parts = value.split(";");
+      
+      if(parts.length == 5) {
+        try {
+          entry.mLatency = Float.parseFloat(parts[0]);
+          entry.mThroughput = Float.parseFloat(parts[1]);
+          entry.mFailureRate = Float.parseFloat(parts[2]);
+          entry.mLastFailure = Long.parseLong(parts[3]);
+          entry.mCount = Integer.parseInt(parts[4]);
+        }catch(NumberFormatException ignored) {}
+      }
+      
+      return entry;
+    }
+    
+    @Override
+    public String toString() {
+      return mLatency + ";" + mThroughput + ";" + mFailureRate + ";" + mLastFailure + ";" + mCount;
+    }
+  }
+  
+  private MirrorStats(Context context) {
+    mPreferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    mEntries = new HashMap<>();
+    
+    for(Map.Entry<String, ?> value : mPreferences.getAll().entrySet()) {
+      if(value.getValue() instanceof String) {
+        mEntries.put(value.getKey(), Entry.parse((String)value.getValue()));
+      }
+    }
+    
+    mChanged = false;
+  }
+  
+  static synchronized MirrorStats getInstance(Context context) {
+    if(INSTANCE == null) {
+      INSTANCE = new MirrorStats(context.getApplicationContext());
+    }
+    
+    return INSTANCE;
+  }
+  
+  /**
+   * Gets the mirror of the given URL of a file on the mirror.
+   */
+  static String getMirrorUrl(String fileUrl) {
+    return fileUrl.substring(0, fileUrl.lastIndexOf("/")+1);
+  }
+  
+  private Entry getEntry(String mirrorUrl) {
+    Entry entry = mEntries.get(mirrorUrl);
+    
+    if(entry == null) {
+      entry = new Entry();
+      mEntries.put(mirrorUrl, entry);
+    }
+    
+    return entry;
+  }
+  
+  /**
+   * Records the result of a check of the mirror.
+   * <p>
+   * @param mirrorUrl The URL of the mirror.
+   * @param millis The time of the check in milliseconds.
+   * @param success If the mirror was usable.
+   */
+  synchronized void recordCheck(String mirrorUrl, long millis, boolean success) {
+    final Entry entry = getEntry(mirrorUrl);
+    
+    if(success) {
+      entry.mLatency = entry.mCount == 0 ? millis : entry.mLatency + ALPHA * (millis - entry.mLatency);
+    }
+    
+    recordResult(entry, success);
+  }
+  
+  /**
+   * Records the result of a download of a file from a mirror.
+   * <p>
+   * @param fileUrl The URL of the downloaded file.
+   * @param bytes The size of the downloaded file.
+   * @param millis The time of the download in milliseconds.
+   * @param success If the download was successful.
+   */
+  synchronized void recordDownload(String fileUrl, long bytes, long millis, boolean success) {
+    final Entry entry = getEntry(getMirrorUrl(fileUrl));
+    
+    if(success && bytes > 0) {
+      // the latency is part of the download time, it's estimated by the checks
+      final float transferMillis = Math.max(millis - entry.mLatency, 1f);
+      final float throughput = bytes * 1000f / transferMillis;
+      
+      entry.mThroughput = entry.mCount == 0 ? throughput : entry.mThroughput + ALPHA * (throughput - entry.mThroughput);
+    }
+    
+    recordResult(entry, success);
+  }
+  
+  private void recordResult(Entry entry, boolean success) {
+    entry.mFailureRate += ALPHA * ((success ? 0f : 1f) - entry.mFailureRate);
+    entry.mCount++;
+    
+    if(!success) {
+      entry.mLastFailure = System.currentTimeMillis();
+    }
+    
+    mChanged = true;
+  }
+  
+  /**
+   * Gets the score of the mirror, a smaller score is better.
+   * <p>
+   * @param mirrorUrl The URL of the mirror.
+   * @return The expected time in milliseconds for the download of a data file.
+   */
+  synchronized float getScore(String mirrorUrl) {
+    Entry entry = mEntries.get(mirrorUrl);
+    
+    if(entry == null) {
+      entry = new Entry();
+    }
+    
+    float score = (entry.mLatency + TYPICAL_FILE_SIZE * 1000f / entry.mThroughput) / (1f - Math.min(entry.mFailureRate, MAX_FAILURE_RATE));
+    
+    if(System.currentTimeMillis() - entry.mLastFailure < RECENT_FAILURE_TIME) {
+      score *= RECENT_FAILURE_FACTOR;
+    }
+    
+    return score;
+  }
+  
+  /**
+   * Stores the results, if they were changed.
+   */
+  synchronized void save() {
+    if(mChanged) {
+      final SharedPreferences.Editor edit = mPreferences.edit();
+      
+      for(Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+        edit.putString(entry.getKey(), entry.getValue().toString());
+      }
+      
+      edit.apply();
+      mChanged = false;
+    }
+  }
+}
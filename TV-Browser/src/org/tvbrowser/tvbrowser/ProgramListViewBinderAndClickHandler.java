@@ -22,8 +22,9 @@ import java.util.Locale;
 
 import org.tvbrowser.content.TvBrowserContentProvider;
 import org.tvbrowser.settings.SettingConstants;
+import org.tvbrowser.utils.DisplaySettings;
 import org.tvbrowser.utils.IOUtils;
-import org.tvbrowser.utils.PrefUtils;
+import org.tvbrowser.utils.PictureCache;
 import org.tvbrowser.utils.ProgramUtils;
 import org.tvbrowser.utils.UiUtils;
 
@@ -32,7 +33,9 @@ import android.content.res.Configuration;
 import android.database.Cursor;
 import android.database.StaleDataException;
 import android.graphics.Bitmap;
+import android.graphics.Color;
 import android.graphics.drawable.Drawable;
+import android.graphics.drawable.ShapeDrawable;
 import android.os.Handler;
 import android.support.v4.widget.SimpleCursorAdapter;
 import android.text.Spannable;
@@ -56,6 +59,44 @@ class ProgramListViewBinderAndClickHandler implements SimpleCursorAdapter.ViewBi
   private final float mZoom;
   private final Handler mHandler;
   
+  private Cursor mColumnsCursor;
+  private Columns mColumns;
+  
+  /**
+   * The indices of the columns of one cursor.
+   */
+  private static final class Columns {
+    final int mId;
+    final int mStartTime;
+    final int mEndTime;
+    final int mUnixDate;
+    final int mTitle;
+    final int mChannelId;
+    final int mChannelName;
+    final int mOrderNumber;
+    final int mCategories;
+    final int mEpisode;
+    final int mGenre;
+    final int mPicture;
+    final int mPictureCopyright;
+    
+    Columns(Cursor cursor) {
+      mId = cursor.getColumnIndex(TvBrowserContentProvider.KEY_ID);
+      mStartTime = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_STARTTIME);
+      mEndTime = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_ENDTIME);
+      mUnixDate = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_UNIX_DATE);
+      mTitle = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_TITLE);
+      mChannelId = cursor.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID);
+      mChannelName = cursor.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_NAME);
+      mOrderNumber = cursor.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER);
+      mCategories = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_CATEGORIES);
+      mEpisode = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE);
+      mGenre = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_GENRE);
+      mPicture = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_PICTURE);
+      mPictureCopyright = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_PICTURE_COPYRIGHT);
+    }
+  }
+  
   public ProgramListViewBinderAndClickHandler(Activity act, ShowDateInterface showDateInterface, Handler handler) {
     mActivity = act;
     mDefaultTextColor = new TextView(mActivity).getTextColors().getDefaultColor();
@@ -67,36 +108,38 @@ class ProgramListViewBinderAndClickHandler implements SimpleCursorAdapter.ViewBi
   @Override
   public boolean setViewValue(View view, Cursor cursor, int columnIndex) {
     try {
-      boolean showPicture = PrefUtils.getBooleanValue(R.string.SHOW_PICTURE_IN_LISTS, R.bool.show_pictures_in_lists_default);
-      boolean showGenre = PrefUtils.getBooleanValue(R.string.SHOW_GENRE_IN_LISTS, R.bool.show_genre_in_lists_default);
-      boolean showEpisode = PrefUtils.getBooleanValue(R.string.SHOW_EPISODE_IN_LISTS, R.bool.show_episode_in_lists_default);
-      boolean showInfo = PrefUtils.getBooleanValue(R.string.SHOW_INFO_IN_LISTS, R.bool.show_info_in_lists_default);
-      boolean showOrderNumber = PrefUtils.getBooleanValue(R.string.SHOW_SORT_NUMBER_IN_LISTS, R.bool.show_sort_number_in_lists_default);
-      boolean showEndTime = PrefUtils.getBooleanValue(R.string.PREF_PROGRAM_LISTS_SHOW_END_TIME, R.bool.pref_program_lists_show_end_time_default);
-      
-      String logoNamePref = PrefUtils.getStringValue(R.string.CHANNEL_LOGO_NAME_PROGRAM_LISTS, R.string.channel_logo_name_program_lists_default);
+      final DisplaySettings settings = DisplaySettings.get(mActivity);
       
-      boolean showChannelName = logoNamePref.equals("0") || logoNamePref.equals("2");
-      boolean showChannelLogo = logoNamePref.equals("0") || logoNamePref.equals("1");
-      boolean showBigChannelLogo = logoNamePref.equals("3");
+      boolean showOrderNumber = settings.showOrderNumber();
+      boolean showEndTime = settings.showEndTime();
+      boolean showChannelName = settings.showChannelName(false);
+      boolean showChannelLogo = settings.showChannelLogo(false);
+      boolean showBigChannelLogo = settings.showBigChannelLogo(false);
 
       if(!cursor.isClosed()) {
-        long endTime = cursor.getLong(cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_ENDTIME));
+        if(cursor != mColumnsCursor) {
+          mColumns = new Columns(cursor);
+          mColumnsCursor = cursor;
+        }
+        
+        final Columns columns = mColumns;
+        
+        long endTime = cursor.getLong(columns.mEndTime);
 
         if (view instanceof TextView) {
           if (endTime < System.currentTimeMillis()) {
-            ((TextView) view).setTextColor(UiUtils.getColor(UiUtils.EXPIRED_COLOR_KEY, mActivity));
+            ((TextView) view).setTextColor(settings.getColor(UiUtils.EXPIRED_COLOR_KEY));
           } else {
             ((TextView) view).setTextColor(mDefaultTextColor);
           }
         }
-        if (columnIndex == cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_TITLE)) {
+        if (columnIndex == columns.mTitle) {
           TextView title = ((ViewGroup) view.getParent()).findViewById(R.id.titleLabelPL);
           String titleValue = cursor.getString(columnIndex);
-          title.setText(ProgramUtils.getMarkIcons(mActivity, cursor.getLong(cursor.getColumnIndex(TvBrowserContentProvider.KEY_ID)), titleValue));
+          title.setText(ProgramUtils.getMarkIcons(mActivity, cursor.getLong(columns.mId), titleValue));
 
           return true;
-        } else if (columnIndex == cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_ENDTIME)) {
+        } else if (columnIndex == columns.mEndTime) {
           TextView until = ((ViewGroup) view.getParent()).findViewById(R.id.untilLabelPL);
 
           if (showEndTime) {
@@ -121,20 +164,20 @@ class ProgramListViewBinderAndClickHandler implements SimpleCursorAdapter.ViewBi
           }
 
           if (endTime < System.currentTimeMillis()) {
-            until.setTextColor(UiUtils.getColor(UiUtils.EXPIRED_COLOR_KEY, mActivity));
+            until.setTextColor(settings.getColor(UiUtils.EXPIRED_COLOR_KEY));
           } else {
             until.setTextColor(mDefaultTextColor);
           }
 
           return true;
-        } else if (columnIndex == cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_UNIX_DATE)) {
+        } else if (columnIndex == columns.mUnixDate) {
           TextView date = ((ViewGroup) view.getParent()).findViewById(R.id.startDayLabelPL);
 
           if (mDateShowInterface.showDate()) {
             UiUtils.formatDayView(mActivity, cursor, view, R.id.startDayLabelPL);
 
             if (endTime < System.currentTimeMillis()) {
-              date.setTextColor(UiUtils.getColor(UiUtils.EXPIRED_COLOR_KEY, mActivity));
+              date.setTextColor(settings.getColor(UiUtils.EXPIRED_COLOR_KEY));
             } else {
               date.setTextColor(mDefaultTextColor);
             }
@@ -152,7 +195,7 @@ class ProgramListViewBinderAndClickHandler implements SimpleCursorAdapter.ViewBi
           }
 
           return true;
-        } else if (columnIndex == cursor.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID)) {
+        } else if (columnIndex == columns.mChannelId) {
           boolean show = true;
 
           if (mDateShowInterface instanceof ShowChannelInterface) {
@@ -163,7 +206,7 @@ class ProgramListViewBinderAndClickHandler implements SimpleCursorAdapter.ViewBi
             TextView text = (TextView) view;
             ((ViewGroup) view.getParent()).setVisibility(View.VISIBLE);
 
-            String name = cursor.getString(cursor.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_NAME));
+            String name = cursor.getString(columns.mChannelName);
             String shortName = SettingConstants.SHORT_CHANNEL_NAMES.get(name);
             String number = null;
 
@@ -172,7 +215,7 @@ class ProgramListViewBinderAndClickHandler implements SimpleCursorAdapter.ViewBi
             }
 
             if (showOrderNumber) {
-              number = cursor.getString(cursor.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER));
+              number = cursor.getString(columns.mOrderNumber);
 
               if (number == null) {
                 number = "0";
@@ -183,7 +226,7 @@ class ProgramListViewBinderAndClickHandler implements SimpleCursorAdapter.ViewBi
               name = number + " " + name;
             }
 
-            int logoIndex = cursor.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID);
+            int logoIndex = columns.mChannelId;
 
             Drawable logo = null;
 
@@ -223,18 +266,18 @@ class ProgramListViewBinderAndClickHandler implements SimpleCursorAdapter.ViewBi
           }
 
           return true;
-        } else if (columnIndex == cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_STARTTIME)) {
-          long date = cursor.getLong(cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_STARTTIME));
+        } else if (columnIndex == columns.mStartTime) {
+          long date = cursor.getLong(columns.mStartTime);
 
           java.text.DateFormat mTimeFormat = UiUtils.getTimeFormat(mActivity);
 
           TextView text = (TextView) view;
-          text.setTag(cursor.getLong(cursor.getColumnIndex(TvBrowserContentProvider.KEY_ID)));
+          text.setTag(cursor.getLong(columns.mId));
           text.setText(mTimeFormat.format(new Date(date)));
 
           return true;
-        } else if (columnIndex == cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_CATEGORIES)) {
-          if (cursor.isNull(cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_CATEGORIES)) || !showInfo) {
+        } else if (columnIndex == columns.mCategories) {
+          if (cursor.isNull(columns.mCategories) || !settings.showInfo()) {
             view.setVisibility(View.GONE);
           } else {
             int info = cursor.getInt(columnIndex);
@@ -254,31 +297,54 @@ class ProgramListViewBinderAndClickHandler implements SimpleCursorAdapter.ViewBi
           }
 
           return true;
-        } else if (columnIndex == cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE)) {
-          if (cursor.isNull(cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE)) || !showEpisode) {
+        } else if (columnIndex == columns.mEpisode) {
+          if (cursor.isNull(columns.mEpisode) || !settings.showEpisode()) {
             view.setVisibility(View.GONE);
           } else {
             view.setVisibility(View.VISIBLE);
           }
-        } else if (columnIndex == cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_GENRE)) {
-          if (cursor.isNull(cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_GENRE)) || !showGenre) {
+        } else if (columnIndex == columns.mGenre) {
+          if (cursor.isNull(columns.mGenre) || !settings.showGenre()) {
             view.setVisibility(View.GONE);
           } else {
             view.setVisibility(View.VISIBLE);
           }
-        } else if (columnIndex == cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_PICTURE_COPYRIGHT)) {
+        } else if (columnIndex == columns.mPictureCopyright) {
           TextView text = (TextView) view;
           ImageView picture = ((RelativeLayout) text.getParent()).findViewById(R.id.picture_pl);
 
-          int pictureIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_PICTURE);
+          int pictureIndex = columns.mPicture;
 
-          if (pictureIndex >= 0 && showPicture) {
-            Bitmap logo = UiUtils.createBitmapFromByteArray(cursor.getBlob(cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_PICTURE)));
+          if (pictureIndex >= 0 && settings.showPicture()) {
+            final byte[] pictureData = cursor.getBlob(columns.mPicture);
+            final int[] size = PictureCache.getSize(pictureData, mZoom, 0);
 
-            if (logo != null) {
-              picture.setImageBitmap(Bitmap.createScaledBitmap(logo, (int) (mZoom * logo.getWidth()), (int) (mZoom * logo.getHeight()), false));//.setImageDrawable(l);
+            if (size != null) {
+              final Long programId = cursor.getLong(columns.mId);
+              final PictureCache pictures = PictureCache.getInstance();
+              final Bitmap decoded = pictures.get(programId, pictureData, size);
+
+              // the view may be used for another program until the picture is decoded
+              picture.setTag(programId);
+
+              if (decoded != null) {
+                picture.setImageBitmap(decoded);
+              } else {
+                final ShapeDrawable placeholder = new ShapeDrawable();
+                placeholder.setIntrinsicWidth(size[0]);
+                placeholder.setIntrinsicHeight(size[1]);
+                placeholder.getPaint().setColor(Color.TRANSPARENT);
+
+                picture.setImageDrawable(placeholder);
+
+                pictures.load(programId, pictureData, size, loaded -> {
+                  if (programId.equals(picture.getTag())) {
+                    picture.setImageBitmap(loaded);
+                  }
+                });
+              }
 
-              text.setText(cursor.getString(cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_PICTURE_COPYRIGHT)));
+              text.setText(cursor.getString(columns.mPictureCopyright));
               text.setVisibility(View.VISIBLE);
               picture.setVisibility(View.VISIBLE);
             } else {
@@ -0,0 +1,424 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import org.tvbrowser.content.TvBrowserContentProvider;
+import org.tvbrowser.utils.IOUtils;
+
+import android.content.ContentValues;
+
+/**
+ * A fixed layout record for the values of a program read from a data file.
+ * <p>
+ * The values are stored by column index in primitive arrays and a bit set
+ * keeps track of the columns that were set, so parsing a program doesn't
+ * need any maps or boxing. ContentValues are only created at the database boundary.
+ *
+ * @author René Mach
+ */
+final class ProgramRecord {
+  /**
+   * All columns of the data table a record can contain.
+   */
+  static final String[] COLUMNS = {
+    TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID,
+    TvBrowserContentProvider.DATA_KEY_UNIX_DATE,
+    TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID,
+    TvBrowserContentProvider.DATA_KEY_DATE_PROG_STRING_ID,
+    TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE,
+    TvBrowserContentProvider.DATA_KEY_STARTTIME,
+    TvBrowserContentProvider.DATA_KEY_ENDTIME,
+    TvBrowserContentProvider.DATA_KEY_TITLE,
+    TvBrowserContentProvider.DATA_KEY_TITLE_ORIGINAL,
+    TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE,
+    TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE_ORIGINAL,
+    TvBrowserContentProvider.DATA_KEY_SHORT_DESCRIPTION,
+    TvBrowserContentProvider.DATA_KEY_DESCRIPTION,
+    TvBrowserContentProvider.DATA_KEY_DURATION_ORIGINAL,
+    TvBrowserContentProvider.DATA_KEY_ACTORS,
+    TvBrowserContentProvider.DATA_KEY_REGIE,
+    TvBrowserContentProvider.DATA_KEY_CUSTOM_INFO,
+    TvBrowserContentProvider.DATA_KEY_CATEGORIES,
+    TvBrowserContentProvider.DATA_KEY_AGE_LIMIT,
+    TvBrowserContentProvider.DATA_KEY_WEBSITE_LINK,
+    TvBrowserContentProvider.DATA_KEY_GENRE,
+    TvBrowserContentProvider.DATA_KEY_ORIGIN,
+    TvBrowserContentProvider.DATA_KEY_NETTO_PLAY_TIME,
+    TvBrowserContentProvider.DATA_KEY_VPS,
+    TvBrowserContentProvider.DATA_KEY_SCRIPT,
+    TvBrowserContentProvider.DATA_KEY_REPETITION_FROM,
+    TvBrowserContentProvider.DATA_KEY_MUSIC,
+    TvBrowserContentProvider.DATA_KEY_MODERATION,
+    TvBrowserContentProvider.DATA_KEY_YEAR,
+    TvBrowserContentProvider.DATA_KEY_REPETITION_ON,
+    TvBrowserContentProvider.DATA_KEY_PICTURE,
+    TvBrowserContentProvider.DATA_KEY_PICTURE_COPYRIGHT,
+    TvBrowserContentProvider.DATA_KEY_PICTURE_DESCRIPTION,
+    TvBrowserContentProvider.DATA_KEY_EPISODE_NUMBER,
+    TvBrowserContentProvider.DATA_KEY_EPISODE_COUNT,
+    TvBrowserContentProvider.DATA_KEY_SEASON_NUMBER,
+    TvBrowserContentProvider.DATA_KEY_PRODUCER,
+    TvBrowserContentProvider.DATA_KEY_CAMERA,
+    TvBrowserContentProvider.DATA_KEY_CUT,
+    TvBrowserContentProvider.DATA_KEY_OTHER_PERSONS,
+    TvBrowserContentProvider.DATA_KEY_RATING,
+    TvBrowserContentProvider.DATA_KEY_PRODUCTION_FIRM,
+    TvBrowserContentProvider.DATA_KEY_AGE_LIMIT_STRING,
+    TvBrowserContentProvider.DATA_KEY_LAST_PRODUCTION_YEAR,
+    TvBrowserContentProvider.DATA_KEY_ADDITIONAL_INFO,
+    TvBrowserContentProvider.DATA_KEY_SERIES,
+    TvBrowserContentProvider.DATA_KEY_PART_NUMBER,
+    TvBrowserContentProvider.DATA_KEY_PART_NUMBER_TOTAL,
+    TvBrowserContentProvider.DATA_KEY_KEYWORD_LIST,
+    TvBrowserContentProvider.DATA_KEY_VOD_INFO,
+    TvBrowserContentProvider.DATA_KEY_VOD_LINK,
+    TvBrowserContentProvider.DATA_KEY_GENRE_SUB_LIST,
+    TvBrowserContentProvider.DATA_KEY_YEAR_PRODUCTION_FIRST,
+    TvBrowserContentProvider.DATA_KEY_UTC_START_MINUTE_AFTER_MIDNIGHT,
+    TvBrowserContentProvider.DATA_KEY_UTC_END_MINUTE_AFTER_MIDNIGHT,
+    TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES,
+    TvBrowserContentProvider.DATA_KEY_INFO_BLACK_AND_WHITE,
+    TvBrowserContentProvider.DATA_KEY_INFO_4_TO_3,
+    TvBrowserContentProvider.DATA_KEY_INFO_16_TO_9,
+    TvBrowserContentProvider.DATA_KEY_INFO_MONO,
+    TvBrowserContentProvider.DATA_KEY_INFO_STEREO,
+    TvBrowserContentProvider.DATA_KEY_INFO_DOLBY_SURROUND,
+    TvBrowserContentProvider.DATA_KEY_INFO_DOLBY_DIGITAL_5_1,
+    TvBrowserContentProvider.DATA_KEY_INFO_SECOND_AUDIO_PROGRAM,
+    TvBrowserContentProvider.DATA_KEY_INFO_CLOSED_CAPTION,
+    TvBrowserContentProvider.DATA_KEY_INFO_LIVE,
+    TvBrowserContentProvider.DATA_KEY_INFO_OMU,
+    TvBrowserContentProvider.DATA_KEY_INFO_FILM,
+    TvBrowserContentProvider.DATA_KEY_INFO_SERIES,
+    TvBrowserContentProvider.DATA_KEY_INFO_NEW,
+    TvBrowserContentProvider.DATA_KEY_INFO_AUDIO_DESCRIPTION,
+    TvBrowserContentProvider.DATA_KEY_INFO_NEWS,
+    TvBrowserContentProvider.DATA_KEY_INFO_SHOW,
+    TvBrowserContentProvider.DATA_KEY_INFO_MAGAZINE,
+    TvBrowserContentProvider.DATA_KEY_INFO_HD,
+    TvBrowserContentProvider.DATA_KEY_INFO_DOCUMENTATION,
+    TvBrowserContentProvider.DATA_KEY_INFO_ART,
+    TvBrowserContentProvider.DATA_KEY_INFO_SPORT,
+    TvBrowserContentProvider.DATA_KEY_INFO_CHILDREN,
+    TvBrowserContentProvider.DATA_KEY_INFO_OTHER,
+    TvBrowserContentProvider.DATA_KEY_INFO_SIGN_LANGUAGE
+  };
+
+  private static final int MASK_LENGTH = (COLUMNS.length + 63) / 64;
+
+  static final int CHANNEL_ID = indexOf(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID);
+  static final int UNIX_DATE = indexOf(TvBrowserContentProvider.DATA_KEY_UNIX_DATE);
+  static final int DATE_PROG_ID = indexOf(TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID);
+  static final int DATE_PROG_STRING_ID = indexOf(TvBrowserContentProvider.DATA_KEY_DATE_PROG_STRING_ID);
+  static final int DONT_WANT_TO_SEE = indexOf(TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE);
+  static final int STARTTIME = indexOf(TvBrowserContentProvider.DATA_KEY_STARTTIME);
+  static final int ENDTIME = indexOf(TvBrowserContentProvider.DATA_KEY_ENDTIME);
+  static final int TITLE = indexOf(TvBrowserContentProvider.DATA_KEY_TITLE);
+  static final int TITLE_ORIGINAL = indexOf(TvBrowserContentProvider.DATA_KEY_TITLE_ORIGINAL);
+  static final int EPISODE_TITLE = indexOf(TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE);
+  static final int EPISODE_TITLE_ORIGINAL = indexOf(TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE_ORIGINAL);
+  static final int SHORT_DESCRIPTION = indexOf(TvBrowserContentProvider.DATA_KEY_SHORT_DESCRIPTION);
+  static final int DESCRIPTION = indexOf(TvBrowserContentProvider.DATA_KEY_DESCRIPTION);
+  static final int DURATION_ORIGINAL = indexOf(TvBrowserContentProvider.DATA_KEY_DURATION_ORIGINAL);
+  static final int ACTORS = indexOf(TvBrowserContentProvider.DATA_KEY_ACTORS);
+  static final int REGIE = indexOf(TvBrowserContentProvider.DATA_KEY_REGIE);
+  static final int CUSTOM_INFO = indexOf(TvBrowserContentProvider.DATA_KEY_CUSTOM_INFO);
+  static final int CATEGORIES = indexOf(TvBrowserContentProvider.DATA_KEY_CATEGORIES);
+  static final int AGE_LIMIT = indexOf(TvBrowserContentProvider.DATA_KEY_AGE_LIMIT);
+  static final int WEBSITE_LINK = indexOf(TvBrowserContentProvider.DATA_KEY_WEBSITE_LINK);
+  static final int GENRE = indexOf(TvBrowserContentProvider.DATA_KEY_GENRE);
+  static final int ORIGIN = indexOf(TvBrowserContentProvider.DATA_KEY_ORIGIN);
+  static final int NETTO_PLAY_TIME = indexOf(TvBrowserContentProvider.DATA_KEY_NETTO_PLAY_TIME);
+  static final int VPS = indexOf(TvBrowserContentProvider.DATA_KEY_VPS);
+  static final int SCRIPT = indexOf(TvBrowserContentProvider.DATA_KEY_SCRIPT);
+  static final int REPETITION_FROM = indexOf(TvBrowserContentProvider.DATA_KEY_REPETITION_FROM);
+  static final int MUSIC = indexOf(TvBrowserContentProvider.DATA_KEY_MUSIC);
+  static final int MODERATION = indexOf(TvBrowserContentProvider.DATA_KEY_MODERATION);
+  static final int YEAR = indexOf(TvBrowserContentProvider.DATA_KEY_YEAR);
+  static final int REPETITION_ON = indexOf(TvBrowserContentProvider.DATA_KEY_REPETITION_ON);
+  static final int PICTURE = indexOf(TvBrowserContentProvider.DATA_KEY_PICTURE);
+  static final int PICTURE_COPYRIGHT = indexOf(TvBrowserContentProvider.DATA_KEY_PICTURE_COPYRIGHT);
+  static final int PICTURE_DESCRIPTION = indexOf(TvBrowserContentProvider.DATA_KEY_PICTURE_DESCRIPTION);
+  static final int EPISODE_NUMBER = indexOf(TvBrowserContentProvider.DATA_KEY_EPISODE_NUMBER);
+  static final int EPISODE_COUNT = indexOf(TvBrowserContentProvider.DATA_KEY_EPISODE_COUNT);
+  static final int SEASON_NUMBER = indexOf(TvBrowserContentProvider.DATA_KEY_SEASON_NUMBER);
+  static final int PRODUCER = indexOf(TvBrowserContentProvider.DATA_KEY_PRODUCER);
+  static final int CAMERA = indexOf(TvBrowserContentProvider.DATA_KEY_CAMERA);
+  static final int CUT = indexOf(TvBrowserContentProvider.DATA_KEY_CUT);
+  static final int OTHER_PERSONS = indexOf(TvBrowserContentProvider.DATA_KEY_OTHER_PERSONS);
+  static final int RATING = indexOf(TvBrowserContentProvider.DATA_KEY_RATING);
+  static final int PRODUCTION_FIRM = indexOf(TvBrowserContentProvider.DATA_KEY_PRODUCTION_FIRM);
+  static final int AGE_LIMIT_STRING = indexOf(TvBrowserContentProvider.DATA_KEY_AGE_LIMIT_STRING);
+  static final int LAST_PRODUCTION_YEAR = indexOf(TvBrowserContentProvider.DATA_KEY_LAST_PRODUCTION_YEAR);
+  static final int ADDITIONAL_INFO = indexOf(TvBrowserContentProvider.DATA_KEY_ADDITIONAL_INFO);
+  static final int SERIES = indexOf(TvBrowserContentProvider.DATA_KEY_SERIES);
+  static final int PART_NUMBER = indexOf(TvBrowserContentProvider.DATA_KEY_PART_NUMBER);
+  static final int PART_NUMBER_TOTAL = indexOf(TvBrowserContentProvider.DATA_KEY_PART_NUMBER_TOTAL);
+  static final int KEYWORD_LIST = indexOf(TvBrowserContentProvider.DATA_KEY_KEYWORD_LIST);
+  static final int VOD_INFO = indexOf(TvBrowserContentProvider.DATA_KEY_VOD_INFO);
+  static final int VOD_LINK = indexOf(TvBrowserContentProvider.DATA_KEY_VOD_LINK);
+  static final int GENRE_SUB_LIST = indexOf(TvBrowserContentProvider.DATA_KEY_GENRE_SUB_LIST);
+  static final int YEAR_PRODUCTION_FIRST = indexOf(TvBrowserContentProvider.DATA_KEY_YEAR_PRODUCTION_FIRST);
+  static final int UTC_START_MINUTE_AFTER_MIDNIGHT = indexOf(TvBrowserContentProvider.DATA_KEY_UTC_START_MINUTE_AFTER_MIDNIGHT);
+  static final int UTC_END_MINUTE_AFTER_MIDNIGHT = indexOf(TvBrowserContentProvider.DATA_KEY_UTC_END_MINUTE_AFTER_MIDNIGHT);
+  static final int DURATION_IN_MINUTES = indexOf(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES);
+
+  /**
+   * Column indices of the info category columns in the same
+   * order as {@link TvBrowserContentProvider#INFO_CATEGORIES_COLUMNS_ARRAY}.
+   */
+  static final int[] INFO_CATEGORIES_COLUMNS = createIndexArray(TvBrowserContentProvider.INFO_CATEGORIES_COLUMNS_ARRAY);
+
+  // the info category columns are 0 instead of null if they are not contained in a data file
+  private static final long[] MASK_DEFAULT_ZERO = createMask(TvBrowserContentProvider.INFO_CATEGORIES_COLUMNS_ARRAY);
+
+  private final long[] mNumberValues;
+  private final Object[] mObjectValues;
+
+  // bit set with the columns that have a value (also null)
+  private final long[] mPresent;
+  // bit set with the columns that have the value null
+  private final long[] mNull;
+  // bit set with the columns that were set since the last call of startRead()
+  private final long[] mTouched;
+
+  ProgramRecord() {
+    mNumberValues = new long[COLUMNS.length];
+    mObjectValues = new Object[COLUMNS.length];
+    mPresent = new long[MASK_LENGTH];
+    mNull = new long[MASK_LENGTH];
+    mTouched = new long[MASK_LENGTH];
+  }
+
+  private static int indexOf(String column) {
+    for(int i = 0; i < COLUMNS.length; i++) {
+      if(COLUMNS[i].equals(column)) {
+        return i;
+      }
+    }
+
+    throw new IllegalArgumentException("Unknown column: " + column);
+  }
+
+  private static int[] createIndexArray(String[] columns) {
+    final int[] result = new int[columns.length];
+
+    for(int i = 0; i < columns.length; i++) {
+      result[i] = indexOf(columns[i]);
+    }
+
+    return result;
+  }
+
+  /**
+   * Creates a bit set mask for the given columns.
+   * <p>
+   * @param columns The names of the columns to set in the mask, unknown columns are ignored.
+   * @return The mask with the bits of the given columns set.
+   */
+  static long[] createMask(String... columns) {
+    final long[] mask = new long[MASK_LENGTH];
+
+    for(String column : columns) {
+      for(int i = 0; i < COLUMNS.length; i++) {
+        if(COLUMNS[i].equals(column)) {
+          mask[i >>> 6] |= 1L << i;
+          break;
+        }
+      }
+    }
+
+    return mask;
+  }
+
+  /**
+   * Creates a new mask with all bits of base that are not set in remove.
+   */
+  static long[] removeFromMask(long[] base, long[] remove) {
+    final long[] mask = base.clone();
+
+    for(int i = 0; i < mask.length; i++) {
+      mask[i] &= ~remove[i];
+    }
+
+    return mask;
+  }
+
+  /**
+   * Creates a new mask with all bits that are set in one of the given masks.
+   */
+  static long[] combineMasks(long[]... masks) {
+    final long[] mask = new long[MASK_LENGTH];
+
+    for(long[] part : masks) {
+      for(int i = 0; i < mask.length; i++) {
+        mask[i] |= part[i];
+      }
+    }
+
+    return mask;
+  }
+
+  private void markPresent(int column, boolean isNull) {
+    final int word = column >>> 6;
+    final long bit = 1L << column;
+
+    mPresent[word] |= bit;
+    mTouched[word] |= bit;
+
+    if(isNull) {
+      mNull[word] |= bit;
+    }
+    else {
+      mNull[word] &= ~bit;
+    }
+  }
+
+  void setLong(int column, long value) {
+    mNumberValues[column] = value;
+    mObjectValues[column] = null;
+    markPresent(column, false);
+  }
+
+  void setString(int column, String value) {
+    mObjectValues[column] = value;
+    markPresent(column, value == null);
+  }
+
+  void setBlob(int column, byte[] value) {
+    mObjectValues[column] = value;
+    markPresent(column, value == null);
+  }
+
+  void setNull(int column) {
+    mObjectValues[column] = null;
+    markPresent(column, true);
+  }
+
+  /**
+   * @return <code>true</code> if the column was set, also if it was set to <code>null</code>.
+   */
+  boolean isSet(int column) {
+    return (mPresent[column >>> 6] & (1L << column)) != 0;
+  }
+
+  /**
+   * @return <code>true</code> if the column was set to a value other than <code>null</code>.
+   */
+  boolean hasValue(int column) {
+    return isSet(column) && (mNull[column >>> 6] & (1L << column)) == 0;
+  }
+
+  long getLong(int column) {
+    return mNumberValues[column];
+  }
+
+  String getString(int column) {
+    return (String)mObjectValues[column];
+  }
+
+  boolean isEmpty() {
+    for(long word : mPresent) {
+      if(word != 0) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Starts reading the values of a frame from a data file into this record.
+   */
+  void startRead() {
+    for(int i = 0; i < mTouched.length; i++) {
+      mTouched[i] = 0;
+    }
+  }
+
+  /**
+   * Sets all columns of the given mask that weren't set since the last call of
+   * {@link #startRead()} to their default value, so existing values in the database
+   * are overwritten.
+   * <p>
+   * @param expected The mask with the columns expected in the data file.
+   */
+  void setMissingToDefault(long[] expected) {
+    for(int word = 0; word < mTouched.length; word++) {
+      long missing = expected[word] & ~mTouched[word];
+
+      while(missing != 0) {
+        final int column = (word << 6) + Long.numberOfTrailingZeros(missing);
+        missing &= missing - 1;
+
+        if((MASK_DEFAULT_ZERO[word] & (1L << column)) != 0) {
+          setLong(column, 0);
+        }
+        else {
+          setNull(column);
+        }
+      }
+    }
+  }
+
+  /**
+   * Sets the info category columns from the given categories value.
+   * <p>
+   * @param categories The categories bit field of the program.
+   */
+  void setCategories(int categories) {
+    setLong(CATEGORIES, categories);
+
+    for(int i = 0; i < IOUtils.INFO_CATEGORIES_ARRAY.length; i++) {
+      setLong(INFO_CATEGORIES_COLUMNS[i], IOUtils.infoSet(categories, IOUtils.INFO_CATEGORIES_ARRAY[i]) ? 1 : 0);
+    }
+  }
+
+  /**
+   * Creates the ContentValues for the database operation of this record.
+   * <p>
+   * @return The ContentValues with all set columns of this record.
+   */
+  ContentValues toContentValues() {
+    final ContentValues values = new ContentValues(COLUMNS.length);
+
+    for(int word = 0; word < mPresent.length; word++) {
+      long present = mPresent[word];
+
+      while(present != 0) {
+        final int column = (word << 6) + Long.numberOfTrailingZeros(present);
+        final long bit = present & -present;
+        present &= present - 1;
+
+        if((mNull[word] & bit) != 0) {
+          values.putNull(COLUMNS[column]);
+        }
+        else if(mObjectValues[column] instanceof String) {
+          values.put(COLUMNS[column], (String)mObjectValues[column]);
+        }
+        else if(mObjectValues[column] instanceof byte[]) {
+          values.put(COLUMNS[column], (byte[])mObjectValues[column]);
+        }
+        else {
+          values.put(COLUMNS[column], mNumberValues[column]);
+        }
+      }
+    }
+
+    return values;
+  }
+}
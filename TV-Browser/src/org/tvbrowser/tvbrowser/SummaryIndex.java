@@ -0,0 +1,556 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+import org.tvbrowser.utils.IOUtils;
+
+/**
+ * Binary index of the summary of a data server.
+ * <p>
+ * The summary is converted only once after it was downloaded. The index
+ * is stored next to the summary and is memory mapped, so the summary
+ * isn't decoded again for every data update and no objects are created
+ * for the channels of the server.
+ * <p>
+ * The channels are sorted by their ID and the records of a channel by
+ * their start, so both can be found with a binary search. A record is
+ * a day of the EPGfree summary or a data file of the EPGdonate summary.
+ *
+ * @author René Mach
+ */
+final class SummaryIndex {
+  private static final int MAGIC = 0x54564253;
+  private static final int FORMAT_VERSION = 1;
+  private static final String INDEX_SUFFIX = ".idx";
+  
+  private static final int TYPE_EPGFREE = 1;
+  private static final int TYPE_EPGDONATE = 2;
+  
+  // the version of every level of the EPGdonate data files
+  private static final int EPGDONATE_LEVELS = 3;
+  
+  /*
+   * header:  magic, format version, type, start day, level count, channel count
+   * channel: offset of ID, offset of country or -1, offset of first record, record count
+   * record:  start, offset of key or -1, version of every level
+   * strings: length as unsigned short followed by the UTF-8 bytes
+   */
+  private static final int HEADER_SIZE = 6 * 4;
+  private static final int CHANNEL_SIZE = 4 * 4;
+  
+  private final ByteBuffer mBuffer;
+  private final int mStartDay;
+  private final int mLevels;
+  private final int mChannelCount;
+  private final int mRecordSize;
+  
+  private SummaryIndex(ByteBuffer buffer) {
+    mBuffer = buffer;
+    mStartDay = buffer.getInt(12);
+    mLevels = buffer.getInt(16);
+    mChannelCount = buffer.getInt(20);
+    mRecordSize = 8 + 4 * mLevels;
+  }
+  
+  /**
+   * Opens the index of the given EPGfree summary, it's created if the summary is newer.
+   * <p>
+   * @param summary The summary file.
+   * @return The index of the summary.
+   * @throws IOException If the summary couldn't be read.
+   */
+  static SummaryIndex openEPGfree(File summary) throws IOException {
+    return open(summary, TYPE_EPGFREE);
+  }
+  
+  /**
+   * Opens the index of the given EPGdonate summary, it's created if the summary is newer.
+   * <p>
+   * @param summary The summary file.
+   * @return The index of the summary.
+   * @throws IOException If the summary couldn't be read.
+   */
+  static SummaryIndex openEPGdonate(File summary) throws IOException {
+    return open(summary, TYPE_EPGDONATE);
+  }
+  
+  /**
+   * Deletes the index of the given summary.
+   * <p>
+   * @param summary The summary file.
+   */
+  static void delete(File summary) {
+    final File index = getIndexFile(summary);
+    
+    if(index.isFile() && !index.delete()) {
+      index.deleteOnExit();
+    }
+  }
+  
+  private static File getIndexFile(File summary) {
+    return new File(summary.getAbsolutePath() + INDEX_SUFFIX);
+  }
+  
+  private static SummaryIndex open(File summary, int type) throws IOException {
+    final File index = getIndexFile(summary);
+    SummaryIndex result = null;
+    
+    if(index.isFile() && index.lastModified() >= summary.lastModified()) {
+      result = map(index, type);
+    }
+    
+    if(result == null) {
+      if(type == TYPE_EPGFREE) {
+        buildEPGfree(summary, index);
+      }
+      else {
+        buildEPGdonate(summary, index);
+      }
+      
+      result = map(index, type);
+      
+      if(result == null) {
+        throw new IOException("Summary index not readable: " + index.getAbsolutePath());
+      }
+    }
+    
+    return result;
+  }
+  
+  /**
+   * @return The mapped index or <code>null</code> if the file isn't a valid index.
+   */
+  private static SummaryIndex map(File index, int type) throws IOException {
+    ByteBuffer buffer;
+    RandomAccessFile file = null;
+    
+    try {
+      file = new RandomAccessFile(index, "r");
+      
+      final FileChannel channel = file.getChannel();
+      
+      // the mapping stays valid after the file was closed
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }finally {
+      IOUtils.close(file);
+    }
+    
+    if(buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION || buffer.getInt(8) != type) {
+      buffer = null;
+    }
+    
+    return buffer != null ? new SummaryIndex(buffer) : null;
+  }
+  
+  long getStartDaySince1970() {
+    return mStartDay;
+  }
+  
+  /**
+   * Finds the channel with the given ID.
+   * <p>
+   * @param channelID The ID of the channel.
+   * @return The number of the channel or <code>-1</code> if the channel isn't in the summary.
+   */
+  int findChannel(String channelID) {
+    int low = 0;
+    int high = mChannelCount - 1;
+    
+    while(low <= high) {
+      final int mid = (low + high) >>> 1;
+      final int compare = getChannelID(mid).compareTo(channelID);
+      
+      if(compare < 0) {
+        low = mid + 1;
+      }
+      else if(compare > 0) {
+        high = mid - 1;
+      }
+      else {
+        return mid;
+      }
+    }
+    
+    return -1;
+  }
+  
+  /**
+   * Finds the channel with the given ID and, if there is none, all
+   * channels with an ID that contains the given ID.
+   * <p>
+   * @param channelID The ID of the channel.
+   * @return The numbers of the found channels.
+   */
+  int[] findChannels(String channelID) {
+    final int channel = findChannel(channelID);
+    
+    if(channel >= 0) {
+      return new int[] {channel};
+    }
+    
+    final ArrayList<Integer> found = new ArrayList<>();
+    
+    for(int i = 0; i < mChannelCount; i++) {
+      if(getChannelID(i).contains(channelID)) {
+        found.add(i);
+      }
+    }
+    
+    final int[] result = new int[found.size()];
+    
+    for(int i = 0; i < result.length; i++) {
+      result[i] = found.get(i);
+    }
+    
+    return result;
+  }
+  
+  String getChannelID(int channel) {
+    return getString(mBuffer.getInt(HEADER_SIZE + channel * CHANNEL_SIZE));
+  }
+  
+  /**
+   * @return The country of the channel of an EPGfree summary.
+   */
+  String getCountry(int channel) {
+    return getString(mBuffer.getInt(HEADER_SIZE + channel * CHANNEL_SIZE + 4));
+  }
+  
+  int getRecordCount(int channel) {
+    return mBuffer.getInt(HEADER_SIZE + channel * CHANNEL_SIZE + 12);
+  }
+  
+  /**
+   * Finds the first record of the channel with at least the given start.
+   * <p>
+   * @param channel The number of the channel.
+   * @param start The start to find.
+   * @return The number of the record, it's the record count if all records start before.
+   */
+  int findRecord(int channel, int start) {
+    int low = 0;
+    int high = getRecordCount(channel);
+    
+    while(low < high) {
+      final int mid = (low + high) >>> 1;
+      
+      if(getStart(channel, mid) < start) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    
+    return low;
+  }
+  
+  private int getRecordPosition(int channel, int record) {
+    return mBuffer.getInt(HEADER_SIZE + channel * CHANNEL_SIZE + 8) + record * mRecordSize;
+  }
+  
+  /**
+   * @return The day of the EPGfree summary or the minutes since 1970 of the EPGdonate summary.
+   */
+  int getStart(int channel, int record) {
+    return mBuffer.getInt(getRecordPosition(channel, record));
+  }
+  
+  /**
+   * @return The key of the data file of the EPGdonate summary.
+   */
+  String getKey(int channel, int record) {
+    return getString(mBuffer.getInt(getRecordPosition(channel, record) + 4));
+  }
+  
+  /**
+   * @param versions The array to fill with the versions of all levels.
+   * @return The filled array.
+   */
+  int[] getVersions(int channel, int record, int[] versions) {
+    final int position = getRecordPosition(channel, record) + 8;
+    
+    for(int level = 0; level < versions.length && level < mLevels; level++) {
+      versions[level] = mBuffer.getInt(position + level * 4);
+    }
+    
+    return versions;
+  }
+  
+  int getLevels() {
+    return mLevels;
+  }
+  
+  private String getString(int position) {
+    String result = null;
+    
+    if(position >= 0) {
+      // absolute reads only, so the index can be used by several threads
+      final byte[] value = new byte[mBuffer.getShort(position) & 0xFFFF];
+      
+      for(int i = 0; i < value.length; i++) {
+        value[i] = mBuffer.get(position + 2 + i);
+      }
+      
+      try {
+        result = new String(value, "UTF-8");
+      }catch(IOException e) {
+        result = new String(value);
+      }
+    }
+    
+    return result;
+  }
+  
+  /**
+   * A channel of the summary while the index is created.
+   */
+  private static final class Channel {
+    final String mID;
+    final String mCountry;
+    final ArrayList<Record> mRecords;
+    
+    Channel(String id, String country) {
+      mID = id;
+      mCountry = country;
+      mRecords = new ArrayList<>();
+    }
+  }
+  
+  private static final class Record {
+    final int mStart;
+    final String mKey;
+    final int[] mVersions;
+    
+    Record(int start, String key, int[] versions) {
+      mStart = start;
+      mKey = key;
+      mVersions = versions;
+    }
+  }
+  
+  private static void buildEPGfree(File summary, File index) throws IOException {
+    DataInputStream in = null;
+    
+    try {
+      in = new DataInputStream(new BufferedInputStream(IOUtils.decompressStream(new FileInputStream(summary))));
+      
+      in.readUnsignedByte(); // read version
+      
+      final int daysSince1970 = (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8) | in.readUnsignedByte();
+      final int levels = in.readUnsignedByte();
+      final int frameCount = in.readUnsignedShort();
+      
+      final HashMap<String, Channel> channels = new HashMap<>();
+      
+      for(int i = 0; i < frameCount; i++) {
+        final String country = readString(in);
+        final String channelID = readString(in);
+        final int dayCount = in.readUnsignedByte();
+        
+        final Channel channel = new Channel(channelID, country);
+        
+        for(int day = 0; day < dayCount; day++) {
+          final int[] versions = new int[levels];
+          
+          for(int j = 0; j < levels; j++) {
+            versions[j] = in.readUnsignedByte();
+          }
+          
+          channel.mRecords.add(new Record(day, null, versions));
+        }
+        
+        // the first frame of a channel is used
+        if(!channels.containsKey(channelID)) {
+          channels.put(channelID, channel);
+        }
+      }
+      
+      write(index, TYPE_EPGFREE, daysSince1970, levels, channels);
+    }finally {
+      IOUtils.close(in);
+    }
+  }
+  
+  private static String readString(DataInputStream in) throws IOException {
+    final byte[] value = new byte[in.readUnsignedByte()];
+    in.readFully(value);
+    
+    return new String(value, "UTF-8");
+  }
+  
+  private static void buildEPGdonate(File summary, File index) throws IOException {
+    final Properties properties = new Properties();
+    InputStream in = null;
+    
+    try {
+      in = new GZIPInputStream(new FileInputStream(summary));
+      properties.load(in);
+    }finally {
+      IOUtils.close(in);
+    }
+    
+    final HashMap<String, Channel> channels = new HashMap<>();
+    
+    for(String key : properties.stringPropertyNames()) {
+      final int separator = key.indexOf("_");
+      
+      if(separator > 0) {
+        // the key is the start in minutes followed by the channel ID
+        String channelID = key.substring(separator + 1);
+        
+        if(channelID.endsWith("_")) {
+          channelID = channelID.substring(0, channelID.length() - 1);
+        }
+        
+        try {
+          final int start = Integer.parseInt(key.substring(0, separator));
+          final String[] parts = properties.getProperty(key).split(",");
+          final int[] versions = new int[EPGDONATE_LEVELS];
+          
+          for(int level = 0; level < versions.length && level < parts.length; level++) {
+            versions[level] = Integer.parseInt(parts[level].trim());
+          }
+          
+          Channel channel = channels.get(channelID);
+          
+          if(channel == null) {
+            channel = new Channel(channelID, null);
+            channels.put(channelID, channel);
+          }
+          
+          channel.mRecords.add(new Record(start, key, versions));
+        }catch(NumberFormatException ignored) {}
+      }
+    }
+    
+    write(index, TYPE_EPGDONATE, 0, EPGDONATE_LEVELS, channels);
+  }
+  
+  private static void write(File index, int type, int startDay, int levels, HashMap<String, Channel> channelMap) throws IOException {
+    final ArrayList<Channel> channels = new ArrayList<>(channelMap.values());
+    
+    Collections.sort(channels, (lhs, rhs) -> lhs.mID.compareTo(rhs.mID));
+    
+    final Comparator<Record> startComparator = (lhs, rhs) -> lhs.mStart < rhs.mStart ? -1 : (lhs.mStart == rhs.mStart ? 0 : 1);
+    int recordCount = 0;
+    
+    for(Channel channel : channels) {
+      Collections.sort(channel.mRecords, startComparator);
+      recordCount += channel.mRecords.size();
+    }
+    
+    final int recordSize = 8 + 4 * levels;
+    final int stringBase = HEADER_SIZE + channels.size() * CHANNEL_SIZE + recordCount * recordSize;
+    
+    final ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+    final DataOutputStream strings = new DataOutputStream(stringBytes);
+    final HashMap<String, Integer> stringOffsets = new HashMap<>();
+    
+    final File temp = new File(index.getAbsolutePath() + ".new");
+    DataOutputStream out = null;
+    
+    try {
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+      
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(type);
+      out.writeInt(startDay);
+      out.writeInt(levels);
+      out.writeInt(channels.size());
+      
+      int recordPosition = HEADER_SIZE + channels.size() * CHANNEL_SIZE;
+      
+      for(Channel channel : channels) {
+        out.writeInt(stringBase + addString(strings, stringOffsets, channel.mID));
+        out.writeInt(channel.mCountry != null ? stringBase + addString(strings, stringOffsets, channel.mCountry) : -1);
+        out.writeInt(recordPosition);
+        out.writeInt(channel.mRecords.size());
+        
+        recordPosition += channel.mRecords.size() * recordSize;
+      }
+      
+      for(Channel channel : channels) {
+        for(Record record : channel.mRecords) {
+          out.writeInt(record.mStart);
+          out.writeInt(record.mKey != null ? stringBase + addString(strings, stringOffsets, record.mKey) : -1);
+          
+          for(int level = 0; level < levels; level++) {
+            out.writeInt(level < record.mVersions.length ? record.mVersions[level] : 0);
+          }
+        }
+      }
+      
+      strings.flush();
+      stringBytes.writeTo(out);
+      
+      out.close();
+      out = null;
+      
+      if(!temp.renameTo(index) && !(index.delete() && temp.renameTo(index))) {
+        throw new IOException("Summary index not writable: " + index.getAbsolutePath());
+      }
+    }finally {
+      IOUtils.close(out);
+      
+      if(temp.isFile() && !temp.delete()) {
+        temp.deleteOnExit();
+      }
+    }
+  }
+  
+  /**
+   * @return The offset of the string in the string area.
+   */
+  private static int addString(DataOutputStream strings, Map<String, Integer> offsets, String value) throws IOException {
+    Integer offset = offsets.get(value);
+    
+    if(offset == null) {
+      final byte[] bytes = value.getBytes("UTF-8");
+      
+      offset = strings.size();
+      strings.writeShort(Math.min(bytes.length, 0xFFFF));
+      strings.write(bytes, 0, Math.min(bytes.length, 0xFFFF));
+      
+      offsets.put(value, offset);
+    }
+    
+    return offset;
+  }
+}
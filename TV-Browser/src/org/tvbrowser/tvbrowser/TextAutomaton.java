@@ -0,0 +1,244 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.TreeMap;
+
+/**
+ * An Aho-Corasick automaton for the search of many patterns in one pass.
+ * <p>
+ * The automaton is immutable after it was built, so it can be
+ * used by several threads at the same time.
+ *
+ * @author René Mach
+ */
+final class TextAutomaton {
+  private static final int[] NO_OUTPUT = new int[0];
+  
+  private final char[][] mKeys;
+  private final int[][] mTargets;
+  private final int[] mFail;
+  private final int[][] mOutput;
+  private final boolean mFoldAscii;
+  
+  private TextAutomaton(char[][] keys, int[][] targets, int[] fail, int[][] output, boolean foldAscii) {
+    mKeys = keys;
+    mTargets = targets;
+    mFail = fail;
+    mOutput = output;
+    mFoldAscii = foldAscii;
+  }
+  
+  /**
+   * Like SQL LIKE only ASCII characters are folded to lower case.
+   */
+  static char fold(char c) {
+    if(c >= 'A' && c <= 'Z') {
+      c += 'a' - 'A';
+    }
+    
+    return c;
+  }
+  
+  static String fold(String value) {
+    final char[] chars = value.toCharArray();
+    
+    for(int i = 0; i < chars.length; i++) {
+      chars[i] = fold(chars[i]);
+    }
+    
+    return new String(chars);
+  }
+  
+  boolean isEmpty() {
+    return mKeys[0].length == 0;
+  }
+  
+  private int next(int state, char c) {
+    final int index = Arrays.binarySearch(mKeys[state], c);
+    
+    return index >= 0 ? mTargets[state][index] : -1;
+  }
+  
+  /**
+   * Searches all patterns in the given text.
+   * <p>
+   * @param text The text to search in.
+   * @param found The ids of all found patterns are set in this BitSet.
+   */
+  void search(String text, BitSet found) {
+    search(text, 0, found, null);
+  }
+  
+  /**
+   * Searches all patterns in the given text.
+   * <p>
+   * @param text The text to search in.
+   * @param prefixLength The length of a prefix of the text to track the patterns for separately.
+   * @param found The ids of all found patterns are set in this BitSet.
+   * @param foundInPrefix The ids of the patterns found in the prefix are set in this BitSet, may be <code>null</code>.
+   */
+  void search(String text, int prefixLength, BitSet found, BitSet foundInPrefix) {
+    int state = 0;
+    
+    for(int i = 0; i < text.length(); i++) {
+      final char c = mFoldAscii ? fold(text.charAt(i)) : text.charAt(i);
+      
+      int next;
+      
+      while((next = next(state, c)) == -1 && state != 0) {
+        state = mFail[state];
+      }
+      
+      state = next == -1 ? 0 : next;
+      
+      for(int pattern : mOutput[state]) {
+        found.set(pattern);
+        
+        if(foundInPrefix != null && i < prefixLength) {
+          foundInPrefix.set(pattern);
+        }
+      }
+    }
+  }
+  
+  static final class Builder {
+    private final ArrayList<TreeMap<Character, Integer>> mTransitions = new ArrayList<>();
+    private final ArrayList<int[]> mOutput = new ArrayList<>();
+    private final boolean mFoldAscii;
+    private int mPatternCount;
+    
+    /**
+     * @param foldAscii If ASCII characters should be compared case insensitive.
+     */
+    Builder(boolean foldAscii) {
+      mFoldAscii = foldAscii;
+      mTransitions.add(new TreeMap<>());
+      mOutput.add(NO_OUTPUT);
+    }
+    
+    /**
+     * @param pattern The pattern to add, must not be empty.
+     * @return The id of the pattern.
+     */
+    int add(String pattern) {
+      if(mFoldAscii) {
+        pattern = fold(pattern);
+      }
+      
+      int state = 0;
+      
+      for(int i = 0; i < pattern.length(); i++) {
+        final Character c = pattern.charAt(i);
+        
+        Integer next = mTransitions.get(state).get(c);
+        
+        if(next == null) {
+          next = mTransitions.size();
+          mTransitions.add(new TreeMap<>());
+          mOutput.add(NO_OUTPUT);
+          mTransitions.get(state).put(c, next);
+        }
+        
+        state = next;
+      }
+      
+      final int id = mPatternCount++;
+      
+      mOutput.set(state, append(mOutput.get(state), id));
+      
+      return id;
+    }
+    
+    private static int[] append(int[] values, int value) {
+      final int[] result = Arrays.copyOf(values, values.length + 1);
+      result[values.length] = value;
+      
+      return result;
+    }
+    
+    TextAutomaton build() {
+      final int size = mTransitions.size();
+      
+      final char[][] keys = new char[size][];
+      final int[][] targets = new int[size][];
+      final int[] fail = new int[size];
+      final int[][] output = mOutput.toArray(new int[size][]);
+      
+      for(int state = 0; state < size; state++) {
+        final TreeMap<Character, Integer> transitions = mTransitions.get(state);
+        
+        keys[state] = new char[transitions.size()];
+        targets[state] = new int[transitions.size()];
+        
+        int i = 0;
+        
+        for(Character c : transitions.keySet()) {
+          keys[state][i] = c;
+          targets[state][i] = transitions.get(c);
+          i++;
+        }
+      }
+      
+      final TextAutomaton automaton = new TextAutomaton(keys, targets, fail, output, mFoldAscii);
+      
+      // breadth first for the failure links, the output of the
+      // failure state is added to the output of the state
+      final LinkedList<Integer> queue = new LinkedList<>();
+      
+      for(int target : targets[0]) {
+        fail[target] = 0;
+        queue.add(target);
+      }
+      
+      while(!queue.isEmpty()) {
+        final int state = queue.removeFirst();
+        
+        for(int i = 0; i < keys[state].length; i++) {
+          final char c = keys[state][i];
+          final int target = targets[state][i];
+          
+          int test = fail[state];
+          int next;
+          
+          while((next = automaton.next(test, c)) == -1 && test != 0) {
+            test = fail[test];
+          }
+          
+          fail[target] = next == -1 || next == target ? 0 : next;
+          
+          if(output[fail[target]].length > 0) {
+            final int[] merged = Arrays.copyOf(output[target], output[target].length + output[fail[target]].length);
+            System.arraycopy(output[fail[target]], 0, merged, output[target].length, output[fail[target]].length);
+            output[target] = merged;
+          }
+          
+          queue.add(target);
+        }
+      }
+      
+      mTransitions.clear();
+      mOutput.clear();
+      
+      return automaton;
+    }
+  }
+}
@@ -1349,70 +1349,30 @@ public class TvBrowser extends AppCompatActivity {
                 edit.putStringSet(key, exclusions);
                 edit.commit();
 
-                DontWantToSeeExclusion[] exclusionArr = exclusionList.toArray(new DontWantToSeeExclusion[exclusionList.size()]);
+                DontWantToSeeExclusionSet exclusionSet = new DontWantToSeeExclusionSet(exclusionList.toArray(new DontWantToSeeExclusion[exclusionList.size()]));
 
-                if(exclusionArr.length > 0) {
+                if(!exclusionSet.isEmpty()) {
                   String where = null;
 
                   if(!replace) {
                     where = "NOT " + TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE;
                   }
 
-                  MemorySizeConstrictedDatabaseOperation dontWantToSeeUpdate = new MemorySizeConstrictedDatabaseOperation(TvBrowser.this, null);
-                  //ArrayList<ContentProviderOperation> updateValuesList = new ArrayList<ContentProviderOperation>();
-                  Cursor c = getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_DATA, new String[] {TvBrowserContentProvider.KEY_ID,TvBrowserContentProvider.DATA_KEY_TITLE}, where, null, TvBrowserContentProvider.KEY_ID);
-
-                  try {
-                    int count = 0;
-
-                    if(IOUtils.prepareAccess(c)) {
-                      count = c.getCount()/10;
-
-                      builder.setProgress(count, 0, false);
-                      notification.notify(notifyID, builder.build());
-
-                      int keyColumn = c.getColumnIndex(TvBrowserContentProvider.KEY_ID);
-                      int titleColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_TITLE);
-
-                      while(c.moveToNext()) {
-                        int position = c.getPosition();
-
-                        if(position % 10 == 0) {
-                          builder.setProgress(count, position/10, false);
-                          notification.notify(notifyID, builder.build());
-                        }
-
-                        String title = c.getString(titleColumn);
-
-                        boolean filter = UiUtils.filter(title, exclusionArr);
-                        long progID = c.getLong(keyColumn);
-
-                        ContentValues values = new ContentValues();
-                        values.put(TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE, filter ? 1 : 0);
-
-                        ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, progID));
-                        opBuilder.withValues(values);
-
-                        dontWantToSeeUpdate.addUpdate(opBuilder.build());
-                        //updateValuesList.add(opBuilder.build());
-                      }
-                    }
-                  }finally {
-                    IOUtils.close(c);
-                  }
+                  int changed = UiUtils.rescanDontWantToSee(TvBrowser.this, exclusionSet, where, (position, count) -> {
+                    builder.setProgress(count, position, false);
+                    notification.notify(notifyID, builder.build());
+                  });
 
                   builder.setProgress(0, 0, true);
                   notification.notify(notifyID, builder.build());
 
-                  if(dontWantToSeeUpdate.operationsAvailable()) {
-                    dontWantToSeeUpdate.finish();
-                    //getContentResolver().applyBatch(TvBrowserContentProvider.AUTHORITY, updateValuesList);
-                    UiUtils.sendDontWantToSeeChangedBroadcast(applicationContext,true);
+                  if(changed >= 0) {
+                    if(changed > 0) {
+                      UiUtils.sendDontWantToSeeChangedBroadcast(applicationContext,true);
+                    }
+
                     handler.post(() -> ToastCompat.makeText(getApplicationContext(), R.string.dont_want_to_see_sync_success, ToastCompat.LENGTH_LONG).show());
                   }
-                  else {
-                    dontWantToSeeUpdate.cancel();
-                  }
                 }
                 else if(newExclusions.isEmpty()) {
                   handler.post(() -> ToastCompat.makeText(getApplicationContext(), R.string.dont_want_to_see_sync_success, ToastCompat.LENGTH_LONG).show());
@@ -3341,60 +3301,22 @@ public class TvBrowser extends AppCompatActivity {
           new Thread() {
             public void run() {
               if(IOUtils.isDatabaseAccessible(TvBrowser.this)) {
-                MemorySizeConstrictedDatabaseOperation dontWantToSeeUpdate = new MemorySizeConstrictedDatabaseOperation(TvBrowser.this, null);
-                //ArrayList<ContentProviderOperation> updateValuesList = new ArrayList<ContentProviderOperation>();
-                Cursor programs = getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_DATA, new String[] {TvBrowserContentProvider.KEY_ID,TvBrowserContentProvider.DATA_KEY_TITLE}, null, null, TvBrowserContentProvider.KEY_ID);
+                DontWantToSeeExclusionSet exclusionSet = new DontWantToSeeExclusionSet(exclusionList.toArray(new DontWantToSeeExclusion[exclusionList.size()]));
 
-                try {
-                  if(programs!=null && IOUtils.prepareAccess(programs)) {
-                    int count = programs.getCount()/10;
-
-                    builder.setProgress(count, 0, false);
-                    notification.notify(notifyID, builder.build());
-
-                    int keyColumn = programs.getColumnIndex(TvBrowserContentProvider.KEY_ID);
-                    int titleColumn = programs.getColumnIndex(TvBrowserContentProvider.DATA_KEY_TITLE);
-
-                    DontWantToSeeExclusion[] exclusionArr = exclusionList.toArray(new DontWantToSeeExclusion[exclusionList.size()]);
-
-                    while(programs.moveToNext()) {
-                      int position = programs.getPosition();
-
-                      if(position % 10 == 0) {
-                        builder.setProgress(count, position/10, false);
-                        notification.notify(notifyID, builder.build());
-                      }
-
-                      String title = programs.getString(titleColumn);
-
-                      boolean filter = UiUtils.filter(title, exclusionArr);
-                      long progID = programs.getLong(keyColumn);
-
-                      ContentValues values = new ContentValues();
-                      values.put(TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE, filter ? 1 : 0);
-
-                      ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, progID));
-                      opBuilder.withValues(values);
+                int changed = UiUtils.rescanDontWantToSee(TvBrowser.this, exclusionSet, null, (position, count) -> {
+                  builder.setProgress(count, position, false);
+                  notification.notify(notifyID, builder.build());
+                });
 
-                      dontWantToSeeUpdate.addUpdate(opBuilder.build());
-                      //updateValuesList.add(opBuilder.build());
-                    }
+                notification.cancel(notifyID);
 
-                    notification.cancel(notifyID);
-                  }
-                }finally {
-                  IOUtils.close(programs);
+                if(changed > 0) {
+                  UiUtils.sendDontWantToSeeChangedBroadcast(getApplicationContext(),true);
                 }
 
-                if(dontWantToSeeUpdate.operationsAvailable()) {
-                  dontWantToSeeUpdate.finish();
-                    //getContentResolver().applyBatch(TvBrowserContentProvider.AUTHORITY, updateValuesList);
-                  UiUtils.sendDontWantToSeeChangedBroadcast(getApplicationContext(),true);
+                if(changed >= 0) {
                   handler.post(() -> ToastCompat.makeText(getApplicationContext(), R.string.dont_want_to_see_sync_success, ToastCompat.LENGTH_LONG).show());
                 }
-                else {
-                  dontWantToSeeUpdate.cancel();
-                }
 
                 updateProgressIcon(false);
                 SettingConstants.UPDATING_FILTER = false;
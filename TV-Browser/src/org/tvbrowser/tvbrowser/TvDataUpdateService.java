@@ -18,9 +18,8 @@ package org.tvbrowser.tvbrowser;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -46,27 +45,36 @@ import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import java.util.zip.GZIPInputStream;
 
 import org.tvbrowser.App;
 import org.tvbrowser.content.TvBrowserContentProvider;
 import org.tvbrowser.job.JobDataUpdateAuto;
 import org.tvbrowser.settings.SettingConstants;
+import org.tvbrowser.utils.ChannelLogoCache;
 import org.tvbrowser.utils.CompatUtils;
+import org.tvbrowser.utils.DownloadEngine;
+import org.tvbrowser.utils.HttpCache;
 import org.tvbrowser.utils.IOUtils;
+import org.tvbrowser.utils.LongHashMap;
 import org.tvbrowser.utils.PrefUtils;
 import org.tvbrowser.utils.ProgramUtils;
 import org.tvbrowser.utils.UiUtils;
 
-import android.annotation.SuppressLint;
 import android.app.NotificationManager;
 import android.app.Service;
 import android.content.BroadcastReceiver;
@@ -127,8 +135,28 @@ public class TvDataUpdateService extends Service {
   // max size of a data field that can be accepted in bytes
   private static final int MAX_DATA_SIZE = 25 * 1024;
   
+  // size of the read buffer for streaming data files
+  private static final int STREAM_BUFFER_SIZE = 16 * 1024;
+  
+  // threads of the stages of the data update: download, parsing and one database writer
+  private static final int DOWNLOAD_THREAD_COUNT = Math.max(Runtime.getRuntime().availableProcessors(), 2);
+  private static final int PARSE_THREAD_COUNT = Math.max(Runtime.getRuntime().availableProcessors(), 2);
+  
+  // downloaded channels waiting for parsing, the downloads wait if more are waiting
+  private static final int PARSE_QUEUE_SIZE = 2 * PARSE_THREAD_COUNT;
+  
+  // batches waiting for the database writer, the parsing waits if more are waiting
+  private static final int WRITE_QUEUE_SIZE = 2;
+  
+  // a failed download of a data file is tried again after 2 and 4 seconds
+  private static final int MAX_DOWNLOAD_ATTEMPTS = 3;
+  private static final long DOWNLOAD_RETRY_DELAY = 2000;
+  
   private ExecutorService mThreadPool;
   private ExecutorService mDataUpdatePool;
+  private DatabaseWriter mDatabaseWriter;
+  private UpdateJournal mUpdateJournal;
+  private FrameCache mFrameCache;
   private Handler mHandler;
   
   private static final int ID_NOTIFY = 511;
@@ -139,18 +167,21 @@ public class TvDataUpdateService extends Service {
   
   private static Thread ON_START_COMMAND_THEAD;
   
-  private Hashtable<String, Hashtable<String, CurrentDataHolder>> mCurrentData;
-  private Hashtable<String, int[]> mCurrentVersionIDs;
+  // versions of the data files in the database by channel and day
+  private LongHashMap<int[]> mCurrentVersionIDs;
+  // the first and the last day with changed data for every channel
+  private final LongHashMap<long[]> mChangedDays = new LongHashMap<>();
   
   private MemorySizeConstrictedDatabaseOperation mDataDatabaseOperation;
   private MemorySizeConstrictedDatabaseOperation mVersionDatabaseOperation;
   
   private ArrayList<String> mSyncFavorites;
     
-  private DontWantToSeeExclusion[] mDontWantToSeeValues;
+  private DontWantToSeeExclusionSet mDontWantToSeeValues;
   
   private ArrayList<String> mChannelsNew;
   private ArrayList<Integer> mChannelsUpdate;
+  private ArrayList<Integer> mChannelLogosChanged;
   
   private Set<String> mEpgPaidChannelIds;
   private BroadcastReceiver mReceiverConnectivityChange;
@@ -322,6 +353,12 @@ public class TvDataUpdateService extends Service {
     TvBrowserContentProvider.DATA_KEY_PICTURE_DESCRIPTION
   };
   
+  private static final long[] MASK_LEVEL_BASE = ProgramRecord.createMask(FIELDS_LEVEL_BASE);
+  private static final long[] MASK_LEVEL_MORE = ProgramRecord.createMask(FIELDS_LEVEL_MORE);
+  private static final long[] MASK_LEVEL_PICTURE = ProgramRecord.createMask(FIELDS_LEVEL_PICTURE);
+  private static final long[] MASK_EPGPAID_POSSIBLE = ProgramRecord.createMask(FIELDS_EPGPAID_POSSIBLE);
+  private static final long[] MASK_EMPTY = ProgramRecord.createMask();
+  
   private boolean mShowNotification;
   
   @Override
@@ -523,9 +560,14 @@ public class TvDataUpdateService extends Service {
     
     doLog("Favorite.handleDataUpdateStarted()");
     Favorite.handleDataUpdateStarted();
+    TvBrowserContentProvider.startTrackingDataChanges();
     
     loadEpgPaidChannelIdsForDataUpdate();
-        
+    
+    // deletes the files of data that was already written to the database
+    mUpdateJournal = new UpdateJournal(TvDataUpdateService.this);
+    mFrameCache = new FrameCache(TvDataUpdateService.this);
+    
     final File path = IOUtils.getDownloadDirectory(TvDataUpdateService.this.getApplicationContext());
     
     if(path.isDirectory()) {
@@ -659,21 +701,16 @@ public class TvDataUpdateService extends Service {
           Set<String> exclusions = PrefUtils.getStringSetValue(R.string.I_DONT_WANT_TO_SEE_ENTRIES, null);
           
           if(exclusions != null) {
-            mDontWantToSeeValues = new DontWantToSeeExclusion[exclusions.size()];
-            
-            int i = 0;
-            
-            for(String exclusion : exclusions) {
-              mDontWantToSeeValues[i++] = new DontWantToSeeExclusion(exclusion);
-            }
+            mDontWantToSeeValues = new DontWantToSeeExclusionSet(exclusions);
           }
           
-          readCurrentData();
+          deleteOldData();
           
-          mDataUpdatePool = Executors.newFixedThreadPool(Math.max(Runtime.getRuntime().availableProcessors(), 2));
+          mDataUpdatePool = newBoundedThreadPool(PARSE_THREAD_COUNT, PARSE_QUEUE_SIZE);
+          mDatabaseWriter = new DatabaseWriter("DATA UPDATE DATABASE WRITER THREAD", WRITE_QUEUE_SIZE);
           
-          mDataDatabaseOperation = new MemorySizeConstrictedDatabaseOperation(TvDataUpdateService.this,TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE);
-          mVersionDatabaseOperation = new MemorySizeConstrictedDatabaseOperation(TvDataUpdateService.this,TvBrowserContentProvider.CONTENT_URI_DATA_VERSION,10);
+          mDataDatabaseOperation = new MemorySizeConstrictedDatabaseOperation(TvDataUpdateService.this,TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE,1,mDatabaseWriter);
+          mVersionDatabaseOperation = new MemorySizeConstrictedDatabaseOperation(TvDataUpdateService.this,TvBrowserContentProvider.CONTENT_URI_DATA_VERSION,10,mDatabaseWriter);
          /* mDataInsertList = new ArrayList<ContentValues>();
           mDataUpdateList = new ArrayList<ContentProviderOperation>();
           */
@@ -708,12 +745,7 @@ public class TvDataUpdateService extends Service {
           
           mShowNotification = false;
           
-          if(mDataDatabaseOperation != null) {
-            mDataDatabaseOperation.finish();
-          }
-          if(mVersionDatabaseOperation != null) {
-            mVersionDatabaseOperation.finish();
-          }
+          closeUpdateState(finishDatabaseOperations());
 
           mBuilder.setProgress(100, 0, true);
           notification.notify(ID_NOTIFY, mBuilder.build());
@@ -723,19 +755,93 @@ public class TvDataUpdateService extends Service {
             mCurrentVersionIDs = null;
           }
           
-          if(mCurrentData != null) {
-            mCurrentData.clear();
-            mCurrentData = null;
-          }
-          
           updateMap.clear();
         }
       }
     }
     
+    closeUpdateState(false);
     calculateMissingEnds(notification, true, syncAllowed);
   }
   
+  /**
+   * Creates a thread pool with a bounded queue, adding a task
+   * waits while the queue is full.
+   * <p>
+   * Tasks added after the pool was shut down or while the adding thread
+   * is interrupted are rejected with a {@link RejectedExecutionException}.
+   * <p>
+   * @param threadCount The number of threads of the pool.
+   * @param queueSize The maximum number of tasks waiting for a thread.
+   * @return The created thread pool.
+   */
+  private static ExecutorService newBoundedThreadPool(int threadCount, int queueSize) {
+    return new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize), (task, executor) -> {
+      if(executor.isShutdown()) {
+        throw new RejectedExecutionException("Thread pool was shut down");
+      }
+      
+      try {
+        executor.getQueue().put(task);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RejectedExecutionException("Interrupted while waiting for the queue", e);
+      }
+      
+      // the pool may have been shut down while waiting, then the task would never run
+      if(executor.isShutdown() && executor.getQueue().remove(task)) {
+        throw new RejectedExecutionException("Thread pool was shut down");
+      }
+    });
+  }
+  
+  private void closeDatabaseWriter() {
+    if(mDatabaseWriter != null) {
+      mDatabaseWriter.close();
+      mDatabaseWriter = null;
+    }
+  }
+  
+  /**
+   * Writes the remaining operations of the data update and ends the database writer.
+   * <p>
+   * @return <code>true</code> if the update wasn't cancelled and all operations were written.
+   */
+  private boolean finishDatabaseOperations() {
+    final MemorySizeConstrictedDatabaseOperation data = mDataDatabaseOperation;
+    final MemorySizeConstrictedDatabaseOperation version = mVersionDatabaseOperation;
+    
+    if(data != null) {
+      data.finish();
+    }
+    if(version != null) {
+      version.finish();
+    }
+    
+    closeDatabaseWriter();
+    
+    // the operations are removed if the service was destroyed
+    return data != null && version != null && mDataDatabaseOperation != null
+        && (!data.operationsAvailable() || data.wasSuccessful())
+        && (!version.operationsAvailable() || version.wasSuccessful());
+  }
+  
+  /**
+   * @param commit If the data of the parsed files was written to the database.
+   */
+  private void closeUpdateState(boolean commit) {
+    if(mUpdateJournal != null) {
+      if(commit) {
+        mUpdateJournal.commit();
+      }
+      
+      mUpdateJournal.close();
+    }
+    if(mFrameCache != null) {
+      mFrameCache.close(commit);
+    }
+  }
+  
   private void deleteFile(File file) {
     if(file != null && !file.delete()) {
       file.deleteOnExit();
@@ -773,6 +879,12 @@ public class TvDataUpdateService extends Service {
     if(mVersionDatabaseOperation != null) {
       mVersionDatabaseOperation.cancel();
     }
+    if(mDatabaseWriter != null) {
+      mDatabaseWriter.cancel();
+    }
+    if(mUpdateJournal != null) {
+      mUpdateJournal.close();
+    }
     if(mEpgPaidChannelIds != null) {
       mEpgPaidChannelIds.clear();
     }
@@ -789,6 +901,7 @@ public class TvDataUpdateService extends Service {
     ((NotificationManager)getSystemService(Context.NOTIFICATION_SERVICE)).cancel(ID_NOTIFY);
     
     Favorite.handleDataUpdateFinished();
+    HttpCache.getInstance(TvDataUpdateService.this).flush();
     
     Logging.closeLogForDataUpdate();
         
@@ -832,6 +945,7 @@ public class TvDataUpdateService extends Service {
         Set<String> keys = mCurrentChannelData.keySet();
         
         StringBuilder delete = new StringBuilder();
+        ArrayList<Integer> deletedKeys = new ArrayList<>();
         
         for(String key : keys) {
           Object channelValues = mCurrentChannelData.get(key);
@@ -849,6 +963,7 @@ public class TvDataUpdateService extends Service {
               }
               
               delete.append(uniqueChannelId);
+              deletedKeys.add((Integer)((Object[])channelValues)[0]);
             }
           }
           else {
@@ -873,6 +988,8 @@ public class TvDataUpdateService extends Service {
           int deleteCount = getContentResolver().delete(TvBrowserContentProvider.CONTENT_URI_CHANNELS, delete.toString(), null);
           
           doLog("DELETED REMOVED CHANNELS COUNT: " + deleteCount);
+          
+          ChannelLogoCache.getInstance(TvDataUpdateService.this).invalidate(deletedKeys);
         }
       }
       
@@ -882,6 +999,8 @@ public class TvDataUpdateService extends Service {
       mCurrentChannelData = null;
     }
     
+    HttpCache.getInstance(TvDataUpdateService.this).flush();
+    
     Logging.closeLogForDataUpdate();
     ((NotificationManager)getSystemService(Context.NOTIFICATION_SERVICE)).cancel(ID_NOTIFY);
         
@@ -1193,7 +1312,7 @@ public class TvDataUpdateService extends Service {
       mBuilder.setContentText(getResources().getText(idNotificationText));
       notification.notify(ID_NOTIFY, mBuilder.build());
 
-      final ArrayList<ContentProviderOperation> updateValuesList = new ArrayList<>();
+      final ArrayList<Long> updateIdList = new ArrayList<>();
       final ArrayList<Intent> markingIntentList = new ArrayList<>();
 
       final Hashtable<String, Object> currentGroups = getCurrentGroups();
@@ -1412,17 +1531,10 @@ public class TvDataUpdateService extends Service {
                       boolean marked = program.getInt(indexMarked) == 1;
 
                       if (!marked) {
-                        ContentValues values = new ContentValues();
-                        values.put(columnKeySync, true);
-
                         long programID = program.getLong(indexKeyProgram);
 
                         idList.add(String.valueOf(programID));
-
-                        ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA, programID));
-                        opBuilder.withValues(values);
-
-                        updateValuesList.add(opBuilder.build());
+                        updateIdList.add(programID);
 
                         Intent intent = new Intent(SettingConstants.MARKINGS_CHANGED);
                         intent.putExtra(SettingConstants.EXTRA_MARKINGS_ID, programID);
@@ -1444,23 +1556,26 @@ public class TvDataUpdateService extends Service {
         }
       }
 
-      if(!updateValuesList.isEmpty()) {
+      if(!updateIdList.isEmpty()) {
         if(!idList.isEmpty()) {
           ProgramUtils.addSyncIds(TvDataUpdateService.this, idList);
         }
         
-        try {
-          getContentResolver().applyBatch(TvBrowserContentProvider.AUTHORITY, updateValuesList);
-          
-          LocalBroadcastManager localBroadcast = LocalBroadcastManager.getInstance(TvDataUpdateService.this);
-          
-          for(Intent markUpdate : markingIntentList) {
-            localBroadcast.sendBroadcast(markUpdate);
-          }
-        } catch (RemoteException e) {
-          e.printStackTrace();
-        } catch (OperationApplicationException e) {
-          e.printStackTrace();
+        final long[] updateIds = new long[updateIdList.size()];
+        
+        for(int i = 0; i < updateIds.length; i++) {
+          updateIds[i] = updateIdList.get(i);
+        }
+        
+        final ContentValues values = new ContentValues();
+        values.put(columnKeySync, true);
+        
+        TvBrowserContentProvider.updateIds(getContentResolver(), TvBrowserContentProvider.CONTENT_URI_DATA, values, updateIds);
+        
+        LocalBroadcastManager localBroadcast = LocalBroadcastManager.getInstance(TvDataUpdateService.this);
+        
+        for(Intent markUpdate : markingIntentList) {
+          localBroadcast.sendBroadcast(markUpdate);
         }
         
         UiUtils.updateImportantProgramsWidget(TvDataUpdateService.this);
@@ -1473,6 +1588,22 @@ public class TvDataUpdateService extends Service {
   private Hashtable<String, Object> mCurrentChannelData;
   private boolean mHadChannels;
   
+  /**
+   * @param logo The data of the logo of a channel.
+   * @return The checksum of the logo or <code>null</code> if the channel has no logo.
+   */
+  private static Long getLogoChecksum(byte[] logo) {
+    Long checksum = null;
+    
+    if(logo != null) {
+      final CRC32 crc = new CRC32();
+      crc.update(logo);
+      checksum = crc.getValue();
+    }
+    
+    return checksum;
+  }
+  
   private void updateChannels(final boolean autoUpdate) {
     acquireWakeLock();
     
@@ -1489,8 +1620,9 @@ public class TvDataUpdateService extends Service {
     
     mChannelsNew = new ArrayList<>();
     mChannelsUpdate = new ArrayList<>();
+    mChannelLogosChanged = new ArrayList<>();
     
-    final String[] projection = new String[] {TvBrowserContentProvider.KEY_ID,TvBrowserContentProvider.GROUP_KEY_GROUP_ID,TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID,TvBrowserContentProvider.CHANNEL_KEY_NAME,TvBrowserContentProvider.CHANNEL_KEY_SELECTION};
+    final String[] projection = new String[] {TvBrowserContentProvider.KEY_ID,TvBrowserContentProvider.GROUP_KEY_GROUP_ID,TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID,TvBrowserContentProvider.CHANNEL_KEY_NAME,TvBrowserContentProvider.CHANNEL_KEY_SELECTION,TvBrowserContentProvider.CHANNEL_KEY_LOGO};
     
     Cursor currentChannels = null;
 
@@ -1503,10 +1635,11 @@ public class TvDataUpdateService extends Service {
         final int channelKeyIndex = currentChannels.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID);
         final int channelNameIndex = currentChannels.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_NAME);
         final int channelSelectionIndex = currentChannels.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_SELECTION);
+        final int channelLogoIndex = currentChannels.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_LOGO);
         
         while(currentChannels.moveToNext()) {
           String key = IOUtils.getUniqueChannelKey(currentChannels.getString(groupKeyIndex), currentChannels.getString(channelKeyIndex));
-          mCurrentChannelData.put(key, new Object[] {currentChannels.getInt(idIndex), currentChannels.getString(channelNameIndex), currentChannels.getInt(channelSelectionIndex)});
+          mCurrentChannelData.put(key, new Object[] {currentChannels.getInt(idIndex), currentChannels.getString(channelNameIndex), currentChannels.getInt(channelSelectionIndex), getLogoChecksum(currentChannels.getBlob(channelLogoIndex))});
         }
       }
     }finally {
@@ -1517,7 +1650,6 @@ public class TvDataUpdateService extends Service {
     
     final File path = IOUtils.getDownloadDirectory(TvDataUpdateService.this.getApplicationContext());
 
-    final File groups = new File(path,GROUP_FILE);
     final File epgPaidChannels = new File(path,"epgPaidData/channels.gz");
     
     if(epgPaidChannels.isFile() && !epgPaidChannels.delete()) {
@@ -1525,12 +1657,17 @@ public class TvDataUpdateService extends Service {
     }
     
     String mirror = getGroupFileMirror();
-    doLog("LOAD GROUPS FROM '" + mirror + "' to '" + groups + "'");
     if(mIsConnected && mirror != null) {
       try {
-        IOUtils.saveUrl(groups.getAbsolutePath(), mirror, mInternetConnectionTimeout);
-        doLog("START GROUP UPDATE");
-        updateGroups(groups, path, autoUpdate);
+        // the groups file is kept, it's only downloaded again if it was changed
+        final File groups = HttpCache.getInstance(TvDataUpdateService.this).getFile(mirror);
+        doLog("LOAD GROUPS FROM '" + mirror + "' to '" + groups + "'");
+        
+        final int result = IOUtils.saveUrlIfModified(TvDataUpdateService.this, groups, mirror, mInternetConnectionTimeout, true);
+        doLog("START GROUP UPDATE, groups file " + (result == DownloadEngine.RESULT_NOT_MODIFIED ? "not modified" : (result == DownloadEngine.RESULT_LOADED ? "loaded" : "not loaded")));
+        
+        // a kept groups file is only used if the server could be asked for it
+        updateGroups(result != DownloadEngine.RESULT_FAILED ? groups : null, path, autoUpdate);
       } catch (Throwable t) {
         doLog("ERROR AT DOWNLOADING GROUPS ", t);
         
@@ -1694,7 +1831,7 @@ public class TvDataUpdateService extends Service {
   private void updateGroups(File groups, final File path, final boolean autoUpdate) {
     final ChangeableFinalBoolean success = new ChangeableFinalBoolean(true);
     
-    if(groups.isFile()) {
+    if(groups != null && groups.isFile()) {
       mCountTimedOutConnections = 0;
       Hashtable<String, Object> currentGroups = getCurrentGroups();
       
@@ -1890,7 +2027,11 @@ public class TvDataUpdateService extends Service {
                         
                         File mirrors = new File(path,info.getMirrorFileName());
                         
-                        if(mIsConnected && IOUtils.saveUrl(mirrors.getAbsolutePath(), url + info.getMirrorUrlFileName(), mInternetConnectionTimeout)) {
+                        // the groups may have changed the mirrors, so always load the mirrors
+                        // completely, but keep the validators for the next data update
+                        HttpCache.getInstance(TvDataUpdateService.this).remove(url + info.getMirrorUrlFileName());
+                        
+                        if(mIsConnected && IOUtils.saveUrlIfModified(TvDataUpdateService.this, mirrors, url + info.getMirrorUrlFileName(), mInternetConnectionTimeout, false) == DownloadEngine.RESULT_LOADED) {
                           updateMirror(mirrors);
                         }
                         
@@ -1940,8 +2081,6 @@ public class TvDataUpdateService extends Service {
         success.setBoolean(false);
       }
       
-      deleteFile(groups);
-      
       if(currentGroups != null) {
         currentGroups.clear();
         currentGroups = null;
@@ -1968,6 +2107,14 @@ public class TvDataUpdateService extends Service {
       mChannelsUpdate = null;
     }
     
+    if(!mChannelLogosChanged.isEmpty()) {
+      doLog("Channel logos changed: " + mChannelLogosChanged.size());
+      ChannelLogoCache.getInstance(TvDataUpdateService.this).invalidate(mChannelLogosChanged);
+      SettingConstants.initializeLogoMap(TvDataUpdateService.this, true);
+    }
+    
+    mChannelLogosChanged = null;
+    
     if(!mChannelsNew.isEmpty()) {
       ArrayList<Integer> updatedIdsList = new ArrayList<>(mChannelsNew.size());
       
@@ -2200,11 +2347,14 @@ public class TvDataUpdateService extends Service {
             values.put(TvBrowserContentProvider.CHANNEL_KEY_ALL_COUNTRIES, allCountries);
             values.put(TvBrowserContentProvider.CHANNEL_KEY_JOINED_CHANNEL_ID, joinedChannel);
             
+            Long logoChecksum = null;
+            
             if(mIsConnected && logoUrl != null && logoUrl.length() > 0) {
               try {
                 byte[] blob = IOUtils.loadUrl(logoUrl, 10000);
                 
                 values.put(TvBrowserContentProvider.CHANNEL_KEY_LOGO, blob);
+                logoChecksum = getLogoChecksum(blob);
               }catch(Exception ignored) {}
             }
             
@@ -2230,6 +2380,13 @@ public class TvDataUpdateService extends Service {
               if(!((String)((Object[])channelValues)[1]).trim().equals(name.trim())) {
                 mChannelsUpdate.add(uniqueChannelId);
               }
+              
+              // only the cached logos of channels with a changed logo are removed
+              if(values.containsKey(TvBrowserContentProvider.CHANNEL_KEY_LOGO) && (logoChecksum == null || !logoChecksum.equals(((Object[])channelValues)[3]))) {
+                synchronized(mChannelLogosChanged) {
+                  mChannelLogosChanged.add(uniqueChannelId);
+                }
+              }
             }
           }
           else {
@@ -2558,8 +2715,31 @@ public class TvDataUpdateService extends Service {
 		IOUtils.disconnect(connection);
 	}
   }
+  /**
+   * Adds a day with data changed by the update for the calculation of the missing end times.
+   * <p>
+   * @param channelID The ID of the channel.
+   * @param date The start of the day in milliseconds since 1970.
+   */
+  private void addChangedDay(long channelID, long date) {
+    synchronized(mChangedDays) {
+      final long[] days = mChangedDays.get(channelID);
+      
+      if(days == null) {
+        mChangedDays.put(channelID, new long[] {date, date});
+      }
+      else {
+        days[0] = Math.min(days[0], date);
+        days[1] = Math.max(days[1], date);
+      }
+    }
+  }
+  
   /**
    * Calculate the end times of programs that are missing end time in the data.
+   * <p>
+   * Only the days of the channels with data changed by the update are read,
+   * the updates of the programs are applied in bounded batches.
    */
   private void calculateMissingEnds(NotificationManager notification, boolean updateFavorites, boolean syncAllowed) {
     try {
@@ -2578,102 +2758,125 @@ public class TvDataUpdateService extends Service {
           TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES
       };
       
-      long lastKnownDate = SettingConstants.DATA_LAST_DATE_NO_DATA;
-      ArrayList<ContentProviderOperation> updateValuesList = new ArrayList<>();
+      final MemorySizeConstrictedDatabaseOperation updateOperation = new MemorySizeConstrictedDatabaseOperation(TvDataUpdateService.this, null);
+      final HashMap<String, Calendar> calendars = new HashMap<>();
+      final Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
       
-      Cursor c = getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_DATA_WITH_CHANNEL, projection, null, null, TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID + " , " + TvBrowserContentProvider.DATA_KEY_STARTTIME + " DESC");
+      final long[] channelIDs;
+      final long[][] changedDays;
       
-      try {
-        // only if there are data update it
-        if(IOUtils.prepareAccess(c)) {
-          int nettoColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_NETTO_PLAY_TIME);
-          
-          int keyIDColumn = c.getColumnIndex(TvBrowserContentProvider.KEY_ID);
-          int channelKeyColumn = c.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID);
-          int startTimeColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_STARTTIME);
-          int endTimeColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_ENDTIME);
-          int timeZoneColumn = c.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_TIMEZONE);
-          int durationColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES);
-          
-          long lastStartTime = -1;
-          int lastChannelKey = -1;
-          
-          Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-          Calendar cal = null;
-          
-          while(c.moveToNext()) {
-            long progID = c.getLong(keyIDColumn);
-            int channelKey = c.getInt(channelKeyColumn);
-            long meStart = c.getLong(startTimeColumn);
-            long end = c.getLong(endTimeColumn);
-            long nettoPlayTime = 0;
-            long duration = c.getLong(durationColumn);
-                                
-            if(c.isNull(nettoColumn)) {
-              nettoPlayTime = c.getLong(nettoColumn) * 60000;
-            }
+      synchronized(mChangedDays) {
+        channelIDs = mChangedDays.keys();
+        changedDays = new long[channelIDs.length][];
+        
+        for(int i = 0; i < channelIDs.length; i++) {
+          changedDays[i] = mChangedDays.get(channelIDs[i]);
+        }
+        
+        mChangedDays.clear();
+      }
+      
+      for(int i = 0; i < channelIDs.length; i++) {
+        final long channelID = channelIDs[i];
+        final long[] days = changedDays[i];
+        
+        /* the last program of the day before the first changed day ends with the first program
+         * of that day and the data of a day can reach into the following days
+         */
+        final String where = TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID + "=" + channelID + " AND " +
+            TvBrowserContentProvider.DATA_KEY_STARTTIME + ">=" + (days[0] - 24 * 60 * 60000L) + " AND " +
+            TvBrowserContentProvider.DATA_KEY_STARTTIME + "<" + (days[1] + 3 * 24 * 60 * 60000L);
+        
+        Cursor c = getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_DATA_WITH_CHANNEL, projection, where, null, TvBrowserContentProvider.DATA_KEY_STARTTIME + " DESC");
+        
+        try {
+          // only if there are data update it
+          if(IOUtils.prepareAccess(c)) {
+            int nettoColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_NETTO_PLAY_TIME);
             
-            if(lastChannelKey == channelKey) {
-              cal = Calendar.getInstance(TimeZone.getTimeZone(c.getString(timeZoneColumn)));
+            int keyIDColumn = c.getColumnIndex(TvBrowserContentProvider.KEY_ID);
+            int startTimeColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_STARTTIME);
+            int endTimeColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_ENDTIME);
+            int timeZoneColumn = c.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_TIMEZONE);
+            int durationColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES);
+            
+            long lastStartTime = -1;
+            Calendar cal = null;
+            
+            while(c.moveToNext()) {
+              long progID = c.getLong(keyIDColumn);
+              long meStart = c.getLong(startTimeColumn);
+              long end = c.getLong(endTimeColumn);
+              long nettoPlayTime = 0;
+              long duration = c.getLong(durationColumn);
+              
+              if(c.isNull(nettoColumn)) {
+                nettoPlayTime = c.getLong(nettoColumn) * 60000;
+              }
               
-              // if end not set or net play time larger than next start or next time not end time
-              if(end == 0 || (nettoPlayTime > (lastStartTime - meStart))/* || (lastProgram && end != nextStart && ((nextStart - meStart) < (3 * 60 * 60000)))*/) {
-                if(nettoPlayTime > (lastStartTime - meStart)) {
-                  lastStartTime = meStart + nettoPlayTime;
+              // the first program has no known next program
+              if(cal != null) {
+                // if end not set or net play time larger than next start or next time not end time
+                if(end == 0 || (nettoPlayTime > (lastStartTime - meStart))) {
+                  if(nettoPlayTime > (lastStartTime - meStart)) {
+                    lastStartTime = meStart + nettoPlayTime;
+                  }
+                  else if((lastStartTime - meStart) >= (12 * 60 * 60000)) {
+                    lastStartTime = meStart + (long)(2.5 * 60 * 60000);
+                  }
+                  
+                  ContentValues values = new ContentValues();
+                  values.put(TvBrowserContentProvider.DATA_KEY_ENDTIME, lastStartTime);
+                  values.put(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES, (int)((lastStartTime-meStart)/60000));
+                  
+                  cal.setTimeInMillis(lastStartTime);
+                  
+                  int startHour = cal.get(Calendar.HOUR_OF_DAY);
+                  int startMinute = cal.get(Calendar.MILLISECOND);
+                  
+                  // Normalize start hour and minute to 2014-12-31 to have the same time base on all occasions
+                  utc.setTimeInMillis((IOUtils.normalizeTime(cal, startHour, startMinute, 30).getTimeInMillis() / 60000 * 60000));
+                  
+                  values.put(TvBrowserContentProvider.DATA_KEY_UTC_END_MINUTE_AFTER_MIDNIGHT, utc.get(Calendar.HOUR_OF_DAY) * 60 + utc.get(Calendar.MINUTE));
+                  
+                  ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, progID));
+                  opBuilder.withValues(values);
+                  
+                  updateOperation.addUpdate(opBuilder.build());
                 }
-                else if((lastStartTime - meStart) >= (12 * 60 * 60000)) {
-                  lastStartTime = meStart + (long)(2.5 * 60 * 60000);
+                else if(end != 0 && duration == 0) {
+                  ContentValues values = new ContentValues();
+                  values.put(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES, (int)((end-meStart)/60000));
+                  
+                  ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, progID));
+                  opBuilder.withValues(values);
+                  
+                  updateOperation.addUpdate(opBuilder.build());
                 }
-                
-                utc.setTimeInMillis((cal.getTimeInMillis() / 60000 * 60000));
-                
-                ContentValues values = new ContentValues();
-                values.put(TvBrowserContentProvider.DATA_KEY_ENDTIME, lastStartTime);
-                values.put(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES, (int)((lastStartTime-meStart)/60000));
-                
-                cal.setTimeInMillis(lastStartTime);
-                
-                int startHour = cal.get(Calendar.HOUR_OF_DAY);
-                int startMinute = cal.get(Calendar.MILLISECOND);
-                
-                // Normalize start hour and minute to 2014-12-31 to have the same time base on all occasions
-                utc.setTimeInMillis((IOUtils.normalizeTime(cal, startHour, startMinute, 30).getTimeInMillis() / 60000 * 60000));
-                
-                values.put(TvBrowserContentProvider.DATA_KEY_UTC_END_MINUTE_AFTER_MIDNIGHT, utc.get(Calendar.HOUR_OF_DAY) * 60 + utc.get(Calendar.MINUTE));
-                
-                ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, progID));
-                opBuilder.withValues(values);
-                
-                updateValuesList.add(opBuilder.build());
               }
-              else if(end != 0 && duration == 0) {
-                ContentValues values = new ContentValues();
-                values.put(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES, (int)((end-meStart)/60000));
+              else {
+                final String timeZone = c.getString(timeZoneColumn);
                 
-                ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, progID));
-                opBuilder.withValues(values);
+                cal = calendars.get(timeZone);
                 
-                updateValuesList.add(opBuilder.build());
+                if(cal == null) {
+                  cal = Calendar.getInstance(TimeZone.getTimeZone(timeZone));
+                  calendars.put(timeZone, cal);
+                }
               }
+              
+              lastStartTime = meStart;
             }
-            else {
-              lastKnownDate = Math.max(meStart, lastKnownDate);
-            }
-            
-            lastChannelKey = channelKey;
-            lastStartTime = meStart;
           }
+        }finally {
+          IOUtils.close(c);
         }
-      }finally {
-        IOUtils.close(c);
       }
       
-      if(!updateValuesList.isEmpty()) {
-        getContentResolver().applyBatch(TvBrowserContentProvider.AUTHORITY, updateValuesList);
-      }
+      updateOperation.finish();
       
       Editor edit = PrefUtils.getSharedPreferences(PrefUtils.TYPE_PREFERENCES_SHARED_GLOBAL, TvDataUpdateService.this).edit();
-      edit.putLong(getString(R.string.PREF_LAST_KNOWN_DATA_DATE), lastKnownDate);
+      edit.putLong(getString(R.string.PREF_LAST_KNOWN_DATA_DATE), readLastKnownDataDate());
       edit.commit();
     }catch(Throwable t) {
       Log.d("info13", "", t);
@@ -2681,15 +2884,36 @@ public class TvDataUpdateService extends Service {
     
     finishUpdate(notification,updateFavorites,syncAllowed);
   }
+  
+  /**
+   * @return The latest start time of the programs in the database.
+   */
+  private long readLastKnownDataDate() {
+    long lastKnownDate = SettingConstants.DATA_LAST_DATE_NO_DATA;
+    
+    Cursor last = getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_DATA, new String[] {TvBrowserContentProvider.DATA_KEY_STARTTIME}, null, null, TvBrowserContentProvider.DATA_KEY_STARTTIME + " DESC LIMIT 1");
+    
+    try {
+      if(last != null && last.moveToFirst()) {
+        lastKnownDate = Math.max(last.getLong(last.getColumnIndex(TvBrowserContentProvider.DATA_KEY_STARTTIME)), lastKnownDate);
+      }
+    }finally {
+      IOUtils.close(last);
+    }
+    
+    return lastKnownDate;
+  }
     
   private void finishUpdate(NotificationManager notification, boolean updateFavorites, boolean syncAllowed) {
     doLog("FINISH DATA UPDATE");
     IOUtils.handleDataUpdatePreferences(getApplicationContext());
     TvBrowserContentProvider.INFORM_FOR_CHANGES = true;
     getContentResolver().notifyChange(TvBrowserContentProvider.CONTENT_URI_DATA, null);
-  
+    
+    final long[] changedProgramIds = TvBrowserContentProvider.stopTrackingDataChanges();
+    
     if(updateFavorites) {
-      updateFavorites(notification);
+      updateFavorites(notification, changedProgramIds);
     }
     
     if(syncAllowed && mIsConnected) {
@@ -2770,13 +2994,44 @@ public class TvDataUpdateService extends Service {
   
   private AtomicInteger mFavoriteUpdateCount;
   
-  private void updateFavorites(final NotificationManager notification) {
-    final Favorite[] favorites = Favorite.getAllFavorites(TvDataUpdateService.this);
+  /**
+   * Updates the marking of all Favorites.
+   * <p>
+   * @param notification The NotificationManager for the progress.
+   * @param changedProgramIds The ids of the programs changed by the data update,
+   * if <code>null</code> the Favorites are searched in all programs.
+   */
+  private void updateFavorites(final NotificationManager notification, final long[] changedProgramIds) {
+    final Favorite[] shared = Favorite.getAllFavorites(TvDataUpdateService.this);
+    final Favorite[] favorites = new Favorite[shared.length];
+    
+    // the marking changes the Favorites
+    for(int i = 0; i < shared.length; i++) {
+      favorites[i] = shared[i].copy();
+    }
+    
+    doLog("UPDATE FAVORITES FOR " + (changedProgramIds != null ? String.valueOf(changedProgramIds.length) : "ALL") + " CHANGED PROGRAMS");
     
     mBuilder.setProgress(favorites.length, 0, false);
     mBuilder.setContentText(getResources().getText(R.string.update_data_notification_favorites));
     notification.notify(ID_NOTIFY, mBuilder.build());
     
+    // all compilable Favorites are matched with the changed programs in one pass
+    final HashMap<Favorite, long[]> compiledMatches = new HashMap<>();
+    
+    if(changedProgramIds != null && changedProgramIds.length > 0) {
+      final FavoriteMatcher matcher = FavoriteMatcher.compile(favorites);
+      final long[][] matches = matcher.classify(TvDataUpdateService.this, changedProgramIds);
+      
+      if(matches != null) {
+        final Favorite[] compiled = matcher.getFavorites();
+        
+        for(int i = 0; i < compiled.length; i++) {
+          compiledMatches.put(compiled[i], matches[i]);
+        }
+      }
+    }
+    
     ExecutorService updateFavorites = Executors.newFixedThreadPool(Math.max(Runtime.getRuntime().availableProcessors(), 2));
     
     mFavoriteUpdateCount = new AtomicInteger(1);
@@ -2786,8 +3041,11 @@ public class TvDataUpdateService extends Service {
         updateFavorites.execute(new Thread("DATA UPDATE FAVORITE UPDATE THREAD") {
           @Override
           public void run() {
-            Favorite.handleFavoriteMarking(TvDataUpdateService.this, favorite, Favorite.TYPE_MARK_REMOVE);
-            Favorite.handleFavoriteMarking(TvDataUpdateService.this, favorite, Favorite.TYPE_MARK_ADD);
+            if(!Favorite.handleFavoriteMarkingIncremental(TvDataUpdateService.this, favorite, changedProgramIds, compiledMatches.get(favorite))) {
+              Favorite.handleFavoriteMarking(TvDataUpdateService.this, favorite, Favorite.TYPE_MARK_REMOVE);
+              Favorite.handleFavoriteMarking(TvDataUpdateService.this, favorite, Favorite.TYPE_MARK_ADD);
+            }
+            
             mBuilder.setProgress(favorites.length, mFavoriteUpdateCount.getAndIncrement(), false);
             notification.notify(ID_NOTIFY, mBuilder.build());
           }
@@ -2810,6 +3068,13 @@ public class TvDataUpdateService extends Service {
     doLog(value, null);
   }
   
+  /**
+   * @return If the device is connected to the internet for this update.
+   */
+  boolean isConnected() {
+    return mIsConnected;
+  }
+  
   private void doLog(String value, Throwable t) {
     if(t != null) {
       final StringBuilder message = new StringBuilder(value).append("\n");
@@ -2830,17 +3095,17 @@ public class TvDataUpdateService extends Service {
     Log.d("info5", msg);
   }
   
-  private String reloadMirrors(String groupID, File path) {
+  private String reloadMirrors(String groupID) {
     String groupTxt = getGroupFileMirror();
     String mirrorLine = "";
     
     if(mIsConnected && groupTxt != null) {
-      File groups = new File(path,GROUP_FILE);
+      File groups = HttpCache.getInstance(TvDataUpdateService.this).getFile(groupTxt);
       BufferedReader in = null;
       try {
-        IOUtils.saveUrl(groups.getAbsolutePath(), groupTxt, mInternetConnectionTimeout);
+        final int result = IOUtils.saveUrlIfModified(TvDataUpdateService.this, groups, groupTxt, mInternetConnectionTimeout, true);
         
-        if(groups.isFile()) {
+        if(result != DownloadEngine.RESULT_FAILED && groups.isFile()) {
           in = new BufferedReader(new InputStreamReader(new FileInputStream(groups)));
           
           String line = null;
@@ -2871,8 +3136,6 @@ public class TvDataUpdateService extends Service {
       } finally {
         IOUtils.close(in);
       }
-      
-      deleteFile(groups);
     }
     
     return mirrorLine;
@@ -2907,12 +3170,17 @@ public class TvDataUpdateService extends Service {
     
     doLog("Favorite.handleDataUpdateStarted()");
     Favorite.handleDataUpdateStarted();
+    TvBrowserContentProvider.startTrackingDataChanges();
     
     loadEpgPaidChannelIdsForDataUpdate();
     
     final File path = IOUtils.getDownloadDirectory(TvDataUpdateService.this.getApplicationContext());
     
-    final File[] oldDataFiles = path.listFiles(pathname -> pathname.getName().toLowerCase(Locale.GERMAN).endsWith(".gz"));
+    mUpdateJournal = new UpdateJournal(TvDataUpdateService.this);
+    mFrameCache = new FrameCache(TvDataUpdateService.this);
+    
+    // files of a killed update are used again, if they are still up to date
+    final File[] oldDataFiles = path.listFiles(pathname -> pathname.getName().toLowerCase(Locale.GERMAN).endsWith(".gz") && !mUpdateJournal.isKept(pathname.getName()));
 
     if(oldDataFiles != null) {
       for (File oldFile : oldDataFiles) {
@@ -2925,13 +3193,7 @@ public class TvDataUpdateService extends Service {
     Set<String> exclusions = PrefUtils.getStringSetValue(R.string.I_DONT_WANT_TO_SEE_ENTRIES, null);
     
     if(exclusions != null) {
-      mDontWantToSeeValues = new DontWantToSeeExclusion[exclusions.size()];
-      
-      int i = 0;
-      
-      for(String exclusion : exclusions) {
-        mDontWantToSeeValues[i++] = new DontWantToSeeExclusion(exclusion);
-      }
+      mDontWantToSeeValues = new DontWantToSeeExclusionSet(exclusions);
     }
     
     if(PrefUtils.getBooleanValue(R.string.LOAD_FULL_DATA, R.bool.load_full_data_default)) {
@@ -2999,6 +3261,9 @@ public class TvDataUpdateService extends Service {
     if(channelCursor!=null && channelCursor.moveToFirst()) {
       int lastGroup = -1;
       Mirror mirror = null;
+      // the data files of a group are spread over all usable mirrors
+      Mirror[] dataMirrors = null;
+      int dataFileCount = 0;
       String groupId = null;
       Summary summary = null;
       String channelName = null;
@@ -3014,6 +3279,7 @@ public class TvDataUpdateService extends Service {
           if(lastGroup != groupKey) {
             summary = null;
             mirror = null;
+            dataMirrors = null;
             groupId = null;
             doLog("Content URI for data update " + ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_GROUPS, groupKey));
             
@@ -3032,14 +3298,13 @@ public class TvDataUpdateService extends Service {
                 StringBuilder mirrorURL = new StringBuilder(group.getString(columnIndexMirrors));
                 String mirrorURLsDefault = group.isNull(columnIndexMirrorsDefault) ? "" : group.getString(columnIndexMirrorsDefault);
                 
-                Log.d("info21", "GROUPID " + groupId + " " + mirrorURL);
                 doLog("DEFAULT MIRRORS for group '" + groupId + "': " + mirrorURLsDefault);
                 doLog("Available mirrorURLs for group '" + groupId + "': " + mirrorURL);
                 doLog("Group info for '" + groupId + "'  groupKey: " + groupKey + " group name: " + group.getString(group.getColumnIndex(TvBrowserContentProvider.GROUP_KEY_GROUP_NAME)) + " group provider: " + group.getString(group.getColumnIndex(TvBrowserContentProvider.GROUP_KEY_GROUP_PROVIDER)) + " group description: " + group.getString(group.getColumnIndex(TvBrowserContentProvider.GROUP_KEY_GROUP_DESCRIPTION)));
                 
                 if(!mirrorURL.toString().toLowerCase(Locale.GERMAN).startsWith("http://") && !mirrorURL.toString().toLowerCase(Locale.GERMAN).startsWith("https://")) {
                   doLog("RELOAD MIRRORS FOR '" + groupId);
-                  mirrorURL = new StringBuilder(reloadMirrors(groupId, path));
+                  mirrorURL = new StringBuilder(reloadMirrors(groupId));
                   
                   doLog("Available mirrorURLs for group '" + groupId + "': " + mirrorURL);
                   doLog("Group info for '" + groupId + "'  groupKey: " + groupKey + " group name: " + group.getString(group.getColumnIndex(TvBrowserContentProvider.GROUP_KEY_GROUP_NAME)) + " group provider: " + group.getString(group.getColumnIndex(TvBrowserContentProvider.GROUP_KEY_GROUP_PROVIDER)) + " group description: " + group.getString(group.getColumnIndex(TvBrowserContentProvider.GROUP_KEY_GROUP_DESCRIPTION)));
@@ -3060,17 +3325,15 @@ public class TvDataUpdateService extends Service {
                 }
                 
                 Mirror[] mirrors = Mirror.getMirrorsFor(mirrorURL.toString());
-                Log.d("info21", "MIRRORS AVAILABLE " + Arrays.toString(mirrors));
-                mirror = Mirror.getMirrorToUseForGroup(mirrors, groupId, this, checkOnlyConnection);                
-                doLog("Chosen mirror for group '" + groupId + "': " + mirror);
+                dataMirrors = Mirror.getMirrorsToUseForGroup(mirrors, groupId, this, checkOnlyConnection);
+                mirror = dataMirrors.length > 0 ? dataMirrors[0] : null;
+                doLog("Chosen mirror for group '" + groupId + "': " + mirror + ", usable mirrors: " + dataMirrors.length);
                 
-                Log.d("info21", "MIRROR CHOOSEN " + mirror);
                 if(mirror != null) {
                   String url = mirror.getUrl() + groupId + "_mirrorlist.gz";
                   String fileName = groupId + "_mirrorlist.gz";
                   
                   String summaryUrl = mirror.getUrl() + groupId + "_summary.gz";
-                  String summaryFileName = groupId + "_summary.gz";
                   
                   if(checkOnlyConnection) {
                     if(mIsConnected && !donationInfoLoaded) {
@@ -3123,11 +3386,10 @@ public class TvDataUpdateService extends Service {
                     
                     summaryUrl = mirror.getUrl() + "summary.gz";
                     
-                    Log.d("info21", "SUMMARY " + summaryUrl);
                   }
                   
                   doLog("Download summary from: " + summaryUrl);
-                  summary = readSummary(new File(path,summaryFileName),summaryUrl, groupId);
+                  summary = readSummary(summaryUrl, groupId);
                   
                   doLog("To download: " + url);
                   downloadMirrorList.add(new MirrorDownload(url, fileName));
@@ -3170,7 +3432,7 @@ public class TvDataUpdateService extends Service {
                     if(version != null) {
                       long daysSince1970 = startDate.getTimeInMillis() / 24 / 60 / 60000;
                       
-                      String versionKey = channelKey + "_" + daysSince1970;
+                      final long versionKey = getVersionKey(channelKey, daysSince1970);
                                           
                       ChannelUpdate channelUpdate = new ChannelUpdate(epgFreeDataHandler, channelKey, timeZone, startDate.getTimeInMillis());
                       
@@ -3198,7 +3460,7 @@ public class TvDataUpdateService extends Service {
                           }
                           doLog("Version for day unknown for '" + channelID + "'");
                           StringBuilder dateFile = new StringBuilder();
-                          dateFile.append(mirror.getUrl());
+                          dateFile.append(dataMirrors[dataFileCount++ % dataMirrors.length].getUrl());
                           dateFile.append(startDate.get(Calendar.YEAR));
                           dateFile.append("-");
                           dateFile.append(month);
@@ -3214,7 +3476,7 @@ public class TvDataUpdateService extends Service {
                           
                           doLog("Download data for '" + channelID + "' from " + dateFile.toString() + " for level: " + level);
                           
-                          channelUpdate.addURL(dateFile.toString());
+                          channelUpdate.addURL(dateFile.toString(), version[level]);
                         }
                       }
                       
@@ -3229,58 +3491,54 @@ public class TvDataUpdateService extends Service {
                 }
               }
             }
-            else if(summary instanceof EPGdonateSummary) {
-              Set<Object> keys = ((EPGdonateSummary)summary).keySet();
+            else if(summary instanceof EPGdonateSummary && ((EPGdonateSummary)summary).mIndex != null) {
+              final SummaryIndex index = ((EPGdonateSummary)summary).mIndex;
               
               boolean loadMoreData = levels.length >= 3;
               boolean loadPictureData = levels.length >= 5;
               
-              Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-              utc.set(2014, 12, 31, 0, 0, 0);
-              utc.set(Calendar.MILLISECOND, 0);
+              final int[] versionParts = new int[3];
               
-              for(Object key : keys) {
-                if(key instanceof String && ((String)key).contains(channelID) && ((String)key).contains("_")) {
-                  String stringKey = (String)key;
-                  //Log.d("info21", "KEY " + key);
-                  Object value = ((EPGdonateSummary)summary).get(stringKey);
+              // the data files of a channel are sorted by their start, so only the ones in the time range are read
+              for(int channel : index.findChannels(channelID)) {
+                final int recordCount = index.getRecordCount(channel);
+                
+                for(int record = index.findRecord(channel, (int)(now.getTimeInMillis() / 60000)); record < recordCount; record++) {
+                  long startMilliseconds = index.getStart(channel, record) * 60000L;
                   
-                  if(value instanceof String) {
-                    String stringValue = (String)value;
-                    //Log.d("info21", "stringValue " + stringValue);
-                    long startMilliseconds = Long.parseLong(stringKey.substring(0,stringKey.indexOf("_"))) * 60000L;
-                    //Log.d("info21", "onTime " + ((startMilliseconds >= now.getTimeInMillis() && startMilliseconds <= to.getTimeInMillis())));
-                    if(startMilliseconds >= now.getTimeInMillis() && startMilliseconds <= to.getTimeInMillis()) {
-                      ChannelUpdate channelUpdate = new ChannelUpdate(epgDonateDataHandler, channelKey, timeZone, startMilliseconds);
-
-                      long daysSince1970 = startMilliseconds / 24 / 60 / 60000L;
-                      
-                      String versionKey = channelKey + "_" + daysSince1970;
-                      
-                      int[] versionInfo = mCurrentVersionIDs.get(versionKey);
-                      
-                      if(versionInfo == null) {
-                        versionInfo = new int[] {0,0,0,0,0,0};
-                      }
-                                     
-                      String[] versionParts = stringValue.split(",");
-                      Log.d("info21", "versionInfo " + versionInfo[1] + " " + versionInfo[3] + " " + versionInfo[5]);
-                      if(versionInfo[1] < Integer.parseInt(versionParts[0])) {
-                        Log.d("info21", "ADDING " + mirror.getUrl() + stringKey + SettingConstants.EPG_DONATE_LEVEL_NAMES[0] + ".gz");
-                        channelUpdate.addURL(mirror.getUrl() + stringKey + SettingConstants.EPG_DONATE_LEVEL_NAMES[0] + ".gz");
-                      }
-                      if(loadMoreData && versionInfo[3] < Integer.parseInt(versionParts[1])) {
-                        channelUpdate.addURL(mirror.getUrl() + stringKey + SettingConstants.EPG_DONATE_LEVEL_NAMES[1] + ".gz");
-                      }
-                      if(loadPictureData && versionInfo[5] < Integer.parseInt(versionParts[2])) {
-                        channelUpdate.addURL(mirror.getUrl() + stringKey + SettingConstants.EPG_DONATE_LEVEL_NAMES[2] + ".gz");
-                      }
-                      
-                      if(channelUpdate.toDownload()) {
-                        Log.d("info21", "ADDING " + stringValue);
-                        updateList.add(channelUpdate);
-                        downloadCountTemp += channelUpdate.size();
-                      }
+                  if(startMilliseconds > to.getTimeInMillis()) {
+                    break;
+                  }
+                  
+                  if(startMilliseconds >= now.getTimeInMillis()) {
+                    final String stringKey = index.getKey(channel, record);
+                    index.getVersions(channel, record, versionParts);
+                    
+                    ChannelUpdate channelUpdate = new ChannelUpdate(epgDonateDataHandler, channelKey, timeZone, startMilliseconds);
+
+                    long daysSince1970 = startMilliseconds / 24 / 60 / 60000L;
+                    
+                    final long versionKey = getVersionKey(channelKey, daysSince1970);
+                    
+                    int[] versionInfo = mCurrentVersionIDs.get(versionKey);
+                    
+                    if(versionInfo == null) {
+                      versionInfo = new int[] {0,0,0,0,0,0};
+                    }
+                    
+                    if(versionInfo[1] < versionParts[0]) {
+                      channelUpdate.addURL(mirror.getUrl() + stringKey + SettingConstants.EPG_DONATE_LEVEL_NAMES[0] + ".gz", versionParts[0]);
+                    }
+                    if(loadMoreData && versionInfo[3] < versionParts[1]) {
+                      channelUpdate.addURL(mirror.getUrl() + stringKey + SettingConstants.EPG_DONATE_LEVEL_NAMES[1] + ".gz", versionParts[1]);
+                    }
+                    if(loadPictureData && versionInfo[5] < versionParts[2]) {
+                      channelUpdate.addURL(mirror.getUrl() + stringKey + SettingConstants.EPG_DONATE_LEVEL_NAMES[2] + ".gz", versionParts[2]);
+                    }
+                    
+                    if(channelUpdate.toDownload()) {
+                      updateList.add(channelUpdate);
+                      downloadCountTemp += channelUpdate.size();
                     }
                   }
                 }
@@ -3302,7 +3560,6 @@ public class TvDataUpdateService extends Service {
           }
           
           doLog(stackTrace.toString());
-          Log.d("info21", stackTrace.toString());
         }
       }while(channelCursor.moveToNext());
     }
@@ -3311,8 +3568,8 @@ public class TvDataUpdateService extends Service {
     
     final int downloadCount = downloadMirrorList.size() + downloadCountTemp;
     doLog("Data files to load " + downloadCount);
-    mThreadPool = Executors.newFixedThreadPool(Math.max(Runtime.getRuntime().availableProcessors(), 2));
-    mDataUpdatePool = Executors.newFixedThreadPool(Math.max(Runtime.getRuntime().availableProcessors(), 2));
+    mThreadPool = Executors.newFixedThreadPool(DOWNLOAD_THREAD_COUNT);
+    mDataUpdatePool = newBoundedThreadPool(PARSE_THREAD_COUNT, PARSE_QUEUE_SIZE);
     
     mBuilder.setProgress(downloadCount, 0, false);
     notification.notify(ID_NOTIFY, mBuilder.build());
@@ -3327,8 +3584,14 @@ public class TvDataUpdateService extends Service {
             
             if(mIsConnected) {
               try {
-                IOUtils.saveUrl(mirrorFile.getAbsolutePath(), mirror.getDownloadURL(), mInternetConnectionTimeout);
-                updateMirror(mirrorFile);
+                // the mirrors are only written by this and the channel update, so
+                // unchanged mirror files don't have to be read again
+                if(IOUtils.saveUrlIfModified(TvDataUpdateService.this, mirrorFile, mirror.getDownloadURL(), mInternetConnectionTimeout, false) == DownloadEngine.RESULT_NOT_MODIFIED) {
+                  doLog("Mirrors not modified: " + mirror.getDownloadURL());
+                }
+                else {
+                  updateMirror(mirrorFile);
+                }
                 mCurrentDownloadCount++;
                 
                 if(mShowNotification) {
@@ -3346,8 +3609,9 @@ public class TvDataUpdateService extends Service {
     //mDontWantToSeeValues = null;
     Log.d("info5", "updateCount " + downloadCountTemp);
     
-    mDataDatabaseOperation = new MemorySizeConstrictedDatabaseOperation(TvDataUpdateService.this,TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE);
-    mVersionDatabaseOperation = new MemorySizeConstrictedDatabaseOperation(TvDataUpdateService.this,TvBrowserContentProvider.CONTENT_URI_DATA_VERSION,10);
+    mDatabaseWriter = new DatabaseWriter("DATA UPDATE DATABASE WRITER THREAD", WRITE_QUEUE_SIZE);
+    mDataDatabaseOperation = new MemorySizeConstrictedDatabaseOperation(TvDataUpdateService.this,TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE,1,mDatabaseWriter);
+    mVersionDatabaseOperation = new MemorySizeConstrictedDatabaseOperation(TvDataUpdateService.this,TvBrowserContentProvider.CONTENT_URI_DATA_VERSION,10,mDatabaseWriter);
    /* mDataInsertList = new ArrayList<ContentValues>();
     mDataUpdateList = new ArrayList<ContentProviderOperation>();*/
     
@@ -3355,7 +3619,7 @@ public class TvDataUpdateService extends Service {
     mVersionUpdateList = new ArrayList<ContentProviderOperation>();
     */
     if(downloadCountTemp > 0) {
-      readCurrentData();
+      deleteOldData();
               
       for(final ChannelUpdate update : updateList) {
         if(!mThreadPool.isShutdown()) {
@@ -3393,14 +3657,11 @@ public class TvDataUpdateService extends Service {
     
     doLog("WAIT FOR DATA UPDATE FOR DONE, DOWNLOAD: " + mThreadPool.isTerminated() + " DATA: " + mDataUpdatePool.isTerminated());
     
+    MirrorStats.getInstance(TvDataUpdateService.this).save();
+    
     mShowNotification = false;
     
-    if(mDataDatabaseOperation != null) {
-      mDataDatabaseOperation.finish();
-    }
-    if(mVersionDatabaseOperation != null) {
-      mVersionDatabaseOperation.finish();
-    }
+    closeUpdateState(finishDatabaseOperations());
     
 //      insert(mDataInsertList);
    // insertVersion(mVersionInsertList);
@@ -3422,10 +3683,6 @@ public class TvDataUpdateService extends Service {
       mCurrentVersionIDs = null;
     }
     
-    if(mCurrentData != null) {
-      mCurrentData.clear();
-      mCurrentData = null;
-    }
 
     if(downloadCountTemp > 0 || !PrefUtils.getBooleanValue(R.string.PREF_EPGPAID_FIRST_DOWNLOAD_DONE, false)) {
       to.setTimeZone(TimeZone.getTimeZone("UTC"));
@@ -3589,6 +3846,7 @@ public class TvDataUpdateService extends Service {
 
             final String[] projection = {
                 TvBrowserContentProvider.KEY_ID,
+                TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID,
                 TvBrowserContentProvider.DATA_KEY_STARTTIME,
                 TvBrowserContentProvider.DATA_KEY_TITLE
             };
@@ -3629,10 +3887,17 @@ public class TvDataUpdateService extends Service {
                       downloadChannels.add(line);
 
                       final int columnIndexId = data.getColumnIndex(TvBrowserContentProvider.KEY_ID);
+                      final int columnIndexChannel = data.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID);
                       final int columnIndexStartTime = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_STARTTIME);
                       final int columnIndexTitle = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_TITLE);
 
                       while (data.moveToNext()) {
+                        if (data.isFirst()) {
+                          // the EPGpaid data may change the start and end times of the channel
+                          addChangedDay(data.getLong(columnIndexChannel), yesterday.getTimeInMillis());
+                          addChangedDay(data.getLong(columnIndexChannel), endDateTime);
+                        }
+
                         final long id = data.getLong(columnIndexId);
                         final long startTime = data.getLong(columnIndexStartTime);
                         final String title = data.getString(columnIndexTitle).replaceAll("\\p{Punct}|\\s+", "_").replaceAll("_+", "_");
@@ -3830,20 +4095,105 @@ public class TvDataUpdateService extends Service {
     long mProgramID;
     boolean mDontWantToSee;
     String mTitle;
+    // if the frame is contained in the base data file of the update
+    boolean mFound;
   }
   
-  private void readCurrentVersionIDs() {
-    if(mCurrentVersionIDs != null) {
-      mCurrentVersionIDs.clear();
+  /**
+   * The programs of one channel and day that are already in the database,
+   * by the ID of their frame in the data file.
+   */
+  private static final class CurrentData {
+    // EPGfree frame IDs are numbers, EPGdonate frame IDs are strings
+    private final LongHashMap<CurrentDataHolder> mNumericFrames;
+    private final HashMap<String, CurrentDataHolder> mStringFrames;
+    
+    CurrentData(int expectedSize) {
+      mNumericFrames = new LongHashMap<>(expectedSize);
+      mStringFrames = new HashMap<>();
     }
-    else {
-      mCurrentVersionIDs = new Hashtable<>();
+    
+    CurrentDataHolder get(String frameID) {
+      CurrentDataHolder holder = null;
+      
+      if(!mStringFrames.isEmpty()) {
+        holder = mStringFrames.get(frameID);
+      }
+      
+      if(holder == null && !mNumericFrames.isEmpty()) {
+        final long numericID = parseFrameID(frameID);
+        
+        if(numericID != Long.MIN_VALUE) {
+          holder = mNumericFrames.get(numericID);
+        }
+      }
+      
+      return holder;
+    }
+    
+    boolean isEmpty() {
+      return mNumericFrames.isEmpty() && mStringFrames.isEmpty();
+    }
+    
+    /**
+     * @return The IDs of the frames that weren't found in the base data file.
+     */
+    ArrayList<String> getMissingFrameIDs() {
+      final ArrayList<String> missingFrameIDs = new ArrayList<>();
+      
+      for(long frameID : mNumericFrames.keys()) {
+        if(!mNumericFrames.get(frameID).mFound) {
+          missingFrameIDs.add(String.valueOf(frameID));
+        }
+      }
+      
+      for(Map.Entry<String, CurrentDataHolder> frame : mStringFrames.entrySet()) {
+        if(!frame.getValue().mFound) {
+          missingFrameIDs.add(frame.getKey());
+        }
+      }
+      
+      return missingFrameIDs;
     }
     
+    /**
+     * @return The number of the frame ID or {@link Long#MIN_VALUE} if it's not a number.
+     */
+    private static long parseFrameID(String frameID) {
+      final int length = frameID.length();
+      final boolean negative = length > 0 && frameID.charAt(0) == '-';
+      
+      if(length == (negative ? 1 : 0) || length > 11) {
+        return Long.MIN_VALUE;
+      }
+      
+      long value = 0;
+      
+      for(int i = negative ? 1 : 0; i < length; i++) {
+        final char c = frameID.charAt(i);
+        
+        if(c < '0' || c > '9') {
+          return Long.MIN_VALUE;
+        }
+        
+        value = value * 10 + (c - '0');
+      }
+      
+      return negative ? -value : value;
+    }
+  }
+  
+  private static long getVersionKey(long channelID, long daysSince1970) {
+    return LongHashMap.getKey((int)channelID, (int)daysSince1970);
+  }
+  
+  private void readCurrentVersionIDs() {
     Cursor ids = null; try {
     ids = getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_DATA_VERSION, null, null, null, TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID);
     
-    if(ids.getCount() > 0) {
+    mCurrentVersionIDs = new LongHashMap<>(ids != null ? ids.getCount() : 0);
+    
+    if(ids != null && ids.getCount() > 0) {
       ids.moveToPosition(-1);
       
       int keyColumn = ids.getColumnIndex(TvBrowserContentProvider.KEY_ID);
@@ -3865,82 +4215,69 @@ public class TvDataUpdateService extends Service {
         versionInfo[4] = ids.getInt(picture0016Column);
         versionInfo[5] = ids.getInt(picture1600Column);
         
-        String id = ids.getInt(channelIDColumn) + "_" + ids.getInt(daysSince1970Column);
-        
-        mCurrentVersionIDs.put(id, versionInfo);
+        mCurrentVersionIDs.put(getVersionKey(ids.getInt(channelIDColumn), ids.getInt(daysSince1970Column)), versionInfo);
       }
     }
     
     } finally {IOUtils.close(ids);}
   }
   
-  private void readCurrentData() {
+  private void deleteOldData() {
     try {
       IOUtils.deleteOldData(TvDataUpdateService.this);
     }catch(Throwable t) {
       doLog(t.toString());
     }
+  }
+  
+  /**
+   * Reads the programs of the given channel and day from the database.
+   * <p>
+   * The titles are only needed to keep the don't want to see state,
+   * so they are only read if there are don't want to see entries.
+   */
+  private CurrentData readCurrentData(long channelID, long unixDate) {
+    final String[] projection;
     
-    if(mCurrentData != null) {
-      mCurrentData.clear();
+    if(mDontWantToSeeValues != null) {
+      projection = new String[] {TvBrowserContentProvider.KEY_ID, TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID, TvBrowserContentProvider.DATA_KEY_DATE_PROG_STRING_ID, TvBrowserContentProvider.DATA_KEY_TITLE, TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE};
     }
     else {
-      mCurrentData = new Hashtable<>();
+      projection = new String[] {TvBrowserContentProvider.KEY_ID, TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID, TvBrowserContentProvider.DATA_KEY_DATE_PROG_STRING_ID};
     }
     
-    String[] projection = {TvBrowserContentProvider.KEY_ID, TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID, TvBrowserContentProvider.DATA_KEY_UNIX_DATE, TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID, TvBrowserContentProvider.DATA_KEY_DATE_PROG_STRING_ID, TvBrowserContentProvider.DATA_KEY_TITLE, TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE};
+    String where = TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID + "=" + channelID + " AND " + TvBrowserContentProvider.DATA_KEY_UNIX_DATE + "=" + unixDate;
+    
+    Cursor data = getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_DATA, projection, where, null, null);
     
-    Cursor data = getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_DATA, projection, null, null, TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID + ", " + TvBrowserContentProvider.DATA_KEY_UNIX_DATE + ", " + TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID + ", " + TvBrowserContentProvider.DATA_KEY_DATE_PROG_STRING_ID);
+    CurrentData current = new CurrentData(0);
     
     try {
-      Hashtable<String, CurrentDataHolder> current = null;
-      String currentKey = null;
-      
-      int keyColumn = data.getColumnIndex(TvBrowserContentProvider.KEY_ID);
-      int frameIDColumn = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID);
-      int frameIdStringColumn = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_DATE_PROG_STRING_ID);
-      int channelColumn = data.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID);
-      int unixDateColumn = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_UNIX_DATE);
-      int titleColumn = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_TITLE);
-      int dontWantToSeeColumn = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE);
-      
       if(IOUtils.prepareAccess(data)) {
+        current = new CurrentData(data.getCount());
+        
+        int keyColumn = data.getColumnIndex(TvBrowserContentProvider.KEY_ID);
+        int frameIDColumn = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID);
+        int frameIdStringColumn = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_DATE_PROG_STRING_ID);
+        int titleColumn = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_TITLE);
+        int dontWantToSeeColumn = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE);
+        
         try {
           while(!data.isClosed() && data.moveToNext()) {
-            long programKey = data.getInt(keyColumn);
-            String frameID = null;
+            CurrentDataHolder holder = new CurrentDataHolder();
             
-            if(!data.isNull(frameIdStringColumn)) {
-              frameID = data.getString(frameIdStringColumn);
-            }
-            else if(!data.isNull(frameIDColumn)) {
-              frameID = String.valueOf(data.getInt(frameIDColumn));
-            }
+            holder.mProgramID = data.getLong(keyColumn);
             
-            if(frameID != null && mCurrentData != null) {
-              int channelID = data.getInt(channelColumn);
-              long unixDate = data.getLong(unixDateColumn);
-              
-              String testKey = channelID + "_" + unixDate;
-              
-              if(currentKey == null || !currentKey.equals(testKey)) {
-                currentKey = testKey;
-                current = mCurrentData.get(testKey);
-                
-                if(current == null) {
-                  current = new Hashtable<>();
-                  
-                  mCurrentData.put(currentKey, current);
-                }
-              }
-              
-              CurrentDataHolder holder = new CurrentDataHolder();
-              
-              holder.mProgramID = programKey;
+            if(titleColumn >= 0) {
               holder.mTitle = data.getString(titleColumn);
               holder.mDontWantToSee = data.getInt(dontWantToSeeColumn) == 1;
-              
-              current.put(frameID, holder);
+            }
+            
+            if(!data.isNull(frameIdStringColumn)) {
+              current.mStringFrames.put(data.getString(frameIdStringColumn), holder);
+            }
+            else if(!data.isNull(frameIDColumn)) {
+              current.mNumericFrames.put(data.getInt(frameIDColumn), holder);
             }
           }
         }catch(IllegalStateException ignored) {
@@ -3949,6 +4286,8 @@ public class TvDataUpdateService extends Service {
     }finally {
       IOUtils.close(data);
     }
+    
+    return current;
   }
   
   private void updateMirror(File mirrorFile) {
@@ -4001,95 +4340,58 @@ public class TvDataUpdateService extends Service {
     }
   }
   
-  private Summary readSummary(final File path, final String summaryurl, String groupKey) {
-    Summary summary = new EPGfreeSummary();
-    
-    if(groupKey.equals(SettingConstants.EPG_DONATE_GROUP_KEY)) {
-      summary = new EPGdonateSummary();
-    }
+  private Summary readSummary(final String summaryurl, String groupKey) {
+    final boolean epgDonate = groupKey.equals(SettingConstants.EPG_DONATE_GROUP_KEY);
+    SummaryIndex index = null;
     
     if(mIsConnected) {
-      InputStream in = null;
+      // the summary is kept, it's only downloaded and indexed again if it was changed
+      final HttpCache cache = HttpCache.getInstance(TvDataUpdateService.this);
+      final File path = cache.getFile(summaryurl);
+      
       try {
-        IOUtils.saveUrl(path.getAbsolutePath(), summaryurl, mInternetConnectionTimeout);
+        final int result = IOUtils.saveUrlIfModified(TvDataUpdateService.this, path, summaryurl, mInternetConnectionTimeout, true);
         
-        if(path.isFile()) {
-          if(summary instanceof EPGfreeSummary) {
-            in = new BufferedInputStream(IOUtils.decompressStream(new FileInputStream(path)));
-
-            //noinspection ResultOfMethodCallIgnored
-            in.read(); // read version
-                    
-            long daysSince1970 = ((in.read() & 0xFF) << 16 ) | ((in.read() & 0xFF) << 8) | (in.read() & 0xFF);
-            
-            ((EPGfreeSummary)summary).setStartDaySince1970(daysSince1970);
-            
-            ((EPGfreeSummary)summary).setLevels(in.read());
-            
-            int frameCount = (in.read() & 0xFF << 8) | (in.read() & 0xFF);
-            
-            for(int i = 0; i < frameCount; i++) {
-              int byteCount = in.read();
-              
-              byte[] value = new byte[byteCount];
-              
-              //noinspection ResultOfMethodCallIgnored
-              in.read(value);
-              
-              String country = new String(value);
-              
-              byteCount = in.read();
-              
-              value = new byte[byteCount];
-              
-              //noinspection ResultOfMethodCallIgnored
-              in.read(value);
-              
-              String channelID = new String(value);
-              
-              int dayCount = in.read();
-              
-              ChannelFrame frame = new ChannelFrame(country, channelID, dayCount);
-              
-              for(int day = 0; day < dayCount; day++) {
-                int[] values = new int[((EPGfreeSummary)summary).getLevels()];
-                
-                for(int j = 0; j < values.length; j++) {
-                  values[j] = in.read();
-                }
-                
-                frame.add(day, values);
-              }
-              
-              ((EPGfreeSummary)summary).addChannelFrame(frame);
-            }
-          }
-          else if(summary instanceof EPGdonateSummary) {
-            in = new GZIPInputStream(new FileInputStream(path));
-            ((EPGdonateSummary)summary).load(in);
-          }
+        if(result == DownloadEngine.RESULT_NOT_MODIFIED) {
+          doLog("Summary not modified: " + summaryurl);
         }
-      } catch (Exception ignored) {}
-      finally {
-        IOUtils.close(in);
+        else {
+          SummaryIndex.delete(path);
+        }
+        
+        // a failed download has no summary, the kept file may be outdated
+        if(result != DownloadEngine.RESULT_FAILED && path.isFile()) {
+          index = epgDonate ? SummaryIndex.openEPGdonate(path) : SummaryIndex.openEPGfree(path);
+        }
+      } catch (Exception e) {
+        cache.remove(summaryurl);
         deleteFile(path);
+        SummaryIndex.delete(path);
       }
     }
     
-    return summary;
-  }
-  
-  private static void addArrayToList(ArrayList<String> list, String[] values) {
-    if(values != null && list != null) {
-      Collections.addAll(list, values);
-    }
+    return epgDonate ? new EPGdonateSummary(index) : new EPGfreeSummary(index);
   }
   
-  private static void removeEpgPaidFieldsIfNecessary(ArrayList<String> columnList, String channelId, Set<String> epgPaidChannelIds) {
-    if(columnList != null && channelId != null && epgPaidChannelIds != null && epgPaidChannelIds.contains(channelId)) {
-      for(String field : FIELDS_EPGPAID_POSSIBLE) {
-        columnList.remove(field);
+  /**
+   * Skips the given number of bytes of the stream,
+   * also if the underlying stream only skips partly.
+   * <p>
+   * @param in The stream to skip the bytes of.
+   * @param count The number of bytes to skip.
+   * @throws IOException If the end of the stream is reached before all bytes were skipped.
+   */
+  private static void skipFully(DataInputStream in, int count) throws IOException {
+    while(count > 0) {
+      int skipped = in.skipBytes(count);
+      
+      if(skipped <= 0) {
+        // skipBytes doesn't distinguish end of stream, so read one byte to check
+        in.readByte();
+        skipped = 1;
       }
+      
+      count -= skipped;
     }
   }
   
@@ -4173,52 +4475,37 @@ public class TvDataUpdateService extends Service {
     @Override
     public Object[] readValuesFromDataFile(ChannelUpdate update, DataInputStream in, int level)
         throws IOException {
-      short id = (short)(in.read() & 0xFF);
-      int count = (short)(in.read() & 0xFF);
+      short id = (short)in.readUnsignedByte();
+      int count = in.readUnsignedByte();
             
       if(count == 0) {
-        byte[] addBytes = new byte[(((in.read() & 0xFF) << 8) | (in.read() & 0xFF))];
+        final int addCount = in.readUnsignedShort();
+        final byte[] addBytes = update.getFieldBuffer(addCount);
         
-        //noinspection ResultOfMethodCallIgnored
-        in.read(addBytes);
+        in.readFully(addBytes, 0, addCount);
         
-        id = (short)((in.read() & 0xFF) + IOUtils.getIntForBytes(addBytes));
-        count = (short)(in.read() & 0xFF);
+        id = (short)(in.readUnsignedByte() + IOUtils.getIntForBytes(addBytes, 0, addCount));
+        count = in.readUnsignedByte();
       }
       
-      ArrayList<String> columnList = new ArrayList<>();
-      
-      switch(level)  {
-        case LEVEL_BASE: {
-          addArrayToList(columnList,FIELDS_LEVEL_BASE);
-          
-          if(update.mContainsDescription) {
-            addArrayToList(columnList,FIELDS_LEVEL_MORE);
-          }
-          if(update.mContainsPicture) {
-            addArrayToList(columnList,FIELDS_LEVEL_PICTURE);
-          }
-        }break;
-        case LEVEL_MORE: addArrayToList(columnList,FIELDS_LEVEL_MORE);break;
-        case LEVEL_PICTURE: addArrayToList(columnList,FIELDS_LEVEL_PICTURE);break;
-      }
-
-      removeEpgPaidFieldsIfNecessary(columnList, String.valueOf(update.getChannelID()), mEpgPaidChannelIds);
+      final String frameID = String.valueOf(id);
       
-      ContentValues values = update.mContentValueList.get(String.valueOf(id));
+      ProgramRecord record = update.mRecordMap.get(frameID);
       
       boolean isNew = false;
       
-      if(values == null) {
-        values = new ContentValues();
-        update.mContentValueList.put(String.valueOf(id), values);
+      if(record == null) {
+        record = new ProgramRecord();
+        update.mRecordMap.put(frameID, record);
         isNew = true;
       }
       
-      if(!values.containsKey(TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID)) {
-        values.put(TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID, id);
-        values.put(TvBrowserContentProvider.DATA_KEY_UNIX_DATE, update.getDate());
-        values.put(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID, update.getChannelID());
+      record.startRead();
+      
+      if(!record.isSet(ProgramRecord.DATE_PROG_ID)) {
+        record.setLong(ProgramRecord.DATE_PROG_ID, id);
+        record.setLong(ProgramRecord.UNIX_DATE, update.getDate());
+        record.setLong(ProgramRecord.CHANNEL_ID, update.getChannelID());
       }
       
       byte[] fieldInfoBuffer = new byte[4];
@@ -4226,44 +4513,35 @@ public class TvDataUpdateService extends Service {
       Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
       Calendar cal = Calendar.getInstance(update.getTimeZone());
       
-      for(byte field = 0; field < count; field++) {
-        //noinspection ResultOfMethodCallIgnored
-        in.read(fieldInfoBuffer);
+      for(int field = 0; field < count; field++) {
+        in.readFully(fieldInfoBuffer);
         byte fieldType = fieldInfoBuffer[0];
         
-        int dataCount = ((fieldInfoBuffer[1] & 0xFF) << 16) | ((fieldInfoBuffer[2] & 0xFF) << 8) | (fieldInfoBuffer[3] & 0xFF);//((in.read() & 0xFF) << 16) | ((in.read() & 0xFF) << 8) | (in.read() & 0xFF);
+        final int dataCount = ((fieldInfoBuffer[1] & 0xFF) << 16) | ((fieldInfoBuffer[2] & 0xFF) << 8) | (fieldInfoBuffer[3] & 0xFF);
         
         byte[] data = null;
         
         /* only read data fields with maximum size of MAX_DATA_SIZE
-         * into memory for usage to prevent OutOfMemoryErrors
+         * into memory for usage to prevent OutOfMemoryErrors,
+         * the field is read into the reused buffer of the update
          */
         if(dataCount <= MAX_DATA_SIZE) {
-          data = new byte[dataCount];
-        
-          int read = 0;
-          
-          while(read < dataCount) {    
-            read += in.read(data, read, dataCount-read);
-          }
+          data = update.getFieldBuffer(dataCount);
+          in.readFully(data, 0, dataCount);
         }
         else {
           fieldType = Byte.MAX_VALUE;
           
-          /* read all bytes from stream of too big data
+          /* skip all bytes from stream of too big data
            * field to set right start of next field
            */
-          while(dataCount > 0 && in.read() != -1) {
-            dataCount--;
-          }
+          skipFully(in, dataCount);
         }
         
-        String columnName = null;
-        
         if(data != null) {
           switch(fieldType) {
             case 1: {
-                            int startTime = IOUtils.getIntForBytes(data);
+                            int startTime = IOUtils.getIntForBytes(data, 0, dataCount);
                             utc.setTimeInMillis(update.getDate());
                             
                             cal.set(Calendar.DAY_OF_MONTH, utc.get(Calendar.DAY_OF_MONTH));
@@ -4278,17 +4556,16 @@ public class TvDataUpdateService extends Service {
                             
                             utc.setTimeInMillis(time);
                             
-                            values.put(columnName = TvBrowserContentProvider.DATA_KEY_STARTTIME, time);
+                            record.setLong(ProgramRecord.STARTTIME, time);
                             
                             // Normalize start hour and minute to 2014-12-31 to have the same time base on all occasions
                             utc.setTimeInMillis((IOUtils.normalizeTime(cal, startTime, 30).getTimeInMillis() / 60000 * 60000));
                             
-                            values.put(TvBrowserContentProvider.DATA_KEY_UTC_START_MINUTE_AFTER_MIDNIGHT, utc.get(Calendar.HOUR_OF_DAY)*60 + utc.get(Calendar.MINUTE));
+                            record.setLong(ProgramRecord.UTC_START_MINUTE_AFTER_MIDNIGHT, utc.get(Calendar.HOUR_OF_DAY)*60 + utc.get(Calendar.MINUTE));
                             
-                            columnList.remove(TvBrowserContentProvider.DATA_KEY_UTC_START_MINUTE_AFTER_MIDNIGHT);
                          }break;
             case 2: {
-              int endTime = IOUtils.getIntForBytes(data);
+              int endTime = IOUtils.getIntForBytes(data, 0, dataCount);
               
               utc.setTimeInMillis(update.getDate());
               
@@ -4300,10 +4577,8 @@ public class TvDataUpdateService extends Service {
               cal.set(Calendar.MINUTE, endTime % 60);
               cal.set(Calendar.SECOND, 30);
               
-              Long o = values.getAsLong(TvBrowserContentProvider.DATA_KEY_STARTTIME);
-              
-              if(o != null) {
-                if(o > cal.getTimeInMillis()) {
+              if(record.hasValue(ProgramRecord.STARTTIME)) {
+                if(record.getLong(ProgramRecord.STARTTIME) > cal.getTimeInMillis()) {
                   cal.add(Calendar.DAY_OF_YEAR, 1);
                 }
               }
@@ -4312,119 +4587,81 @@ public class TvDataUpdateService extends Service {
               
               utc.setTimeInMillis(time);
               
-              values.put(columnName = TvBrowserContentProvider.DATA_KEY_ENDTIME, time);
+              record.setLong(ProgramRecord.ENDTIME, time);
               
               // Normalize start hour and minute to 2014-12-31 to have the same time base on all occasions
               utc.setTimeInMillis((IOUtils.normalizeTime(cal, endTime, 30).getTimeInMillis() / 60000 * 60000));
               
-              values.put(TvBrowserContentProvider.DATA_KEY_UTC_END_MINUTE_AFTER_MIDNIGHT, utc.get(Calendar.HOUR_OF_DAY)*60 + utc.get(Calendar.MINUTE));
+              record.setLong(ProgramRecord.UTC_END_MINUTE_AFTER_MIDNIGHT, utc.get(Calendar.HOUR_OF_DAY)*60 + utc.get(Calendar.MINUTE));
               
-              columnList.remove(TvBrowserContentProvider.DATA_KEY_UTC_END_MINUTE_AFTER_MIDNIGHT);
            }break;
-            case 3: values.put(columnName = TvBrowserContentProvider.DATA_KEY_TITLE, new String(data));break;
-            case 4: values.put(columnName = TvBrowserContentProvider.DATA_KEY_TITLE_ORIGINAL, new String(data));break;
-            case 5: values.put(columnName = TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE, new String(data));break;
-            case 6: values.put(columnName = TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE_ORIGINAL, new String(data));break;
-            case 7: values.put(columnName = TvBrowserContentProvider.DATA_KEY_SHORT_DESCRIPTION, new String(data));break;
-            case 8: values.put(columnName = TvBrowserContentProvider.DATA_KEY_DESCRIPTION, new String(data));break;
-            case 9: values.put(columnName = TvBrowserContentProvider.DATA_KEY_DURATION_ORIGINAL, new String(data));break;
-            case 0xA: values.put(columnName = TvBrowserContentProvider.DATA_KEY_ACTORS, new String(data));break;
-            case 0xB: values.put(columnName = TvBrowserContentProvider.DATA_KEY_REGIE, new String(data));break;
-            case 0xC: values.put(columnName = TvBrowserContentProvider.DATA_KEY_CUSTOM_INFO, new String(data));break;
+            case 3: record.setString(ProgramRecord.TITLE, new String(data, 0, dataCount));break;
+            case 4: record.setString(ProgramRecord.TITLE_ORIGINAL, new String(data, 0, dataCount));break;
+            case 5: record.setString(ProgramRecord.EPISODE_TITLE, new String(data, 0, dataCount));break;
+            case 6: record.setString(ProgramRecord.EPISODE_TITLE_ORIGINAL, new String(data, 0, dataCount));break;
+            case 7: record.setString(ProgramRecord.SHORT_DESCRIPTION, new String(data, 0, dataCount));break;
+            case 8: record.setString(ProgramRecord.DESCRIPTION, new String(data, 0, dataCount));break;
+            case 9: record.setString(ProgramRecord.DURATION_ORIGINAL, new String(data, 0, dataCount));break;
+            case 0xA: record.setString(ProgramRecord.ACTORS, new String(data, 0, dataCount));break;
+            case 0xB: record.setString(ProgramRecord.REGIE, new String(data, 0, dataCount));break;
+            case 0xC: record.setString(ProgramRecord.CUSTOM_INFO, new String(data, 0, dataCount));break;
             case 0xD: {
-                int categories = IOUtils.getIntForBytes(data);
-                
-                values.put(columnName = TvBrowserContentProvider.DATA_KEY_CATEGORIES, categories);
-                
-                for(int i = 0; i < IOUtils.INFO_CATEGORIES_ARRAY.length; i++) {
-                  values.put(TvBrowserContentProvider.INFO_CATEGORIES_COLUMNS_ARRAY[i], IOUtils.infoSet(categories, IOUtils.INFO_CATEGORIES_ARRAY[i]));
-                  columnList.remove(TvBrowserContentProvider.INFO_CATEGORIES_COLUMNS_ARRAY[i]);
-                }
+                record.setCategories(IOUtils.getIntForBytes(data, 0, dataCount));
               }break;
-            case 0xE: values.put(columnName = TvBrowserContentProvider.DATA_KEY_AGE_LIMIT, IOUtils.getIntForBytes(data));break;
-            case 0xF: values.put(columnName = TvBrowserContentProvider.DATA_KEY_WEBSITE_LINK, new String(data));break;
-            case 0x10: values.put(columnName = TvBrowserContentProvider.DATA_KEY_GENRE, new String(data));break;
-            case 0x11: values.put(columnName = TvBrowserContentProvider.DATA_KEY_ORIGIN, new String(data));break;
-            case 0x12: values.put(columnName = TvBrowserContentProvider.DATA_KEY_NETTO_PLAY_TIME, IOUtils.getIntForBytes(data));break;
-            case 0x13: values.put(columnName = TvBrowserContentProvider.DATA_KEY_VPS, IOUtils.getIntForBytes(data));break;
-            case 0x14: values.put(columnName = TvBrowserContentProvider.DATA_KEY_SCRIPT, new String(data));break;
-            case 0x15: values.put(columnName = TvBrowserContentProvider.DATA_KEY_REPETITION_FROM, new String(data));break;
-            case 0x16: values.put(columnName = TvBrowserContentProvider.DATA_KEY_MUSIC, new String(data));break;
-            case 0x17: values.put(columnName = TvBrowserContentProvider.DATA_KEY_MODERATION, new String(data));break;
-            case 0x18: values.put(columnName = TvBrowserContentProvider.DATA_KEY_YEAR, IOUtils.getIntForBytes(data));break;
-            case 0x19: values.put(columnName = TvBrowserContentProvider.DATA_KEY_REPETITION_ON, new String(data));break;
-            case 0x1A: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PICTURE, data);break;
-            case 0x1B: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PICTURE_COPYRIGHT, new String(data));break;
-            case 0x1C: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PICTURE_DESCRIPTION, new String(data));break;
-            case 0x1D: values.put(columnName = TvBrowserContentProvider.DATA_KEY_EPISODE_NUMBER, IOUtils.getIntForBytes(data));break;
-            case 0x1E: values.put(columnName = TvBrowserContentProvider.DATA_KEY_EPISODE_COUNT, IOUtils.getIntForBytes(data));break;
-            case 0x1F: values.put(columnName = TvBrowserContentProvider.DATA_KEY_SEASON_NUMBER, IOUtils.getIntForBytes(data));break;
-            case 0x20: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PRODUCER, new String(data));break;
-            case 0x21: values.put(columnName = TvBrowserContentProvider.DATA_KEY_CAMERA, new String(data));break;
-            case 0x22: values.put(columnName = TvBrowserContentProvider.DATA_KEY_CUT, new String(data));break;
-            case 0x23: values.put(columnName = TvBrowserContentProvider.DATA_KEY_OTHER_PERSONS, new String(data));break;
-            case 0x24: values.put(columnName = TvBrowserContentProvider.DATA_KEY_RATING, IOUtils.getIntForBytes(data));break;
-            case 0x25: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PRODUCTION_FIRM, new String(data));break;
-            case 0x26: values.put(columnName = TvBrowserContentProvider.DATA_KEY_AGE_LIMIT_STRING, new String(data));break;
-            case 0x27: values.put(columnName = TvBrowserContentProvider.DATA_KEY_LAST_PRODUCTION_YEAR, IOUtils.getIntForBytes(data));break;
-            case 0x28: values.put(columnName = TvBrowserContentProvider.DATA_KEY_ADDITIONAL_INFO, new String(data));break;
-            case 0x29: values.put(columnName = TvBrowserContentProvider.DATA_KEY_SERIES, new String(data));break;
-            case 0x2A: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PART_NUMBER, IOUtils.getIntForBytes(data));break;
-            case 0x2B: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PART_NUMBER_TOTAL, IOUtils.getIntForBytes(data));break;
-            case 0x2C: values.put(columnName = TvBrowserContentProvider.DATA_KEY_KEYWORD_LIST, new String(data));break;
-            case 0x2D: values.put(columnName = TvBrowserContentProvider.DATA_KEY_VOD_INFO, new String(data));break;
-            case 0x2E: values.put(columnName = TvBrowserContentProvider.DATA_KEY_VOD_LINK, new String(data));break;
-            case 0x2F: values.put(columnName = TvBrowserContentProvider.DATA_KEY_GENRE_SUB_LIST, new String(data));break;
-            case 0x30: values.put(columnName = TvBrowserContentProvider.DATA_KEY_YEAR_PRODUCTION_FIRST, IOUtils.getIntForBytes(data));break;
-          }
-          
-          if(columnName != null) {
-            columnList.remove(columnName);
+            case 0xE: record.setLong(ProgramRecord.AGE_LIMIT, IOUtils.getIntForBytes(data, 0, dataCount));break;
+            case 0xF: record.setString(ProgramRecord.WEBSITE_LINK, new String(data, 0, dataCount));break;
+            case 0x10: record.setString(ProgramRecord.GENRE, new String(data, 0, dataCount));break;
+            case 0x11: record.setString(ProgramRecord.ORIGIN, new String(data, 0, dataCount));break;
+            case 0x12: record.setLong(ProgramRecord.NETTO_PLAY_TIME, IOUtils.getIntForBytes(data, 0, dataCount));break;
+            case 0x13: record.setLong(ProgramRecord.VPS, IOUtils.getIntForBytes(data, 0, dataCount));break;
+            case 0x14: record.setString(ProgramRecord.SCRIPT, new String(data, 0, dataCount));break;
+            case 0x15: record.setString(ProgramRecord.REPETITION_FROM, new String(data, 0, dataCount));break;
+            case 0x16: record.setString(ProgramRecord.MUSIC, new String(data, 0, dataCount));break;
+            case 0x17: record.setString(ProgramRecord.MODERATION, new String(data, 0, dataCount));break;
+            case 0x18: record.setLong(ProgramRecord.YEAR, IOUtils.getIntForBytes(data, 0, dataCount));break;
+            case 0x19: record.setString(ProgramRecord.REPETITION_ON, new String(data, 0, dataCount));break;
+            case 0x1A: record.setBlob(ProgramRecord.PICTURE, Arrays.copyOf(data, dataCount));break;
+            case 0x1B: record.setString(ProgramRecord.PICTURE_COPYRIGHT, new String(data, 0, dataCount));break;
+            case 0x1C: record.setString(ProgramRecord.PICTURE_DESCRIPTION, new String(data, 0, dataCount));break;
+            case 0x1D: record.setLong(ProgramRecord.EPISODE_NUMBER, IOUtils.getIntForBytes(data, 0, dataCount));break;
+            case 0x1E: record.setLong(ProgramRecord.EPISODE_COUNT, IOUtils.getIntForBytes(data, 0, dataCount));break;
+            case 0x1F: record.setLong(ProgramRecord.SEASON_NUMBER, IOUtils.getIntForBytes(data, 0, dataCount));break;
+            case 0x20: record.setString(ProgramRecord.PRODUCER, new String(data, 0, dataCount));break;
+            case 0x21: record.setString(ProgramRecord.CAMERA, new String(data, 0, dataCount));break;
+            case 0x22: record.setString(ProgramRecord.CUT, new String(data, 0, dataCount));break;
+            case 0x23: record.setString(ProgramRecord.OTHER_PERSONS, new String(data, 0, dataCount));break;
+            case 0x24: record.setLong(ProgramRecord.RATING, IOUtils.getIntForBytes(data, 0, dataCount));break;
+            case 0x25: record.setString(ProgramRecord.PRODUCTION_FIRM, new String(data, 0, dataCount));break;
+            case 0x26: record.setString(ProgramRecord.AGE_LIMIT_STRING, new String(data, 0, dataCount));break;
+            case 0x27: record.setLong(ProgramRecord.LAST_PRODUCTION_YEAR, IOUtils.getIntForBytes(data, 0, dataCount));break;
+            case 0x28: record.setString(ProgramRecord.ADDITIONAL_INFO, new String(data, 0, dataCount));break;
+            case 0x29: record.setString(ProgramRecord.SERIES, new String(data, 0, dataCount));break;
+            case 0x2A: record.setLong(ProgramRecord.PART_NUMBER, IOUtils.getIntForBytes(data, 0, dataCount));break;
+            case 0x2B: record.setLong(ProgramRecord.PART_NUMBER_TOTAL, IOUtils.getIntForBytes(data, 0, dataCount));break;
+            case 0x2C: record.setString(ProgramRecord.KEYWORD_LIST, new String(data, 0, dataCount));break;
+            case 0x2D: record.setString(ProgramRecord.VOD_INFO, new String(data, 0, dataCount));break;
+            case 0x2E: record.setString(ProgramRecord.VOD_LINK, new String(data, 0, dataCount));break;
+            case 0x2F: record.setString(ProgramRecord.GENRE_SUB_LIST, new String(data, 0, dataCount));break;
+            case 0x30: record.setLong(ProgramRecord.YEAR_PRODUCTION_FIRST, IOUtils.getIntForBytes(data, 0, dataCount));break;
           }
         }
         
         data = null;
       }
       
-      if(values.containsKey(TvBrowserContentProvider.DATA_KEY_STARTTIME) && !values.containsKey(TvBrowserContentProvider.DATA_KEY_ENDTIME)) {
-        values.put(TvBrowserContentProvider.DATA_KEY_ENDTIME, 0);
-        values.put(TvBrowserContentProvider.DATA_KEY_UTC_END_MINUTE_AFTER_MIDNIGHT, 0);
-        values.put(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES, 0);
-        
-        columnList.remove(TvBrowserContentProvider.DATA_KEY_ENDTIME);
-        columnList.remove(TvBrowserContentProvider.DATA_KEY_UTC_END_MINUTE_AFTER_MIDNIGHT);
-        columnList.remove(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES);
+      if(record.isSet(ProgramRecord.STARTTIME) && !record.isSet(ProgramRecord.ENDTIME)) {
+        record.setLong(ProgramRecord.ENDTIME, 0);
+        record.setLong(ProgramRecord.UTC_END_MINUTE_AFTER_MIDNIGHT, 0);
+        record.setLong(ProgramRecord.DURATION_IN_MINUTES, 0);
       }
-      else if(values.containsKey(TvBrowserContentProvider.DATA_KEY_STARTTIME)) {
-        values.put(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES, (int)((values.getAsLong(TvBrowserContentProvider.DATA_KEY_ENDTIME)-values.getAsLong(TvBrowserContentProvider.DATA_KEY_STARTTIME)) / 60000));
-        columnList.remove(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES);
+      else if(record.isSet(ProgramRecord.STARTTIME)) {
+        record.setLong(ProgramRecord.DURATION_IN_MINUTES, (int)((record.getLong(ProgramRecord.ENDTIME)-record.getLong(ProgramRecord.STARTTIME)) / 60000));
       }
       
-      for(String columnName : columnList) {
-        if(columnName.equals(TvBrowserContentProvider.DATA_KEY_CATEGORIES) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_AGE_LIMIT) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_NETTO_PLAY_TIME) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_VPS) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_YEAR) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_EPISODE_NUMBER) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_EPISODE_COUNT) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_SEASON_NUMBER) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_RATING) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_LAST_PRODUCTION_YEAR)) {
-          values.put(columnName, (Integer)null);
-        }
-        else if(columnName.equals(TvBrowserContentProvider.DATA_KEY_PICTURE)) {
-          values.put(columnName, (byte[])null);
-        }
-        else if(columnNameFromInfo(columnName)) {
-          values.put(columnName, 0);
-        }
-        else {
-          values.put(columnName, (String)null);
-        }
-      }
+      // all expected columns not contained in the frame are reset to their default value
+      record.setMissingToDefault(update.getExpectedColumns(level));
       
-      return new Object[] {String.valueOf(id),isNew};
+      return new Object[] {frameID,isNew};
     }
 
     @Override
@@ -4436,8 +4673,7 @@ public class TvDataUpdateService extends Service {
        */
       byte[] fileInfoBuffer = new byte[3];
       
-      //noinspection ResultOfMethodCallIgnored
-      in.read(fileInfoBuffer);
+      in.readFully(fileInfoBuffer);
       
       return new DataInfo(fileInfoBuffer[0],fileInfoBuffer[1],dataUrlFileHolder.getFrameCount((short)(fileInfoBuffer[2] & 0xFF)));
     }
@@ -4473,7 +4709,7 @@ public class TvDataUpdateService extends Service {
         }
       }
       
-      int[] versionInfo = mCurrentVersionIDs.get(update.getChannelID() + "_" + daysSince1970);
+      int[] versionInfo = mCurrentVersionIDs.get(getVersionKey(update.getChannelID(), daysSince1970));
       
       if(versionInfo == null && mVersionDatabaseOperation != null) {
         mVersionDatabaseOperation.addInsert(values);
@@ -4687,56 +4923,37 @@ public class TvDataUpdateService extends Service {
       String id = in.readUTF();
       byte count = in.readByte();
             
-      ArrayList<String> columnList = new ArrayList<>();
-      
-      switch(level)  {
-        case LEVEL_BASE: {
-          addArrayToList(columnList,FIELDS_LEVEL_BASE);
-          
-          if(update.mContainsDescription) {
-            addArrayToList(columnList,FIELDS_LEVEL_MORE);
-          }
-          if(update.mContainsPicture) {
-            addArrayToList(columnList,FIELDS_LEVEL_PICTURE);
-          }
-        }break;
-        case LEVEL_MORE: addArrayToList(columnList,FIELDS_LEVEL_MORE);break;
-        case LEVEL_PICTURE: addArrayToList(columnList,FIELDS_LEVEL_PICTURE);break;
-      }
-      
-      removeEpgPaidFieldsIfNecessary(columnList, String.valueOf(update.getChannelID()), mEpgPaidChannelIds);
-      
-      ContentValues values = update.mContentValueList.get(id);
+      ProgramRecord record = update.mRecordMap.get(id);
       
       boolean isNew = false;
       
-      if(values == null) {
-        values = new ContentValues();
-        update.mContentValueList.put(id, values);
+      if(record == null) {
+        record = new ProgramRecord();
+        update.mRecordMap.put(id, record);
         isNew = true;
       }
       
-      if(!values.containsKey(TvBrowserContentProvider.DATA_KEY_DATE_PROG_STRING_ID)) {
-        values.put(TvBrowserContentProvider.DATA_KEY_DATE_PROG_STRING_ID, id);
-        values.put(TvBrowserContentProvider.DATA_KEY_UNIX_DATE, update.getDate());
-        values.put(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID, update.getChannelID());
+      record.startRead();
+      
+      if(!record.isSet(ProgramRecord.DATE_PROG_STRING_ID)) {
+        record.setString(ProgramRecord.DATE_PROG_STRING_ID, id);
+        record.setLong(ProgramRecord.UNIX_DATE, update.getDate());
+        record.setLong(ProgramRecord.CHANNEL_ID, update.getChannelID());
       }
       
       int startMinutes = 0;
       
       for(byte field = 0; field < count; field++) {
         byte fieldType = (byte)in.read();
-        String columnName = null;
         
         switch(fieldType) {
           case 1: {
                     startMinutes = in.readShort();                          
                     long startTime = update.getDate() + (startMinutes * 60000L);
                     
-                    values.put(columnName = TvBrowserContentProvider.DATA_KEY_STARTTIME, startTime);
-                    values.put(TvBrowserContentProvider.DATA_KEY_UTC_START_MINUTE_AFTER_MIDNIGHT, startMinutes);
+                    record.setLong(ProgramRecord.STARTTIME, startTime);
+                    record.setLong(ProgramRecord.UTC_START_MINUTE_AFTER_MIDNIGHT, startMinutes);
                           
-                    columnList.remove(TvBrowserContentProvider.DATA_KEY_UTC_START_MINUTE_AFTER_MIDNIGHT);
                   }break;
           case 2: {
                     int endMinutes = in.readShort();
@@ -4750,42 +4967,34 @@ public class TvDataUpdateService extends Service {
                       endMinutes -= 1440;
                     }
                     
-                    values.put(columnName = TvBrowserContentProvider.DATA_KEY_ENDTIME, endTime);
+                    record.setLong(ProgramRecord.ENDTIME, endTime);
                     
-                    values.put(TvBrowserContentProvider.DATA_KEY_UTC_END_MINUTE_AFTER_MIDNIGHT, endMinutes);
-                    columnList.remove(TvBrowserContentProvider.DATA_KEY_UTC_END_MINUTE_AFTER_MIDNIGHT);
+                    record.setLong(ProgramRecord.UTC_END_MINUTE_AFTER_MIDNIGHT, endMinutes);
                   }break;
-          case 3: values.put(columnName = TvBrowserContentProvider.DATA_KEY_TITLE, in.readUTF());break;
-          case 4: values.put(columnName = TvBrowserContentProvider.DATA_KEY_TITLE_ORIGINAL, in.readUTF());break;
-          case 5: values.put(columnName = TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE, in.readUTF());break;
-          case 6: values.put(columnName = TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE_ORIGINAL, in.readUTF());break;
-          case 7: values.put(columnName = TvBrowserContentProvider.DATA_KEY_SHORT_DESCRIPTION, in.readUTF());break;
-          case 8: values.put(columnName = TvBrowserContentProvider.DATA_KEY_DESCRIPTION, in.readUTF());break;
-          case 0xA: values.put(columnName = TvBrowserContentProvider.DATA_KEY_ACTORS, in.readUTF());break;
-          case 0xB: values.put(columnName = TvBrowserContentProvider.DATA_KEY_REGIE, in.readUTF());break;
-          case 0xC: values.put(columnName = TvBrowserContentProvider.DATA_KEY_CUSTOM_INFO, in.readUTF());break;
+          case 3: record.setString(ProgramRecord.TITLE, in.readUTF());break;
+          case 4: record.setString(ProgramRecord.TITLE_ORIGINAL, in.readUTF());break;
+          case 5: record.setString(ProgramRecord.EPISODE_TITLE, in.readUTF());break;
+          case 6: record.setString(ProgramRecord.EPISODE_TITLE_ORIGINAL, in.readUTF());break;
+          case 7: record.setString(ProgramRecord.SHORT_DESCRIPTION, in.readUTF());break;
+          case 8: record.setString(ProgramRecord.DESCRIPTION, in.readUTF());break;
+          case 0xA: record.setString(ProgramRecord.ACTORS, in.readUTF());break;
+          case 0xB: record.setString(ProgramRecord.REGIE, in.readUTF());break;
+          case 0xC: record.setString(ProgramRecord.CUSTOM_INFO, in.readUTF());break;
           case 0xD: {
-              int categories = in.readInt();
-              
-              values.put(columnName = TvBrowserContentProvider.DATA_KEY_CATEGORIES, categories);
-              
-              for(int i = 0; i < IOUtils.INFO_CATEGORIES_ARRAY.length; i++) {
-                values.put(TvBrowserContentProvider.INFO_CATEGORIES_COLUMNS_ARRAY[i], IOUtils.infoSet(categories, IOUtils.INFO_CATEGORIES_ARRAY[i]));
-                columnList.remove(TvBrowserContentProvider.INFO_CATEGORIES_COLUMNS_ARRAY[i]);
-              }
+              record.setCategories(in.readInt());
             }break;
-          case 0xE: values.put(columnName = TvBrowserContentProvider.DATA_KEY_AGE_LIMIT, in.readByte());break;
-          case 0xF: values.put(columnName = TvBrowserContentProvider.DATA_KEY_WEBSITE_LINK, in.readUTF());break;
-          case 0x10: values.put(columnName = TvBrowserContentProvider.DATA_KEY_GENRE, in.readUTF());break;
-          case 0x11: values.put(columnName = TvBrowserContentProvider.DATA_KEY_ORIGIN, in.readUTF());break;
-          case 0x12: values.put(columnName = TvBrowserContentProvider.DATA_KEY_NETTO_PLAY_TIME, in.readShort());break;
-          case 0x13: values.put(columnName = TvBrowserContentProvider.DATA_KEY_VPS, in.readShort());break;
-          case 0x14: values.put(columnName = TvBrowserContentProvider.DATA_KEY_SCRIPT, in.readUTF());break;
-          case 0x15: values.put(columnName = TvBrowserContentProvider.DATA_KEY_REPETITION_FROM, in.readUTF());break;
-          case 0x16: values.put(columnName = TvBrowserContentProvider.DATA_KEY_MUSIC, in.readUTF());break;
-          case 0x17: values.put(columnName = TvBrowserContentProvider.DATA_KEY_MODERATION, in.readUTF());break;
-          case 0x18: values.put(columnName = TvBrowserContentProvider.DATA_KEY_YEAR, in.readShort());break;
-          case 0x19: values.put(columnName = TvBrowserContentProvider.DATA_KEY_REPETITION_ON, in.readUTF());break;
+          case 0xE: record.setLong(ProgramRecord.AGE_LIMIT, in.readByte());break;
+          case 0xF: record.setString(ProgramRecord.WEBSITE_LINK, in.readUTF());break;
+          case 0x10: record.setString(ProgramRecord.GENRE, in.readUTF());break;
+          case 0x11: record.setString(ProgramRecord.ORIGIN, in.readUTF());break;
+          case 0x12: record.setLong(ProgramRecord.NETTO_PLAY_TIME, in.readShort());break;
+          case 0x13: record.setLong(ProgramRecord.VPS, in.readShort());break;
+          case 0x14: record.setString(ProgramRecord.SCRIPT, in.readUTF());break;
+          case 0x15: record.setString(ProgramRecord.REPETITION_FROM, in.readUTF());break;
+          case 0x16: record.setString(ProgramRecord.MUSIC, in.readUTF());break;
+          case 0x17: record.setString(ProgramRecord.MODERATION, in.readUTF());break;
+          case 0x18: record.setLong(ProgramRecord.YEAR, in.readShort());break;
+          case 0x19: record.setString(ProgramRecord.REPETITION_ON, in.readUTF());break;
           case 0x1A: {  byte[] data = null;
                         int dataCount = in.readInt();
                         
@@ -4794,87 +5003,48 @@ public class TvDataUpdateService extends Service {
                          */
                         if(dataCount <= MAX_DATA_SIZE) {
                           data = new byte[dataCount];
-                        
-                          int read = 0;
-                          
-                          while(read < dataCount) {    
-                            read += in.read(data, read, dataCount-read);
-                          }
+                          in.readFully(data);
                         }
                         else {
-                          fieldType = Byte.MAX_VALUE;
-                          
-                          /* read all bytes from stream of too big data
+                          /* skip all bytes from stream of too big data
                            * field to set right start of next field
                            */
-                          while(dataCount > 0 && in.read() != -1) {
-                            dataCount--;
-                          }
+                          skipFully(in, dataCount);
                         }
                         
                         if(data != null) {
-                          values.put(columnName = TvBrowserContentProvider.DATA_KEY_PICTURE, data);
+                          record.setBlob(ProgramRecord.PICTURE, data);
                         }
                      }break;
-          case 0x1B: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PICTURE_COPYRIGHT, in.readUTF());break;
-          case 0x1C: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PICTURE_DESCRIPTION, in.readUTF());break;
-          case 0x1D: values.put(columnName = TvBrowserContentProvider.DATA_KEY_EPISODE_NUMBER, in.readInt());break;
-          case 0x1E: values.put(columnName = TvBrowserContentProvider.DATA_KEY_EPISODE_COUNT, in.readShort());break;
-          case 0x1F: values.put(columnName = TvBrowserContentProvider.DATA_KEY_SEASON_NUMBER, in.readShort());break;
-          case 0x20: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PRODUCER, in.readUTF());break;
-          case 0x21: values.put(columnName = TvBrowserContentProvider.DATA_KEY_CAMERA, in.readUTF());break;
-          case 0x22: values.put(columnName = TvBrowserContentProvider.DATA_KEY_CUT, in.readUTF());break;
-          case 0x23: values.put(columnName = TvBrowserContentProvider.DATA_KEY_OTHER_PERSONS, in.readUTF());break;
-          case 0x24: values.put(columnName = TvBrowserContentProvider.DATA_KEY_RATING, in.readShort());break;
-          case 0x25: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PRODUCTION_FIRM, in.readUTF());break;
-          case 0x26: values.put(columnName = TvBrowserContentProvider.DATA_KEY_AGE_LIMIT_STRING, in.readUTF());break;
-          case 0x27: values.put(columnName = TvBrowserContentProvider.DATA_KEY_LAST_PRODUCTION_YEAR, in.readShort());break;
-          case 0x28: values.put(columnName = TvBrowserContentProvider.DATA_KEY_ADDITIONAL_INFO, in.readUTF());break;
-          case 0x29: values.put(columnName = TvBrowserContentProvider.DATA_KEY_SERIES, in.readUTF());break;
-        }
-        
-        if(columnName != null) {
-          columnList.remove(columnName);
+          case 0x1B: record.setString(ProgramRecord.PICTURE_COPYRIGHT, in.readUTF());break;
+          case 0x1C: record.setString(ProgramRecord.PICTURE_DESCRIPTION, in.readUTF());break;
+          case 0x1D: record.setLong(ProgramRecord.EPISODE_NUMBER, in.readInt());break;
+          case 0x1E: record.setLong(ProgramRecord.EPISODE_COUNT, in.readShort());break;
+          case 0x1F: record.setLong(ProgramRecord.SEASON_NUMBER, in.readShort());break;
+          case 0x20: record.setString(ProgramRecord.PRODUCER, in.readUTF());break;
+          case 0x21: record.setString(ProgramRecord.CAMERA, in.readUTF());break;
+          case 0x22: record.setString(ProgramRecord.CUT, in.readUTF());break;
+          case 0x23: record.setString(ProgramRecord.OTHER_PERSONS, in.readUTF());break;
+          case 0x24: record.setLong(ProgramRecord.RATING, in.readShort());break;
+          case 0x25: record.setString(ProgramRecord.PRODUCTION_FIRM, in.readUTF());break;
+          case 0x26: record.setString(ProgramRecord.AGE_LIMIT_STRING, in.readUTF());break;
+          case 0x27: record.setLong(ProgramRecord.LAST_PRODUCTION_YEAR, in.readShort());break;
+          case 0x28: record.setString(ProgramRecord.ADDITIONAL_INFO, in.readUTF());break;
+          case 0x29: record.setString(ProgramRecord.SERIES, in.readUTF());break;
         }
       }
       
-      if(values.containsKey(TvBrowserContentProvider.DATA_KEY_STARTTIME) && !values.containsKey(TvBrowserContentProvider.DATA_KEY_ENDTIME)) {
-        values.put(TvBrowserContentProvider.DATA_KEY_ENDTIME, 0);
-        values.put(TvBrowserContentProvider.DATA_KEY_UTC_END_MINUTE_AFTER_MIDNIGHT, 0);
-        values.put(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES, 0);
-        
-        columnList.remove(TvBrowserContentProvider.DATA_KEY_ENDTIME);
-        columnList.remove(TvBrowserContentProvider.DATA_KEY_UTC_END_MINUTE_AFTER_MIDNIGHT);
-        columnList.remove(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES);
+      if(record.isSet(ProgramRecord.STARTTIME) && !record.isSet(ProgramRecord.ENDTIME)) {
+        record.setLong(ProgramRecord.ENDTIME, 0);
+        record.setLong(ProgramRecord.UTC_END_MINUTE_AFTER_MIDNIGHT, 0);
+        record.setLong(ProgramRecord.DURATION_IN_MINUTES, 0);
       }
-      else if(values.containsKey(TvBrowserContentProvider.DATA_KEY_STARTTIME)) {
-        values.put(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES, (int)((values.getAsLong(TvBrowserContentProvider.DATA_KEY_ENDTIME)-values.getAsLong(TvBrowserContentProvider.DATA_KEY_STARTTIME)) / 60000));
-        columnList.remove(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES);
+      else if(record.isSet(ProgramRecord.STARTTIME)) {
+        record.setLong(ProgramRecord.DURATION_IN_MINUTES, (int)((record.getLong(ProgramRecord.ENDTIME)-record.getLong(ProgramRecord.STARTTIME)) / 60000));
       }
       
-      for(String columnName : columnList) {
-        if(columnName.equals(TvBrowserContentProvider.DATA_KEY_CATEGORIES) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_AGE_LIMIT) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_NETTO_PLAY_TIME) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_VPS) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_YEAR) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_EPISODE_NUMBER) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_EPISODE_COUNT) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_SEASON_NUMBER) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_RATING) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_LAST_PRODUCTION_YEAR)) {
-          values.put(columnName, (Integer)null);
-        }
-        else if(columnName.equals(TvBrowserContentProvider.DATA_KEY_PICTURE)) {
-          values.put(columnName, (byte[])null);
-        }
-        else if(columnNameFromInfo(columnName)) {
-          values.put(columnName, 0);
-        }
-        else {
-          values.put(columnName, (String)null);
-        }
-      }
+      // all expected columns not contained in the frame are reset to their default value
+      record.setMissingToDefault(update.getExpectedColumns(level));
       
       return new Object[] {id,isNew};
     }
@@ -4898,7 +5068,6 @@ public class TvDataUpdateService extends Service {
       
       for(String fileName : update.mVersionMap.keySet()) {
         Byte dataVersion = update.mVersionMap.get(fileName);
-        Log.d("info21","ADD VERSION INFO " + fileName + " " + update.getChannelID() + "_" + daysSince1970 + " " + dataVersion);
         if(dataVersion != null) {
           if(fileName.toLowerCase(Locale.GERMAN).contains(SettingConstants.EPG_DONATE_LEVEL_NAMES[0])) {
             values.put(TvBrowserContentProvider.VERSION_KEY_BASE_VERSION,dataVersion.intValue());
@@ -4912,9 +5081,7 @@ public class TvDataUpdateService extends Service {
         }
       }
       
-      int[] versionInfo = mCurrentVersionIDs.get(update.getChannelID() + "_" + daysSince1970);
-      
-      Log.d("info21","currentInfo " + Arrays.toString(versionInfo) + " BASE " + values.getAsByte(TvBrowserContentProvider.VERSION_KEY_BASE_VERSION));
+      int[] versionInfo = mCurrentVersionIDs.get(getVersionKey(update.getChannelID(), daysSince1970));
       
       if(versionInfo == null && mVersionDatabaseOperation != null) {
         mVersionDatabaseOperation.addInsert(values);
@@ -4941,13 +5108,17 @@ public class TvDataUpdateService extends Service {
     private final long mChannelID;
     private final String mTimeZone;
     private final long mDate;
-    private HashMap<String, ContentValues> mContentValueList; 
+    private HashMap<String, ProgramRecord> mRecordMap;
     private HashMap<String, Byte> mVersionMap;
-    private ArrayList<ContentValues> mInsertValuesList;
-    private LongSparseArray<ContentValues> mUpdateValueMap;
+    private ArrayList<ProgramRecord> mInsertRecordList;
+    private LongSparseArray<ProgramRecord> mUpdateRecordMap;
+    // the programs of the channel and day in the database, only kept while the data files are read
+    private CurrentData mCurrentData;
     private boolean mContainsPicture;
     private boolean mContainsDescription;
     private final DataHandler mDataHandler;
+    private byte[] mFieldBuffer;
+    private long[][] mExpectedColumns;
     
     /**
      * @param date Start time in milliseconds since 1970 for UTC 0 o'clock.
@@ -4968,19 +5139,86 @@ public class TvDataUpdateService extends Service {
       
       mDate = date;
       mUrlList = new ArrayList<>();
-      mContentValueList = new HashMap<>(0);
-      mInsertValuesList = new ArrayList<>();
+      mRecordMap = new HashMap<>(0);
+      mInsertRecordList = new ArrayList<>();
       mVersionMap = new HashMap<>();
-      mUpdateValueMap = new LongSparseArray<>();
+      mUpdateRecordMap = new LongSparseArray<>();
       mContainsDescription = false;
       mContainsPicture = false;
     }
     
-    void addURL(String url) {
-      mUrlList.add(url);
+    /**
+     * Gets the reusable buffer for reading data fields of this update.
+     * A ChannelUpdate is always handled by one thread only, so the
+     * buffer can be shared by all data files of the update.
+     * <p>
+     * @param size The minimum size of the buffer.
+     * @return The buffer with at least the given size.
+     */
+    byte[] getFieldBuffer(int size) {
+      if(mFieldBuffer == null || mFieldBuffer.length < size) {
+        mFieldBuffer = new byte[Math.max(size, 1024)];
+      }
+      
+      return mFieldBuffer;
+    }
+    
+    /**
+     * Gets the mask with the columns that are expected in a
+     * data file of the given level for the channel of this update.
+     * <p>
+     * @param level The level of the data file.
+     * @return The mask of the expected columns.
+     */
+    long[] getExpectedColumns(int level) {
+      if(mExpectedColumns == null) {
+        mExpectedColumns = new long[LEVEL_PICTURE+1][];
+      }
+      
+      long[] mask = level >= 0 && level < mExpectedColumns.length ? mExpectedColumns[level] : MASK_EMPTY;
+      
+      if(mask == null) {
+        switch(level) {
+          case LEVEL_BASE: mask = ProgramRecord.combineMasks(MASK_LEVEL_BASE, mContainsDescription ? MASK_LEVEL_MORE : MASK_EMPTY, mContainsPicture ? MASK_LEVEL_PICTURE : MASK_EMPTY);break;
+          case LEVEL_MORE: mask = MASK_LEVEL_MORE;break;
+          default: mask = MASK_LEVEL_PICTURE;break;
+        }
+        
+        if(mEpgPaidChannelIds != null && mEpgPaidChannelIds.contains(String.valueOf(mChannelID))) {
+          mask = ProgramRecord.removeFromMask(mask, MASK_EPGPAID_POSSIBLE);
+        }
+        
+        mExpectedColumns[level] = mask;
+      }
+      
+      return mask;
+    }
+    
+    /**
+     * Adds the data file to this update, it is only downloaded if
+     * the file of a former update can't be used.
+     * <p>
+     * @param url The URL of the data file.
+     * @param version The version of the data file on the server.
+     */
+    void addURL(String url, int version) {
+      final String fileName = url.substring(url.lastIndexOf("/")+1);
+      final int state = mUpdateJournal != null ? mUpdateJournal.queue(fileName, version) : UpdateJournal.STATE_QUEUED;
+      
+      if(state == UpdateJournal.STATE_DOWNLOADED || state == UpdateJournal.STATE_PARSED) {
+        doLog("Use data file of former update: " + fileName);
+        addDownloadedFile(mUpdateJournal.getFile(fileName), url);
+      }
+      else if(state == UpdateJournal.STATE_FAILED) {
+        doLog("Download of data file postponed after failures: " + fileName);
+      }
+      else {
+        mUrlList.add(url);
+      }
       
       mContainsDescription = url.contains("_more");
       mContainsPicture = url.contains("_picture");
+      mExpectedColumns = null;
     }
     
     long getChannelID() {
@@ -4996,26 +5234,30 @@ public class TvDataUpdateService extends Service {
     }
     
     boolean toDownload() {
-      return !mUrlList.isEmpty();
+      return !mUrlList.isEmpty() || mDownloadList != null;
     }
     
     int size() {
-      return mUrlList.size();
+      return mUrlList.size() + (mDownloadList != null ? mDownloadList.size() : 0);
     }
     
     private ArrayList<UrlFileHolder> mDownloadList;
     
     void addDownloadedFile(File file) {
+      addDownloadedFile(file, null);
+    }
+    
+    private void addDownloadedFile(File file, String url) {
       if(mDownloadList == null) {
         mDownloadList = new ArrayList<>();
       }
       
-      mDownloadList.add(new UrlFileHolder(file, null));
+      mDownloadList.add(new UrlFileHolder(file, url));
     }
     
     void startUpdate(final NotificationManager notification, final int downloadCount, final UncaughtExceptionHandler handleExc) {
       if(!mDataUpdatePool.isShutdown()) {
-        mDataUpdatePool.execute(new Thread("CHANNEL UPDATE HANDLE START UPDATE") {
+        executeDataUpdate(new Thread("CHANNEL UPDATE HANDLE START UPDATE") {
           @Override
           public void run() {
             setUncaughtExceptionHandler(handleExc);
@@ -5024,6 +5266,7 @@ public class TvDataUpdateService extends Service {
               handleDownload(updateFile);
             }
             
+            mCurrentData = null;
             handleData();
             
             if(mShowNotification) {
@@ -5037,31 +5280,61 @@ public class TvDataUpdateService extends Service {
     }
     
     void download(File path, final NotificationManager notification, final int downloadCount) {
-      final ArrayList<UrlFileHolder> downloadList = new ArrayList<>();
+      // files of a former update are handled with the downloaded files
+      final ArrayList<UrlFileHolder> downloadList = mDownloadList != null ? mDownloadList : new ArrayList<>();
       
       for(String url : mUrlList) {
-        File updateFile = new File(path,url.substring(url.lastIndexOf("/")+1));
+        final String fileName = url.substring(url.lastIndexOf("/")+1);
+        File updateFile = new File(path,fileName);
+        
+        boolean success = false;
+        int attempt = 0;
         
-        if(mIsConnected) {
+        while(!success && attempt < MAX_DOWNLOAD_ATTEMPTS && mIsConnected) {
           try {
+            if(attempt > 0) {
+              Thread.sleep(DOWNLOAD_RETRY_DELAY << (attempt-1));
+            }
+            
+            attempt++;
+            
             long downloadStart = System.currentTimeMillis();
             
-            if(IOUtils.saveUrl(updateFile.getAbsolutePath(), url, mInternetConnectionTimeout)) {
-              downloadList.add(new UrlFileHolder(updateFile, url));
-            }
-            else {
-              mUnsuccessfulDownloads++;
-            }
+            // the time of the engine doesn't include the wait for a free connection
+            final AtomicLong downloadTime = new AtomicLong();
+            success = IOUtils.saveUrl(updateFile.getAbsolutePath(), url, mInternetConnectionTimeout, (fileUrl, target, loaded, duration) -> downloadTime.set(duration));
             
             checkAndSetConnectionState(downloadStart);
-          } catch (Exception e) {
-            mUnsuccessfulDownloads++;
+            
+            // a download that failed because the connection was lost isn't the fault of the mirror
+            if(success || mIsConnected) {
+              MirrorStats.getInstance(TvDataUpdateService.this).recordDownload(url, success ? updateFile.length() : 0, downloadTime.get(), success);
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            break;
+          } catch (Exception ignored) {}
+        }
+        
+        if(success) {
+          downloadList.add(new UrlFileHolder(updateFile, url));
+          
+          if(mUpdateJournal != null) {
+            mUpdateJournal.setDownloaded(fileName);
+          }
+        }
+        else if(attempt > 0) {
+          mUnsuccessfulDownloads++;
+          
+          // a lost connection isn't a failure of the file
+          if(mIsConnected && mUpdateJournal != null) {
+            mUpdateJournal.setFailed(fileName);
           }
         }
       }
       
       if(!mDataUpdatePool.isShutdown()) {
-        mDataUpdatePool.execute(new Thread("CHANNEL UPDATE HANDLE DOWNLOAD") {
+        executeDataUpdate(new Thread("CHANNEL UPDATE HANDLE DOWNLOAD") {
           @Override
           public void run() {
             for(UrlFileHolder updateFile : downloadList) {
@@ -5074,18 +5347,33 @@ public class TvDataUpdateService extends Service {
               }
             }
             
+            mCurrentData = null;
             handleData();
           }
         });
       }
     }
     
+    /**
+     * Runs the handling of the data on the data update pool, the
+     * data is dropped if the update was cancelled in the meantime.
+     */
+    private void executeDataUpdate(Runnable task) {
+      try {
+        mDataUpdatePool.execute(task);
+      }catch(RejectedExecutionException e) {
+        doLog("Data of channel " + getChannelID() + " not handled: " + e.getMessage());
+      }
+    }
+    
     private void handleData() {
-      if(!mInsertValuesList.isEmpty()) {
-        Collections.sort(mInsertValuesList, (lhs, rhs) -> {
-          if(lhs.containsKey(TvBrowserContentProvider.DATA_KEY_STARTTIME) && rhs.containsKey(TvBrowserContentProvider.DATA_KEY_STARTTIME)) {
-            long lStart = lhs.getAsLong(TvBrowserContentProvider.DATA_KEY_STARTTIME);
-            long rStart = rhs.getAsLong(TvBrowserContentProvider.DATA_KEY_STARTTIME);
+      addChangedDay(getChannelID(), getDate());
+      
+      if(!mInsertRecordList.isEmpty()) {
+        Collections.sort(mInsertRecordList, (lhs, rhs) -> {
+          if(lhs.hasValue(ProgramRecord.STARTTIME) && rhs.hasValue(ProgramRecord.STARTTIME)) {
+            long lStart = lhs.getLong(ProgramRecord.STARTTIME);
+            long rStart = rhs.getLong(ProgramRecord.STARTTIME);
 
             if(lStart < rStart) {
               return -1;
@@ -5098,22 +5386,22 @@ public class TvDataUpdateService extends Service {
           return 0;
         });
          
-         ContentValues toAdd = mInsertValuesList.get(0);
+         ProgramRecord toAdd = mInsertRecordList.get(0);
          Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
          Calendar cal = Calendar.getInstance(getTimeZone());
          
-         for(int i = 1; i < mInsertValuesList.size()-1; i++) {
-           if(toAdd.containsKey(TvBrowserContentProvider.DATA_KEY_STARTTIME)) {
-             if(!toAdd.containsKey(TvBrowserContentProvider.DATA_KEY_ENDTIME) || toAdd.getAsLong(TvBrowserContentProvider.DATA_KEY_ENDTIME) == 0) {
-               long meStart = toAdd.getAsLong(TvBrowserContentProvider.DATA_KEY_STARTTIME);
+         for(int i = 1; i < mInsertRecordList.size()-1; i++) {
+           if(toAdd.isSet(ProgramRecord.STARTTIME)) {
+             if(!toAdd.isSet(ProgramRecord.ENDTIME) || toAdd.getLong(ProgramRecord.ENDTIME) == 0) {
+               long meStart = toAdd.getLong(ProgramRecord.STARTTIME);
                int j = i;
                
-               while(j < mInsertValuesList.size() && meStart == mInsertValuesList.get(j).getAsLong(TvBrowserContentProvider.DATA_KEY_STARTTIME)) {
+               while(j < mInsertRecordList.size() && meStart == mInsertRecordList.get(j).getLong(ProgramRecord.STARTTIME)) {
                  j++;
                }
                
-               if(j < mInsertValuesList.size()) {
-                 long nextStart = mInsertValuesList.get(j).getAsLong(TvBrowserContentProvider.DATA_KEY_STARTTIME);
+               if(j < mInsertRecordList.size()) {
+                 long nextStart = mInsertRecordList.get(j).getLong(ProgramRecord.STARTTIME);
                  
                  if((nextStart - meStart) >= (12 * 60 * 60000)) {
                    nextStart = meStart + (long)(2.5 * 60 * 60000);
@@ -5127,37 +5415,37 @@ public class TvDataUpdateService extends Service {
                  // Normalize start hour and minute to 2014-12-31 to have the same time base on all occasions
                  utc.setTimeInMillis((IOUtils.normalizeTime(cal, startHour, startMinute, 30).getTimeInMillis() / 60000 * 60000));
                  
-                 toAdd.put(TvBrowserContentProvider.DATA_KEY_UTC_END_MINUTE_AFTER_MIDNIGHT, utc.get(Calendar.HOUR_OF_DAY)*60 + utc.get(Calendar.MINUTE));
-                 toAdd.put(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES, (int)((nextStart - meStart)/60000));
-                 toAdd.put(TvBrowserContentProvider.DATA_KEY_ENDTIME, nextStart);
+                 toAdd.setLong(ProgramRecord.UTC_END_MINUTE_AFTER_MIDNIGHT, utc.get(Calendar.HOUR_OF_DAY)*60 + utc.get(Calendar.MINUTE));
+                 toAdd.setLong(ProgramRecord.DURATION_IN_MINUTES, (int)((nextStart - meStart)/60000));
+                 toAdd.setLong(ProgramRecord.ENDTIME, nextStart);
                }
              }
              else {
-               long meStart = toAdd.getAsLong(TvBrowserContentProvider.DATA_KEY_STARTTIME);
-               long meEnd = toAdd.getAsLong(TvBrowserContentProvider.DATA_KEY_ENDTIME);
+               long meStart = toAdd.getLong(ProgramRecord.STARTTIME);
+               long meEnd = toAdd.getLong(ProgramRecord.ENDTIME);
                
-               toAdd.put(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES, (int)((meEnd - meStart)/60000));
+               toAdd.setLong(ProgramRecord.DURATION_IN_MINUTES, (int)((meEnd - meStart)/60000));
              }
            }
            
-           toAdd = mInsertValuesList.get(i);
+           toAdd = mInsertRecordList.get(i);
          }
-         for(ContentValues values : mInsertValuesList) {
-           if(values.containsKey(TvBrowserContentProvider.DATA_KEY_STARTTIME) && mDataDatabaseOperation != null) {
-             mDataDatabaseOperation.addInsert(values);
+         for(ProgramRecord record : mInsertRecordList) {
+           if(record.isSet(ProgramRecord.STARTTIME) && mDataDatabaseOperation != null) {
+             mDataDatabaseOperation.addInsert(record.toContentValues());
              //addInsert(values);
            }
          }
        }
        
-       if(mUpdateValueMap!=null) {
-         for(int i=0; i<mUpdateValueMap.size(); i++) {
-           final long programID = mUpdateValueMap.keyAt(i);
-           ContentValues value = mUpdateValueMap.get(programID);
+       if(mUpdateRecordMap!=null) {
+         for(int i=0; i<mUpdateRecordMap.size(); i++) {
+           final long programID = mUpdateRecordMap.keyAt(i);
+           ProgramRecord record = mUpdateRecordMap.get(programID);
            
-           if(value != null && mDataDatabaseOperation != null) {
+           if(record != null && mDataDatabaseOperation != null) {
              ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, programID));
-             opBuilder.withValues(value);
+             opBuilder.withValues(record.toContentValues());
           
              mDataDatabaseOperation.addUpdate(opBuilder.build());
              //addUpdate(opBuilder.build());
@@ -5171,60 +5459,49 @@ public class TvDataUpdateService extends Service {
     }
     
     void clear() {
-      mContentValueList.clear();
+      mRecordMap.clear();
       mVersionMap.clear();
-      mUpdateValueMap.clear();
-      mInsertValuesList.clear();
+      mUpdateRecordMap.clear();
+      mInsertRecordList.clear();
       
       if(mDownloadList != null) {
         mDownloadList.clear();
         mDownloadList = null;
       }
       
-      mContentValueList = null;
+      mRecordMap = null;
+      mCurrentData = null;
+      mFieldBuffer = null;
+      mExpectedColumns = null;
       mVersionMap = null;
-      mUpdateValueMap = null;
-      mInsertValuesList = null;
+      mUpdateRecordMap = null;
+      mInsertRecordList = null;
     }
     
     private void handleDownload(UrlFileHolder dataUrlFileHolder) {
       File dataFile = dataUrlFileHolder.getDownloadFile();
-      Log.d("info21", "FILE " + dataFile.getAbsolutePath());
       if(dataFile.isFile()) {
         doLog("Read data from file: " +dataFile.getAbsolutePath());
         DataInputStream in = null;
+        boolean parsed = false;
         try {
-          ByteArrayOutputStream temp = null;
-          try {
-            in = new DataInputStream(new BufferedInputStream(IOUtils.decompressStream(new FileInputStream(dataFile))));
-            temp = new ByteArrayOutputStream();
-            
-            byte[] buffer = new byte[8192];
-            
-            int count = 0;
-            int readCount = 0;
-            
-            while((count = in.read(buffer)) > 0) {
-              temp.write(buffer, readCount, count);
-            }
-            
-            IOUtils.close(in);
-            
-            in = new DataInputStream(new ByteArrayInputStream(temp.toByteArray()));
-          }catch(IOException ignored) {
-           
-          } finally {
-            IOUtils.close(temp);
-          }
+          /* frames are decoded directly from the decompressing stream,
+           * so the inflated file is never held in memory completely,
+           * the checksum of every frame is calculated while reading
+           */
+          final CRC32 checksum = new CRC32();
+          in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(IOUtils.decompressStream(new FileInputStream(dataFile)), STREAM_BUFFER_SIZE), checksum));
           
           final DataInfo dataInfo = mDataHandler.readDataInfo(this, in, dataUrlFileHolder);
           
           doLog("Frame count of data file: '" +dataFile.getName() + "': " + dataInfo.getFrameCount() + " CURRENT DATA STATE: " + (mCurrentData != null));
-          ArrayList<String> missingFrameIDs = null;
-                  
-          String key = getChannelID() + "_" + getDate();
           
-          Hashtable<String, CurrentDataHolder> current = mCurrentData.get(key);
+          // only the channel and day of this update is read, when the first of its files is read
+          if(mCurrentData == null) {
+            mCurrentData = readCurrentData(getChannelID(), getDate());
+          }
+          
+          final CurrentData current = mCurrentData.isEmpty() ? null : mCurrentData;
           
           int level = LEVEL_BASE;
           
@@ -5237,29 +5514,28 @@ public class TvDataUpdateService extends Service {
           
           doLogData(" LEVEL " + level);
           
-          if(current != null && level == LEVEL_BASE) {
-            Set<String> keySet = current.keySet();
-            
-            missingFrameIDs = new ArrayList<>(keySet.size());
-
-            missingFrameIDs.addAll(keySet);
-            
-            doLog("CURRENT FRAMES COUNT FOR '" + dataFile.getName() + "' " + missingFrameIDs.size());
-          }
+          // the frames with the same checksum as in the last update are already in the database
+          final FrameCache.Frames frames = mFrameCache != null ? mFrameCache.read(dataFile.getName()) : null;
+          // the expected columns change the written values too
+          final int columnsHash = Arrays.hashCode(getExpectedColumns(level));
           
           for(int i = 0; i < dataInfo.getFrameCount(); i++) {
             try {
+              checksum.reset();
+              
               Object[] info = mDataHandler.readValuesFromDataFile(this, in, level);
               
               String frameID = (String)info[0];
               boolean isNew =  (Boolean)info[1];
               
-              ContentValues contentValues = mContentValueList.get(frameID);
+              ProgramRecord record = mRecordMap.get(frameID);
               
-              if(contentValues == null) {
+              if(record == null) {
                 break;
               }
               
+              final boolean unchanged = frames != null && frames.add(frameID, (int)checksum.getValue() ^ columnsHash);
+              
               long programID = -1;
               CurrentDataHolder value = null;
               
@@ -5271,50 +5547,53 @@ public class TvDataUpdateService extends Service {
                 }
               }
               
-              if(contentValues.size() > 0) {
-                if(missingFrameIDs != null) {
-                  missingFrameIDs.remove(frameID);
+              if(!record.isEmpty()) {
+                if(value != null && level == LEVEL_BASE) {
+                  value.mFound = true;
                 }
                 
                 if(programID >= 0) {
                   if(level == LEVEL_BASE && mDontWantToSeeValues != null) {
-                    String title = contentValues.getAsString(TvBrowserContentProvider.DATA_KEY_TITLE);
+                    String title = record.getString(ProgramRecord.TITLE);
                     
                     if(title != null) {
                       if(title.equals(value.mTitle)) {
-                        contentValues.put(TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE, value.mDontWantToSee ? 1 : 0);
+                        record.setLong(ProgramRecord.DONT_WANT_TO_SEE, value.mDontWantToSee ? 1 : 0);
                       }
                       else if(UiUtils.filter(title, mDontWantToSeeValues)) {
-                        contentValues.put(TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE, 1);
+                        record.setLong(ProgramRecord.DONT_WANT_TO_SEE, 1);
                       }
                     }
                   }
                   
-                  // program known update it
-                  if(isNew && isValidDataContent(contentValues)) {
-                    mUpdateValueMap.put(programID, contentValues);
+                  // program known update it, if the frame was changed
+                  if((frames != null ? !unchanged : isNew) && isValidDataContent(record)) {
+                    mUpdateRecordMap.put(programID, record);
                   }
                 }
-                else if(contentValues.containsKey(TvBrowserContentProvider.DATA_KEY_STARTTIME) && contentValues.get(TvBrowserContentProvider.DATA_KEY_STARTTIME) != null) {
+                else if(record.hasValue(ProgramRecord.STARTTIME)) {
                   // program unknown insert it
                   if(level == LEVEL_BASE && mDontWantToSeeValues != null) {
-                    String title = contentValues.getAsString(TvBrowserContentProvider.DATA_KEY_TITLE);
+                    String title = record.getString(ProgramRecord.TITLE);
                     
                     if(UiUtils.filter(title, mDontWantToSeeValues)) {
-                      contentValues.put(TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE, 1);
+                      record.setLong(ProgramRecord.DONT_WANT_TO_SEE, 1);
                     }
                   }
                   
-                  if(isNew && isValidDataContent(contentValues)) {
-                    mInsertValuesList.add(contentValues);
+                  if(isNew && isValidDataContent(record)) {
+                    mInsertRecordList.add(record);
                   }
                 }
                 else if(level == LEVEL_BASE) {
                   // insert but no start time key or start time is null, dismiss
-                  mContentValueList.remove(frameID);
-                  mInsertValuesList.remove(contentValues);
+                  mRecordMap.remove(frameID);
+                  mInsertRecordList.remove(record);
                 }
               }
+            }catch(EOFException eof) {
+              doLog("Unexpected end of data file: '" +dataFile.getAbsolutePath() + "' after " + i + " of " + dataInfo.getFrameCount() + " frames");
+              break;
             }catch(Throwable t) {
               StackTraceElement[] elements = t.getStackTrace();
               
@@ -5327,10 +5606,11 @@ public class TvDataUpdateService extends Service {
               doLog("Error read data file: '" +dataFile.getAbsolutePath() + "': " + t.getMessage() + " " + message.toString());
             }
           }
-          Log.d("info21", "VERSION " + dataFile.getName() + " " + dataInfo.getDataVersion());
           mVersionMap.put(dataFile.getName(), dataInfo.getDataVersion());
           
-          if(level == LEVEL_BASE && missingFrameIDs != null && !missingFrameIDs.isEmpty()) {
+          final ArrayList<String> missingFrameIDs = current != null && level == LEVEL_BASE ? current.getMissingFrameIDs() : null;
+          
+          if(missingFrameIDs != null && !missingFrameIDs.isEmpty()) {
             StringBuilder where = new StringBuilder(" ( ( ");
             
             where.append(TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID);
@@ -5361,6 +5641,12 @@ public class TvDataUpdateService extends Service {
           }
           
           Log.d("info5", "INSERTED");
+          
+          if(frames != null) {
+            mFrameCache.store(frames);
+          }
+          
+          parsed = true;
         } catch (Exception e) {
           StackTraceElement[] elements = e.getStackTrace();
           
@@ -5376,7 +5662,17 @@ public class TvDataUpdateService extends Service {
           IOUtils.close(in);
         }
         
-        deleteFile(dataFile);
+        if(parsed && mUpdateJournal != null) {
+          // the file is kept until its data was written to the database
+          mUpdateJournal.setParsed(dataFile.getName());
+        }
+        else {
+          if(mUpdateJournal != null) {
+            mUpdateJournal.remove(dataFile.getName());
+          }
+          
+          deleteFile(dataFile);
+        }
         
         doLog("Read data DONE from file: " +dataFile.getAbsolutePath());
       }
@@ -5391,28 +5687,8 @@ public class TvDataUpdateService extends Service {
     }
   }
   
-  private boolean columnNameFromInfo(String columnName) {
-    for(String name : TvBrowserContentProvider.INFO_CATEGORIES_COLUMNS_ARRAY) {
-      if(name.equals(columnName)) {
-        return true;
-      }
-    }
-    
-    return false;
-  }
-  
-  private static boolean isValidDataContent(ContentValues values) {
-    boolean result = true;
-    
-    if((!values.containsKey(TvBrowserContentProvider.DATA_KEY_STARTTIME) || values.getAsLong(TvBrowserContentProvider.DATA_KEY_STARTTIME) == null)
-      ||
-      (!values.containsKey(TvBrowserContentProvider.DATA_KEY_ENDTIME) || values.getAsLong(TvBrowserContentProvider.DATA_KEY_ENDTIME) == null)
-      ||
-      (!values.containsKey(TvBrowserContentProvider.DATA_KEY_TITLE) || values.getAsString(TvBrowserContentProvider.DATA_KEY_TITLE) == null)) {
-      result = false;
-    }
-    
-    return result;
+  private static boolean isValidDataContent(ProgramRecord record) {
+    return record.hasValue(ProgramRecord.STARTTIME) && record.hasValue(ProgramRecord.ENDTIME) && record.hasValue(ProgramRecord.TITLE);
   }
   
   /**
@@ -5420,40 +5696,29 @@ public class TvDataUpdateService extends Service {
    * <p>
    * @author René Mach
    */
-  @SuppressLint("UseSparseArrays")
   private static class ChannelFrame {
-    private final String mCountry;
-    private final String mChannelID;
-    private final int mDayCount;
-    
-    private final HashMap<Integer,int[]> mLevelVersions;
-    
-    ChannelFrame(String country, String channelID, int dayCount) {
-      mCountry = country;
-      mChannelID = channelID;
-      mDayCount = dayCount;
-      
-      mLevelVersions = new HashMap<>();
-    }
+    private final SummaryIndex mIndex;
+    private final int mChannel;
     
-    void add(int day, int[] levelVersions) {
-      mLevelVersions.put(day, levelVersions);
+    ChannelFrame(SummaryIndex index, int channel) {
+      mIndex = index;
+      mChannel = channel;
     }
     
     int[] getVersionForDay(int day) {
-      return mLevelVersions.get(day);
+      return mIndex.getVersions(mChannel, day, new int[mIndex.getLevels()]);
     }
     
     int getDayCount() {
-      return mDayCount;
+      return mIndex.getRecordCount(mChannel);
     }
     
     String getCountry() {
-      return mCountry;
+      return mIndex.getCountry(mChannel);
     }
     
     String getChannelID() {
-      return mChannelID;
+      return mIndex.getChannelID(mChannel);
     }
   }
   
@@ -5466,39 +5731,20 @@ public class TvDataUpdateService extends Service {
    * @author René Mach
    */
   private static class EPGfreeSummary implements Summary {
-    private long mStartDaySince1970;
-    private int mLevels;
-
+    private final SummaryIndex mIndex;
+    
     /**
-     * List with available ChannelFrames for the server.
+     * @param index The index of the summary or <code>null</code> if there is no summary.
      */
-    private final ArrayList<ChannelFrame> mFrameList;
-    
-    EPGfreeSummary() {
-      mFrameList = new ArrayList<>();
-    }
-    
-    void setStartDaySince1970(long days) {
-      mStartDaySince1970 = days-1;
+    EPGfreeSummary(SummaryIndex index) {
+      mIndex = index;
     }
     
-    void setLevels(int levels) {
-      mLevels = levels;
-    }
-    
-    void addChannelFrame(ChannelFrame frame) {
-      mFrameList.add(frame);
-    }
-    
-    int getLevels() {
-      return mLevels;
-    }
-        
     Calendar getStartDate() {
       Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
       
       // calculate the number of milliseconds since 1970 to get to the UNIX time
-      cal.setTimeInMillis(mStartDaySince1970 * 24 * 60 * 60000);
+      cal.setTimeInMillis((mIndex.getStartDaySince1970() - 1) * 24 * 60 * 60000);
       
       return cal;
     }
@@ -5510,17 +5756,25 @@ public class TvDataUpdateService extends Service {
      * @return The requested ChannelFrame or <code>null</code> if there is no ChannelFrame for given ID.
      */
     ChannelFrame getChannelFrame(String channelID) {
-      for(ChannelFrame frame : mFrameList) {
-        if(frame.mChannelID.equals(channelID)) {
-          return frame;
-        }
-      }
+      final int channel = mIndex != null ? mIndex.findChannel(channelID) : -1;
       
-      return null;
+      return channel >= 0 ? new ChannelFrame(mIndex, channel) : null;
     }
   }
   
-  private static final class EPGdonateSummary extends Properties implements Summary {}
+  /**
+   * The data files of the EPGdonate server.
+   */
+  private static final class EPGdonateSummary implements Summary {
+    private final SummaryIndex mIndex;
+    
+    /**
+     * @param index The index of the summary or <code>null</code> if there is no summary.
+     */
+    EPGdonateSummary(SummaryIndex index) {
+      mIndex = index;
+    }
+  }
   
   private static final class EPGpaidDownloadFile {
     private final int mVersion;
@@ -0,0 +1,326 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.tvbrowser.utils.IOUtils;
+
+import android.content.Context;
+
+/**
+ * The journal of the data files of the data update.
+ * <p>
+ * Every change of the state of a data file is appended to the journal file
+ * at once, so an update that was killed can continue with the files that
+ * were already downloaded instead of downloading them again. The files are
+ * kept in the download directory until their data was written to the database.
+ * <p>
+ * Downloads that failed are tried again only after a waiting time, that is
+ * doubled with every failure of the same version of the file.
+ *
+ * @author René Mach
+ */
+final class UpdateJournal {
+  static final int STATE_QUEUED = 0;
+  static final int STATE_DOWNLOADED = 1;
+  static final int STATE_PARSED = 2;
+  static final int STATE_COMMITTED = 3;
+  static final int STATE_FAILED = 4;
+  
+  private static final String JOURNAL_FILE = "update_journal.txt";
+  
+  private static final long RETRY_DELAY = 5 * 60000L;
+  private static final long MAX_RETRY_DELAY = 6 * 60 * 60000L;
+  
+  private final File mDownloadDirectory;
+  private final File mJournalFile;
+  private final HashMap<String, Entry> mEntries;
+  private Writer mOut;
+  
+  private static final class Entry {
+    int mState;
+    int mVersion;
+    int mFailures;
+    long mNextTry;
+    // if the file is part of the current update
+    boolean mUsed;
+    
+    Entry(int version) {
+      mState = STATE_QUEUED;
+      mVersion = version;
+    }
+    
+    static Entry parse(String[] parts) {
+      final Entry entry = new Entry(Integer.parseInt(parts[2]));
+      
+      entry.mState = Integer.parseInt(parts[1]);
+      entry.mFailures = Integer.parseInt(parts[3]);
+      entry.mNextTry = Long.parseLong(parts[4]);
+      
+      return entry;
+    }
+    
+    @Override
+    public String toString() {
+      return mState + ";" + mVersion + ";" + mFailures + ";" + mNextTry;
+    }
+  }
+  
+  /**
+   * Reads the journal of the former updates. The files of data,
+   * that was already written to the database, are deleted.
+   * <p>
+   * @param context The context to use.
+   */
+  UpdateJournal(Context context) {
+    mDownloadDirectory = IOUtils.getDownloadDirectory(context.getApplicationContext());
+    mJournalFile = new File(mDownloadDirectory.getParentFile(), JOURNAL_FILE);
+    mEntries = new HashMap<>();
+    
+    read();
+    
+    for(Iterator<Map.Entry<String, Entry>> it = mEntries.entrySet().iterator(); it.hasNext();) {
+      final Map.Entry<String, Entry> entry = it.next();
+      
+      if(entry.getValue().mState == STATE_COMMITTED) {
+        deleteFile(entry.getKey());
+        it.remove();
+      }
+    }
+    
+    rewrite();
+  }
+  
+  private void read() {
+    if(mJournalFile.isFile()) {
+      BufferedReader in = null;
+      
+      try {
+        in = new BufferedReader(new InputStreamReader(new FileInputStream(mJournalFile), "UTF-8"));
+        
+        String line;
+        
+        while((line = in.readLine()) != null) {
+          final String[] parts = line.split(";");
+          
+          // the last line may be incomplete if the update was killed while writing
+          if(parts.length == 5) {
+            try {
+              mEntries.put(parts[0], Entry.parse(parts));
+            }catch(NumberFormatException ignored) {}
+          }
+        }
+      }catch(IOException ignored) {
+      }finally {
+        IOUtils.close(in);
+      }
+    }
+  }
+  
+  /**
+   * Writes the current entries to a new journal file and opens it for appending.
+   */
+  private void rewrite() {
+    IOUtils.close(mOut);
+    mOut = null;
+    
+    final File temp = new File(mJournalFile.getAbsolutePath() + ".new");
+    Writer out = null;
+    
+    try {
+      out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), "UTF-8"));
+      
+      for(Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+        out.write(entry.getKey() + ";" + entry.getValue() + "\n");
+      }
+      
+      out.close();
+      out = null;
+      
+      if(temp.renameTo(mJournalFile) || (mJournalFile.delete() && temp.renameTo(mJournalFile))) {
+        mOut = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(mJournalFile, true), "UTF-8"));
+      }
+    }catch(IOException ignored) {
+    }finally {
+      IOUtils.close(out);
+    }
+  }
+  
+  private void append(String fileName, Entry entry) {
+    if(mOut != null) {
+      try {
+        mOut.write(fileName + ";" + entry + "\n");
+        mOut.flush();
+      }catch(IOException e) {
+        close();
+      }
+    }
+  }
+  
+  private void deleteFile(String fileName) {
+    final File file = getFile(fileName);
+    
+    if(file.isFile() && !file.delete()) {
+      file.deleteOnExit();
+    }
+  }
+  
+  /**
+   * @param fileName The name of the data file.
+   * @return The file in the download directory.
+   */
+  File getFile(String fileName) {
+    return new File(mDownloadDirectory, fileName);
+  }
+  
+  /**
+   * Adds the data file with the given version to the current update.
+   * <p>
+   * @param fileName The name of the data file.
+   * @param version The version of the data file on the server.
+   * @return {@link #STATE_QUEUED} if the file has to be downloaded, {@link #STATE_DOWNLOADED} or
+   * {@link #STATE_PARSED} if the file of a former update can be used and {@link #STATE_FAILED}
+   * if the file failed to download too shortly before.
+   */
+  synchronized int queue(String fileName, int version) {
+    Entry entry = mEntries.get(fileName);
+    
+    if(entry == null || entry.mVersion != version) {
+      entry = new Entry(version);
+      mEntries.put(fileName, entry);
+    }
+    else if(((entry.mState == STATE_DOWNLOADED || entry.mState == STATE_PARSED) && !getFile(fileName).isFile())
+        || (entry.mState == STATE_FAILED && System.currentTimeMillis() >= entry.mNextTry)) {
+      entry.mState = STATE_QUEUED;
+    }
+    
+    entry.mUsed = true;
+    append(fileName, entry);
+    
+    return entry.mState;
+  }
+  
+  synchronized void setDownloaded(String fileName) {
+    setState(fileName, STATE_DOWNLOADED);
+  }
+  
+  /**
+   * Sets the state of the data file to parsed, the file is kept until
+   * the update is committed.
+   * <p>
+   * @param fileName The name of the data file.
+   */
+  synchronized void setParsed(String fileName) {
+    setState(fileName, STATE_PARSED);
+  }
+  
+  /**
+   * Records the failed download of the data file.
+   * <p>
+   * @param fileName The name of the data file.
+   */
+  synchronized void setFailed(String fileName) {
+    final Entry entry = getEntry(fileName);
+    
+    entry.mState = STATE_FAILED;
+    entry.mFailures++;
+    entry.mNextTry = System.currentTimeMillis() + Math.min(RETRY_DELAY << Math.min(entry.mFailures - 1, 10), MAX_RETRY_DELAY);
+    
+    append(fileName, entry);
+  }
+  
+  synchronized void remove(String fileName) {
+    if(mEntries.remove(fileName) != null) {
+      // a queued entry without version is never used again
+      append(fileName, new Entry(-1));
+    }
+  }
+  
+  /**
+   * @param fileName The name of the file in the download directory.
+   * @return If the file is needed to continue an update.
+   */
+  synchronized boolean isKept(String fileName) {
+    final Entry entry = mEntries.get(fileName);
+    
+    return entry != null && (entry.mState == STATE_DOWNLOADED || entry.mState == STATE_PARSED);
+  }
+  
+  private Entry getEntry(String fileName) {
+    Entry entry = mEntries.get(fileName);
+    
+    if(entry == null) {
+      // file of an update from before the journal
+      entry = new Entry(-1);
+      mEntries.put(fileName, entry);
+    }
+    
+    return entry;
+  }
+  
+  private void setState(String fileName, int state) {
+    final Entry entry = getEntry(fileName);
+    
+    entry.mState = state;
+    entry.mUsed = true;
+    
+    append(fileName, entry);
+  }
+  
+  /**
+   * Commits all parsed data files after their data was written to the database
+   * and deletes their files. Only downloaded files and failures of the current
+   * update are kept in the journal.
+   */
+  synchronized void commit() {
+    for(Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+      if(entry.getValue().mState == STATE_PARSED) {
+        entry.getValue().mState = STATE_COMMITTED;
+        append(entry.getKey(), entry.getValue());
+      }
+    }
+    
+    for(Iterator<Map.Entry<String, Entry>> it = mEntries.entrySet().iterator(); it.hasNext();) {
+      final Map.Entry<String, Entry> entry = it.next();
+      final int state = entry.getValue().mState;
+      
+      if(!entry.getValue().mUsed || (state != STATE_DOWNLOADED && state != STATE_FAILED)) {
+        deleteFile(entry.getKey());
+        it.remove();
+      }
+    }
+    
+    rewrite();
+  }
+  
+  synchronized void close() {
+    IOUtils.close(mOut);
+    mOut = null;
+  }
+}
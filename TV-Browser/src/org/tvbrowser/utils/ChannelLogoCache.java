@@ -0,0 +1,204 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import org.tvbrowser.tvbrowser.R;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.v4.content.ContextCompat;
+
+/**
+ * The scaled logos of the channels.
+ * <p>
+ * Every logo is decoded and scaled only once for every size it's shown with,
+ * the scaled logos are kept in memory and as files in the cache directory,
+ * so they don't have to be read from the database again after the app was
+ * started. A size is the name of the use of the logo together with its
+ * height in pixels, so another density of the screen uses other logos.
+ * <p>
+ * The logos of a channel are only removed if the logo of the channel was
+ * changed, all logos are removed if the style of the logos was changed.
+ *
+ * @author René Mach
+ */
+public final class ChannelLogoCache {
+  private static final String CACHE_DIRECTORY = "logos";
+  private static final String FILE_SUFFIX = ".png";
+  
+  private static ChannelLogoCache INSTANCE;
+  
+  private final File mDirectory;
+  private final HashMap<String, Bitmap> mLogos;
+  private String mStyle;
+  
+  private ChannelLogoCache(Context context) {
+    mDirectory = new File(context.getCacheDir(), CACHE_DIRECTORY);
+    mLogos = new HashMap<>();
+    mStyle = getStyle(context);
+    
+    if(!mDirectory.isDirectory()) {
+      //noinspection ResultOfMethodCallIgnored
+      mDirectory.mkdirs();
+    }
+  }
+  
+  public static synchronized ChannelLogoCache getInstance(Context context) {
+    if(INSTANCE == null) {
+      INSTANCE = new ChannelLogoCache(context.getApplicationContext());
+    }
+    
+    return INSTANCE;
+  }
+  
+  /**
+   * @return The key for the settings the logos are drawn with.
+   */
+  private static String getStyle(Context context) {
+    final String style = PrefUtils.getBooleanValue(R.string.PREF_LOGO_BORDER, R.bool.pref_logo_border_default) + ";"
+        + PrefUtils.getBooleanValue(R.string.PREF_LOGO_BACKGROUND_FILL, R.bool.pref_logo_background_fill_default) + ";"
+        + PrefUtils.getIntValue(R.string.PREF_LOGO_BACKGROUND_COLOR, ContextCompat.getColor(context, R.color.pref_logo_background_color_default)) + ";"
+        + PrefUtils.getIntValue(R.string.PREF_LOGO_BORDER_COLOR, ContextCompat.getColor(context, R.color.pref_logo_border_color_default));
+    
+    return Integer.toHexString(style.hashCode());
+  }
+  
+  /**
+   * Removes all logos if the style of the logos was changed.
+   * <p>
+   * @param context The context to use.
+   */
+  public synchronized void updateStyle(Context context) {
+    final String style = getStyle(context);
+    
+    if(!style.equals(mStyle)) {
+      mStyle = style;
+      mLogos.clear();
+      
+      final File[] files = mDirectory.listFiles();
+      
+      if(files != null) {
+        for(File file : files) {
+          if(!file.getName().endsWith("_" + style + FILE_SUFFIX)) {
+            delete(file);
+          }
+        }
+      }
+    }
+  }
+  
+  private static void delete(File file) {
+    if(file.isFile() && !file.delete()) {
+      file.deleteOnExit();
+    }
+  }
+  
+  private String getName(int channelKey, String size) {
+    return channelKey + "_" + size + "_" + mStyle;
+  }
+  
+  /**
+   * @param channelKey The key of the channel in the database.
+   * @param size The size of the logo.
+   * @return The scaled logo or <code>null</code> if it wasn't stored.
+   */
+  public synchronized Bitmap get(int channelKey, String size) {
+    final String name = getName(channelKey, size);
+    Bitmap logo = mLogos.get(name);
+    
+    if(logo == null) {
+      final File file = new File(mDirectory, name + FILE_SUFFIX);
+      
+      if(file.isFile()) {
+        logo = BitmapFactory.decodeFile(file.getAbsolutePath());
+        
+        if(logo != null) {
+          mLogos.put(name, logo);
+        }
+      }
+    }
+    
+    return logo;
+  }
+  
+  /**
+   * Stores the scaled logo in memory and in the cache directory.
+   * <p>
+   * @param channelKey The key of the channel in the database.
+   * @param size The size of the logo.
+   * @param logo The scaled logo.
+   */
+  public synchronized void put(int channelKey, String size, Bitmap logo) {
+    final String name = getName(channelKey, size);
+    final File file = new File(mDirectory, name + FILE_SUFFIX);
+    final File temp = new File(mDirectory, name + ".new");
+    
+    mLogos.put(name, logo);
+    
+    FileOutputStream out = null;
+    
+    try {
+      out = new FileOutputStream(temp);
+      
+      final boolean written = logo.compress(Bitmap.CompressFormat.PNG, 100, out);
+      
+      out.close();
+      out = null;
+      
+      if(!written || !(temp.renameTo(file) || (file.delete() && temp.renameTo(file)))) {
+        delete(temp);
+      }
+    }catch(IOException e) {
+      delete(temp);
+    }finally {
+      IOUtils.close(out);
+    }
+  }
+  
+  /**
+   * Removes all sizes of the logos of the given channels.
+   * <p>
+   * @param channelKeys The keys of the channels in the database.
+   */
+  public synchronized void invalidate(Collection<Integer> channelKeys) {
+    for(Integer channelKey : channelKeys) {
+      final String prefix = channelKey + "_";
+      
+      for(Iterator<String> it = mLogos.keySet().iterator(); it.hasNext();) {
+        if(it.next().startsWith(prefix)) {
+          it.remove();
+        }
+      }
+      
+      final File[] files = mDirectory.listFiles((dir, name) -> name.startsWith(prefix));
+      
+      if(files != null) {
+        for(File file : files) {
+          delete(file);
+        }
+      }
+    }
+  }
+}
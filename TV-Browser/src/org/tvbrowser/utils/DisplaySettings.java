@@ -0,0 +1,181 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.utils;
+
+import org.tvbrowser.tvbrowser.R;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
+import android.content.res.Resources;
+import android.preference.PreferenceManager;
+
+/**
+ * The settings used to show the programs in the lists.
+ * <p>
+ * The settings are read once from the preferences and are never changed,
+ * when a preference is changed a new snapshot is read the next time
+ * the settings are used. So the views of the lists can be bound without
+ * reading the preferences for every row.
+ *
+ * @author René Mach
+ */
+public final class DisplaySettings {
+  private static volatile DisplaySettings SNAPSHOT;
+  private static volatile int CHANGE_COUNT = 0;
+  
+  // the preferences only keep a weak reference to the listener
+  private static final OnSharedPreferenceChangeListener INVALIDATE_LISTENER = (pref, key) -> {
+    CHANGE_COUNT++;
+    SNAPSHOT = null;
+  };
+  private static boolean LISTENER_REGISTERED = false;
+  
+  private final boolean mShowPicture;
+  private final boolean mShowGenre;
+  private final boolean mShowEpisode;
+  private final boolean mShowInfo;
+  private final boolean mShowOrderNumber;
+  private final boolean mShowEndTime;
+  private final boolean mShowChannelName;
+  private final boolean mShowChannelLogo;
+  private final boolean mShowBigChannelLogo;
+  private final boolean mShowChannelNameRunning;
+  private final boolean mShowChannelLogoRunning;
+  private final boolean mShowBigChannelLogoRunning;
+  
+  // the color keys of UiUtils are the indices
+  private final int[] mColors;
+  
+  private DisplaySettings(Context context, SharedPreferences pref) {
+    final Resources res = context.getResources();
+    
+    mShowPicture = pref.getBoolean(context.getString(R.string.SHOW_PICTURE_IN_LISTS), res.getBoolean(R.bool.show_pictures_in_lists_default));
+    mShowGenre = pref.getBoolean(context.getString(R.string.SHOW_GENRE_IN_LISTS), res.getBoolean(R.bool.show_genre_in_lists_default));
+    mShowEpisode = pref.getBoolean(context.getString(R.string.SHOW_EPISODE_IN_LISTS), res.getBoolean(R.bool.show_episode_in_lists_default));
+    mShowInfo = pref.getBoolean(context.getString(R.string.SHOW_INFO_IN_LISTS), res.getBoolean(R.bool.show_info_in_lists_default));
+    mShowOrderNumber = pref.getBoolean(context.getString(R.string.SHOW_SORT_NUMBER_IN_LISTS), res.getBoolean(R.bool.show_sort_number_in_lists_default));
+    mShowEndTime = pref.getBoolean(context.getString(R.string.PREF_PROGRAM_LISTS_SHOW_END_TIME), res.getBoolean(R.bool.pref_program_lists_show_end_time_default));
+    
+    final String logoName = pref.getString(context.getString(R.string.CHANNEL_LOGO_NAME_PROGRAM_LISTS), context.getString(R.string.channel_logo_name_program_lists_default));
+    
+    mShowChannelName = "0".equals(logoName) || "2".equals(logoName);
+    mShowChannelLogo = "0".equals(logoName) || "1".equals(logoName);
+    mShowBigChannelLogo = "3".equals(logoName);
+    
+    final String logoNameRunning = pref.getString(context.getString(R.string.CHANNEL_LOGO_NAME_RUNNING), context.getString(R.string.channel_logo_name_running_default));
+    
+    mShowChannelNameRunning = "0".equals(logoNameRunning) || "2".equals(logoNameRunning);
+    mShowChannelLogoRunning = "0".equals(logoNameRunning) || "1".equals(logoNameRunning);
+    mShowBigChannelLogoRunning = "3".equals(logoNameRunning);
+    
+    mColors = new int[UiUtils.I_DONT_WANT_TO_SEE_HIGHLIGHT_COLOR_KEY + 1];
+    
+    for(int key = 0; key < mColors.length; key++) {
+      mColors[key] = UiUtils.getColor(key, pref, context);
+    }
+  }
+  
+  /**
+   * @param context The context to use.
+   * @return The current snapshot of the settings.
+   */
+  public static DisplaySettings get(Context context) {
+    DisplaySettings settings = SNAPSHOT;
+    
+    if(settings == null) {
+      settings = read(context.getApplicationContext());
+    }
+    
+    return settings;
+  }
+  
+  private static synchronized DisplaySettings read(Context context) {
+    final SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(context);
+    
+    if(!LISTENER_REGISTERED) {
+      pref.registerOnSharedPreferenceChangeListener(INVALIDATE_LISTENER);
+      LISTENER_REGISTERED = true;
+    }
+    
+    final int changeCount = CHANGE_COUNT;
+    final DisplaySettings settings = new DisplaySettings(context, pref);
+    
+    // a preference changed while reading is read again the next time
+    if(changeCount == CHANGE_COUNT) {
+      SNAPSHOT = settings;
+    }
+    
+    return settings;
+  }
+  
+  public boolean showPicture() {
+    return mShowPicture;
+  }
+  
+  public boolean showGenre() {
+    return mShowGenre;
+  }
+  
+  public boolean showEpisode() {
+    return mShowEpisode;
+  }
+  
+  public boolean showInfo() {
+    return mShowInfo;
+  }
+  
+  public boolean showOrderNumber() {
+    return mShowOrderNumber;
+  }
+  
+  public boolean showEndTime() {
+    return mShowEndTime;
+  }
+  
+  /**
+   * @param running <code>true</code> for the list of the running programs.
+   * @return If the name of the channel is shown in the list.
+   */
+  public boolean showChannelName(boolean running) {
+    return running ? mShowChannelNameRunning : mShowChannelName;
+  }
+  
+  /**
+   * @param running <code>true</code> for the list of the running programs.
+   * @return If the small logo of the channel is shown in the list.
+   */
+  public boolean showChannelLogo(boolean running) {
+    return running ? mShowChannelLogoRunning : mShowChannelLogo;
+  }
+  
+  /**
+   * @param running <code>true</code> for the list of the running programs.
+   * @return If the big logo of the channel is shown in the list.
+   */
+  public boolean showBigChannelLogo(boolean running) {
+    return running ? mShowBigChannelLogoRunning : mShowBigChannelLogo;
+  }
+  
+  /**
+   * @param key One of the color keys of {@link UiUtils}.
+   * @return The color for the key.
+   */
+  public int getColor(int key) {
+    return mColors[key];
+  }
+}
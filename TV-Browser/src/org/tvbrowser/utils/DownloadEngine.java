@@ -0,0 +1,320 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads URLs with a bounded number of connections.
+ * <p>
+ * Every download runs on one of the threads of the engine and streams
+ * the response through a fixed buffer, so a file is never held in memory
+ * completely. The timeout of a download is used for the connect and for
+ * every read from the connection, so a download only fails if the server
+ * doesn't answer or stops sending data for that time.
+ * <p>
+ * Files are written to a temporary file next to the target first and are
+ * renamed after the download was successful, so the target file is never
+ * left incomplete.
+ *
+ * @author René Mach
+ */
+public final class DownloadEngine {
+  private static final int DEFAULT_MAX_CONNECTIONS = Math.max(Runtime.getRuntime().availableProcessors(), 2);
+  private static final int BUFFER_SIZE = 8192;
+  private static final String PART_SUFFIX = ".part";
+  
+  public static final int RESULT_FAILED = 0;
+  public static final int RESULT_LOADED = 1;
+  public static final int RESULT_NOT_MODIFIED = 2;
+  
+  private static DownloadEngine DEFAULT;
+  
+  /**
+   * Callback for the end of a download.
+   */
+  public interface Callback {
+    /**
+     * Called on the thread of the download after the download ended.
+     * <p>
+     * @param url The URL of the download.
+     * @param target The file the URL was saved to.
+     * @param success <code>true</code> if the file was downloaded successfully
+     * or wasn't modified since the last download.
+     * @param duration The time from opening the connection to the end of the
+     * download in milliseconds, the wait for a free connection isn't included.
+     */
+    void onFinished(String url, File target, boolean success, long duration);
+  }
+  
+  private final ThreadPoolExecutor mExecutor;
+  
+  /**
+   * @param maxConnections The maximum number of downloads running at the same time.
+   */
+  public DownloadEngine(int maxConnections) {
+    mExecutor = new ThreadPoolExecutor(maxConnections, maxConnections, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactory() {
+      private final AtomicInteger mCount = new AtomicInteger(0);
+      
+      @Override
+      public Thread newThread(Runnable r) {
+        final Thread thread = new Thread(r, "DOWNLOAD ENGINE THREAD " + mCount.incrementAndGet());
+        thread.setDaemon(true);
+        
+        return thread;
+      }
+    });
+    mExecutor.allowCoreThreadTimeOut(true);
+  }
+  
+  /**
+   * Changes the maximum number of downloads running at the same time,
+   * downloads that are already running are not affected.
+   * <p>
+   * @param maxConnections The maximum number of downloads running at the same time.
+   */
+  public synchronized void setMaxConnections(int maxConnections) {
+    if(maxConnections < 1) {
+      throw new IllegalArgumentException("At least one connection is needed: " + maxConnections);
+    }
+    
+    // the maximum pool size must never be smaller than the core pool size
+    if(maxConnections > mExecutor.getMaximumPoolSize()) {
+      mExecutor.setMaximumPoolSize(maxConnections);
+      mExecutor.setCorePoolSize(maxConnections);
+    }
+    else {
+      mExecutor.setCorePoolSize(maxConnections);
+      mExecutor.setMaximumPoolSize(maxConnections);
+    }
+  }
+  
+  /**
+   * @return The maximum number of downloads running at the same time.
+   */
+  public int getMaxConnections() {
+    return mExecutor.getMaximumPoolSize();
+  }
+  
+  /**
+   * @return The engine shared by all downloads of the application, it
+   * uses one connection for every processor, but at least two connections.
+   */
+  public static synchronized DownloadEngine getDefault() {
+    if(DEFAULT == null) {
+      DEFAULT = new DownloadEngine(DEFAULT_MAX_CONNECTIONS);
+    }
+    
+    return DEFAULT;
+  }
+  
+  /**
+   * Saves the given URL to the target file.
+   * <p>
+   * @param urlString The URL to load from.
+   * @param target The file to save to.
+   * @param timeout The timeout for the connect and every read in milliseconds.
+   * @param callback The callback for the end of the download, may be <code>null</code>.
+   * @return The Future with <code>true</code> as result if the file was downloaded successfully.
+   */
+  public Future<Boolean> save(final String urlString, final File target, final int timeout, final Callback callback) {
+    return mExecutor.submit(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        final long start = System.currentTimeMillis();
+        final boolean success = saveInternal(urlString, target, timeout, null, false) == RESULT_LOADED;
+        
+        if(callback != null) {
+          callback.onFinished(urlString, target, success, System.currentTimeMillis() - start);
+        }
+        
+        return success;
+      }
+    });
+  }
+  
+  /**
+   * Saves the given URL to the target file only if it was changed on the
+   * server since the last download with the given cache.
+   * <p>
+   * @param urlString The URL to load from.
+   * @param target The file to save to.
+   * @param timeout The timeout for the connect and every read in milliseconds.
+   * @param cache The cache with the validators of the last download.
+   * @param targetKept If the target of the last download is still needed, if it doesn't
+   * exist anymore the URL is downloaded completely. If <code>false</code> the caller
+   * has to keep the results of the last download on its own.
+   * @return The Future with {@link #RESULT_LOADED} if the file was downloaded successfully,
+   * {@link #RESULT_NOT_MODIFIED} if it wasn't changed or {@link #RESULT_FAILED}.
+   */
+  public Future<Integer> saveIfModified(final String urlString, final File target, final int timeout, final HttpCache cache, final boolean targetKept) {
+    return saveIfModified(urlString, target, timeout, cache, targetKept, null);
+  }
+  
+  /**
+   * Saves the given URL to the target file only if it was changed on the
+   * server since the last download with the given cache.
+   * <p>
+   * @param urlString The URL to load from.
+   * @param target The file to save to.
+   * @param timeout The timeout for the connect and every read in milliseconds.
+   * @param cache The cache with the validators of the last download.
+   * @param targetKept If the target of the last download is still needed.
+   * @param callback The callback for the end of the download, may be <code>null</code>.
+   * @return The Future with {@link #RESULT_LOADED} if the file was downloaded successfully,
+   * {@link #RESULT_NOT_MODIFIED} if it wasn't changed or {@link #RESULT_FAILED}.
+   * @see #saveIfModified(String, File, int, HttpCache, boolean)
+   */
+  public Future<Integer> saveIfModified(final String urlString, final File target, final int timeout, final HttpCache cache, final boolean targetKept, final Callback callback) {
+    return mExecutor.submit(new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        final long start = System.currentTimeMillis();
+        final int result = saveInternal(urlString, target, timeout, cache, targetKept);
+        
+        if(callback != null) {
+          callback.onFinished(urlString, target, result != RESULT_FAILED, System.currentTimeMillis() - start);
+        }
+        
+        return result;
+      }
+    });
+  }
+  
+  /**
+   * Loads the given URL into memory, only to use for small files.
+   * <p>
+   * @param urlString The URL to load from.
+   * @param timeout The timeout for the connect and every read in milliseconds.
+   * @return The Future with the loaded bytes as result, it fails with the IOException of the download.
+   */
+  public Future<byte[]> load(final String urlString, final int timeout) {
+    return mExecutor.submit(new Callable<byte[]>() {
+      @Override
+      public byte[] call() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        
+        download(urlString, timeout, out, null);
+        
+        return out.toByteArray();
+      }
+    });
+  }
+  
+  private static int saveInternal(String urlString, File target, int timeout, HttpCache cache, boolean targetKept) {
+    final File part = new File(target.getAbsolutePath() + PART_SUFFIX);
+    int result = RESULT_FAILED;
+    
+    FileOutputStream out = null;
+    
+    try {
+      out = new FileOutputStream(part);
+      
+      final HttpCache.Entry entry = download(urlString, timeout, out, cache != null ? cache.get(urlString, targetKept ? target : null) : null);
+      
+      out.close();
+      out = null;
+      
+      if(entry == null) {
+        result = RESULT_NOT_MODIFIED;
+      }
+      else if(part.renameTo(target) || (target.delete() && part.renameTo(target))) {
+        result = RESULT_LOADED;
+        
+        if(cache != null) {
+          cache.put(urlString, entry);
+        }
+      }
+    }catch(IOException ignored) {
+    }finally {
+      IOUtils.close(out);
+      
+      if(result != RESULT_LOADED && part.isFile()) {
+        //noinspection ResultOfMethodCallIgnored
+        part.delete();
+      }
+    }
+    
+    return result;
+  }
+  
+  /**
+   * @return The validators of the download or <code>null</code> if the
+   * server answered that the URL wasn't modified since the given validators.
+   */
+  private static HttpCache.Entry download(String urlString, int timeout, OutputStream out, HttpCache.Entry condition) throws IOException {
+    URLConnection connection = null;
+    InputStream in = null;
+    
+    try {
+      connection = new URL(urlString).openConnection();
+      IOUtils.setConnectionTimeout(connection, timeout);
+      
+      if(urlString.toLowerCase(Locale.US).endsWith(".gz")) {
+        connection.setRequestProperty("Accept-Encoding", "gzip,deflate");
+      }
+      
+      if(condition != null) {
+        if(condition.mETag != null) {
+          connection.setRequestProperty("If-None-Match", condition.mETag);
+        }
+        
+        if(condition.mLastModified != null) {
+          connection.setRequestProperty("If-Modified-Since", condition.mLastModified);
+        }
+        
+        if(connection instanceof HttpURLConnection && ((HttpURLConnection)connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+          return null;
+        }
+      }
+      
+      in = connection.getInputStream();
+      
+      final byte[] buffer = new byte[BUFFER_SIZE];
+      long size = 0;
+      int count;
+      
+      while((count = in.read(buffer)) != -1) {
+        out.write(buffer, 0, count);
+        size += count;
+      }
+      
+      out.flush();
+      
+      return new HttpCache.Entry(connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"), size);
+    }finally {
+      IOUtils.close(in);
+      IOUtils.disconnect(connection);
+    }
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.utils;
+
+import java.io.File;
+import java.util.Properties;
+
+import android.content.Context;
+
+/**
+ * Persistent cache of the HTTP validators (ETag, Last-Modified and size)
+ * of downloaded files for conditional downloads with the {@link DownloadEngine}.
+ * <p>
+ * Files that are needed again if the server copy didn't change are kept in
+ * the directory of the cache, see {@link #getFile(String)}.
+ * <p>
+ * Changes of the validators are only kept in memory until {@link #flush()}
+ * is called, so an update with many downloads writes the cache file only once.
+ * If the changes are lost, the size of a kept file doesn't match the stored
+ * validators anymore and the file is downloaded completely.
+ *
+ * @author René Mach
+ */
+public final class HttpCache {
+  private static final String CACHE_DIRECTORY = "httpcache";
+  private static final String CACHE_FILE = "httpcache.gz";
+  
+  private static final String KEY_ETAG = "#etag";
+  private static final String KEY_LAST_MODIFIED = "#modified";
+  private static final String KEY_SIZE = "#size";
+  
+  private static HttpCache INSTANCE;
+  
+  private final File mDirectory;
+  private final File mCacheFile;
+  private final Properties mProperties;
+  private boolean mChanged;
+  
+  /**
+   * The validators of one downloaded file.
+   */
+  static final class Entry {
+    final String mETag;
+    final String mLastModified;
+    final long mSize;
+    
+    Entry(String eTag, String lastModified, long size) {
+      mETag = eTag;
+      mLastModified = lastModified;
+      mSize = size;
+    }
+    
+    boolean isValidating() {
+      return mETag != null || mLastModified != null;
+    }
+  }
+  
+  HttpCache(File directory) {
+    mDirectory = directory;
+    mCacheFile = new File(directory, CACHE_FILE);
+    mProperties = IOUtils.readPropertiesFile(mCacheFile);
+  }
+  
+  /**
+   * Gets the cache, that is stored next to the download directory.
+   * <p>
+   * @param context The context to use.
+   * @return The cache of the application.
+   */
+  public static synchronized HttpCache getInstance(Context context) {
+    if(INSTANCE == null) {
+      final File directory = new File(IOUtils.getDownloadDirectory(context.getApplicationContext()).getParentFile(), CACHE_DIRECTORY);
+      
+      if(!directory.isDirectory()) {
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+      }
+      
+      INSTANCE = new HttpCache(directory);
+    }
+    
+    return INSTANCE;
+  }
+  
+  /**
+   * Gets the file to keep the download of the given URL in.
+   * <p>
+   * @param url The URL to get the file for.
+   * @return The file in the directory of the cache.
+   */
+  public File getFile(String url) {
+    return new File(mDirectory, Integer.toHexString(url.hashCode()) + "_" + url.substring(url.lastIndexOf("/")+1));
+  }
+  
+  /**
+   * Gets the validators for the given URL.
+   * <p>
+   * @param url The URL to get the validators for.
+   * @param keptFile The file the last download was kept in or <code>null</code>
+   * if the last download is not needed. If the file doesn't exist or has another
+   * size than the download, the validators aren't used.
+   * @return The validators or <code>null</code> if the URL has to be downloaded.
+   */
+  synchronized Entry get(String url, File keptFile) {
+    Entry entry = null;
+    
+    final String size = mProperties.getProperty(url + KEY_SIZE);
+    
+    if(size != null) {
+      entry = new Entry(mProperties.getProperty(url + KEY_ETAG), mProperties.getProperty(url + KEY_LAST_MODIFIED), Long.parseLong(size));
+      
+      if(!entry.isValidating() || (keptFile != null && (!keptFile.isFile() || keptFile.length() != entry.mSize))) {
+        entry = null;
+      }
+    }
+    
+    return entry;
+  }
+  
+  synchronized void put(String url, Entry entry) {
+    remove(url);
+    
+    if(entry.isValidating()) {
+      if(entry.mETag != null) {
+        mProperties.setProperty(url + KEY_ETAG, entry.mETag);
+      }
+      
+      if(entry.mLastModified != null) {
+        mProperties.setProperty(url + KEY_LAST_MODIFIED, entry.mLastModified);
+      }
+      
+      mProperties.setProperty(url + KEY_SIZE, String.valueOf(entry.mSize));
+    }
+    
+    mChanged = true;
+  }
+  
+  /**
+   * Removes the validators of the given URL, so it is downloaded completely the next time.
+   * <p>
+   * @param url The URL to remove the validators of.
+   */
+  public synchronized void remove(String url) {
+    if(mProperties.remove(url + KEY_SIZE) != null) {
+      mChanged = true;
+    }
+    
+    mProperties.remove(url + KEY_ETAG);
+    mProperties.remove(url + KEY_LAST_MODIFIED);
+  }
+  
+  /**
+   * Writes the changed validators to the cache file.
+   */
+  public synchronized void flush() {
+    if(mChanged) {
+      IOUtils.storeProperties(mProperties, mCacheFile, "HTTP cache of TV-Browser");
+      mChanged = false;
+    }
+  }
+}
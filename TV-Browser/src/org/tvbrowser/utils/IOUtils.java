@@ -34,12 +34,13 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -84,6 +85,11 @@ import android.util.Log;
 public final class IOUtils {
   private static final int REQUEST_CODE_DATA_TABLE_UPDATE = 1235;
   private static final float MIN_BATTERY_LEVEL = 0.1f;
+  /**
+   * The wait for a file download as multiple of its timeout, large enough for
+   * the data files on slow connections, but a download that stalls is ended.
+   */
+  private static final int SAVE_URL_WAIT_FACTOR = 10;
 
   IOUtils() {}
 
@@ -94,16 +100,24 @@ public final class IOUtils {
    * @return The calculated integer value.
    */
   public static int getIntForBytes(byte[] value) {
-    int count = value.length - 1;
-    
+    return getIntForBytes(value, 0, value.length);
+  }
+
+  /**
+   * Creates an integer value from the given range of the byte array.
+   * <p>
+   * @param value The byte array to convert (Big-Endian).
+   * @param offset The index of the first byte to use.
+   * @param length The number of bytes to use.
+   * @return The calculated integer value.
+   */
+  public static int getIntForBytes(byte[] value, int offset, int length) {
     int result = 0;
-    
-    for(byte b : value) {
-      result = result | ((((int)b) & 0xFF) << (count * 8));
-      
-      count--;
+
+    for(int i = offset; i < offset + length; i++) {
+      result = (result << 8) | (((int)value[i]) & 0xFF);
     }
-    
+
     return result;
   }
   
@@ -330,83 +344,55 @@ public final class IOUtils {
     return loadUrl(urlString, 30000);
   }
   
+  /**
+   * Loads the given URL into memory, only to use for small files.
+   * <p>
+   * @param urlString The URL to load from.
+   * @param timeout The maximum time to wait for the whole download in milliseconds.
+   * @return The loaded bytes.
+   * @throws TimeoutException If the URL couldn't be loaded in the given time.
+   */
   public static byte[] loadUrl(final String urlString, final int timeout) throws TimeoutException {
-    final AtomicInteger count = new AtomicInteger(0);
-    final AtomicReference<byte[]> loadData = new AtomicReference<>(null);
-    
-    new Thread("LOAD URL THREAD") {
-      public void run() {
-        FileOutputStream fout = null;
-        
-        try {
-          byte[] byteArr = loadUrl(urlString, count);
-          
-          loadData.set(byteArr);
-        }
-        catch(IOException ignored) {
-        }
-        finally {
-          close(fout);
-        }
-      }
-    }.start();
-    
-    Thread wait = new Thread("SAVE URL WAITING THREAD") {
-      public void run() {
-        while(loadData.get() == null && count.getAndIncrement() < (timeout / 100)) {
-          try {
-            sleep(100);
-          } catch (InterruptedException ignored) {}
-        }
-      }
-    };
-    wait.start();
+    final Future<byte[]> download = DownloadEngine.getDefault().load(urlString, timeout);
     
     try {
-      wait.join();
-    } catch (InterruptedException ignored) {}
-    
-    if(loadData.get() == null) {
-      throw new TimeoutException("URL '"+urlString+"' could not be saved.");
+      return download.get(timeout, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | TimeoutException ignored) {
+    } finally {
+      download.cancel(true);
     }
     
-    return loadData.get();
+    throw new TimeoutException("URL '"+urlString+"' could not be loaded.");
   }
   
-  private static byte[] loadUrl(final String urlString, final AtomicInteger timeoutCount) throws IOException {
-    BufferedInputStream in = null;
-    ByteArrayOutputStream out = new ByteArrayOutputStream();
+  /**
+   * Waits for the result of a download to a file. The timeout of the download is
+   * only used for the connect and every read, so the wait is limited to a multiple
+   * of it. A download that didn't end in that time is cancelled.
+   * <p>
+   * @param download The download to wait for.
+   * @param timeout The timeout of the download in milliseconds.
+   * @param failed The result to return if the download didn't end.
+   * @return The result of the download or the given failed result.
+   */
+  private static <T> T getDownloadResult(Future<T> download, int timeout, T failed) {
+    T result = failed;
     
-    URLConnection connection = null;
     try {
-      connection = new URL(urlString).openConnection();
-      IOUtils.setConnectionTimeout(connection,15000);
-      
-      if(urlString.toLowerCase(Locale.US).endsWith(".gz")) {
-        connection.setRequestProperty("Accept-Encoding", "gzip,deflate");
-      }
-      
-      in = new BufferedInputStream(connection.getInputStream());
-      
-      byte temp[] = new byte[1024];
-      int count;
-      
-      while ((count = in.read(temp, 0, 1024)) != -1) {
-        if(temp != null && count > 0) {
-          out.write(temp, 0, count);
-          
-          if(timeoutCount != null) {
-            timeoutCount.set(0);
-          }
-        }
-      }
-    } 
-    finally {
-      close(in);
-      disconnect(connection);
+      result = download.get((long)timeout * SAVE_URL_WAIT_FACTOR, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Log.d("info51", "INTERRUPTED", e);
+      Thread.currentThread().interrupt();
+    } catch (TimeoutException e) {
+      Log.d("info51", "Download didn't end in " + ((long)timeout * SAVE_URL_WAIT_FACTOR) + " ms");
+    } catch (ExecutionException ignored) {
+    } finally {
+      download.cancel(true);
     }
-
-    return out.toByteArray();
+    
+    return result;
   }
   
   /**
@@ -431,49 +417,56 @@ public final class IOUtils {
    * @return <code>true</code> if the file was downloaded successfully, <code>false</code> otherwise.
    */
   public static boolean saveUrl(final String filename, final String urlString, final int timeout) {
-    final AtomicBoolean wasSaved = new AtomicBoolean(false);
-    final AtomicInteger count = new AtomicInteger(0);
-    
-    new Thread("SAVE URL THREAD") {
-      public void run() {
-        FileOutputStream fout = null;
-        
-        try {
-          byte[] byteArr = loadUrl(urlString, count);
-          
-          fout = new FileOutputStream(filename);
-          fout.getChannel().truncate(0);
-          fout.write(byteArr, 0, byteArr.length);
-          fout.flush();
-          
-          wasSaved.set(true);
-        }
-        catch(IOException ignored) {
-        }
-        finally {
-          close(fout);
-        }
-      }
-    }.start();
-    
-    Thread wait = new Thread("SAVE URL WAITING THREAD") {
-      public void run() {
-        while(!wasSaved.get() && count.getAndIncrement() < (timeout / 100)) {
-          try {
-            sleep(100);
-          } catch (InterruptedException ignored) {}
-        }
-      }
-    };
-    wait.start();
-        
-    try {
-      wait.join();
-    } catch (InterruptedException e) {
-      Log.d("info51", "INTERRUPTED", e);
-    }
-    
-    return wasSaved.get();
+    return saveUrl(filename, urlString, timeout, null);
+  }
+  
+  /**
+   * Save given URL to filename.
+   * <p>
+   * @param filename The file to save to.
+   * @param urlString The URL to load from.
+   * @param timeout The timeout of the download in milliseconds.
+   * @param callback The callback for the end of the download, may be <code>null</code>.
+   * <p> 
+   * @return <code>true</code> if the file was downloaded successfully, <code>false</code> otherwise.
+   */
+  public static boolean saveUrl(final String filename, final String urlString, final int timeout, final DownloadEngine.Callback callback) {
+    return getDownloadResult(DownloadEngine.getDefault().save(urlString, new File(filename), timeout, callback), timeout, Boolean.FALSE);
+  }
+  
+  /**
+   * Save given URL to the target file only if it was changed on the server
+   * since the last download, using the validators of the {@link HttpCache}.
+   * <p>
+   * @param context The context to use.
+   * @param target The file to save to.
+   * @param urlString The URL to load from.
+   * @param timeout The timeout of the download in milliseconds.
+   * @param targetKept If the target file of the last download is kept and still valid.
+   * <p>
+   * @return One of {@link DownloadEngine#RESULT_LOADED}, {@link DownloadEngine#RESULT_NOT_MODIFIED}
+   * and {@link DownloadEngine#RESULT_FAILED}.
+   */
+  public static int saveUrlIfModified(final Context context, final File target, final String urlString, final int timeout, final boolean targetKept) {
+    return saveUrlIfModified(context, target, urlString, timeout, targetKept, null);
+  }
+  
+  /**
+   * Save given URL to the target file only if it was changed on the server
+   * since the last download, using the validators of the {@link HttpCache}.
+   * <p>
+   * @param context The context to use.
+   * @param target The file to save to.
+   * @param urlString The URL to load from.
+   * @param timeout The timeout of the download in milliseconds.
+   * @param targetKept If the target file of the last download is kept and still valid.
+   * @param callback The callback for the end of the download, may be <code>null</code>.
+   * <p>
+   * @return One of {@link DownloadEngine#RESULT_LOADED}, {@link DownloadEngine#RESULT_NOT_MODIFIED}
+   * and {@link DownloadEngine#RESULT_FAILED}.
+   */
+  public static int saveUrlIfModified(final Context context, final File target, final String urlString, final int timeout, final boolean targetKept, final DownloadEngine.Callback callback) {
+    return getDownloadResult(DownloadEngine.getDefault().saveIfModified(urlString, target, timeout, HttpCache.getInstance(context), targetKept, callback), timeout, DownloadEngine.RESULT_FAILED);
   }
   
   /**
@@ -0,0 +1,240 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A map with primitive long keys using open addressing with linear probing.
+ * <p>
+ * Unlike {@link android.support.v4.util.LongSparseArray} keys can be added
+ * in any order in constant time, and no key objects are created for the
+ * lookups. Values must not be <code>null</code>, an empty slot has no value.
+ * <p>
+ * The map isn't synchronized.
+ *
+ * @author René Mach
+ */
+public final class LongHashMap<V> {
+  private static final int MIN_CAPACITY = 16;
+  
+  private long[] mKeys;
+  private Object[] mValues;
+  private int mSize;
+  private int mMask;
+  
+  public LongHashMap() {
+    this(MIN_CAPACITY / 2);
+  }
+  
+  /**
+   * @param expectedSize The number of entries the map should hold without resizing.
+   */
+  public LongHashMap(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    
+    // the map is resized when it's filled to three quarters
+    while(capacity * 3 / 4 <= expectedSize) {
+      capacity <<= 1;
+    }
+    
+    allocate(capacity);
+  }
+  
+  /**
+   * Packs two int values into one key, e.g. the ID of a channel and a day.
+   * <p>
+   * @param high The value for the upper 32 bits of the key.
+   * @param low The value for the lower 32 bits of the key.
+   * @return The key for the two values.
+   */
+  public static long getKey(int high, int low) {
+    return ((long)high << 32) | (low & 0xFFFFFFFFL);
+  }
+  
+  private void allocate(int capacity) {
+    mKeys = new long[capacity];
+    mValues = new Object[capacity];
+    mMask = capacity - 1;
+  }
+  
+  private int slot(long key) {
+    final long hash = key * 0x9E3779B97F4A7C15L;
+    
+    return (int)(hash ^ (hash >>> 32)) & mMask;
+  }
+  
+  private int indexOf(long key) {
+    int index = slot(key);
+    
+    while(mValues[index] != null) {
+      if(mKeys[index] == key) {
+        return index;
+      }
+      
+      index = (index + 1) & mMask;
+    }
+    
+    return -1;
+  }
+  
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    final int index = indexOf(key);
+    
+    return index >= 0 ? (V)mValues[index] : null;
+  }
+  
+  public boolean containsKey(long key) {
+    return indexOf(key) >= 0;
+  }
+  
+  /**
+   * @param key The key of the value.
+   * @param value The value to add, <code>null</code> removes the key.
+   * @return The value that was replaced or <code>null</code>.
+   */
+  @SuppressWarnings("unchecked")
+  public V put(long key, V value) {
+    if(value == null) {
+      return remove(key);
+    }
+    
+    int index = slot(key);
+    
+    while(mValues[index] != null) {
+      if(mKeys[index] == key) {
+        final V old = (V)mValues[index];
+        mValues[index] = value;
+        
+        return old;
+      }
+      
+      index = (index + 1) & mMask;
+    }
+    
+    mKeys[index] = key;
+    mValues[index] = value;
+    
+    if(++mSize > mKeys.length * 3 / 4) {
+      resize(mKeys.length << 1);
+    }
+    
+    return null;
+  }
+  
+  /**
+   * @param key The key to remove.
+   * @return The removed value or <code>null</code>.
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(long key) {
+    int index = indexOf(key);
+    
+    if(index < 0) {
+      return null;
+    }
+    
+    final V old = (V)mValues[index];
+    
+    // move following entries of the same probe sequence into the gap
+    int next = (index + 1) & mMask;
+    
+    while(mValues[next] != null) {
+      final int home = slot(mKeys[next]);
+      
+      if(((next - home) & mMask) >= ((next - index) & mMask)) {
+        mKeys[index] = mKeys[next];
+        mValues[index] = mValues[next];
+        index = next;
+      }
+      
+      next = (next + 1) & mMask;
+    }
+    
+    mValues[index] = null;
+    mSize--;
+    
+    return old;
+  }
+  
+  private void resize(int capacity) {
+    final long[] keys = mKeys;
+    final Object[] values = mValues;
+    
+    allocate(capacity);
+    
+    for(int i = 0; i < keys.length; i++) {
+      if(values[i] != null) {
+        int index = slot(keys[i]);
+        
+        while(mValues[index] != null) {
+          index = (index + 1) & mMask;
+        }
+        
+        mKeys[index] = keys[i];
+        mValues[index] = values[i];
+      }
+    }
+  }
+  
+  public int size() {
+    return mSize;
+  }
+  
+  public boolean isEmpty() {
+    return mSize == 0;
+  }
+  
+  public void clear() {
+    Arrays.fill(mValues, null);
+    mSize = 0;
+  }
+  
+  /**
+   * @return The keys of the map in no particular order.
+   */
+  public long[] keys() {
+    final long[] keys = new long[mSize];
+    int n = 0;
+    
+    for(int i = 0; i < mValues.length; i++) {
+      if(mValues[i] != null) {
+        keys[n++] = mKeys[i];
+      }
+    }
+    
+    return keys;
+  }
+  
+  /**
+   * @return The values of the map in no particular order.
+   */
+  @SuppressWarnings("unchecked")
+  public ArrayList<V> values() {
+    final ArrayList<V> values = new ArrayList<>(mSize);
+    
+    for(Object value : mValues) {
+      if(value != null) {
+        values.add((V)value);
+      }
+    }
+    
+    return values;
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.utils;
+
+import java.util.Map;
+
+import org.tvbrowser.tvbrowser.Favorite;
+
+import android.content.Context;
+
+/**
+ * The markings of the programs in memory, for the mark icons of the program lists.
+ * <p>
+ * The markings are read once from the marking preferences, which are still used
+ * to store them, and are changed together with the preferences in {@link ProgramUtils}.
+ * The markings of the favorites are read again after a favorite was saved or deleted.
+ *
+ * @author René Mach
+ */
+public final class MarkingIndex {
+  public static final int MARKING_REMINDER = 1;
+  public static final int MARKING_SYNC = 1 << 1;
+  public static final int MARKING_PLUGIN = 1 << 2;
+  public static final int MARKING_FAVORITE = 1 << 3;
+  public static final int MARKING_FAVORITE_MULTIPLE = 1 << 4;
+  
+  private static MarkingIndex INSTANCE;
+  
+  private final Context mContext;
+  private final LongHashMap<Integer> mMarkings;
+  private final LongHashMap<String[]> mPlugins;
+  private boolean mFavoritesLoaded;
+  
+  private MarkingIndex(Context context) {
+    mContext = context;
+    mMarkings = new LongHashMap<>();
+    mPlugins = new LongHashMap<>();
+    
+    load(PrefUtils.TYPE_PREFERENCES_MARKINGS);
+    load(PrefUtils.TYPE_PREFERENCES_MARKING_REMINDERS);
+    load(PrefUtils.TYPE_PREFERENCES_MARKING_SYNC);
+    
+    mFavoritesLoaded = false;
+  }
+  
+  public static synchronized MarkingIndex getInstance(Context context) {
+    if(INSTANCE == null) {
+      INSTANCE = new MarkingIndex(context.getApplicationContext());
+    }
+    
+    return INSTANCE;
+  }
+  
+  private static int getMarking(int prefType) {
+    switch(prefType) {
+      case PrefUtils.TYPE_PREFERENCES_MARKING_REMINDERS: return MARKING_REMINDER;
+      case PrefUtils.TYPE_PREFERENCES_MARKING_SYNC: return MARKING_SYNC;
+      default: return MARKING_PLUGIN;
+    }
+  }
+  
+  private void load(int prefType) {
+    final Map<String, ?> values = PrefUtils.getSharedPreferences(prefType, mContext).getAll();
+    
+    for(Map.Entry<String, ?> value : values.entrySet()) {
+      try {
+        final long programId = Long.parseLong(value.getKey());
+        
+        if(prefType == PrefUtils.TYPE_PREFERENCES_MARKINGS) {
+          setPlugins(programId, value.getValue() instanceof String ? (String)value.getValue() : null);
+        }
+        else {
+          set(programId, getMarking(prefType), true);
+        }
+      }catch(NumberFormatException ignored) {}
+    }
+  }
+  
+  private void set(long programId, int marking, boolean marked) {
+    final Integer current = mMarkings.get(programId);
+    int flags = current != null ? current : 0;
+    
+    if(marked) {
+      flags |= marking;
+    }
+    else {
+      flags &= ~marking;
+    }
+    
+    // the flags are small numbers, so their boxed values are cached by Integer
+    mMarkings.put(programId, flags != 0 ? Integer.valueOf(flags) : null);
+  }
+  
+  /**
+   * Reads the favorite markings, a program marked by more than
+   * one favorite is marked with {@link #MARKING_FAVORITE_MULTIPLE}.
+   */
+  private void loadFavorites() {
+    for(long programId : mMarkings.keys()) {
+      set(programId, MARKING_FAVORITE | MARKING_FAVORITE_MULTIPLE, false);
+    }
+    
+    for(Favorite favorite : Favorite.getAllFavorites(mContext)) {
+      final long[] programIds = favorite.getUniqueProgramIds();
+      
+      if(programIds != null) {
+        for(long programId : programIds) {
+          final Integer current = mMarkings.get(programId);
+          final boolean marked = current != null && (current & MARKING_FAVORITE) != 0;
+          
+          set(programId, marked ? MARKING_FAVORITE_MULTIPLE : MARKING_FAVORITE, true);
+        }
+      }
+    }
+    
+    mFavoritesLoaded = true;
+  }
+  
+  /**
+   * @param programId The ID of the program.
+   * @return The markings of the program, a combination of the MARKING flags.
+   */
+  public synchronized int getMarkings(long programId) {
+    if(!mFavoritesLoaded) {
+      loadFavorites();
+    }
+    
+    final Integer flags = mMarkings.get(programId);
+    
+    return flags != null ? flags : 0;
+  }
+  
+  /**
+   * @param programId The ID of the program.
+   * @return The IDs of the plugins that marked the program or <code>null</code>.
+   */
+  public synchronized String[] getPlugins(long programId) {
+    return mPlugins.get(programId);
+  }
+  
+  synchronized void setMarked(long programId, int prefType, boolean marked) {
+    set(programId, getMarking(prefType), marked);
+  }
+  
+  /**
+   * @param programId The ID of the program.
+   * @param plugins The IDs of the plugins joined with ';' or <code>null</code>.
+   */
+  synchronized void setPlugins(long programId, String plugins) {
+    final String[] parts = plugins != null ? plugins.trim().split(";") : null;
+    final boolean marked = parts != null && parts.length > 0 && !parts[0].isEmpty();
+    
+    mPlugins.put(programId, marked ? parts : null);
+    set(programId, MARKING_PLUGIN, marked);
+  }
+  
+  /**
+   * Reads the markings of the given preferences again.
+   */
+  synchronized void reload(int prefType) {
+    final int marking = getMarking(prefType);
+    
+    for(long programId : mMarkings.keys()) {
+      set(programId, marking, false);
+    }
+    
+    if(prefType == PrefUtils.TYPE_PREFERENCES_MARKINGS) {
+      mPlugins.clear();
+    }
+    
+    load(prefType);
+  }
+  
+  /**
+   * The favorite markings are read again when they are used the next time.
+   */
+  public synchronized void invalidateFavorites() {
+    mFavoritesLoaded = false;
+  }
+}
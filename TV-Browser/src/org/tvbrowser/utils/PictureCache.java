@@ -0,0 +1,211 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+/**
+ * The decoded pictures of the programs.
+ * <p>
+ * The pictures are decoded in the size they are shown, with a sample size
+ * if they are shown smaller than their data, in a background thread. The
+ * decoded pictures are kept in a cache limited to an eighth of the memory
+ * of the app, the pictures used least recently are removed first.
+ *
+ * @author René Mach
+ */
+public final class PictureCache {
+  private static PictureCache INSTANCE;
+  
+  private final LruCache<String, Bitmap> mCache;
+  private final HashMap<String, ArrayList<Callback>> mPending;
+  private final ExecutorService mDecoder;
+  private final Handler mHandler;
+  
+  /**
+   * Receives a picture decoded in the background on the UI thread.
+   */
+  public interface Callback {
+    void onPictureLoaded(Bitmap picture);
+  }
+  
+  private PictureCache() {
+    mCache = new LruCache<String, Bitmap>((int)Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE)) {
+      @Override
+      protected int sizeOf(String key, Bitmap value) {
+        return value.getRowBytes() * value.getHeight();
+      }
+    };
+    
+    mPending = new HashMap<>();
+    mDecoder = Executors.newSingleThreadExecutor();
+    mHandler = new Handler(Looper.getMainLooper());
+  }
+  
+  public static synchronized PictureCache getInstance() {
+    if(INSTANCE == null) {
+      INSTANCE = new PictureCache();
+    }
+    
+    return INSTANCE;
+  }
+  
+  /**
+   * Reads only the size of the picture, without decoding it.
+   * <p>
+   * @param data The data of the picture.
+   * @param scale The factor to scale the picture with.
+   * @param maxWidth The maximum width of the shown picture.
+   * @return The width and height the picture is shown with or <code>null</code> if the data isn't a picture.
+   */
+  public static int[] getSize(byte[] data, float scale, int maxWidth) {
+    if(data == null || data.length == 0) {
+      return null;
+    }
+    
+    final BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inJustDecodeBounds = true;
+    
+    BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    
+    if(options.outWidth <= 0 || options.outHeight <= 0) {
+      return null;
+    }
+    
+    float width = scale * options.outWidth;
+    float height = scale * options.outHeight;
+    
+    if(maxWidth > 0 && width > maxWidth) {
+      height = height * maxWidth / width;
+      width = maxWidth;
+    }
+    
+    return new int[] {Math.max(1, (int)width), Math.max(1, (int)height)};
+  }
+  
+  /*
+   * The length of the data is part of the key, so a picture
+   * changed by a data update isn't taken from the cache.
+   */
+  private static String getKey(long programId, byte[] data, int[] size) {
+    return programId + "_" + data.length + "_" + size[0] + "x" + size[1];
+  }
+  
+  /**
+   * @param programId The ID of the program.
+   * @param data The data of the picture.
+   * @param size The size the picture is shown with, from {@link #getSize(byte[], float, int)}.
+   * @return The decoded picture or <code>null</code> if it isn't in the cache.
+   */
+  public Bitmap get(long programId, byte[] data, int[] size) {
+    return mCache.get(getKey(programId, data, size));
+  }
+  
+  /**
+   * Decodes the picture in the background, the callback isn't called
+   * if the picture couldn't be decoded.
+   * <p>
+   * @param programId The ID of the program.
+   * @param data The data of the picture.
+   * @param size The size the picture is shown with, from {@link #getSize(byte[], float, int)}.
+   * @param callback The callback to receive the decoded picture on the UI thread.
+   */
+  public void load(long programId, final byte[] data, final int[] size, Callback callback) {
+    final String key = getKey(programId, data, size);
+    
+    synchronized(mPending) {
+      ArrayList<Callback> callbacks = mPending.get(key);
+      
+      if(callbacks != null) {
+        // the picture is already decoded for another view
+        callbacks.add(callback);
+        return;
+      }
+      
+      callbacks = new ArrayList<>(1);
+      callbacks.add(callback);
+      mPending.put(key, callbacks);
+    }
+    
+    mDecoder.execute(() -> {
+      final Bitmap picture = decode(data, size[0], size[1]);
+      
+      if(picture != null) {
+        mCache.put(key, picture);
+      }
+      
+      final ArrayList<Callback> callbacks;
+      
+      synchronized(mPending) {
+        callbacks = mPending.remove(key);
+      }
+      
+      if(picture != null && callbacks != null) {
+        mHandler.post(() -> {
+          for(Callback waiting : callbacks) {
+            waiting.onPictureLoaded(picture);
+          }
+        });
+      }
+    });
+  }
+  
+  private static Bitmap decode(byte[] data, int width, int height) {
+    Bitmap picture = null;
+    
+    try {
+      final BitmapFactory.Options options = new BitmapFactory.Options();
+      options.inJustDecodeBounds = true;
+      
+      BitmapFactory.decodeByteArray(data, 0, data.length, options);
+      
+      int sampleSize = 1;
+      
+      while(options.outWidth / (sampleSize * 2) >= width && options.outHeight / (sampleSize * 2) >= height) {
+        sampleSize *= 2;
+      }
+      
+      options.inJustDecodeBounds = false;
+      options.inSampleSize = sampleSize;
+      
+      picture = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+      
+      if(picture != null && (picture.getWidth() != width || picture.getHeight() != height)) {
+        final Bitmap scaled = Bitmap.createScaledBitmap(picture, width, height, true);
+        
+        if(scaled != picture) {
+          picture.recycle();
+        }
+        
+        picture = scaled;
+      }
+    }catch(NullPointerException | OutOfMemoryError e) {
+      picture = null;
+    }
+    
+    return picture;
+  }
+}
@@ -288,18 +288,24 @@ public class ProgramUtils {
   }
   
   public static boolean isMarkedByPluginWithIcon(Context context, long programId, String pluginId) {
-    boolean marked = false;
-    SharedPreferences pref = PrefUtils.getSharedPreferences(PrefUtils.TYPE_PREFERENCES_MARKINGS, context);
-    marked = pref.contains(String.valueOf(programId));
+    final String[] plugins = MarkingIndex.getInstance(context).getPlugins(programId);
+    boolean marked = plugins != null;
     
     if(marked && pluginId != null) {
-      marked = pref.getString(String.valueOf(programId), "").contains(pluginId);
+      marked = false;
+      
+      for(String plugin : plugins) {
+        if(pluginId.equals(plugin)) {
+          marked = true;
+          break;
+        }
+      }
     }
     
     if(marked && pluginId != null) {
-      PluginServiceConnection[] plugins = PluginHandler.getAvailablePlugins();
+      PluginServiceConnection[] available = PluginHandler.getAvailablePlugins();
       
-      for(PluginServiceConnection plugin : plugins) {
+      for(PluginServiceConnection plugin : available) {
         if(pluginId.equals(plugin.getId())) {
           if(!plugin.isActivated()) {
             marked = false;
@@ -314,11 +320,7 @@ public class ProgramUtils {
   }
   
   public static boolean isMarkedWithIcon(Context context, long programId) {
-    boolean marked = false;
-    
-    marked = PrefUtils.getSharedPreferences(PrefUtils.TYPE_PREFERENCES_MARKINGS, context).contains(String.valueOf(programId));
-    
-    return marked;
+    return MarkingIndex.getInstance(context).getPlugins(programId) != null;
   }
   
   private static synchronized boolean markProgram(Context context, long programId, String pluginId) {
@@ -351,6 +353,8 @@ public class ProgramUtils {
       Editor edit = pref.edit();
       edit.putString(String.valueOf(programId), value);
       result = edit.commit();
+      
+      MarkingIndex.getInstance(context).setPlugins(programId, value);
     }
     else {
       result = true;
@@ -385,6 +389,8 @@ public class ProgramUtils {
       }
       
       result = edit.commit();
+      
+      MarkingIndex.getInstance(context).setPlugins(programId, value);
     }
     else {
       result = true;
@@ -420,6 +426,8 @@ public class ProgramUtils {
     }
     
     edit.commit();
+    
+    MarkingIndex.getInstance(context).reload(prefType);
   }
   
   private static ImageSpan ICON_REMINDER;
@@ -450,9 +458,17 @@ public class ProgramUtils {
     CharSequence result = title;
     
     if(PrefUtils.getBooleanValue(R.string.PREF_MARK_ICON_SHOW, R.bool.pref_mark_icon_show_default)) {
+      final MarkingIndex index = MarkingIndex.getInstance(context);
+      final int markings = index.getMarkings(programId);
+      
+      // most programs aren't marked, for them nothing has to be created
+      if(markings == 0) {
+        return result;
+      }
+      
       SpannableStringBuilder markIcons = new SpannableStringBuilder();
       
-      int favoriteMarkIconType = Favorite.getFavoriteMarkIconType(context, programId);
+      int favoriteMarkIconType = (markings & MarkingIndex.MARKING_FAVORITE_MULTIPLE) != 0 ? 2 : ((markings & MarkingIndex.MARKING_FAVORITE) != 0 ? 1 : 0);
       
       if(favoriteMarkIconType >= 1) {
         markIcons.append(" ");
@@ -461,7 +477,7 @@ public class ProgramUtils {
         markIcons.setSpan(Favorite.getMarkIcon(context, favoriteMarkIconType), markIcons.length()-Favorite.KEY_MARKING_ICON.length(), markIcons.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
       }
       
-      if(PrefUtils.getSharedPreferences(PrefUtils.TYPE_PREFERENCES_MARKING_REMINDERS, context).contains(String.valueOf(programId))) {
+      if((markings & MarkingIndex.MARKING_REMINDER) != 0) {
         markIcons.append(" ");
         markIcons.append(KEY_ICON_REMINDER);
         
@@ -472,7 +488,7 @@ public class ProgramUtils {
         markIcons.setSpan(ICON_REMINDER, markIcons.length()-KEY_ICON_REMINDER.length(), markIcons.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
       }
       
-      if(PrefUtils.getSharedPreferences(PrefUtils.TYPE_PREFERENCES_MARKING_SYNC, context).contains(String.valueOf(programId))) {
+      if((markings & MarkingIndex.MARKING_SYNC) != 0) {
         markIcons.append(" ");
         markIcons.append(KEY_ICON_SYNC);
         
@@ -483,13 +499,9 @@ public class ProgramUtils {
         markIcons.setSpan(ICON_SYNC, markIcons.length()-KEY_ICON_SYNC.length(), markIcons.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
       }
       
-      SharedPreferences pref = PrefUtils.getSharedPreferences(PrefUtils.TYPE_PREFERENCES_MARKINGS, context);
-      
-      String value = pref.getString(String.valueOf(programId), null);
+      String[] plugins = (markings & MarkingIndex.MARKING_PLUGIN) != 0 ? index.getPlugins(programId) : null;
       
-      if(value != null && !value.trim().isEmpty()) {
-        String[] plugins = value.split(";");
-              
+      if(plugins != null) {
         for(String plugin : plugins) {
           PluginServiceConnection connection = PluginHandler.getConnectionForId(plugin);
           
@@ -628,6 +640,8 @@ public class ProgramUtils {
     edit.putBoolean(String.valueOf(programId), true);
     
     edit.commit();
+    
+    MarkingIndex.getInstance(context).setMarked(programId, type, true);
   }
   
   private static void addMarkIds(Context context, ArrayList<String> idList, int type) {
@@ -638,6 +652,8 @@ public class ProgramUtils {
     }
     
     edit.commit();
+    
+    setMarked(context, idList, type, true);
   }
   
   private static void removeMarkId(Context context, long programId, int type) {
@@ -646,6 +662,8 @@ public class ProgramUtils {
     edit.remove(String.valueOf(programId));
     
     edit.commit();
+    
+    MarkingIndex.getInstance(context).setMarked(programId, type, false);
   }
   
   private static void removeMarkIds(Context context, ArrayList<String> idList, int type) {
@@ -656,5 +674,17 @@ public class ProgramUtils {
     }
     
     edit.commit();
+    
+    setMarked(context, idList, type, false);
+  }
+  
+  private static void setMarked(Context context, ArrayList<String> idList, int type, boolean marked) {
+    final MarkingIndex index = MarkingIndex.getInstance(context);
+    
+    for(String programId : idList) {
+      try {
+        index.setMarked(Long.parseLong(programId), type, marked);
+      }catch(NumberFormatException ignored) {}
+    }
   }
 }
@@ -33,6 +33,7 @@ import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
 import android.content.res.Resources;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.graphics.Bitmap;
 import android.graphics.Bitmap.Config;
 import android.graphics.BitmapFactory;
@@ -114,6 +115,7 @@ import org.tvbrowser.settings.SettingConstants;
 import org.tvbrowser.tvbrowser.ActivityFavoriteEdit;
 import org.tvbrowser.tvbrowser.ActivityTvBrowserSearchResults;
 import org.tvbrowser.tvbrowser.DontWantToSeeExclusion;
+import org.tvbrowser.tvbrowser.DontWantToSeeExclusionSet;
 import org.tvbrowser.tvbrowser.Favorite;
 import org.tvbrowser.tvbrowser.InfoActivity;
 import org.tvbrowser.tvbrowser.NamedFields;
@@ -1435,58 +1437,22 @@ public final class UiUtils {
                 builder.setContentTitle(activity.getResources().getText(R.string.action_dont_want_to_see));
                 builder.setContentText(activity.getResources().getText(R.string.dont_want_to_see_refresh_notification_text));
 
-                int notifyID = 3;
+                final int notifyID = 3;
 
-                NotificationManager notification = (NotificationManager) applicationContext.getSystemService(Context.NOTIFICATION_SERVICE);
+                final NotificationManager notification = (NotificationManager) applicationContext.getSystemService(Context.NOTIFICATION_SERVICE);
                 notification.notify(notifyID, builder.build());
 
-                ArrayList<ContentProviderOperation> updateValuesList = new ArrayList<>();
-                Cursor c = null;
+                DontWantToSeeExclusionSet exclusionSet = new DontWantToSeeExclusionSet(exclusionList.toArray(new DontWantToSeeExclusion[exclusionList.size()]));
 
-                try {
-                  c = activity.getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_DATA, new String[]{TvBrowserContentProvider.KEY_ID, TvBrowserContentProvider.DATA_KEY_TITLE}, TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE, null, TvBrowserContentProvider.KEY_ID);
-
-                  if (IOUtils.prepareAccess(c)) {
-                    int size = c.getCount();
-                    int count = 0;
-
-                    builder.setProgress(size, 0, true);
-                    notification.notify(notifyID, builder.build());
-
-                    int keyColumn = c.getColumnIndex(TvBrowserContentProvider.KEY_ID);
-                    int titleColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_TITLE);
-
-                    DontWantToSeeExclusion[] exclusionArr = exclusionList.toArray(new DontWantToSeeExclusion[exclusionList.size()]);
-
-                    while (c.moveToNext()) {
-                      builder.setProgress(size, count++, false);
-                      notification.notify(notifyID, builder.build());
-
-                      String title = c.getString(titleColumn);
-
-                      ContentValues values = new ContentValues();
-                      values.put(TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE, (UiUtils.filter(title, exclusionArr) ? 1 : 0));
-
-                      ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, c.getLong(keyColumn)));
-                      opBuilder.withValues(values);
+                int changed = rescanDontWantToSee(activity, exclusionSet, TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE, (position, count) -> {
+                  builder.setProgress(count, position, false);
+                  notification.notify(notifyID, builder.build());
+                });
 
-                      updateValuesList.add(opBuilder.build());
-                    }
+                notification.cancel(notifyID);
 
-                    notification.cancel(notifyID);
-                  }
-                } finally {
-                  IOUtils.close(c);
-                }
-                if (!updateValuesList.isEmpty()) {
-                  try {
-                    activity.getContentResolver().applyBatch(TvBrowserContentProvider.AUTHORITY, updateValuesList);
-                    sendDontWantToSeeChangedBroadcast(applicationContext, false);
-                  } catch (RemoteException e) {
-                    e.printStackTrace();
-                  } catch (OperationApplicationException e) {
-                    e.printStackTrace();
-                  }
+                if (changed > 0) {
+                  sendDontWantToSeeChangedBroadcast(applicationContext, false);
                 }
 
                 if (activity instanceof TvBrowser) {
@@ -1541,6 +1507,146 @@ public final class UiUtils {
     return true;
   }
 
+  /**
+   * Listener for the progress of a rescan of the don't want to see values.
+   */
+  public interface RescanProgressListener {
+    void onProgress(int position, int count);
+  }
+
+  private static final int RESCAN_PROGRESS_STEP = 1000;
+  private static final int RESCAN_MAX_TERMS_PER_UPDATE = 500;
+
+  /**
+   * Rescans the don't want to see value of programs.
+   * <p>
+   * Only the programs whose value changes are updated. Consecutive ids are
+   * combined into ranges, so only a few set based updates are needed.
+   * <p>
+   * @param context The context to use.
+   * @param exclusions The exclusions to check the titles with.
+   * @param where The selection of the programs to rescan or <code>null</code> for all programs.
+   * @param listener The listener for the progress, may be <code>null</code>.
+   * @return The number of programs whose value changed or <code>-1</code> if the database wasn't accessible
+   * or the programs couldn't be updated.
+   */
+  public static int rescanDontWantToSee(Context context, DontWantToSeeExclusionSet exclusions, String where, RescanProgressListener listener) {
+    int changed = -1;
+
+    if (IOUtils.isDatabaseAccessible(context)) {
+      final ArrayList<Long> excludeIds = new ArrayList<>();
+      final ArrayList<Long> includeIds = new ArrayList<>();
+
+      // many programs have the same title, so every title is only checked once
+      final HashMap<String, Boolean> titleResults = new HashMap<>();
+
+      final Cursor programs = context.getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_DATA, new String[]{TvBrowserContentProvider.KEY_ID, TvBrowserContentProvider.DATA_KEY_TITLE, TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE}, where, null, TvBrowserContentProvider.KEY_ID);
+
+      try {
+        if (IOUtils.prepareAccess(programs)) {
+          final int count = programs.getCount();
+
+          final int keyColumn = programs.getColumnIndex(TvBrowserContentProvider.KEY_ID);
+          final int titleColumn = programs.getColumnIndex(TvBrowserContentProvider.DATA_KEY_TITLE);
+          final int dontWantToSeeColumn = programs.getColumnIndex(TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE);
+
+          while (programs.moveToNext()) {
+            final int position = programs.getPosition();
+
+            if (listener != null && position % RESCAN_PROGRESS_STEP == 0) {
+              listener.onProgress(position, count);
+            }
+
+            final String title = programs.getString(titleColumn);
+
+            Boolean filter = titleResults.get(title);
+
+            if (filter == null) {
+              filter = filter(title, exclusions);
+              titleResults.put(title, filter);
+            }
+
+            final boolean current = !programs.isNull(dontWantToSeeColumn) && programs.getInt(dontWantToSeeColumn) == 1;
+
+            if (filter != current) {
+              (filter ? excludeIds : includeIds).add(programs.getLong(keyColumn));
+            }
+          }
+        }
+      } finally {
+        IOUtils.close(programs);
+      }
+
+      final ArrayList<ContentProviderOperation> updates = new ArrayList<>();
+
+      addDontWantToSeeUpdates(updates, excludeIds, 1);
+      addDontWantToSeeUpdates(updates, includeIds, 0);
+
+      changed = excludeIds.size() + includeIds.size();
+
+      if (!updates.isEmpty()) {
+        try {
+          context.getContentResolver().applyBatch(TvBrowserContentProvider.AUTHORITY, updates);
+        } catch (RemoteException | OperationApplicationException | SQLException e) {
+          Log.w("info8", "Rescan of don't want to see couldn't update " + changed + " programs", e);
+          changed = -1;
+        }
+      }
+
+      if (changed >= 0) {
+        Log.d("info8", "Rescan of don't want to see changed " + changed + " programs with " + updates.size() + " updates");
+      }
+    }
+
+    return changed;
+  }
+
+  /**
+   * Adds updates for the given ids, that have to be sorted ascending.
+   * Runs of consecutive ids are combined into one range.
+   */
+  private static void addDontWantToSeeUpdates(ArrayList<ContentProviderOperation> updates, ArrayList<Long> ids, int value) {
+    final StringBuilder singleIds = new StringBuilder();
+    final StringBuilder ranges = new StringBuilder();
+
+    int terms = 0;
+    int i = 0;
+
+    while (i < ids.size()) {
+      int end = i;
+
+      while (end + 1 < ids.size() && ids.get(end + 1) == ids.get(end) + 1) {
+        end++;
+      }
+
+      if (end - i >= 2) {
+        ranges.append(" OR ( ").append(TvBrowserContentProvider.KEY_ID).append(" BETWEEN ").append(ids.get(i)).append(" AND ").append(ids.get(end)).append(" )");
+        terms++;
+      } else {
+        for (int j = i; j <= end; j++) {
+          if (singleIds.length() > 0) {
+            singleIds.append(",");
+          }
+
+          singleIds.append(ids.get(j));
+          terms++;
+        }
+      }
+
+      i = end + 1;
+
+      if (terms >= RESCAN_MAX_TERMS_PER_UPDATE || i >= ids.size()) {
+        final String where = (singleIds.length() > 0 ? TvBrowserContentProvider.KEY_ID + " IN ( " + singleIds + " )" : "0") + ranges;
+
+        updates.add(ContentProviderOperation.newUpdate(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE).withSelection(where, null).withValue(TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE, value).build());
+
+        singleIds.setLength(0);
+        ranges.setLength(0);
+        terms = 0;
+      }
+    }
+  }
+
   public static void sendDontWantToSeeChangedBroadcast(Context context, boolean added) {
     Intent intent = new Intent(SettingConstants.DONT_WANT_TO_SEE_CHANGED);
     intent.putExtra(SettingConstants.DONT_WANT_TO_SEE_ADDED_EXTRA, added);
@@ -1852,6 +1958,10 @@ Log.d("info22", pattern);
     return exclusion.matches(title);
   }
 
+  public static boolean filter(String title, DontWantToSeeExclusionSet values) {
+    return values != null && values.matches(title);
+  }
+
   public static boolean filter(String title, DontWantToSeeExclusion[] values) {
     boolean found = false;
 
@@ -1884,10 +1994,10 @@ Log.d("info22", pattern);
       throw new NullPointerException("Context parameter is null.");
     }
 
-    return getColor(key, PreferenceManager.getDefaultSharedPreferences(context), context);
+    return DisplaySettings.get(context).getColor(key);
   }
 
-  private static int getColor(int key, SharedPreferences pref, Context context) throws NullPointerException {
+  static int getColor(int key, SharedPreferences pref, Context context) throws NullPointerException {
     if (pref == null) {
       throw new NullPointerException("Preferences parameter is null.");
     } else if (context == null) {
@@ -17,6 +17,7 @@
 package org.tvbrowser.view;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
@@ -231,16 +232,47 @@ public class ProgramPanel extends View {
       }
       
       if(isExpired()) {
-        if(PrefUtils.isDarkTheme()) {
-          mPicture.setColorFilter(ContextCompat.getColor(getContext(), org.tvbrowser.tvbrowser.R.color.dark_gray), PorterDuff.Mode.DARKEN);
-        }
-        else {
-          mPicture.setColorFilter(ContextCompat.getColor(getContext(), android.R.color.darker_gray), PorterDuff.Mode.LIGHTEN);
-        }
+        setExpiredColorFilter(mPicture);
       }
     }
   }
   
+  private void setExpiredColorFilter(BitmapDrawable picture) {
+    if(PrefUtils.isDarkTheme()) {
+      picture.setColorFilter(ContextCompat.getColor(getContext(), org.tvbrowser.tvbrowser.R.color.dark_gray), PorterDuff.Mode.DARKEN);
+    }
+    else {
+      picture.setColorFilter(ContextCompat.getColor(getContext(), android.R.color.darker_gray), PorterDuff.Mode.LIGHTEN);
+    }
+  }
+  
+  /**
+   * @return The maximum width of the picture in this panel.
+   */
+  public int getPictureWidth() {
+    return getTextWidth() - mStartTimeBounds.width() - ProgramTableLayoutConstants.TIME_TITLE_GAP;
+  }
+  
+  /**
+   * Replaces the placeholder of the picture with the decoded picture,
+   * the bounds of the placeholder are kept.
+   * <p>
+   * @param picture The decoded picture.
+   */
+  public void setPictureBitmap(Bitmap picture) {
+    if(mPicture != null) {
+      final BitmapDrawable replacement = new BitmapDrawable(getResources(), picture);
+      replacement.setBounds(mPicture.getBounds());
+      
+      if(isExpired()) {
+        setExpiredColorFilter(replacement);
+      }
+      
+      mPicture = replacement;
+      invalidate();
+    }
+  }
+  
   @Override
   protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
     int height = MeasureSpec.getSize(heightMeasureSpec);
@@ -121,7 +121,6 @@ public class ImportantProgramsRemoteViewsService extends RemoteViewsService {
           TvBrowserContentProvider.DATA_KEY_MARKING_SYNC,
           TvBrowserContentProvider.DATA_KEY_CATEGORIES,
           TvBrowserContentProvider.CHANNEL_KEY_NAME,
-          TvBrowserContentProvider.CHANNEL_KEY_LOGO,
           TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER,
           TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID
         };
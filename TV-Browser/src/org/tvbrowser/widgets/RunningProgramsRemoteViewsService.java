@@ -124,7 +124,6 @@ public class RunningProgramsRemoteViewsService extends RemoteViewsService {
           TvBrowserContentProvider.DATA_KEY_MARKING_FAVORITE_REMINDER,
           TvBrowserContentProvider.DATA_KEY_MARKING_SYNC,
           TvBrowserContentProvider.CHANNEL_KEY_NAME,
-          TvBrowserContentProvider.CHANNEL_KEY_LOGO,
           TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER,
           TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID
         };
@@ -0,0 +1,286 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the {@link DownloadEngine} against a local HTTP server.
+ *
+ * @author René Mach
+ */
+public class DownloadEngineTest {
+  private static final byte[] CONTENT = "TV-Browser test data\n".getBytes(StandardCharsets.UTF_8);
+  private static final String ETAG = "\"42\"";
+  private static final int TIMEOUT = 500;
+  
+  @Rule
+  public final TemporaryFolder mFolder = new TemporaryFolder();
+  
+  private HttpServer mServer;
+  private ExecutorService mServerExecutor;
+  private DownloadEngine mEngine;
+  private String mBaseUrl;
+  
+  private final AtomicInteger mNotModifiedCount = new AtomicInteger();
+  private final AtomicReference<String> mAcceptEncoding = new AtomicReference<>();
+  
+  @Before
+  public void setUp() throws IOException {
+    mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    
+    mServer.createContext("/file", exchange -> send(exchange, HttpURLConnection.HTTP_OK, CONTENT));
+    
+    mServer.createContext("/moved", exchange -> {
+      exchange.getResponseHeaders().set("Location", mBaseUrl + "/file");
+      send(exchange, HttpURLConnection.HTTP_MOVED_TEMP, null);
+    });
+    
+    mServer.createContext("/data.gz", exchange -> {
+      mAcceptEncoding.set(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+      send(exchange, HttpURLConnection.HTTP_OK, gzip(CONTENT));
+    });
+    
+    mServer.createContext("/stalled", exchange -> {
+      try {
+        Thread.sleep(TIMEOUT * 6);
+      } catch (InterruptedException ignored) {
+      }
+      
+      send(exchange, HttpURLConnection.HTTP_OK, CONTENT);
+    });
+    
+    mServer.createContext("/slow", exchange -> {
+      try {
+        Thread.sleep(TIMEOUT / 2);
+      } catch (InterruptedException ignored) {
+      }
+      
+      send(exchange, HttpURLConnection.HTTP_OK, CONTENT);
+    });
+    
+    mServer.createContext("/validated", exchange -> {
+      exchange.getResponseHeaders().set("ETag", ETAG);
+      
+      if(ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        mNotModifiedCount.incrementAndGet();
+        send(exchange, HttpURLConnection.HTTP_NOT_MODIFIED, null);
+      }
+      else {
+        send(exchange, HttpURLConnection.HTTP_OK, CONTENT);
+      }
+    });
+    
+    mServerExecutor = Executors.newCachedThreadPool();
+    mServer.setExecutor(mServerExecutor);
+    mServer.start();
+    
+    mBaseUrl = "http://127.0.0.1:" + mServer.getAddress().getPort();
+    mEngine = new DownloadEngine(2);
+  }
+  
+  @After
+  public void tearDown() {
+    mServer.stop(0);
+    mServerExecutor.shutdownNow();
+  }
+  
+  private static void send(HttpExchange exchange, int code, byte[] body) throws IOException {
+    exchange.sendResponseHeaders(code, body != null ? body.length : -1);
+    
+    if(body != null) {
+      final OutputStream out = exchange.getResponseBody();
+      out.write(body);
+      out.close();
+    }
+    
+    exchange.close();
+  }
+  
+  private static byte[] gzip(byte[] data) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final GZIPOutputStream out = new GZIPOutputStream(bytes);
+    out.write(data);
+    out.close();
+    
+    return bytes.toByteArray();
+  }
+  
+  private static byte[] read(InputStream in) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[1024];
+    int count;
+    
+    try {
+      while((count = in.read(buffer)) != -1) {
+        out.write(buffer, 0, count);
+      }
+    }finally {
+      in.close();
+    }
+    
+    return out.toByteArray();
+  }
+  
+  @Test
+  public void testLoad() throws Exception {
+    assertArrayEquals(CONTENT, mEngine.load(mBaseUrl + "/file", TIMEOUT).get());
+  }
+  
+  @Test
+  public void testRedirect() throws Exception {
+    assertArrayEquals(CONTENT, mEngine.load(mBaseUrl + "/moved", TIMEOUT).get());
+    
+    final File target = mFolder.newFile("moved");
+    
+    assertTrue(mEngine.save(mBaseUrl + "/moved", target, TIMEOUT, null).get());
+    assertArrayEquals(CONTENT, read(new FileInputStream(target)));
+  }
+  
+  @Test
+  public void testGzipIsSavedCompressed() throws Exception {
+    final File target = new File(mFolder.getRoot(), "data.gz");
+    
+    assertTrue(mEngine.save(mBaseUrl + "/data.gz", target, TIMEOUT, null).get());
+    assertTrue(mAcceptEncoding.get() != null && mAcceptEncoding.get().contains("gzip"));
+    assertArrayEquals(gzip(CONTENT), read(new FileInputStream(target)));
+    assertArrayEquals(CONTENT, read(new GZIPInputStream(new FileInputStream(target))));
+  }
+  
+  @Test
+  public void testMissingFile() throws Exception {
+    final File target = new File(mFolder.getRoot(), "missing");
+    
+    assertFalse(mEngine.save(mBaseUrl + "/missing", target, TIMEOUT, null).get());
+    assertFalse(target.exists());
+    assertFalse(new File(target.getAbsolutePath() + ".part").exists());
+  }
+  
+  @Test
+  public void testTimeout() throws Exception {
+    final File target = new File(mFolder.getRoot(), "stalled");
+    final long start = System.currentTimeMillis();
+    
+    assertFalse(mEngine.save(mBaseUrl + "/stalled", target, TIMEOUT, null).get(TIMEOUT * 4, TimeUnit.MILLISECONDS));
+    assertTrue(System.currentTimeMillis() - start < TIMEOUT * 4);
+    assertFalse(target.exists());
+    assertFalse(new File(target.getAbsolutePath() + ".part").exists());
+    
+    try {
+      mEngine.load(mBaseUrl + "/stalled", TIMEOUT).get(TIMEOUT * 4, TimeUnit.MILLISECONDS);
+      fail("A stalled download must fail");
+    }catch(ExecutionException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+  
+  @Test
+  public void testLoadUrlWaitsOnlyForTimeout() {
+    final long start = System.currentTimeMillis();
+    
+    try {
+      IOUtils.loadUrl(mBaseUrl + "/stalled", TIMEOUT);
+      fail("A stalled download must fail");
+    }catch(TimeoutException e) {
+      assertTrue(System.currentTimeMillis() - start < TIMEOUT * 4);
+    }
+  }
+  
+  @Test
+  public void testNotModified() throws Exception {
+    final HttpCache cache = new HttpCache(mFolder.newFolder("cache"));
+    final File target = new File(mFolder.getRoot(), "validated");
+    final String url = mBaseUrl + "/validated";
+    
+    assertEquals(DownloadEngine.RESULT_LOADED, (int)mEngine.saveIfModified(url, target, TIMEOUT, cache, true).get());
+    assertEquals(0, mNotModifiedCount.get());
+    
+    assertEquals(DownloadEngine.RESULT_NOT_MODIFIED, (int)mEngine.saveIfModified(url, target, TIMEOUT, cache, true).get());
+    assertEquals(1, mNotModifiedCount.get());
+    assertArrayEquals(CONTENT, read(new FileInputStream(target)));
+    
+    // without the kept file the validators can't be used
+    assertTrue(target.delete());
+    
+    assertEquals(DownloadEngine.RESULT_LOADED, (int)mEngine.saveIfModified(url, target, TIMEOUT, cache, true).get());
+    assertEquals(1, mNotModifiedCount.get());
+    assertArrayEquals(CONTENT, read(new FileInputStream(target)));
+  }
+  
+  @Test
+  public void testDurationWithoutQueueWait() throws Exception {
+    mEngine.setMaxConnections(1);
+    
+    final AtomicLong slowDuration = new AtomicLong(-1);
+    final AtomicLong queuedDuration = new AtomicLong(-1);
+    final long start = System.currentTimeMillis();
+    
+    final Future<Boolean> slow = mEngine.save(mBaseUrl + "/slow", new File(mFolder.getRoot(), "slow"), TIMEOUT, (url, target, success, duration) -> slowDuration.set(duration));
+    final Future<Boolean> queued = mEngine.save(mBaseUrl + "/file", new File(mFolder.getRoot(), "queued"), TIMEOUT, (url, target, success, duration) -> queuedDuration.set(duration));
+    
+    assertTrue(slow.get());
+    assertTrue(queued.get());
+    
+    // the second download waited for the connection of the first one
+    assertTrue(System.currentTimeMillis() - start >= TIMEOUT / 2);
+    assertTrue(slowDuration.get() >= TIMEOUT / 2);
+    assertTrue(queuedDuration.get() >= 0 && queuedDuration.get() < TIMEOUT / 2);
+  }
+  
+  @Test
+  public void testMaxConnections() {
+    mEngine.setMaxConnections(5);
+    assertEquals(5, mEngine.getMaxConnections());
+    
+    mEngine.setMaxConnections(1);
+    assertEquals(1, mEngine.getMaxConnections());
+  }
+}
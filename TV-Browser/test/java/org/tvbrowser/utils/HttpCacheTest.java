@@ -0,0 +1,76 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2018 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that the {@link HttpCache} writes its changes only on flush.
+ *
+ * @author René Mach
+ */
+public class HttpCacheTest {
+  private static final String URL = "http://example.org/data.gz";
+  
+  @Rule
+  public final TemporaryFolder mFolder = new TemporaryFolder();
+  
+  @Test
+  public void testChangesAreWrittenOnFlush() throws IOException {
+    final File directory = mFolder.newFolder("cache");
+    final HttpCache cache = new HttpCache(directory);
+    
+    cache.put(URL, new HttpCache.Entry("\"1\"", null, 10));
+    
+    assertNotNull(cache.get(URL, null));
+    assertFalse(new File(directory, "httpcache.gz").exists());
+    
+    cache.flush();
+    
+    final HttpCache.Entry stored = new HttpCache(directory).get(URL, null);
+    
+    assertNotNull(stored);
+    assertEquals("\"1\"", stored.mETag);
+    assertEquals(10, stored.mSize);
+    
+    cache.remove(URL);
+    cache.flush();
+    
+    assertNull(new HttpCache(directory).get(URL, null));
+  }
+  
+  @Test
+  public void testKeptFileMustMatchSize() throws IOException {
+    final HttpCache cache = new HttpCache(mFolder.newFolder("cache"));
+    final File kept = mFolder.newFile("kept");
+    
+    cache.put(URL, new HttpCache.Entry(null, "Mon, 01 Oct 2018 10:00:00 GMT", 10));
+    
+    assertNull(cache.get(URL, kept));
+    assertNotNull(cache.get(URL, null));
+  }
+}